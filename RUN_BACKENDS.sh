@@ -21,6 +21,9 @@ if ! command -v mvn &> /dev/null; then
     exit 1
 fi
 
+echo "Installing casper-core (shared CASPER library)..."
+mvn -q -f core/pom.xml install -DskipTests || exit 1
+
 echo "Starting PMS (Passkey Management Service) on port 8080..."
 echo ""
 cd pms-backend/casper-pms
@@ -0,0 +1,200 @@
+package com.casper.authenticator;
+
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.casper.authenticator.crypto.CasperCrypto;
+import com.casper.authenticator.login.PasskeyAuthenticator;
+import com.casper.authenticator.registration.BulkRegistrar;
+import com.casper.authenticator.storage.LocalPasskeyStore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bulk Activity - Register with or log in to many RPs at once.
+ * 
+ * Takes one RP URL per line. Registration goes through {@link BulkRegistrar}
+ * (parallel key generation, one batched PMS upload, bounded RP fan-out);
+ * login goes through {@link PasskeyAuthenticator#loginAll}. Progress and
+ * results are shown per RP.
+ */
+public class BulkActivity extends AppCompatActivity {
+    
+    private EditText rpUrlsEditText;
+    private Button registerAllButton;
+    private Button loginAllButton;
+    private TextView statusTextView;
+    
+    private BulkRegistrar bulkRegistrar;
+    private PasskeyAuthenticator authenticator;
+    
+    // Latest status line per RP, in input order
+    private final Map<String, String> rpStatus = new LinkedHashMap<>();
+    
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_bulk);
+        
+        CasperCrypto casperCrypto = new CasperCrypto(this);
+        String userId = casperCrypto.getUserId();
+        if (userId == null) {
+            Toast.makeText(this, "User ID not found. Please set up PIN first.", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+        LocalPasskeyStore passkeyStore = LocalPasskeyStore.getInstance(this);
+        bulkRegistrar = new BulkRegistrar(casperCrypto, passkeyStore, userId);
+        authenticator = new PasskeyAuthenticator(casperCrypto, passkeyStore, userId);
+        
+        rpUrlsEditText = findViewById(R.id.rpUrlsEditText);
+        registerAllButton = findViewById(R.id.registerAllButton);
+        loginAllButton = findViewById(R.id.loginAllButton);
+        statusTextView = findViewById(R.id.statusTextView);
+        Button backButton = findViewById(R.id.backButton);
+        
+        registerAllButton.setOnClickListener(v -> registerAll());
+        loginAllButton.setOnClickListener(v -> loginAll());
+        
+        // Back button to return to home
+        backButton.setOnClickListener(v -> {
+            Intent intent = new Intent(BulkActivity.this, HomeActivity.class);
+            intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+            startActivity(intent);
+            finish();
+        });
+    }
+    
+    private void registerAll() {
+        List<String> rpUrls = readRpUrls();
+        if (rpUrls == null) {
+            return;
+        }
+        if (rpUrls.size() > BulkRegistrar.MAX_BATCH_SIZE) {
+            Toast.makeText(this, "At most " + BulkRegistrar.MAX_BATCH_SIZE + " RPs at a time",
+                    Toast.LENGTH_SHORT).show();
+            return;
+        }
+        
+        String pin = getPin();
+        if (pin == null) {
+            Toast.makeText(this, "PIN not found", Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+        
+        start(rpUrls);
+        bulkRegistrar.register(rpUrls, pin, new BulkRegistrar.Listener() {
+            @Override
+            public void onRpProgress(String rpUrl, String status) {
+                setRpStatus(rpUrl, status);
+            }
+            
+            @Override
+            public void onRpComplete(String rpUrl, boolean success, String message) {
+                setRpStatus(rpUrl, (success ? "✓ " : "✗ ") + message);
+            }
+            
+            @Override
+            public void onComplete(int succeeded, int failed) {
+                onBulkComplete(succeeded, failed);
+            }
+        });
+    }
+    
+    private void loginAll() {
+        List<String> rpUrls = readRpUrls();
+        if (rpUrls == null) {
+            return;
+        }
+        
+        start(rpUrls);
+        authenticator.loginAll(rpUrls, new PasskeyAuthenticator.BulkListener() {
+            @Override
+            public void onRpProgress(String rpUrl, String status) {
+                setRpStatus(rpUrl, status);
+            }
+            
+            @Override
+            public void onRpResult(String rpUrl, PasskeyAuthenticator.LoginResult result) {
+                boolean ok = result.isSuccess() && !result.isBreachDetected();
+                setRpStatus(rpUrl, (ok ? "✓ " : "✗ ") + result.getMessage());
+                if (result.isBreachDetected()) {
+                    Toast.makeText(BulkActivity.this,
+                            "CASPER detected a breach at " + rpUrl + "! Decoy passkey was used.",
+                            Toast.LENGTH_LONG).show();
+                }
+            }
+            
+            @Override
+            public void onComplete(int succeeded, int failed) {
+                onBulkComplete(succeeded, failed);
+            }
+        });
+    }
+    
+    /**
+     * Read one RP URL per line, skipping blank lines.
+     * 
+     * @return RP URLs, or null (after telling the user) if none were entered
+     */
+    private List<String> readRpUrls() {
+        List<String> rpUrls = new ArrayList<>();
+        for (String line : rpUrlsEditText.getText().toString().split("\n")) {
+            String rpUrl = line.trim();
+            if (!rpUrl.isEmpty() && !rpUrls.contains(rpUrl)) {
+                rpUrls.add(rpUrl);
+            }
+        }
+        if (rpUrls.isEmpty()) {
+            Toast.makeText(this, "Please enter at least one RP URL", Toast.LENGTH_SHORT).show();
+            return null;
+        }
+        return rpUrls;
+    }
+    
+    private void start(List<String> rpUrls) {
+        registerAllButton.setEnabled(false);
+        loginAllButton.setEnabled(false);
+        rpStatus.clear();
+        for (String rpUrl : rpUrls) {
+            rpStatus.put(rpUrl, "Waiting...");
+        }
+        renderStatus();
+    }
+    
+    private void onBulkComplete(int succeeded, int failed) {
+        registerAllButton.setEnabled(true);
+        loginAllButton.setEnabled(true);
+        Toast.makeText(this, succeeded + " succeeded, " + failed + " failed", Toast.LENGTH_SHORT).show();
+    }
+    
+    private void setRpStatus(String rpUrl, String status) {
+        rpStatus.put(rpUrl, status);
+        renderStatus();
+    }
+    
+    private void renderStatus() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, String> entry : rpStatus.entrySet()) {
+            text.append(entry.getKey()).append('\n')
+                    .append("    ").append(entry.getValue()).append('\n');
+        }
+        statusTextView.setText(text.toString());
+    }
+    
+    private String getPin() {
+        SharedPreferences securePrefs = getSharedPreferences("secure_prefs", MODE_PRIVATE);
+        return securePrefs.getString("pin", null);
+    }
+}
@@ -0,0 +1,44 @@
+package com.casper.authenticator;
+
+import android.app.Application;
+
+import com.casper.authenticator.network.ApiClient;
+import com.casper.authenticator.tracing.DeviceTracer;
+import com.casper.authenticator.tracing.FileSpanSink;
+import com.casper.authenticator.tracing.InMemorySpanSink;
+
+import java.io.File;
+
+/**
+ * Application class - process-wide initialization.
+ * 
+ * Sets up the shared HTTP client and the device tracer before any activity
+ * makes a network call.
+ */
+public class CasperApplication extends Application {
+    
+    /** Number of recent device spans kept in memory. */
+    private static final int TRACE_BUFFER_SIZE = 512;
+    
+    private static final InMemorySpanSink recentSpans = new InMemorySpanSink(TRACE_BUFFER_SIZE);
+    
+    /**
+     * Get the in-memory sink holding the most recent device spans.
+     */
+    public static InMemorySpanSink getRecentSpans() {
+        return recentSpans;
+    }
+    
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        ApiClient.init(this);
+        
+        DeviceTracer tracer = DeviceTracer.getInstance();
+        tracer.addSink(recentSpans);
+        if (BuildConfig.DEBUG) {
+            // Debug builds also keep a trace file: adb pull <files dir>/traces.jsonl
+            tracer.addSink(new FileSpanSink(new File(getFilesDir(), "traces.jsonl")));
+        }
+    }
+}
@@ -13,12 +13,14 @@ import androidx.appcompat.app.AppCompatActivity;
  * - Register a new passkey
  * - Login with an existing passkey
  * - Restore passkey from cloud backup
+ * - Register with or log in to many RPs at once
  */
 public class HomeActivity extends AppCompatActivity {
     
     private Button registerButton;
     private Button loginButton;
     private Button restoreButton;
+    private Button bulkButton;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -28,6 +30,7 @@ public class HomeActivity extends AppCompatActivity {
         registerButton = findViewById(R.id.registerButton);
         loginButton = findViewById(R.id.loginButton);
         restoreButton = findViewById(R.id.restoreButton);
+        bulkButton = findViewById(R.id.bulkButton);
         
         registerButton.setOnClickListener(v -> {
             Intent intent = new Intent(HomeActivity.this, RegisterActivity.class);
@@ -43,6 +46,11 @@ public class HomeActivity extends AppCompatActivity {
             Intent intent = new Intent(HomeActivity.this, RestoreActivity.class);
             startActivity(intent);
         });
+        
+        bulkButton.setOnClickListener(v -> {
+            Intent intent = new Intent(HomeActivity.this, BulkActivity.class);
+            startActivity(intent);
+        });
     }
 }
 
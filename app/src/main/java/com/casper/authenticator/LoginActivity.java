@@ -10,33 +10,20 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.casper.authenticator.crypto.CasperCrypto;
-import com.casper.authenticator.models.DetectionSecrets;
-import com.casper.authenticator.models.PasskeyData;
-import com.casper.authenticator.network.ApiClient;
-import com.casper.authenticator.network.PMSApi;
-import com.casper.authenticator.network.RPApi;
+import com.casper.authenticator.login.PasskeyAuthenticator;
+import com.casper.authenticator.storage.LocalPasskeyStore;
+import com.casper.authenticator.tracing.TraceSpan;
 
-import android.util.Base64;
-
-import java.security.KeyFactory;
-import java.security.PrivateKey;
-import java.security.PublicKey;
-import java.security.spec.PKCS8EncodedKeySpec;
-import java.security.spec.X509EncodedKeySpec;
-
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Login Activity - Login with passkey.
  * 
- * Implements CASPER login:
- * 1. Fetch encrypted passkey from PMS
- * 2. Decrypt private key using PIN-selected real secret
- * 3. Sign challenge with private key
- * 4. Send signature to RP
- * 5. RP performs CASPER breach detection
+ * The CASPER login itself (fetch, decrypt, sign, RP breach detection) is done
+ * by {@link PasskeyAuthenticator}, which is shared with bulk login. Debug
+ * builds show the device side of each login's trace waterfall.
  */
 public class LoginActivity extends AppCompatActivity {
     
@@ -44,21 +31,21 @@ public class LoginActivity extends AppCompatActivity {
     private Button loginButton;
     private TextView statusTextView;
     
-    private CasperCrypto casperCrypto;
-    private String userId;
+    private PasskeyAuthenticator authenticator;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_login);
         
-        casperCrypto = new CasperCrypto(this);
-        userId = casperCrypto.getUserId();
+        CasperCrypto casperCrypto = new CasperCrypto(this);
+        String userId = casperCrypto.getUserId();
         if (userId == null) {
             Toast.makeText(this, "User ID not found. Please set up PIN first.", Toast.LENGTH_SHORT).show();
             finish();
             return;
         }
+        authenticator = new PasskeyAuthenticator(casperCrypto, LocalPasskeyStore.getInstance(this), userId);
         
         rpUrlEditText = findViewById(R.id.rpUrlEditText);
         loginButton = findViewById(R.id.loginButton);
@@ -85,123 +72,53 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
         
-        // Fetch encrypted passkey from PMS (use same rpId as stored during registration)
-        PMSApi pmsApi = ApiClient.getPmsRetrofit(ApiClient.PMS_BASE_URL).create(PMSApi.class);
-        // Retrofit will automatically URL-encode path parameters
-        String rpId = rpUrl; // Use the same rpId format as during registration
-        Call<PasskeyData> call = pmsApi.fetchPasskey(userId, rpId);
-        call.enqueue(new Callback<PasskeyData>() {
+        authenticator.loginAsync(rpUrl, new PasskeyAuthenticator.Listener() {
             @Override
-            public void onResponse(Call<PasskeyData> call, Response<PasskeyData> response) {
-                if (response.isSuccessful()) {
-                    PasskeyData passkeyData = response.body();
-                    if (passkeyData != null) {
-                        // Decrypt and login
-                        performLogin(passkeyData, rpUrl, pin);
-                    } else {
-                        statusTextView.setText("Passkey not found");
-                        loginButton.setEnabled(true);
-                        Toast.makeText(LoginActivity.this, "Passkey not found", Toast.LENGTH_SHORT).show();
-                    }
-                } else {
-                    statusTextView.setText("Failed to fetch passkey");
-                    loginButton.setEnabled(true);
-                    Toast.makeText(LoginActivity.this, "Failed to fetch passkey", Toast.LENGTH_SHORT).show();
-                }
+            public void onProgress(String status) {
+                statusTextView.setText(status);
             }
             
             @Override
-            public void onFailure(Call<PasskeyData> call, Throwable t) {
-                statusTextView.setText("Network error");
+            public void onResult(PasskeyAuthenticator.LoginResult result) {
                 loginButton.setEnabled(true);
-                Toast.makeText(LoginActivity.this, "Network error: " + t.getMessage(), Toast.LENGTH_SHORT).show();
+                statusTextView.setText(result.getMessage());
+                if (BuildConfig.DEBUG && result.getTraceId() != null) {
+                    statusTextView.append("\n\n" + describeTrace(result.getTraceId()));
+                }
+                if (result.isBreachDetected()) {
+                    Toast.makeText(LoginActivity.this, 
+                            "CASPER detected a breach! Decoy passkey was used.", 
+                            Toast.LENGTH_LONG).show();
+                } else if (result.isSuccess()) {
+                    Toast.makeText(LoginActivity.this, 
+                            getString(R.string.login_success), Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(LoginActivity.this, 
+                            getString(R.string.login_error), Toast.LENGTH_SHORT).show();
+                }
             }
         });
     }
     
-    private void performLogin(PasskeyData passkeyData, String rpUrl, String pin) {
-        try {
-            statusTextView.setText("Decrypting passkey...");
-            
-            // Select real secret using PIN
-            DetectionSecrets detectionSecrets = passkeyData.getDetectionSecrets();
-            byte[] realSecret = detectionSecrets.getRealSecretAsBytes();
-            
-            // Decrypt private key: s = HKDF(w*, z) XOR s̃
-            byte[] encryptedPrivateKey = passkeyData.getEncryptedPrivateKeyAsBytes();
-            byte[] z = passkeyData.getZAsBytes();
-            byte[] privateKeyBytes = casperCrypto.decryptPasskey(encryptedPrivateKey, realSecret, z);
-            
-            // Reconstruct private key from bytes
-            KeyFactory keyFactory = KeyFactory.getInstance("EC");
-            PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(privateKeyBytes);
-            PrivateKey privateKey = keyFactory.generatePrivate(keySpec);
-            
-            // Generate challenge (in real implementation, RP would send this)
-            String challenge = "login_challenge_" + System.currentTimeMillis();
-            byte[] challengeBytes = challenge.getBytes();
-            
-            // Sign challenge
-            statusTextView.setText("Signing challenge...");
-            byte[] signature = casperCrypto.sign(challengeBytes, privateKey);
-            
-            // Get public key
-            byte[] publicKeyBytes = passkeyData.getPublicKeyAsBytes();
-            X509EncodedKeySpec pubKeySpec = new X509EncodedKeySpec(publicKeyBytes);
-            PublicKey publicKey = keyFactory.generatePublic(pubKeySpec);
-            
-            // Send login request to RP
-            statusTextView.setText("Sending login request...");
-            RPApi rpApi = ApiClient.getRpRetrofit(rpUrl).create(RPApi.class);
-            RPApi.LoginRequest request = new RPApi.LoginRequest(
-                    userId,
-                    rpUrl,
-                    Base64.encodeToString(publicKey.getEncoded(), Base64.NO_WRAP),
-                    challenge,
-                    Base64.encodeToString(signature, Base64.NO_WRAP)
-            );
-            
-            Call<RPApi.LoginResponse> loginCall = rpApi.login(request);
-            loginCall.enqueue(new Callback<RPApi.LoginResponse>() {
-                @Override
-                public void onResponse(Call<RPApi.LoginResponse> call, 
-                                      Response<RPApi.LoginResponse> response) {
-                    loginButton.setEnabled(true);
-                    if (response.isSuccessful()) {
-                        RPApi.LoginResponse loginResponse = response.body();
-                        if (loginResponse != null) {
-                            if (loginResponse.breachDetected) {
-                                statusTextView.setText("⚠️ BREACH DETECTED!");
-                                Toast.makeText(LoginActivity.this, 
-                                        "CASPER detected a breach! Decoy passkey was used.", 
-                                        Toast.LENGTH_LONG).show();
-                            } else {
-                                statusTextView.setText("Login successful!");
-                                Toast.makeText(LoginActivity.this, 
-                                        getString(R.string.login_success), Toast.LENGTH_SHORT).show();
-                            }
-                        }
-                    } else {
-                        statusTextView.setText("Login failed");
-                        Toast.makeText(LoginActivity.this, 
-                                getString(R.string.login_error), Toast.LENGTH_SHORT).show();
-                    }
-                }
-                
-                @Override
-                public void onFailure(Call<RPApi.LoginResponse> call, Throwable t) {
-                    loginButton.setEnabled(true);
-                    statusTextView.setText("Network error");
-                    Toast.makeText(LoginActivity.this, 
-                            "Network error: " + t.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            });
-            
-        } catch (Exception e) {
-            loginButton.setEnabled(true);
-            statusTextView.setText("Error: " + e.getMessage());
-            Toast.makeText(this, "Login failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+    /**
+     * Device side of the login waterfall: each span's offset from the login start and its duration.
+     * The PMS and RP parts are served by their GET /api/traces/{traceId} endpoints.
+     */
+    private String describeTrace(String traceId) {
+        List<TraceSpan> spans = CasperApplication.getRecentSpans().getTrace(traceId);
+        Collections.sort(spans, (a, b) -> Long.compare(a.getStartEpochNanos(), b.getStartEpochNanos()));
+        
+        StringBuilder text = new StringBuilder("Trace ").append(traceId);
+        if (spans.isEmpty()) {
+            return text.toString();
+        }
+        long traceStart = spans.get(0).getStartEpochNanos();
+        for (TraceSpan span : spans) {
+            text.append(String.format(Locale.ROOT, "\n+%7.1f ms  %-28s %7.1f ms",
+                    (span.getStartEpochNanos() - traceStart) / 1_000_000.0,
+                    span.getName(), span.getDurationMillis()));
         }
+        return text.toString();
     }
     
     private String getPin() {
@@ -11,24 +11,8 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.casper.authenticator.crypto.CasperCrypto;
-import com.casper.authenticator.crypto.KeyGenerator;
-import com.casper.authenticator.models.DetectionSecrets;
-import com.casper.authenticator.models.PasskeyData;
-import com.casper.authenticator.network.ApiClient;
-import com.casper.authenticator.network.PMSApi;
-import com.casper.authenticator.network.RPApi;
-
-import android.util.Base64;
-
-import java.security.KeyPair;
-import java.security.PrivateKey;
-import java.security.PublicKey;
-import java.util.ArrayList;
-import java.util.List;
-
-import retrofit2.Call;
-import retrofit2.Callback;
-import retrofit2.Response;
+import com.casper.authenticator.registration.RegistrationPipeline;
+import com.casper.authenticator.storage.LocalPasskeyStore;
 
 /**
  * Register Activity - Register a new passkey with RP.
@@ -40,6 +24,10 @@ import retrofit2.Response;
  * 4. Generate decoy passkeys using fake secrets
  * 5. Upload encrypted passkey to PMS
  * 6. Register all public keys (real + decoys) with RP
+ * 
+ * The steps run as a concurrent {@link RegistrationPipeline}: decoys are generated
+ * while the PMS upload is in flight, PMS and RP calls overlap, and a failure on
+ * either side rolls back the other.
  */
 public class RegisterActivity extends AppCompatActivity {
     
@@ -50,6 +38,7 @@ public class RegisterActivity extends AppCompatActivity {
     private TextView statusTextView;
     
     private CasperCrypto casperCrypto;
+    private RegistrationPipeline registrationPipeline;
     private String userId;
     
     @Override
@@ -64,6 +53,8 @@ public class RegisterActivity extends AppCompatActivity {
             finish();
             return;
         }
+        registrationPipeline = new RegistrationPipeline(
+                casperCrypto, LocalPasskeyStore.getInstance(this), userId);
         
         rpUrlEditText = findViewById(R.id.rpUrlEditText);
         registerButton = findViewById(R.id.registerButton);
@@ -99,136 +90,36 @@ public class RegisterActivity extends AppCompatActivity {
             return;
         }
         
-        try {
-            // 1. Generate detection secrets
-            DetectionSecrets detectionSecrets = casperCrypto.generateDetectionSecrets(pin);
-            byte[] realSecret = detectionSecrets.getRealSecretAsBytes();
-            
-            // 2. Generate real passkey key pair
-            KeyPair realKeyPair = KeyGenerator.generateKeyPair();
-            PrivateKey realPrivateKey = realKeyPair.getPrivate();
-            PublicKey realPublicKey = realKeyPair.getPublic();
-            
-            // 3. Generate random value z
-            byte[] z = KeyGenerator.generateRandomBytes(32);
-            
-            // 4. Encrypt private key: s̃ = HKDF(w*, z) XOR s
-            byte[] encryptedPrivateKey = casperCrypto.encryptPasskey(realPrivateKey, realSecret, z);
-            
-            // 5. Normalize rpId (use URL as-is, or extract domain)
-            String rpId = rpUrl;
-            
-            // Create PasskeyData for PMS
-            PasskeyData passkeyData = new PasskeyData(
-                    userId,
-                    rpId,
-                    encryptedPrivateKey,
-                    realPublicKey.getEncoded(),
-                    detectionSecrets,
-                    z
-            );
-            
-            // 6. Upload to PMS
-            PMSApi pmsApi = ApiClient.getPmsRetrofit(ApiClient.PMS_BASE_URL).create(PMSApi.class);
-            Call<PasskeyData> pmsCall = pmsApi.uploadPasskey(passkeyData);
-            pmsCall.enqueue(new Callback<PasskeyData>() {
-                @Override
-                public void onResponse(Call<PasskeyData> call, Response<PasskeyData> response) {
-                    if (response.isSuccessful()) {
-                        // 7. Generate decoy passkeys and register all with RP
-                        registerWithRP(rpUrl, realPublicKey, detectionSecrets, z);
-                    } else {
-                        statusTextView.setText("PMS upload failed");
-                        registerButton.setEnabled(true);
-                        Toast.makeText(RegisterActivity.this, "Failed to upload to PMS", Toast.LENGTH_SHORT).show();
-                    }
-                }
-                
-                @Override
-                public void onFailure(Call<PasskeyData> call, Throwable t) {
-                    statusTextView.setText("Network error");
-                    registerButton.setEnabled(true);
-                    Toast.makeText(RegisterActivity.this, "Network error: " + t.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            });
-            
-        } catch (Exception e) {
-            statusTextView.setText("Error: " + e.getMessage());
-            registerButton.setEnabled(true);
-            Toast.makeText(this, "Registration failed: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
-    }
-    
-    private void registerWithRP(String rpUrl, PublicKey realPublicKey, 
-                                DetectionSecrets detectionSecrets, byte[] z) {
-        try {
-            // Generate decoy passkeys using fake secrets
-            List<String> publicKeys = new ArrayList<>();
-            
-            // Add real public key
-            publicKeys.add(Base64.encodeToString(realPublicKey.getEncoded(), Base64.NO_WRAP));
-            
-            // Generate decoy passkeys using decoy secrets
-            byte[][] secrets = detectionSecrets.getSecretsAsBytes();
-            int realIndex = detectionSecrets.getRealSecretIndex();
-            
-            for (int i = 0; i < secrets.length; i++) {
-                if (i != realIndex) {
-                    // Generate decoy key pair (in real CASPER, this would use the decoy secret
-                    // to derive a decoy passkey. For simplicity, we generate random key pairs)
-                    KeyPair decoyKeyPair = KeyGenerator.generateKeyPair();
-                    publicKeys.add(Base64.encodeToString(
-                            decoyKeyPair.getPublic().getEncoded(), Base64.NO_WRAP));
-                }
+        registrationPipeline.register(rpUrl, pin, new RegistrationPipeline.Listener() {
+            @Override
+            public void onProgress(String status) {
+                statusTextView.setText(status);
             }
             
-            // Register all public keys with RP
-            RPApi rpApi = ApiClient.getRpRetrofit(rpUrl).create(RPApi.class);
-            RPApi.RegisterRequest request = new RPApi.RegisterRequest(
-                    userId,
-                    rpUrl,
-                    publicKeys.toArray(new String[0])
-            );
-            
-            Call<RPApi.RegisterResponse> rpCall = rpApi.register(request);
-            rpCall.enqueue(new Callback<RPApi.RegisterResponse>() {
-                @Override
-                public void onResponse(Call<RPApi.RegisterResponse> call, 
-                                      Response<RPApi.RegisterResponse> response) {
-                    registerButton.setEnabled(true);
-                    if (response.isSuccessful()) {
-                        statusTextView.setText("Registration successful!");
-                        Toast.makeText(RegisterActivity.this, 
-                                getString(R.string.registration_success), Toast.LENGTH_SHORT).show();
-                        
-                        // Navigate back to home after successful registration
-                        new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(() -> {
-                            Intent intent = new Intent(RegisterActivity.this, HomeActivity.class);
-                            intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
-                            startActivity(intent);
-                            finish();
-                        }, 1500); // Wait 1.5 seconds to show success message
-                    } else {
-                        statusTextView.setText("RP registration failed");
-                        Toast.makeText(RegisterActivity.this, 
-                                getString(R.string.registration_error), Toast.LENGTH_SHORT).show();
-                    }
-                }
+            @Override
+            public void onSuccess() {
+                registerButton.setEnabled(true);
+                statusTextView.setText("Registration successful!");
+                Toast.makeText(RegisterActivity.this, 
+                        getString(R.string.registration_success), Toast.LENGTH_SHORT).show();
                 
-                @Override
-                public void onFailure(Call<RPApi.RegisterResponse> call, Throwable t) {
-                    registerButton.setEnabled(true);
-                    statusTextView.setText("Network error");
-                    Toast.makeText(RegisterActivity.this, 
-                            "Network error: " + t.getMessage(), Toast.LENGTH_SHORT).show();
-                }
-            });
+                // Navigate back to home after successful registration
+                new android.os.Handler(android.os.Looper.getMainLooper()).postDelayed(() -> {
+                    Intent intent = new Intent(RegisterActivity.this, HomeActivity.class);
+                    intent.setFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP);
+                    startActivity(intent);
+                    finish();
+                }, 1500); // Wait 1.5 seconds to show success message
+            }
             
-        } catch (Exception e) {
-            registerButton.setEnabled(true);
-            statusTextView.setText("Error: " + e.getMessage());
-            Toast.makeText(this, "Error: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+            @Override
+            public void onFailure(String message) {
+                registerButton.setEnabled(true);
+                statusTextView.setText(message);
+                Toast.makeText(RegisterActivity.this, 
+                        getString(R.string.registration_error) + ": " + message, Toast.LENGTH_SHORT).show();
+            }
+        });
     }
     
     private String getPin() {
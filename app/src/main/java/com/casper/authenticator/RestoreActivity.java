@@ -13,6 +13,7 @@ import com.casper.authenticator.crypto.CasperCrypto;
 import com.casper.authenticator.models.PasskeyData;
 import com.casper.authenticator.network.ApiClient;
 import com.casper.authenticator.network.PMSApi;
+import com.casper.authenticator.storage.LocalPasskeyStore;
 
 import retrofit2.Call;
 import retrofit2.Callback;
@@ -24,6 +25,9 @@ import retrofit2.Response;
  * Allows user to restore their encrypted passkey from PMS using their PIN.
  * This demonstrates cloud backup functionality - the passkey is encrypted
  * and can only be decrypted with the correct PIN.
+ * 
+ * A restored passkey is kept in the {@link LocalPasskeyStore}, so later
+ * logins and restores are served on-device and only revalidated against the PMS.
  */
 public class RestoreActivity extends AppCompatActivity {
     
@@ -33,6 +37,7 @@ public class RestoreActivity extends AppCompatActivity {
     private TextView statusTextView;
     
     private CasperCrypto casperCrypto;
+    private LocalPasskeyStore passkeyStore;
     private String userId;
     
     @Override
@@ -41,6 +46,7 @@ public class RestoreActivity extends AppCompatActivity {
         setContentView(R.layout.activity_restore);
         
         casperCrypto = new CasperCrypto(this);
+        passkeyStore = LocalPasskeyStore.getInstance(this);
         userId = casperCrypto.getUserId();
         if (userId == null) {
             Toast.makeText(this, "User ID not found. Please set up PIN first.", Toast.LENGTH_SHORT).show();
@@ -73,9 +79,19 @@ public class RestoreActivity extends AppCompatActivity {
         statusTextView.setText("Fetching passkey from cloud...");
         restoreButton.setEnabled(false);
         
+        String rpId = rpUrl; // Use the same rpId format as during registration
+        
+        // Serve from the on-device copy, refreshing it in the background if stale
+        LocalPasskeyStore.StoredPasskey stored = passkeyStore.get(userId, rpId);
+        if (stored != null) {
+            passkeyStore.revalidateIfStale(userId, rpId);
+            restoreButton.setEnabled(true);
+            verifyRestoredPasskey(stored.getPasskeyData());
+            return;
+        }
+        
         // Fetch encrypted passkey from PMS (use same rpId as stored during registration)
         PMSApi pmsApi = ApiClient.getPmsRetrofit(ApiClient.PMS_BASE_URL).create(PMSApi.class);
-        String rpId = rpUrl; // Use the same rpId format as during registration
         Call<PasskeyData> call = pmsApi.fetchPasskey(userId, rpId);
         call.enqueue(new Callback<PasskeyData>() {
             @Override
@@ -84,31 +100,9 @@ public class RestoreActivity extends AppCompatActivity {
                 if (response.isSuccessful()) {
                     PasskeyData passkeyData = response.body();
                     if (passkeyData != null) {
-                        // Verify PIN can decrypt the passkey
-                        try {
-                            com.casper.authenticator.models.DetectionSecrets detectionSecrets = 
-                                    passkeyData.getDetectionSecrets();
-                            byte[] realSecret = detectionSecrets.getRealSecretAsBytes();
-                            
-                            // Try to decrypt (if PIN is wrong, this will fail or produce garbage)
-                            byte[] encryptedPrivateKey = passkeyData.getEncryptedPrivateKeyAsBytes();
-                            byte[] z = passkeyData.getZAsBytes();
-                            byte[] privateKeyBytes = casperCrypto.decryptPasskey(
-                                    encryptedPrivateKey, realSecret, z);
-                            
-                            // If we get here, decryption succeeded
-                            statusTextView.setText("Passkey restored successfully!");
-                            Toast.makeText(RestoreActivity.this, 
-                                    getString(R.string.restore_success), Toast.LENGTH_SHORT).show();
-                            
-                            // Navigate back to home
-                            finish();
-                            
-                        } catch (Exception e) {
-                            statusTextView.setText("Restore failed: Invalid PIN");
-                            Toast.makeText(RestoreActivity.this, 
-                                    getString(R.string.restore_error), Toast.LENGTH_SHORT).show();
-                        }
+                        // Keep a local copy so later logins and restores work offline
+                        passkeyStore.put(userId, rpId, passkeyData, response.headers().get("ETag"));
+                        verifyRestoredPasskey(passkeyData);
                     } else {
                         statusTextView.setText("Passkey not found");
                         Toast.makeText(RestoreActivity.this, "Passkey not found", Toast.LENGTH_SHORT).show();
@@ -128,5 +122,35 @@ public class RestoreActivity extends AppCompatActivity {
             }
         });
     }
+    
+    /**
+     * Verify the PIN can decrypt the restored passkey.
+     */
+    private void verifyRestoredPasskey(PasskeyData passkeyData) {
+        try {
+            com.casper.authenticator.models.DetectionSecrets detectionSecrets = 
+                    passkeyData.getDetectionSecrets();
+            byte[] realSecret = detectionSecrets.getRealSecretAsBytes();
+            
+            // Try to decrypt (if PIN is wrong, this will fail or produce garbage)
+            byte[] encryptedPrivateKey = passkeyData.getEncryptedPrivateKeyAsBytes();
+            byte[] z = passkeyData.getZAsBytes();
+            byte[] privateKeyBytes = casperCrypto.decryptPasskey(
+                    encryptedPrivateKey, realSecret, z);
+            
+            // If we get here, decryption succeeded
+            statusTextView.setText("Passkey restored successfully!");
+            Toast.makeText(RestoreActivity.this, 
+                    getString(R.string.restore_success), Toast.LENGTH_SHORT).show();
+            
+            // Navigate back to home
+            finish();
+            
+        } catch (Exception e) {
+            statusTextView.setText("Restore failed: Invalid PIN");
+            Toast.makeText(RestoreActivity.this, 
+                    getString(R.string.restore_error), Toast.LENGTH_SHORT).show();
+        }
+    }
 }
 
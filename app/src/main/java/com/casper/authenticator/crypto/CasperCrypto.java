@@ -8,15 +8,12 @@ import androidx.security.crypto.EncryptedSharedPreferences;
 import androidx.security.crypto.MasterKey;
 
 import com.casper.authenticator.models.DetectionSecrets;
+import com.casper.core.CasperCipher;
+import com.casper.core.SecretSelector;
+import com.casper.core.Signatures;
 
-import java.nio.ByteBuffer;
-import java.nio.charset.StandardCharsets;
-import java.security.KeyPair;
-import java.security.MessageDigest;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.Signature;
-import java.util.Arrays;
 
 /**
  * CASPER cryptography implementation.
@@ -31,12 +28,14 @@ import java.util.Arrays;
  * - If attacker uses decoy secret → generates fake passkey
  * - Fake passkey public key will be in trap key set V'
  * - RP detects breach when login key ∈ V'
+ * 
+ * The algorithm itself lives in casper-core (shared with the backends and
+ * benchmarked there); this class adds the Android key storage around it.
  */
 public class CasperCrypto {
     private static final String PREFS_NAME = "casper_prefs";
     private static final String KEY_USER_ID = "user_id";
-    private static final int DETECTION_SECRET_COUNT = 5; // k = 5 detection secrets
-    private static final int SECRET_LENGTH = 32; // 256 bits
+    private static final int DETECTION_SECRET_COUNT = SecretSelector.DEFAULT_SECRET_COUNT; // k = 5 detection secrets
     
     private Context context;
     private SharedPreferences encryptedPrefs;
@@ -68,44 +67,29 @@ public class CasperCrypto {
      * @return DetectionSecrets object containing all secrets and the real secret index
      */
     public DetectionSecrets generateDetectionSecrets(String pin) {
-        byte[][] secrets = new byte[DETECTION_SECRET_COUNT][];
-        
         // Generate k detection secrets
-        for (int i = 0; i < DETECTION_SECRET_COUNT; i++) {
-            secrets[i] = KeyGenerator.generateRandomBytes(SECRET_LENGTH);
-        }
+        byte[][] secrets = SecretSelector.generateSecrets(DETECTION_SECRET_COUNT);
         
         // Hash PIN to select real secret index: w* = W[H(PIN) mod k]
-        int realSecretIndex = selectRealSecretIndex(pin);
+        int realSecretIndex = SecretSelector.selectRealSecretIndex(pin, DETECTION_SECRET_COUNT);
         
         return new DetectionSecrets(secrets, realSecretIndex);
     }
     
     /**
-     * Get the real secret from DetectionSecrets object.
-     * Helper method to extract real secret for encryption/decryption.
+     * Get the number of detection secrets (k) generated per passkey.
+     * One is real, so each registration needs k - 1 decoy passkeys.
      */
-    public byte[] getRealSecret(DetectionSecrets detectionSecrets) {
-        return detectionSecrets.getRealSecretAsBytes();
+    public int getDetectionSecretCount() {
+        return DETECTION_SECRET_COUNT;
     }
     
     /**
-     * Select the real secret index from PIN using hash modulo.
-     * 
-     * @param pin User's PIN
-     * @return Index of the real secret in the secrets array
+     * Get the real secret from DetectionSecrets object.
+     * Helper method to extract real secret for encryption/decryption.
      */
-    private int selectRealSecretIndex(String pin) {
-        try {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            byte[] pinHash = digest.digest(pin.getBytes(StandardCharsets.UTF_8));
-            
-            // Convert first 4 bytes to integer and take modulo
-            int hashValue = ByteBuffer.wrap(Arrays.copyOf(pinHash, 4)).getInt();
-            return Math.abs(hashValue % DETECTION_SECRET_COUNT);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to select real secret index", e);
-        }
+    public byte[] getRealSecret(DetectionSecrets detectionSecrets) {
+        return detectionSecrets.getRealSecretAsBytes();
     }
     
     /**
@@ -125,20 +109,8 @@ public class CasperCrypto {
      */
     public byte[] encryptPasskey(PrivateKey privateKey, byte[] realSecret, byte[] z) {
         try {
-            // Serialize private key to bytes
-            byte[] privateKeyBytes = privateKey.getEncoded();
-            
-            // Derive encryption key: HKDF(w*, z, "casper-passkey")
-            byte[] info = "casper-passkey".getBytes(StandardCharsets.UTF_8);
-            byte[] encryptionKey = HKDFHelper.derive(realSecret, z, info, privateKeyBytes.length);
-            
-            // XOR encrypt: s̃ = HKDF(w*, z) XOR s
-            byte[] encrypted = new byte[privateKeyBytes.length];
-            for (int i = 0; i < privateKeyBytes.length; i++) {
-                encrypted[i] = (byte) (privateKeyBytes[i] ^ encryptionKey[i]);
-            }
-            
-            return encrypted;
+            // s̃ = HKDF(w*, z, "casper-passkey") XOR s
+            return CasperCipher.encrypt(privateKey.getEncoded(), realSecret, z);
         } catch (Exception e) {
             throw new RuntimeException("Failed to encrypt passkey", e);
         }
@@ -156,17 +128,8 @@ public class CasperCrypto {
      */
     public byte[] decryptPasskey(byte[] encryptedPasskey, byte[] realSecret, byte[] z) {
         try {
-            // Derive decryption key: HKDF(w*, z, "casper-passkey")
-            byte[] info = "casper-passkey".getBytes(StandardCharsets.UTF_8);
-            byte[] decryptionKey = HKDFHelper.derive(realSecret, z, info, encryptedPasskey.length);
-            
-            // XOR decrypt: s = HKDF(w*, z) XOR s̃
-            byte[] decrypted = new byte[encryptedPasskey.length];
-            for (int i = 0; i < encryptedPasskey.length; i++) {
-                decrypted[i] = (byte) (encryptedPasskey[i] ^ decryptionKey[i]);
-            }
-            
-            return decrypted;
+            // s = HKDF(w*, z, "casper-passkey") XOR s̃
+            return CasperCipher.decrypt(encryptedPasskey, realSecret, z);
         } catch (Exception e) {
             throw new RuntimeException("Failed to decrypt passkey", e);
         }
@@ -181,10 +144,7 @@ public class CasperCrypto {
      */
     public byte[] sign(byte[] challenge, PrivateKey privateKey) {
         try {
-            Signature signature = Signature.getInstance("SHA256withECDSA");
-            signature.initSign(privateKey);
-            signature.update(challenge);
-            return signature.sign();
+            return Signatures.sign(challenge, privateKey);
         } catch (Exception e) {
             throw new RuntimeException("Failed to sign challenge", e);
         }
@@ -199,14 +159,7 @@ public class CasperCrypto {
      * @return true if signature is valid
      */
     public boolean verify(byte[] challenge, byte[] signatureBytes, PublicKey publicKey) {
-        try {
-            Signature signature = Signature.getInstance("SHA256withECDSA");
-            signature.initVerify(publicKey);
-            signature.update(challenge);
-            return signature.verify(signatureBytes);
-        } catch (Exception e) {
-            return false;
-        }
+        return Signatures.verify(challenge, signatureBytes, publicKey);
     }
     
     /**
@@ -1,22 +1,22 @@
 package com.casper.authenticator.crypto;
 
+import com.casper.core.EcKeys;
+import com.casper.core.Randoms;
+
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
-import java.security.SecureRandom;
-import java.security.spec.ECGenParameterSpec;
 
 /**
  * Key generator for ECDSA key pairs.
  * 
  * Generates ECDSA key pairs on secp256r1 curve (P-256).
  * Used to create passkey public/private key pairs.
+ * 
+ * Thin Android wrapper over casper-core's {@link EcKeys} that prefers the
+ * platform's native (BoringSSL-backed) provider.
  */
 public class KeyGenerator {
-    private static final String ALGORITHM = "EC";
-    private static final String CURVE = "secp256r1"; // P-256 curve
-    private static final String PROVIDER = "AndroidOpenSSL";
+    /** Preferred key pair provider; falls back to the default if not installed. */
+    public static final String PROVIDER = "AndroidOpenSSL";
     
     /**
      * Generate a new ECDSA key pair on secp256r1 curve.
@@ -24,24 +24,7 @@ public class KeyGenerator {
      * @return KeyPair containing public and private keys
      */
     public static KeyPair generateKeyPair() {
-        try {
-            KeyPairGenerator keyGen = KeyPairGenerator.getInstance(ALGORITHM, PROVIDER);
-            ECGenParameterSpec ecSpec = new ECGenParameterSpec(CURVE);
-            keyGen.initialize(ecSpec, new SecureRandom());
-            return keyGen.generateKeyPair();
-        } catch (NoSuchProviderException e) {
-            // Fallback to default provider
-            try {
-                KeyPairGenerator keyGen = KeyPairGenerator.getInstance(ALGORITHM);
-                ECGenParameterSpec ecSpec = new ECGenParameterSpec(CURVE);
-                keyGen.initialize(ecSpec, new SecureRandom());
-                return keyGen.generateKeyPair();
-            } catch (Exception ex) {
-                throw new RuntimeException("Failed to generate key pair", ex);
-            }
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to generate key pair", e);
-        }
+        return EcKeys.generateKeyPair(PROVIDER);
     }
     
     /**
@@ -52,10 +35,6 @@ public class KeyGenerator {
      * @return Random byte array
      */
     public static byte[] generateRandomBytes(int length) {
-        SecureRandom random = new SecureRandom();
-        byte[] bytes = new byte[length];
-        random.nextBytes(bytes);
-        return bytes;
+        return Randoms.bytes(length);
     }
 }
-
@@ -0,0 +1,244 @@
+package com.casper.authenticator.crypto;
+
+import android.os.SystemClock;
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+
+import com.casper.core.EcKeys;
+
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+/**
+ * Session cache for unlocked passkey signing keys.
+ * 
+ * After a successful CASPER decryption (s = HKDF(w*, z) XOR s̃) the private key
+ * is kept for a short, per-RP time-to-live so repeat logins to the same RP can
+ * skip the PMS fetch and the HKDF decryption and go straight to signing.
+ * 
+ * Private keys are never held in plain form: each entry is wrapped with an
+ * AES-256-GCM key that lives in the Android Keystore and is unwrapped only
+ * when a login needs it.
+ */
+public class SessionKeyCache {
+    private static final String KEYSTORE_PROVIDER = "AndroidKeyStore";
+    private static final String WRAPPING_KEY_ALIAS = "casper_session_wrapping_key";
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int GCM_TAG_LENGTH = 128; // bits
+    
+    /** Default lifetime of an unlocked key when no per-RP TTL is configured. */
+    public static final long DEFAULT_TTL_MILLIS = 5 * 60 * 1000L; // 5 minutes
+    
+    private static SessionKeyCache instance;
+    
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, Long> ttlByRp = new ConcurrentHashMap<>();
+    private SecretKey wrappingKey;
+    
+    private SessionKeyCache() {
+    }
+    
+    /**
+     * Get the process-wide session cache.
+     * Activities come and go, so the cache lives for the lifetime of the app process.
+     */
+    public static synchronized SessionKeyCache getInstance() {
+        if (instance == null) {
+            instance = new SessionKeyCache();
+        }
+        return instance;
+    }
+    
+    /**
+     * Configure how long unlocked keys for an RP stay cached.
+     * 
+     * @param rpId Relying Party identifier
+     * @param ttlMillis Time-to-live in milliseconds (0 disables caching for this RP)
+     */
+    public void setTtl(String rpId, long ttlMillis) {
+        if (ttlMillis < 0) {
+            throw new IllegalArgumentException("TTL must not be negative");
+        }
+        ttlByRp.put(rpId, ttlMillis);
+        if (ttlMillis == 0) {
+            invalidateRp(rpId);
+        }
+    }
+    
+    /**
+     * Get the configured time-to-live for an RP.
+     */
+    public long getTtl(String rpId) {
+        Long ttl = ttlByRp.get(rpId);
+        return ttl != null ? ttl : DEFAULT_TTL_MILLIS;
+    }
+    
+    /**
+     * Cache an unlocked signing key for a user and RP.
+     * 
+     * @param userId User identifier
+     * @param rpId Relying Party identifier
+     * @param privateKey Decrypted passkey private key
+     * @param publicKey Encoded public key sent to the RP with each login
+     */
+    public void put(String userId, String rpId, PrivateKey privateKey, byte[] publicKey) {
+        long ttl = getTtl(rpId);
+        if (ttl == 0) {
+            return;
+        }
+        
+        byte[] encoded = privateKey.getEncoded();
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, getWrappingKey());
+            byte[] wrapped = cipher.doFinal(encoded);
+            
+            Entry entry = new Entry(wrapped, cipher.getIV(), publicKey,
+                    SystemClock.elapsedRealtime() + ttl);
+            entries.put(cacheKey(userId, rpId), entry);
+        } catch (Exception e) {
+            // Caching is an optimisation only - a failure just means the next login takes the slow path
+            entries.remove(cacheKey(userId, rpId));
+        } finally {
+            Arrays.fill(encoded, (byte) 0);
+        }
+    }
+    
+    /**
+     * Get an unlocked signing key if one is cached and has not expired.
+     * 
+     * @param userId User identifier
+     * @param rpId Relying Party identifier
+     * @return Unlocked key, or null on a cache miss
+     */
+    public UnlockedKey get(String userId, String rpId) {
+        String key = cacheKey(userId, rpId);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        
+        if (SystemClock.elapsedRealtime() >= entry.expiresAt) {
+            entries.remove(key, entry);
+            return null;
+        }
+        
+        byte[] privateKeyBytes = null;
+        try {
+            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            cipher.init(Cipher.DECRYPT_MODE, getWrappingKey(),
+                    new GCMParameterSpec(GCM_TAG_LENGTH, entry.iv));
+            privateKeyBytes = cipher.doFinal(entry.wrappedPrivateKey);
+            
+            PrivateKey privateKey = EcKeys.decodePrivateKey(privateKeyBytes);
+            return new UnlockedKey(privateKey, entry.publicKey);
+        } catch (Exception e) {
+            // Wrapping key was lost or rotated - drop the entry and fall back to the slow path
+            entries.remove(key, entry);
+            return null;
+        } finally {
+            if (privateKeyBytes != null) {
+                Arrays.fill(privateKeyBytes, (byte) 0);
+            }
+        }
+    }
+    
+    /**
+     * Remove the cached key for a user and RP (e.g. after re-registration or a failed login).
+     */
+    public void invalidate(String userId, String rpId) {
+        entries.remove(cacheKey(userId, rpId));
+    }
+    
+    /**
+     * Remove every cached key.
+     */
+    public void clear() {
+        entries.clear();
+    }
+    
+    private void invalidateRp(String rpId) {
+        String suffix = "|" + rpId;
+        for (String key : entries.keySet()) {
+            if (key.endsWith(suffix)) {
+                entries.remove(key);
+            }
+        }
+    }
+    
+    private static String cacheKey(String userId, String rpId) {
+        return userId + "|" + rpId;
+    }
+    
+    /**
+     * Load the Keystore wrapping key, generating it on first use.
+     */
+    private synchronized SecretKey getWrappingKey() throws Exception {
+        if (wrappingKey != null) {
+            return wrappingKey;
+        }
+        
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE_PROVIDER);
+        keyStore.load(null);
+        if (keyStore.containsAlias(WRAPPING_KEY_ALIAS)) {
+            wrappingKey = (SecretKey) keyStore.getKey(WRAPPING_KEY_ALIAS, null);
+        } else {
+            javax.crypto.KeyGenerator keyGenerator = javax.crypto.KeyGenerator.getInstance(
+                    KeyProperties.KEY_ALGORITHM_AES, KEYSTORE_PROVIDER);
+            keyGenerator.init(new KeyGenParameterSpec.Builder(
+                    WRAPPING_KEY_ALIAS,
+                    KeyProperties.PURPOSE_ENCRYPT | KeyProperties.PURPOSE_DECRYPT)
+                    .setBlockModes(KeyProperties.BLOCK_MODE_GCM)
+                    .setEncryptionPaddings(KeyProperties.ENCRYPTION_PADDING_NONE)
+                    .setKeySize(256)
+                    .build());
+            wrappingKey = keyGenerator.generateKey();
+        }
+        return wrappingKey;
+    }
+    
+    /**
+     * A cached key, wrapped by the Keystore key.
+     */
+    private static class Entry {
+        final byte[] wrappedPrivateKey;
+        final byte[] iv;
+        final byte[] publicKey;
+        final long expiresAt; // SystemClock.elapsedRealtime() deadline
+        
+        Entry(byte[] wrappedPrivateKey, byte[] iv, byte[] publicKey, long expiresAt) {
+            this.wrappedPrivateKey = wrappedPrivateKey;
+            this.iv = iv;
+            this.publicKey = publicKey;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    /**
+     * An unlocked signing key returned on a cache hit.
+     */
+    public static class UnlockedKey {
+        private final PrivateKey privateKey;
+        private final byte[] publicKey;
+        
+        UnlockedKey(PrivateKey privateKey, byte[] publicKey) {
+            this.privateKey = privateKey;
+            this.publicKey = publicKey;
+        }
+        
+        public PrivateKey getPrivateKey() {
+            return privateKey;
+        }
+        
+        public byte[] getPublicKey() {
+            return publicKey;
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.casper.authenticator.login;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+
+import com.casper.authenticator.crypto.CasperCrypto;
+import com.casper.authenticator.crypto.SessionKeyCache;
+import com.casper.authenticator.models.DetectionSecrets;
+import com.casper.authenticator.models.PasskeyData;
+import com.casper.authenticator.network.ApiClient;
+import com.casper.authenticator.network.PMSApi;
+import com.casper.authenticator.network.RPApi;
+import com.casper.authenticator.storage.LocalPasskeyStore;
+import com.casper.authenticator.tracing.DeviceTracer;
+import com.casper.authenticator.tracing.TraceSpan;
+import com.casper.core.EcKeys;
+
+import java.security.PrivateKey;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit2.Response;
+
+/**
+ * CASPER login against one RP.
+ * 
+ * Implements CASPER login:
+ * 1. Fetch encrypted passkey from PMS
+ * 2. Decrypt private key using PIN-selected real secret
+ * 3. Sign challenge with private key
+ * 4. Send signature to RP
+ * 5. RP performs CASPER breach detection
+ * 
+ * Steps 1-2 are skipped when an unlocked key for the RP is still in the
+ * {@link SessionKeyCache}, so a repeat login costs a single signature.
+ * Step 1 is served from the {@link LocalPasskeyStore} when the device already
+ * holds a copy, so logins keep working while the PMS is slow or unreachable.
+ * 
+ * Every login is traced: a root "login" span with passkey.load, decrypt, sign
+ * and HTTP child spans, whose trace ID is propagated to the PMS and RP and
+ * returned in the {@link LoginResult}.
+ * 
+ * {@link #login} blocks and is meant for worker threads; {@link #loginAsync}
+ * runs it in the background for a single RP, and {@link #loginAll} logs in to
+ * many RPs with at most {@link #MAX_CONCURRENT_LOGINS} in flight.
+ */
+public class PasskeyAuthenticator {
+    
+    /**
+     * Login progress and outcome callbacks.
+     */
+    public interface Listener {
+        void onProgress(String status);
+        
+        void onResult(LoginResult result);
+    }
+    
+    /**
+     * Receives login status updates.
+     */
+    public interface ProgressListener {
+        void onProgress(String status);
+    }
+    
+    /**
+     * Per-RP progress and outcome callbacks for bulk login, delivered on the main thread.
+     */
+    public interface BulkListener {
+        void onRpProgress(String rpUrl, String status);
+        
+        void onRpResult(String rpUrl, LoginResult result);
+        
+        void onComplete(int succeeded, int failed);
+    }
+    
+    /** Upper bound on concurrent logins during a bulk login. */
+    public static final int MAX_CONCURRENT_LOGINS = 4;
+    
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(2);
+    private static final ExecutorService BULK_EXECUTOR = Executors.newFixedThreadPool(MAX_CONCURRENT_LOGINS);
+    
+    private final CasperCrypto casperCrypto;
+    private final LocalPasskeyStore passkeyStore;
+    private final String userId;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final DeviceTracer tracer = DeviceTracer.getInstance();
+    
+    public PasskeyAuthenticator(CasperCrypto casperCrypto, LocalPasskeyStore passkeyStore, String userId) {
+        this.casperCrypto = casperCrypto;
+        this.passkeyStore = passkeyStore;
+        this.userId = userId;
+    }
+    
+    /**
+     * Log in to an RP in the background; callbacks are delivered on the main thread.
+     * 
+     * @param rpUrl RP base URL (also used as rpId)
+     * @param listener Progress and outcome callbacks
+     */
+    public void loginAsync(String rpUrl, Listener listener) {
+        EXECUTOR.execute(() -> {
+            LoginResult result = login(rpUrl,
+                    status -> mainHandler.post(() -> listener.onProgress(status)));
+            mainHandler.post(() -> listener.onResult(result));
+        });
+    }
+    
+    /**
+     * Log in to several RPs concurrently; callbacks are delivered on the main thread.
+     * 
+     * A breach detected by one RP is reported as that RP's result and does not
+     * stop the other logins.
+     * 
+     * @param rpUrls RP base URLs (also used as rpIds); duplicates are logged in to once
+     * @param listener Per-RP and overall outcome callbacks
+     */
+    public void loginAll(List<String> rpUrls, BulkListener listener) {
+        Set<String> distinct = new LinkedHashSet<>(rpUrls);
+        if (distinct.isEmpty()) {
+            mainHandler.post(() -> listener.onComplete(0, 0));
+            return;
+        }
+        
+        AtomicInteger remaining = new AtomicInteger(distinct.size());
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        for (String rpUrl : distinct) {
+            BULK_EXECUTOR.execute(() -> {
+                LoginResult result = login(rpUrl,
+                        status -> mainHandler.post(() -> listener.onRpProgress(rpUrl, status)));
+                (result.isSuccess() && !result.isBreachDetected() ? succeeded : failed).incrementAndGet();
+                mainHandler.post(() -> listener.onRpResult(rpUrl, result));
+                if (remaining.decrementAndGet() == 0) {
+                    int ok = succeeded.get();
+                    int failures = failed.get();
+                    mainHandler.post(() -> listener.onComplete(ok, failures));
+                }
+            });
+        }
+    }
+    
+    /**
+     * Log in to an RP on the calling thread.
+     * 
+     * @param rpUrl RP base URL (also used as rpId)
+     * @param progress Receives status updates on the calling thread
+     * @return Login outcome, including the RP's breach detection verdict
+     */
+    public LoginResult login(String rpUrl, ProgressListener progress) {
+        String rpId = rpUrl; // Use the same rpId format as during registration
+        
+        // Root span of the login waterfall; PMS and RP spans join it via traceparent
+        TraceSpan loginSpan = tracer.startSpan("login").setAttribute("rp.id", rpId);
+        try {
+            LoginResult result = authenticate(rpUrl, rpId, progress, loginSpan);
+            loginSpan.setAttribute("login.success", String.valueOf(result.isSuccess()))
+                    .setAttribute("login.breach_detected", String.valueOf(result.isBreachDetected()));
+            if (!result.isSuccess()) {
+                loginSpan.setAttribute("error", result.getMessage());
+            }
+            return result.withTraceId(loginSpan.getTraceId());
+        } finally {
+            loginSpan.end();
+        }
+    }
+    
+    private LoginResult authenticate(String rpUrl, String rpId, ProgressListener progress,
+                                     TraceSpan loginSpan) {
+        try {
+            // Reuse an unlocked key from a recent login to this RP
+            SessionKeyCache.UnlockedKey unlockedKey = SessionKeyCache.getInstance().get(userId, rpId);
+            if (unlockedKey != null) {
+                loginSpan.setAttribute("passkey.source", "session_cache");
+                return signAndSendLogin(rpUrl, unlockedKey.getPrivateKey(), unlockedKey.getPublicKey(), progress);
+            }
+            
+            progress.onProgress("Fetching passkey...");
+            PasskeyData passkeyData;
+            TraceSpan loadSpan = tracer.startSpan("passkey.load");
+            try {
+                LocalPasskeyStore.StoredPasskey stored = passkeyStore.get(userId, rpId);
+                if (stored != null) {
+                    // Serve from the on-device copy, refreshing it in the background if stale
+                    loadSpan.setAttribute("passkey.source", "local_store");
+                    passkeyStore.revalidateIfStale(userId, rpId);
+                    passkeyData = stored.getPasskeyData();
+                } else {
+                    loadSpan.setAttribute("passkey.source", "pms");
+                    PMSApi pmsApi = ApiClient.getPmsRetrofit(ApiClient.PMS_BASE_URL).create(PMSApi.class);
+                    Response<PasskeyData> response = pmsApi.fetchPasskey(userId, rpId).execute();
+                    if (!response.isSuccessful()) {
+                        return LoginResult.failure("Failed to fetch passkey");
+                    }
+                    passkeyData = response.body();
+                    if (passkeyData == null) {
+                        return LoginResult.failure("Passkey not found");
+                    }
+                    passkeyStore.put(userId, rpId, passkeyData, response.headers().get("ETag"));
+                }
+            } finally {
+                loadSpan.end();
+            }
+            
+            progress.onProgress("Decrypting passkey...");
+            PrivateKey privateKey;
+            byte[] publicKeyBytes = passkeyData.getPublicKeyAsBytes();
+            TraceSpan decryptSpan = tracer.startSpan("decrypt");
+            try {
+                privateKey = decryptPrivateKey(passkeyData);
+                
+                // Keep the unlocked key for repeat logins to this RP
+                SessionKeyCache.getInstance().put(userId, rpId, privateKey, publicKeyBytes);
+            } finally {
+                decryptSpan.end();
+            }
+            
+            return signAndSendLogin(rpUrl, privateKey, publicKeyBytes, progress);
+        
+        } catch (java.io.IOException e) {
+            return LoginResult.failure("Network error: " + e.getMessage());
+        } catch (Exception e) {
+            return LoginResult.failure("Login failed: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Decrypt private key: s = HKDF(w*, z) XOR s̃
+     */
+    private PrivateKey decryptPrivateKey(PasskeyData passkeyData) throws Exception {
+        // Select real secret using PIN
+        DetectionSecrets detectionSecrets = passkeyData.getDetectionSecrets();
+        byte[] realSecret = detectionSecrets.getRealSecretAsBytes();
+        
+        byte[] encryptedPrivateKey = passkeyData.getEncryptedPrivateKeyAsBytes();
+        byte[] z = passkeyData.getZAsBytes();
+        byte[] privateKeyBytes = casperCrypto.decryptPasskey(encryptedPrivateKey, realSecret, z);
+        
+        // Reconstruct private key from bytes
+        return EcKeys.decodePrivateKey(privateKeyBytes);
+    }
+    
+    /**
+     * Sign a fresh challenge with an unlocked private key and send it to the RP.
+     */
+    private LoginResult signAndSendLogin(String rpUrl, PrivateKey privateKey, byte[] publicKeyBytes,
+                                         ProgressListener progress) throws Exception {
+        // Generate challenge (in real implementation, RP would send this)
+        String challenge = "login_challenge_" + System.currentTimeMillis();
+        byte[] challengeBytes = challenge.getBytes();
+        
+        // Sign challenge
+        progress.onProgress("Signing challenge...");
+        byte[] signature;
+        TraceSpan signSpan = tracer.startSpan("sign");
+        try {
+            signature = casperCrypto.sign(challengeBytes, privateKey);
+        } finally {
+            signSpan.end();
+        }
+        
+        // Send login request to RP
+        progress.onProgress("Sending login request...");
+        RPApi rpApi = ApiClient.getRpRetrofit(rpUrl).create(RPApi.class);
+        RPApi.LoginRequest request = new RPApi.LoginRequest(
+                userId,
+                rpUrl,
+                Base64.encodeToString(publicKeyBytes, Base64.NO_WRAP),
+                challenge,
+                Base64.encodeToString(signature, Base64.NO_WRAP)
+        );
+        
+        Response<RPApi.LoginResponse> response = rpApi.login(request).execute();
+        if (!response.isSuccessful() || response.body() == null) {
+            // Don't keep reusing a key the RP rejected, and check the local copy is current
+            SessionKeyCache.getInstance().invalidate(userId, rpUrl);
+            passkeyStore.revalidate(userId, rpUrl);
+            return LoginResult.failure("Login failed");
+        }
+        
+        RPApi.LoginResponse loginResponse = response.body();
+        if (loginResponse.breachDetected) {
+            return LoginResult.breach();
+        }
+        return LoginResult.success();
+    }
+    
+    /**
+     * Outcome of a login attempt.
+     */
+    public static class LoginResult {
+        private final boolean success;
+        private final boolean breachDetected;
+        private final String message;
+        private final String traceId;
+        
+        private LoginResult(boolean success, boolean breachDetected, String message, String traceId) {
+            this.success = success;
+            this.breachDetected = breachDetected;
+            this.message = message;
+            this.traceId = traceId;
+        }
+        
+        static LoginResult success() {
+            return new LoginResult(true, false, "Login successful!", null);
+        }
+        
+        static LoginResult breach() {
+            return new LoginResult(true, true, "⚠️ BREACH DETECTED!", null);
+        }
+        
+        static LoginResult failure(String message) {
+            return new LoginResult(false, false, message, null);
+        }
+        
+        LoginResult withTraceId(String traceId) {
+            return new LoginResult(success, breachDetected, message, traceId);
+        }
+        
+        /**
+         * Whether the RP accepted the login request.
+         */
+        public boolean isSuccess() {
+            return success;
+        }
+        
+        /**
+         * Whether the RP's CASPER check found that a decoy passkey was used.
+         */
+        public boolean isBreachDetected() {
+            return breachDetected;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+        
+        /**
+         * W3C trace ID of this login, shared by the device, PMS and RP spans.
+         */
+        public String getTraceId() {
+            return traceId;
+        }
+    }
+}
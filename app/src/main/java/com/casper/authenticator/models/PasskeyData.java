@@ -9,16 +9,17 @@ import android.util.Base64;
  * - Encrypted passkey private key (s̃)
  * - Detection secrets (W)
  * - Random value (z)
- * - Public key (for verification)
+ * - Public key (for verification), a compressed P-256 point
  * - User ID and RP identifier
  */
 public class PasskeyData {
     private String userId;
     private String rpId; // Relying Party identifier
     private String encryptedPrivateKey; // Base64-encoded encrypted private key (s̃)
-    private String publicKey; // Base64-encoded public key
+    private String publicKey; // Base64 compressed public key (X.509 if registered by an older version)
     private DetectionSecrets detectionSecrets; // Detection secrets (W)
     private String z; // Base64-encoded random value z
+    private Long version; // PMS revision, set on data fetched from the PMS
     
     public PasskeyData() {
         // Default constructor for JSON deserialization
@@ -103,5 +104,13 @@ public class PasskeyData {
     public void setZ(String z) {
         this.z = z;
     }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
 
@@ -1,45 +1,133 @@
 package com.casper.authenticator.network;
 
+import android.content.Context;
+
+import com.casper.authenticator.BuildConfig;
+import com.casper.authenticator.tracing.TraceContextInterceptor;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.ResponseBody;
 import okhttp3.logging.HttpLoggingInterceptor;
+import retrofit2.Response;
 import retrofit2.Retrofit;
 import retrofit2.converter.gson.GsonConverterFactory;
 
 /**
  * Retrofit API client for network requests.
  * 
- * Provides configured Retrofit instances for PMS and RP APIs.
+ * Keeps one Retrofit instance per base URL (PMS and every RP the user talks to),
+ * all sharing a single OkHttpClient core:
+ * - one connection pool, so warm connections survive switching between RPs
+ * - HTTP/2 where the server negotiates it (multiplexes calls on one connection)
+ * - transparent gzip (OkHttp adds Accept-Encoding: gzip and decompresses responses)
+ * - a disk response cache, once {@link #init(Context)} has been called
+ * - W3C traceparent propagation for calls made inside a traced operation
+ * - body logging in debug builds only
  */
 public class ApiClient {
     // Default base URLs - should be configured based on deployment
     public static final String PMS_BASE_URL = "http://10.0.2.2:8080/"; // Android emulator localhost
     public static final String RP_BASE_URL = "http://10.0.2.2:8081/"; // Android emulator localhost
     
-    private static Retrofit pmsRetrofit = null;
-    private static Retrofit rpRetrofit = null;
+    private static final int MAX_IDLE_CONNECTIONS = 10;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final long CACHE_SIZE_BYTES = 10 * 1024 * 1024; // 10 MB
+    
+    /** Error code the PMS puts in the body of a 404 for a passkey that does not exist. */
+    private static final String PASSKEY_NOT_FOUND = "PASSKEY_NOT_FOUND";
+    
+    private static final Map<String, Retrofit> retrofits = new ConcurrentHashMap<>();
+    private static final Gson gson = new Gson();
+    private static final GsonConverterFactory converterFactory = GsonConverterFactory.create(gson);
+    
+    private static File cacheDir = null;
+    private static OkHttpClient httpClient = null;
     
     /**
-     * Get Retrofit instance for PMS API.
+     * Initialize the client with an application context.
+     * Enables the disk response cache; call once from {@code Application.onCreate}.
      * 
-     * @param baseUrl Base URL of PMS service
-     * @return Configured Retrofit instance
+     * @param context Any context (the application context is used)
      */
-    public static Retrofit getPmsRetrofit(String baseUrl) {
-        if (pmsRetrofit == null || !pmsRetrofit.baseUrl().toString().equals(baseUrl)) {
-            HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
-            logging.setLevel(HttpLoggingInterceptor.Level.BODY);
+    public static synchronized void init(Context context) {
+        if (cacheDir == null) {
+            cacheDir = new File(context.getApplicationContext().getCacheDir(), "http_cache");
+        }
+    }
+    
+    /**
+     * Get the shared OkHttpClient used by every Retrofit instance.
+     * 
+     * Callers needing different timeouts or interceptors should derive from it with
+     * {@code getHttpClient().newBuilder()}, which keeps the connection pool and cache.
+     */
+    public static synchronized OkHttpClient getHttpClient() {
+        if (httpClient == null) {
+            OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                    .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1));
             
-            OkHttpClient client = new OkHttpClient.Builder()
-                    .addInterceptor(logging)
-                    .build();
+            if (cacheDir != null) {
+                builder.cache(new Cache(cacheDir, CACHE_SIZE_BYTES));
+            }
+            
+            builder.addInterceptor(new TraceContextInterceptor());
             
-            pmsRetrofit = new Retrofit.Builder()
+            if (BuildConfig.DEBUG) {
+                HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
+                logging.setLevel(HttpLoggingInterceptor.Level.BODY);
+                builder.addInterceptor(logging);
+            }
+            
+            httpClient = builder.build();
+        }
+        return httpClient;
+    }
+    
+    /**
+     * Get the Retrofit instance for a base URL, creating it on first use.
+     * 
+     * @param baseUrl Base URL of the service (must end with '/')
+     * @return Configured Retrofit instance
+     */
+    public static Retrofit getRetrofit(String baseUrl) {
+        Retrofit retrofit = retrofits.get(baseUrl);
+        if (retrofit == null) {
+            retrofit = new Retrofit.Builder()
                     .baseUrl(baseUrl)
-                    .client(client)
-                    .addConverterFactory(GsonConverterFactory.create())
+                    .client(getHttpClient())
+                    .addConverterFactory(converterFactory)
                     .build();
+            Retrofit existing = retrofits.putIfAbsent(baseUrl, retrofit);
+            if (existing != null) {
+                retrofit = existing;
+            }
         }
-        return pmsRetrofit;
+        return retrofit;
+    }
+    
+    /**
+     * Get Retrofit instance for PMS API.
+     * 
+     * @param baseUrl Base URL of PMS service
+     * @return Configured Retrofit instance
+     */
+    public static Retrofit getPmsRetrofit(String baseUrl) {
+        return getRetrofit(baseUrl);
     }
     
     /**
@@ -49,21 +137,28 @@ public class ApiClient {
      * @return Configured Retrofit instance
      */
     public static Retrofit getRpRetrofit(String baseUrl) {
-        if (rpRetrofit == null || !rpRetrofit.baseUrl().toString().equals(baseUrl)) {
-            HttpLoggingInterceptor logging = new HttpLoggingInterceptor();
-            logging.setLevel(HttpLoggingInterceptor.Level.BODY);
-            
-            OkHttpClient client = new OkHttpClient.Builder()
-                    .addInterceptor(logging)
-                    .build();
-            
-            rpRetrofit = new Retrofit.Builder()
-                    .baseUrl(baseUrl)
-                    .client(client)
-                    .addConverterFactory(GsonConverterFactory.create())
-                    .build();
+        return getRetrofit(baseUrl);
+    }
+    
+    /**
+     * Whether a PMS response says the passkey does not exist.
+     * 
+     * Only a 404 carrying the PMS error code counts; a 404 from a proxy or a
+     * wrong base URL does not.
+     */
+    public static boolean isPasskeyNotFound(Response<?> response) {
+        if (response.code() != 404) {
+            return false;
+        }
+        try (ResponseBody body = response.errorBody()) {
+            if (body == null) {
+                return false;
+            }
+            JsonObject error = gson.fromJson(body.string(), JsonObject.class);
+            JsonElement code = error != null ? error.get("error") : null;
+            return code != null && code.isJsonPrimitive() && PASSKEY_NOT_FOUND.equals(code.getAsString());
+        } catch (IOException | JsonParseException e) {
+            return false;
         }
-        return rpRetrofit;
     }
 }
-
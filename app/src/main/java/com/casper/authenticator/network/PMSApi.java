@@ -2,9 +2,13 @@ package com.casper.authenticator.network;
 
 import com.casper.authenticator.models.PasskeyData;
 
+import java.util.List;
+
 import retrofit2.Call;
 import retrofit2.http.Body;
+import retrofit2.http.DELETE;
 import retrofit2.http.GET;
+import retrofit2.http.Header;
 import retrofit2.http.POST;
 import retrofit2.http.Path;
 import retrofit2.http.Query;
@@ -26,6 +30,31 @@ public interface PMSApi {
     @POST("api/passkeys")
     Call<PasskeyData> uploadPasskey(@Body PasskeyData passkeyData);
     
+    /**
+     * Upload encrypted passkey data over one specific revision.
+     * 
+     * Used to put back the previous passkey when rolling back a
+     * re-registration: the upload only replaces the revision with the given
+     * ETag (412 Precondition Failed otherwise).
+     * 
+     * @param passkeyData Previous passkey data, as fetched from the PMS
+     * @param eTag ETag returned by the upload being rolled back
+     * @return Call with PasskeyData response
+     */
+    @POST("api/passkeys")
+    Call<PasskeyData> restorePasskey(@Body PasskeyData passkeyData, @Header("If-Match") String eTag);
+    
+    /**
+     * Upload encrypted passkey data for several RPs in one request.
+     * 
+     * The PMS stores the whole batch in one transaction (all or nothing).
+     * 
+     * @param request Passkeys to upload
+     * @return Call with one result (including the ETag) per passkey, in request order
+     */
+    @POST("api/passkeys/batch")
+    Call<BatchUploadResponse> uploadPasskeys(@Body BatchUploadRequest request);
+    
     /**
      * Fetch encrypted passkey data from PMS.
      * 
@@ -35,5 +64,69 @@ public interface PMSApi {
      */
     @GET("api/passkeys/{userId}")
     Call<PasskeyData> fetchPasskey(@Path("userId") String userId, @Query("rpId") String rpId);
+    
+    /**
+     * Conditionally fetch encrypted passkey data from PMS.
+     * 
+     * Returns 304 Not Modified (with no body) when the device copy tagged
+     * with {@code eTag} is still current.
+     * 
+     * @param userId User ID
+     * @param rpId Relying Party ID
+     * @param eTag ETag of the locally stored copy
+     * @return Call with PasskeyData response (null body on 304)
+     */
+    @GET("api/passkeys/{userId}")
+    Call<PasskeyData> revalidatePasskey(@Path("userId") String userId, @Query("rpId") String rpId,
+                                        @Header("If-None-Match") String eTag);
+    
+    /**
+     * Delete encrypted passkey data from PMS.
+     * 
+     * Used to roll back an upload when the RP registration failed. With an ETag,
+     * only that revision is deleted (412 Precondition Failed otherwise).
+     * 
+     * @param userId User ID
+     * @param rpId Relying Party ID
+     * @param eTag ETag returned by the upload being rolled back (may be null)
+     * @return Call with empty response
+     */
+    @DELETE("api/passkeys/{userId}")
+    Call<Void> deletePasskey(@Path("userId") String userId, @Query("rpId") String rpId,
+                             @Header("If-Match") String eTag);
+    
+    /**
+     * Request model for batch upload.
+     */
+    class BatchUploadRequest {
+        public List<PasskeyData> passkeys;
+        
+        public BatchUploadRequest(List<PasskeyData> passkeys) {
+            this.passkeys = passkeys;
+        }
+    }
+    
+    /**
+     * Response model for batch upload.
+     */
+    class BatchUploadResponse {
+        public boolean success;
+        public String message;
+        public List<BatchUploadResult> results;
+        
+        public BatchUploadResponse() {
+        }
+    }
+    
+    /**
+     * Result for one passkey in a batch upload.
+     */
+    class BatchUploadResult {
+        public String rpId;
+        public Long version;
+        public String eTag;
+        
+        public BatchUploadResult() {
+        }
+    }
 }
-
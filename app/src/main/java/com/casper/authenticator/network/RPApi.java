@@ -20,7 +20,9 @@ public interface RPApi {
      * Register passkeys (real + decoys) with RP.
      * 
      * Request body should contain:
-     * - publicKeys: Array of public keys (real + decoys)
+     * - publicKeys: Array of public keys (real + decoys), as Base64 compressed
+     *   P-256 points (33 bytes, see EcKeys#encodePublicKey). The RP also
+     *   accepts X.509, as sent by older versions.
      * - userId: User identifier
      * - rpId: Relying Party identifier
      * 
@@ -30,13 +32,27 @@ public interface RPApi {
     @POST("api/auth/register")
     Call<RegisterResponse> register(@Body RegisterRequest request);
     
+    /**
+     * Unregister all passkeys (real + decoys) for a user from RP.
+     * 
+     * Used to roll back a first registration when the PMS upload failed.
+     * Only the key set at the version that registration returned is removed
+     * (409 Conflict otherwise).
+     * 
+     * @param request Unregistration request
+     * @return Call with registration response
+     */
+    @POST("api/auth/unregister")
+    Call<RegisterResponse> unregister(@Body UnregisterRequest request);
+    
     /**
      * Login with passkey signature.
      * 
      * Request body should contain:
      * - userId: User identifier
      * - rpId: Relying Party identifier
-     * - publicKey: Public key used for login
+     * - publicKey: Public key used for login, in the form it was stored in
+     *   the PMS (compressed, or X.509 for passkeys registered by older versions)
      * - challenge: Challenge string
      * - signature: Signature bytes (Base64 encoded)
      * 
@@ -52,12 +68,33 @@ public interface RPApi {
     class RegisterRequest {
         public String userId;
         public String rpId;
-        public String[] publicKeys; // Base64-encoded public keys
+        public String[] publicKeys; // Base64 compressed public keys
+        public Long expectedVersion; // Only register over this key set version (409 otherwise); null for any
         
         public RegisterRequest(String userId, String rpId, String[] publicKeys) {
+            this(userId, rpId, publicKeys, null);
+        }
+        
+        public RegisterRequest(String userId, String rpId, String[] publicKeys, Long expectedVersion) {
             this.userId = userId;
             this.rpId = rpId;
             this.publicKeys = publicKeys;
+            this.expectedVersion = expectedVersion;
+        }
+    }
+    
+    /**
+     * Request model for unregistration.
+     */
+    class UnregisterRequest {
+        public String userId;
+        public String rpId;
+        public long expectedVersion; // Version returned by the registration being rolled back
+        
+        public UnregisterRequest(String userId, String rpId, long expectedVersion) {
+            this.userId = userId;
+            this.rpId = rpId;
+            this.expectedVersion = expectedVersion;
         }
     }
     
@@ -67,6 +104,8 @@ public interface RPApi {
     class RegisterResponse {
         public boolean success;
         public String message;
+        public long version; // Version of the registered key set
+        public int removedKeyCount; // Keys of a previous registration this one replaced
         
         public RegisterResponse() {
         }
@@ -78,7 +117,7 @@ public interface RPApi {
     class LoginRequest {
         public String userId;
         public String rpId;
-        public String publicKey; // Base64-encoded public key
+        public String publicKey; // Base64 public key (compressed or X.509)
         public String challenge; // Challenge string
         public String signature; // Base64-encoded signature
         
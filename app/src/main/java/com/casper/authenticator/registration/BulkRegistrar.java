@@ -0,0 +1,274 @@
+package com.casper.authenticator.registration;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.casper.authenticator.crypto.CasperCrypto;
+import com.casper.authenticator.crypto.SessionKeyCache;
+import com.casper.authenticator.models.PasskeyData;
+import com.casper.authenticator.network.ApiClient;
+import com.casper.authenticator.network.PMSApi;
+import com.casper.authenticator.storage.LocalPasskeyStore;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import retrofit2.Response;
+
+/**
+ * Registers passkeys with many RPs in one go.
+ * 
+ * Registering N RPs one at a time costs N rounds of key generation, N PMS
+ * uploads and N RP calls, all back to back. A bulk run instead:
+ * 1. Generates the key material and decoys for every RP in parallel, while
+ *    fetching the passkeys the PMS already holds for them
+ * 2. Uploads all encrypted passkeys to the PMS in one batched request
+ * 3. Registers with the RPs concurrently, with at most
+ *    {@link #MAX_CONCURRENT_RP_REQUESTS} RP calls in flight
+ * 
+ * Each RP succeeds or fails on its own and is reported separately. As in
+ * {@link RegistrationPipeline}, an RP that rejects its registration has its
+ * PMS upload rolled back (the previous passkey uploaded again, or the upload
+ * deleted, with If-Match on the batch ETag), so no RP ends up registered on
+ * only one side.
+ */
+public class BulkRegistrar {
+    
+    /**
+     * Per-RP progress and outcome callbacks, always delivered on the main thread.
+     */
+    public interface Listener {
+        void onRpProgress(String rpUrl, String status);
+        
+        void onRpComplete(String rpUrl, boolean success, String message);
+        
+        void onComplete(int succeeded, int failed);
+    }
+    
+    /** Largest number of RPs per bulk run (the PMS batch upload limit). */
+    public static final int MAX_BATCH_SIZE = 100;
+    
+    /** Upper bound on concurrent RP registrations. */
+    public static final int MAX_CONCURRENT_RP_REQUESTS = 4;
+    
+    // Key generation is CPU bound; RP calls are network bound and capped separately
+    private static final ExecutorService KEYGEN_EXECUTOR = Executors.newFixedThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private static final ExecutorService RP_EXECUTOR =
+            Executors.newFixedThreadPool(MAX_CONCURRENT_RP_REQUESTS);
+    
+    private final CasperCrypto casperCrypto;
+    private final LocalPasskeyStore passkeyStore;
+    private final String userId;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    public BulkRegistrar(CasperCrypto casperCrypto, LocalPasskeyStore passkeyStore, String userId) {
+        this.casperCrypto = casperCrypto;
+        this.passkeyStore = passkeyStore;
+        this.userId = userId;
+    }
+    
+    /**
+     * Register a new passkey with each RP and upload them all to the PMS.
+     * 
+     * @param rpUrls RP base URLs (also used as rpIds); duplicates are registered once
+     * @param pin User's PIN
+     * @param listener Per-RP and overall outcome callbacks
+     * @throws IllegalArgumentException if there are more than {@link #MAX_BATCH_SIZE} RPs
+     */
+    public void register(List<String> rpUrls, String pin, Listener listener) {
+        if (rpUrls.size() > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("At most " + MAX_BATCH_SIZE + " RPs per bulk registration");
+        }
+        if (rpUrls.isEmpty()) {
+            mainHandler.post(() -> listener.onComplete(0, 0));
+            return;
+        }
+        
+        int decoyCount = casperCrypto.getDetectionSecretCount() - 1;
+        
+        Map<String, CompletableFuture<RegistrationMaterial>> materials = new LinkedHashMap<>();
+        Map<String, CompletableFuture<List<String>>> decoys = new LinkedHashMap<>();
+        Map<String, CompletableFuture<RegistrationPipeline.Prior>> priors = new LinkedHashMap<>();
+        for (String rpUrl : new LinkedHashSet<>(rpUrls)) {
+            postProgress(listener, rpUrl, "Generating passkey...");
+            // A PMS fetch, network bound like the RP calls
+            priors.put(rpUrl, CompletableFuture.supplyAsync(
+                    () -> RegistrationPipeline.Prior.fetch(passkeyStore, userId, rpUrl), RP_EXECUTOR));
+            materials.put(rpUrl, CompletableFuture.supplyAsync(
+                    () -> RegistrationMaterial.generate(casperCrypto, userId, rpUrl, pin), KEYGEN_EXECUTOR)
+                    .thenCombine(priors.get(rpUrl), (material, prior) -> material));
+            decoys.put(rpUrl, CompletableFuture.supplyAsync(
+                    () -> RegistrationMaterial.generateDecoyPublicKeys(decoyCount), KEYGEN_EXECUTOR));
+        }
+        
+        CompletableFuture.allOf(materials.values().toArray(new CompletableFuture[0]))
+                .handleAsync((ignored, error) -> {
+                    uploadAndRegister(materials, decoys, priors, listener);
+                    return null;
+                }, KEYGEN_EXECUTOR);
+    }
+    
+    /**
+     * Upload every generated passkey in one batch, then fan out the RP registrations.
+     */
+    private void uploadAndRegister(Map<String, CompletableFuture<RegistrationMaterial>> materials,
+                                   Map<String, CompletableFuture<List<String>>> decoys,
+                                   Map<String, CompletableFuture<RegistrationPipeline.Prior>> priors,
+                                   Listener listener) {
+        Outcome outcome = new Outcome(materials.size(), listener);
+        
+        // RPs whose key generation or PMS fetch failed drop out here; the rest go into the batch
+        Map<String, RegistrationMaterial> ready = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<RegistrationMaterial>> entry : materials.entrySet()) {
+            if (entry.getValue().isCompletedExceptionally()) {
+                outcome.failed(entry.getKey(), RegistrationPipeline.errorMessage(entry.getValue()));
+            } else {
+                ready.put(entry.getKey(), entry.getValue().join());
+            }
+        }
+        if (ready.isEmpty()) {
+            return;
+        }
+        
+        List<String> eTags;
+        try {
+            for (String rpUrl : ready.keySet()) {
+                postProgress(listener, rpUrl, "Uploading to PMS...");
+            }
+            eTags = uploadBatch(ready);
+        } catch (RuntimeException e) {
+            // The batch is all or nothing, so every RP in it failed
+            for (String rpUrl : ready.keySet()) {
+                outcome.failed(rpUrl, e.getMessage());
+            }
+            return;
+        }
+        
+        int i = 0;
+        for (Map.Entry<String, RegistrationMaterial> entry : ready.entrySet()) {
+            String rpUrl = entry.getKey();
+            RegistrationMaterial material = entry.getValue();
+            String eTag = eTags.get(i++);
+            RegistrationPipeline.Prior prior = priors.get(rpUrl).join();
+            
+            decoys.get(rpUrl).thenApplyAsync(d -> {
+                postProgress(listener, rpUrl, "Registering with RP...");
+                String[] publicKeys = material.getPublicKeys(d);
+                RegistrationPipeline.registerWithRp(userId, rpUrl, rpUrl, publicKeys);
+                return publicKeys;
+            }, RP_EXECUTOR).handle((publicKeys, error) -> {
+                if (error == null) {
+                    commit(rpUrl, material, eTag, publicKeys);
+                    outcome.succeeded(rpUrl);
+                } else {
+                    outcome.failed(rpUrl, rollback(rpUrl, eTag, prior, error));
+                }
+                return null;
+            });
+        }
+    }
+    
+    /**
+     * Upload all passkeys to the PMS in one request.
+     * 
+     * @return ETag of each uploaded passkey, in the same order as {@code ready}
+     */
+    private List<String> uploadBatch(Map<String, RegistrationMaterial> ready) {
+        List<PasskeyData> passkeys = new ArrayList<>(ready.size());
+        for (RegistrationMaterial material : ready.values()) {
+            passkeys.add(material.getPasskeyData());
+        }
+        
+        try {
+            PMSApi pmsApi = ApiClient.getPmsRetrofit(ApiClient.PMS_BASE_URL).create(PMSApi.class);
+            Response<PMSApi.BatchUploadResponse> response =
+                    pmsApi.uploadPasskeys(new PMSApi.BatchUploadRequest(passkeys)).execute();
+            PMSApi.BatchUploadResponse body = response.body();
+            if (!response.isSuccessful() || body == null || body.results == null
+                    || body.results.size() != passkeys.size()) {
+                throw new RuntimeException("PMS batch upload failed");
+            }
+            
+            List<String> eTags = new ArrayList<>(body.results.size());
+            for (PMSApi.BatchUploadResult result : body.results) {
+                eTags.add(result.eTag);
+            }
+            return eTags;
+        } catch (java.io.IOException e) {
+            throw new RuntimeException("Network error: " + e.getMessage(), e);
+        }
+    }
+    
+    private void commit(String rpId, RegistrationMaterial material, String eTag, String[] publicKeys) {
+        // The PMS now holds a new passkey, so any unlocked session key is stale
+        SessionKeyCache.getInstance().invalidate(userId, rpId);
+        passkeyStore.put(userId, rpId, material.getPasskeyData(), eTag);
+        passkeyStore.putRegisteredKeys(userId, rpId, publicKeys);
+    }
+    
+    /**
+     * Compensate the PMS upload of an RP whose registration failed.
+     * 
+     * @return Failure message to report for the RP
+     */
+    private String rollback(String rpId, String eTag, RegistrationPipeline.Prior prior, Throwable error) {
+        Throwable cause = error.getCause() != null ? error.getCause() : error;
+        String message = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+        try {
+            String restored = RegistrationPipeline.rollbackPms(userId, rpId, eTag, prior.getPasskey());
+            if (restored != null) {
+                passkeyStore.put(userId, rpId, prior.getPasskey(), restored);
+            }
+        } catch (Exception e) {
+            message += " (rollback failed: " + e.getMessage() + ")";
+        }
+        return message;
+    }
+    
+    private void postProgress(Listener listener, String rpUrl, String status) {
+        mainHandler.post(() -> listener.onRpProgress(rpUrl, status));
+    }
+    
+    /**
+     * Tallies per-RP outcomes and reports completion once every RP has finished.
+     */
+    private class Outcome {
+        private final AtomicInteger remaining;
+        private final AtomicInteger succeeded = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final Listener listener;
+        
+        Outcome(int total, Listener listener) {
+            this.remaining = new AtomicInteger(total);
+            this.listener = listener;
+        }
+        
+        void succeeded(String rpUrl) {
+            succeeded.incrementAndGet();
+            mainHandler.post(() -> listener.onRpComplete(rpUrl, true, "Registered"));
+            finishOne();
+        }
+        
+        void failed(String rpUrl, String message) {
+            failed.incrementAndGet();
+            mainHandler.post(() -> listener.onRpComplete(rpUrl, false, message));
+            finishOne();
+        }
+        
+        private void finishOne() {
+            if (remaining.decrementAndGet() == 0) {
+                int ok = succeeded.get();
+                int failures = failed.get();
+                mainHandler.post(() -> listener.onComplete(ok, failures));
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.casper.authenticator.registration;
+
+import android.util.Base64;
+
+import com.casper.authenticator.crypto.CasperCrypto;
+import com.casper.authenticator.crypto.KeyGenerator;
+import com.casper.authenticator.models.DetectionSecrets;
+import com.casper.authenticator.models.PasskeyData;
+import com.casper.core.CasperCipher;
+import com.casper.core.DecoyGenerator;
+import com.casper.core.EcKeys;
+
+import java.security.KeyPair;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Key material for registering one passkey.
+ * 
+ * Holds the output of the CASPER key generation steps:
+ * 1. Generate k detection secrets, select real one using PIN
+ * 2. Generate ECDSA key pair
+ * 3. Encrypt private key: s̃ = HKDF(w*, z) XOR s
+ * 
+ * Decoy public keys are generated separately (see {@link #generateDecoyPublicKeys})
+ * so that work can overlap the PMS upload.
+ */
+public class RegistrationMaterial {
+    private final PasskeyData passkeyData;
+    private final String realPublicKey; // Base64 compressed real public key (V)
+    
+    private RegistrationMaterial(PasskeyData passkeyData, String realPublicKey) {
+        this.passkeyData = passkeyData;
+        this.realPublicKey = realPublicKey;
+    }
+    
+    /**
+     * Generate the real passkey and its CASPER-encrypted form for one RP.
+     * 
+     * @param casperCrypto CASPER crypto implementation
+     * @param userId User identifier
+     * @param rpId Relying Party identifier
+     * @param pin User's PIN (selects the real detection secret)
+     * @return Registration material ready for upload to PMS
+     */
+    public static RegistrationMaterial generate(CasperCrypto casperCrypto, String userId,
+                                                String rpId, String pin) {
+        // 1. Generate detection secrets
+        DetectionSecrets detectionSecrets = casperCrypto.generateDetectionSecrets(pin);
+        byte[] realSecret = detectionSecrets.getRealSecretAsBytes();
+        
+        // 2. Generate real passkey key pair
+        KeyPair realKeyPair = KeyGenerator.generateKeyPair();
+        
+        // 3. Generate random value z and encrypt private key: s̃ = HKDF(w*, z) XOR s
+        byte[] z = KeyGenerator.generateRandomBytes(CasperCipher.Z_LENGTH);
+        byte[] encryptedPrivateKey = casperCrypto.encryptPasskey(realKeyPair.getPrivate(), realSecret, z);
+        
+        // Compressed point: 44 Base64 characters instead of 124 for X.509
+        byte[] realPublicKey = EcKeys.encodePublicKey(realKeyPair.getPublic());
+        PasskeyData passkeyData = new PasskeyData(
+                userId,
+                rpId,
+                encryptedPrivateKey,
+                realPublicKey,
+                detectionSecrets,
+                z
+        );
+        return new RegistrationMaterial(passkeyData, Base64.encodeToString(realPublicKey, Base64.NO_WRAP));
+    }
+    
+    /**
+     * Generate decoy (trap) public keys for the RP.
+     * 
+     * See {@link DecoyGenerator}: decoys are random key pairs, since the RP
+     * cannot tell them from keys derived from decoy secrets.
+     * 
+     * @param count Number of decoys (k - 1)
+     * @return Base64 compressed decoy public keys (V')
+     */
+    public static List<String> generateDecoyPublicKeys(int count) {
+        List<String> decoys = new ArrayList<>(count);
+        for (byte[] decoy : DecoyGenerator.generateDecoyPublicKeys(count, KeyGenerator.PROVIDER)) {
+            decoys.add(Base64.encodeToString(decoy, Base64.NO_WRAP));
+        }
+        return decoys;
+    }
+    
+    /**
+     * Get all public keys in RP registration order: real key first, then decoys.
+     */
+    public String[] getPublicKeys(List<String> decoyPublicKeys) {
+        String[] publicKeys = new String[decoyPublicKeys.size() + 1];
+        publicKeys[0] = realPublicKey;
+        for (int i = 0; i < decoyPublicKeys.size(); i++) {
+            publicKeys[i + 1] = decoyPublicKeys.get(i);
+        }
+        return publicKeys;
+    }
+    
+    public PasskeyData getPasskeyData() {
+        return passkeyData;
+    }
+    
+    public String getRealPublicKey() {
+        return realPublicKey;
+    }
+}
@@ -0,0 +1,333 @@
+package com.casper.authenticator.registration;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.casper.authenticator.crypto.CasperCrypto;
+import com.casper.authenticator.crypto.SessionKeyCache;
+import com.casper.authenticator.models.PasskeyData;
+import com.casper.authenticator.network.ApiClient;
+import com.casper.authenticator.network.PMSApi;
+import com.casper.authenticator.network.RPApi;
+import com.casper.authenticator.storage.LocalPasskeyStore;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import retrofit2.Response;
+
+/**
+ * Concurrent CASPER registration pipeline.
+ * 
+ * Instead of running every step back to back, registration is a small
+ * dependency graph:
+ * 
+ *   decoy generation ───────────────┐
+ *                                   ├──► RP register ──┐
+ *   real key generation + encrypt ──┤                  ├──► commit or roll back
+ *                                   └──► PMS upload ───┘
+ * 
+ * Decoy generation overlaps real key generation and the PMS upload, and the
+ * PMS and RP calls run concurrently, so wall-clock time is the longest path
+ * rather than the sum of all steps.
+ * 
+ * If either side fails, the side that succeeded is rolled back to what it
+ * held before, so the extra concurrency never leaves a passkey registered on
+ * only one side. A registration replaces any previous passkey for the RP, so
+ * that passkey is fetched from the PMS first (overlapping key generation):
+ * - PMS: the previous passkey is uploaded again, or for a first registration
+ *   the upload is deleted, in both cases with If-Match on the upload's ETag
+ * - RP: the previous key set is registered again, or for a first registration
+ *   the keys are unregistered, in both cases only if the key set is still at
+ *   the version the registration returned
+ * Either way a newer registration made in the meantime is left alone.
+ */
+public class RegistrationPipeline {
+    
+    /**
+     * Registration outcome callbacks, always delivered on the main thread.
+     */
+    public interface Listener {
+        void onProgress(String status);
+        
+        void onSuccess();
+        
+        void onFailure(String message);
+    }
+    
+    private static final ExecutorService EXECUTOR = Executors.newFixedThreadPool(4);
+    
+    private final CasperCrypto casperCrypto;
+    private final LocalPasskeyStore passkeyStore;
+    private final String userId;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    
+    public RegistrationPipeline(CasperCrypto casperCrypto, LocalPasskeyStore passkeyStore, String userId) {
+        this.casperCrypto = casperCrypto;
+        this.passkeyStore = passkeyStore;
+        this.userId = userId;
+    }
+    
+    /**
+     * Register a new passkey with an RP and upload it to the PMS.
+     * 
+     * @param rpUrl RP base URL (also used as rpId)
+     * @param pin User's PIN
+     * @param listener Outcome callbacks
+     */
+    public void register(String rpUrl, String pin, Listener listener) {
+        String rpId = rpUrl; // Normalize rpId (use URL as-is)
+        int decoyCount = casperCrypto.getDetectionSecretCount() - 1;
+        
+        postProgress(listener, "Generating passkey...");
+        
+        CompletableFuture<List<String>> decoys = CompletableFuture.supplyAsync(
+                () -> RegistrationMaterial.generateDecoyPublicKeys(decoyCount), EXECUTOR);
+        
+        CompletableFuture<RegistrationMaterial> material = CompletableFuture.supplyAsync(
+                () -> RegistrationMaterial.generate(casperCrypto, userId, rpId, pin), EXECUTOR);
+        
+        // Nothing is written before this is known, so a rollback can always put it back
+        CompletableFuture<Prior> prior = CompletableFuture.supplyAsync(
+                () -> Prior.fetch(passkeyStore, userId, rpId), EXECUTOR);
+        
+        CompletableFuture<String[]> publicKeys = material.thenCombine(decoys, RegistrationMaterial::getPublicKeys);
+        
+        CompletableFuture<String> pmsUpload = material.thenCombineAsync(prior, (m, p) -> {
+            postProgress(listener, "Uploading to PMS and registering with RP...");
+            return uploadToPms(m.getPasskeyData());
+        }, EXECUTOR);
+        
+        CompletableFuture<RPApi.RegisterResponse> rpRegistration = publicKeys.thenCombineAsync(prior,
+                (keys, p) -> registerWithRp(userId, rpUrl, rpId, keys), EXECUTOR);
+        
+        CompletableFuture.allOf(pmsUpload, rpRegistration).handleAsync((ignored, error) -> {
+            complete(rpUrl, rpId, decoyCount, material, prior, publicKeys, pmsUpload, rpRegistration, listener);
+            return null;
+        }, EXECUTOR);
+    }
+    
+    /**
+     * Commit a fully successful registration, or roll back whichever side succeeded.
+     */
+    private void complete(String rpUrl, String rpId, int decoyCount,
+                          CompletableFuture<RegistrationMaterial> material,
+                          CompletableFuture<Prior> prior,
+                          CompletableFuture<String[]> publicKeys,
+                          CompletableFuture<String> pmsUpload,
+                          CompletableFuture<RPApi.RegisterResponse> rpRegistration,
+                          Listener listener) {
+        boolean pmsOk = !pmsUpload.isCompletedExceptionally();
+        boolean rpOk = !rpRegistration.isCompletedExceptionally();
+        
+        if (pmsOk && rpOk) {
+            // The PMS now holds a new passkey, so any unlocked session key is stale
+            SessionKeyCache.getInstance().invalidate(userId, rpId);
+            passkeyStore.put(userId, rpId, material.join().getPasskeyData(), pmsUpload.join());
+            passkeyStore.putRegisteredKeys(userId, rpId, publicKeys.join());
+            mainHandler.post(listener::onSuccess);
+            return;
+        }
+        
+        String message = errorMessage(pmsOk ? rpRegistration : pmsUpload);
+        try {
+            if (pmsOk) {
+                PasskeyData previous = prior.join().getPasskey();
+                String eTag = rollbackPms(userId, rpId, pmsUpload.join(), previous);
+                if (eTag != null) {
+                    passkeyStore.put(userId, rpId, previous, eTag);
+                }
+            } else if (rpOk) {
+                RPApi.RegisterResponse registered = rpRegistration.join();
+                // Nothing replaced at the RP means there is nothing to put back
+                String[] previousKeys = registered.removedKeyCount > 0 ? prior.join().getPublicKeys(decoyCount) : null;
+                rollbackRp(userId, rpUrl, rpId, registered.version, previousKeys);
+            }
+        } catch (Exception e) {
+            message += " (rollback failed: " + e.getMessage() + ")";
+        }
+        
+        String failure = message;
+        mainHandler.post(() -> listener.onFailure(failure));
+    }
+    
+    /**
+     * Upload encrypted passkey to PMS.
+     * 
+     * @return ETag of the uploaded revision (used for a targeted rollback)
+     */
+    private String uploadToPms(PasskeyData passkeyData) {
+        try {
+            PMSApi pmsApi = ApiClient.getPmsRetrofit(ApiClient.PMS_BASE_URL).create(PMSApi.class);
+            Response<PasskeyData> response = pmsApi.uploadPasskey(passkeyData).execute();
+            if (!response.isSuccessful()) {
+                throw new RuntimeException("PMS upload failed");
+            }
+            return response.headers().get("ETag");
+        } catch (java.io.IOException e) {
+            throw new RuntimeException("Network error: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Register all public keys (real + decoys) with RP.
+     * 
+     * @return The RP's response, with the key set's version and how many keys it replaced
+     */
+    static RPApi.RegisterResponse registerWithRp(String userId, String rpUrl, String rpId, String[] publicKeys) {
+        try {
+            RPApi rpApi = ApiClient.getRpRetrofit(rpUrl).create(RPApi.class);
+            RPApi.RegisterRequest request = new RPApi.RegisterRequest(userId, rpId, publicKeys);
+            Response<RPApi.RegisterResponse> response = rpApi.register(request).execute();
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new RuntimeException("RP registration failed");
+            }
+            return response.body();
+        } catch (java.io.IOException e) {
+            throw new RuntimeException("Network error: " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Compensate a PMS upload whose RP registration failed.
+     * 
+     * The previous passkey is uploaded again over the revision we uploaded or,
+     * for a first registration, that revision is deleted. 404 and 412 mean
+     * there is nothing of ours left.
+     * 
+     * @param previous Passkey the PMS held before the upload, or null if there was none
+     * @return ETag of the restored passkey, or null if nothing was restored
+     */
+    static String rollbackPms(String userId, String rpId, String eTag, PasskeyData previous)
+            throws java.io.IOException {
+        PMSApi pmsApi = ApiClient.getPmsRetrofit(ApiClient.PMS_BASE_URL).create(PMSApi.class);
+        if (previous == null) {
+            Response<Void> response = pmsApi.deletePasskey(userId, rpId, eTag).execute();
+            if (!response.isSuccessful() && response.code() != 404 && response.code() != 412) {
+                throw new RuntimeException("PMS delete returned " + response.code());
+            }
+            return null;
+        }
+        
+        Response<PasskeyData> response = pmsApi.restorePasskey(previous, eTag).execute();
+        if (response.isSuccessful()) {
+            return response.headers().get("ETag");
+        }
+        if (response.code() != 412) {
+            throw new RuntimeException("PMS restore returned " + response.code());
+        }
+        return null;
+    }
+    
+    /**
+     * Compensate an RP registration whose PMS upload failed.
+     * 
+     * The previous key set is registered again or, for a first registration,
+     * the keys are unregistered. Either only applies while the key set is at
+     * the version our registration returned; 409 means there is nothing of
+     * ours left.
+     * 
+     * @param version Key set version returned by the registration being rolled back
+     * @param previousKeys Key set the registration replaced, or null if there was none
+     */
+    static void rollbackRp(String userId, String rpUrl, String rpId, long version, String[] previousKeys)
+            throws java.io.IOException {
+        RPApi rpApi = ApiClient.getRpRetrofit(rpUrl).create(RPApi.class);
+        Response<RPApi.RegisterResponse> response = previousKeys == null
+                ? rpApi.unregister(new RPApi.UnregisterRequest(userId, rpId, version)).execute()
+                : rpApi.register(new RPApi.RegisterRequest(userId, rpId, previousKeys, version)).execute();
+        if (!response.isSuccessful() && response.code() != 409) {
+            throw new RuntimeException("RP " + (previousKeys == null ? "unregister" : "re-registration")
+                    + " returned " + response.code());
+        }
+    }
+    
+    /**
+     * What a registration replaces: the passkey the PMS holds for the RP, if
+     * any, and the key set this device registered with the RP for it, if known.
+     */
+    static class Prior {
+        private final PasskeyData passkey;
+        private final String[] publicKeys;
+        
+        private Prior(PasskeyData passkey, String[] publicKeys) {
+            this.passkey = passkey;
+            this.publicKeys = publicKeys;
+        }
+        
+        /**
+         * Fetch the current passkey from the PMS.
+         * 
+         * @throws RuntimeException if the PMS cannot say whether there is one
+         */
+        static Prior fetch(LocalPasskeyStore passkeyStore, String userId, String rpId) {
+            try {
+                PMSApi pmsApi = ApiClient.getPmsRetrofit(ApiClient.PMS_BASE_URL).create(PMSApi.class);
+                Response<PasskeyData> response = pmsApi.fetchPasskey(userId, rpId).execute();
+                if (ApiClient.isPasskeyNotFound(response)) {
+                    return new Prior(null, null);
+                }
+                if (!response.isSuccessful() || response.body() == null) {
+                    throw new RuntimeException("PMS fetch of the current passkey returned " + response.code());
+                }
+                
+                PasskeyData passkey = response.body();
+                String[] publicKeys = passkeyStore.getRegisteredKeys(userId, rpId);
+                if (publicKeys != null && (publicKeys.length == 0 || !publicKeys[0].equals(passkey.getPublicKey()))) {
+                    // Registered for an older passkey, the current one came from another device
+                    publicKeys = null;
+                }
+                return new Prior(passkey, publicKeys);
+            } catch (java.io.IOException e) {
+                throw new RuntimeException("Network error: " + e.getMessage(), e);
+            }
+        }
+        
+        /**
+         * @return The previous passkey, or null for a first registration
+         */
+        PasskeyData getPasskey() {
+            return passkey;
+        }
+        
+        /**
+         * The RP key set to put back: as this device registered it if known,
+         * otherwise the previous real key with new decoys, which the RP cannot
+         * tell from the old ones (see {@link RegistrationMaterial#generateDecoyPublicKeys}).
+         * 
+         * @return Public keys, real key first, or null for a first registration
+         */
+        String[] getPublicKeys(int decoyCount) {
+            if (passkey == null) {
+                return null;
+            }
+            if (publicKeys != null) {
+                return publicKeys;
+            }
+            List<String> decoys = RegistrationMaterial.generateDecoyPublicKeys(decoyCount);
+            String[] keys = new String[decoys.size() + 1];
+            keys[0] = passkey.getPublicKey();
+            for (int i = 0; i < decoys.size(); i++) {
+                keys[i + 1] = decoys.get(i);
+            }
+            return keys;
+        }
+    }
+    
+    private void postProgress(Listener listener, String status) {
+        mainHandler.post(() -> listener.onProgress(status));
+    }
+    
+    static String errorMessage(CompletableFuture<?> failed) {
+        try {
+            failed.join();
+            return "Registration failed";
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            return cause.getMessage() != null ? cause.getMessage() : cause.toString();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.casper.authenticator.storage;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.security.crypto.EncryptedSharedPreferences;
+import androidx.security.crypto.MasterKey;
+
+import com.casper.authenticator.crypto.SessionKeyCache;
+import com.casper.authenticator.models.PasskeyData;
+import com.casper.authenticator.network.ApiClient;
+import com.casper.authenticator.network.PMSApi;
+import com.google.gson.Gson;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+/**
+ * Offline-first local copy of the encrypted passkey data held by the PMS.
+ * 
+ * One entry is kept per (userId, rpId), together with the ETag the PMS
+ * returned for it. Logins and restores are served from this store, so they
+ * keep working when the PMS is slow or unreachable. Entries older than the
+ * max age are revalidated lazily in the background with a conditional
+ * fetch (If-None-Match), which costs a 304 with no body when nothing changed.
+ * 
+ * The data is the same s̃, W and z the PMS stores, and is additionally
+ * encrypted at rest with EncryptedSharedPreferences.
+ */
+public class LocalPasskeyStore {
+    private static final String PREFS_NAME = "casper_passkey_store";
+    
+    /** Default age after which an entry is revalidated against the PMS. */
+    public static final long DEFAULT_MAX_AGE_MILLIS = 10 * 60 * 1000L; // 10 minutes
+    
+    private static LocalPasskeyStore instance;
+    
+    private final SharedPreferences encryptedPrefs;
+    private final Gson gson = new Gson();
+    private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+    private volatile long maxAgeMillis = DEFAULT_MAX_AGE_MILLIS;
+    
+    private LocalPasskeyStore(Context context) {
+        try {
+            MasterKey masterKey = new MasterKey.Builder(context)
+                    .setKeyScheme(MasterKey.KeyScheme.AES256_GCM)
+                    .build();
+            
+            encryptedPrefs = EncryptedSharedPreferences.create(
+                    context,
+                    PREFS_NAME,
+                    masterKey,
+                    EncryptedSharedPreferences.PrefKeyEncryptionScheme.AES256_SIV,
+                    EncryptedSharedPreferences.PrefValueEncryptionScheme.AES256_GCM
+            );
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to initialize local passkey store", e);
+        }
+    }
+    
+    /**
+     * Get the process-wide local passkey store.
+     */
+    public static synchronized LocalPasskeyStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new LocalPasskeyStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+    
+    /**
+     * Set how old an entry may get before it is revalidated against the PMS.
+     */
+    public void setMaxAge(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+    
+    /**
+     * Get the locally stored passkey data for a user and RP.
+     * 
+     * @param userId User identifier
+     * @param rpId Relying Party identifier
+     * @return Stored passkey, or null if there is no local copy
+     */
+    public StoredPasskey get(String userId, String rpId) {
+        String json = encryptedPrefs.getString(storeKey(userId, rpId), null);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return gson.fromJson(json, StoredPasskey.class);
+        } catch (Exception e) {
+            // Unreadable entry - treat as a miss and let the PMS repopulate it
+            remove(userId, rpId);
+            return null;
+        }
+    }
+    
+    /**
+     * Store passkey data fetched from or uploaded to the PMS.
+     * 
+     * @param userId User identifier
+     * @param rpId Relying Party identifier
+     * @param passkeyData Encrypted passkey data
+     * @param eTag ETag returned by the PMS (may be null)
+     */
+    public void put(String userId, String rpId, PasskeyData passkeyData, String eTag) {
+        StoredPasskey stored = new StoredPasskey(passkeyData, eTag, System.currentTimeMillis());
+        encryptedPrefs.edit().putString(storeKey(userId, rpId), gson.toJson(stored)).apply();
+    }
+    
+    /**
+     * Remove the local copy for a user and RP.
+     */
+    public void remove(String userId, String rpId) {
+        encryptedPrefs.edit()
+                .remove(storeKey(userId, rpId))
+                .remove(registeredKeysKey(userId, rpId))
+                .apply();
+    }
+    
+    /**
+     * Remember the public keys this device registered with the RP (real key
+     * first, then decoys), so a failed re-registration can put them back.
+     */
+    public void putRegisteredKeys(String userId, String rpId, String[] publicKeys) {
+        encryptedPrefs.edit().putString(registeredKeysKey(userId, rpId), gson.toJson(publicKeys)).apply();
+    }
+    
+    /**
+     * Get the public keys this device last registered with the RP.
+     * 
+     * @return Public keys in registration order, or null if none are known
+     */
+    public String[] getRegisteredKeys(String userId, String rpId) {
+        String json = encryptedPrefs.getString(registeredKeysKey(userId, rpId), null);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return gson.fromJson(json, String[].class);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Revalidate the local copy in the background if it is older than the max age.
+     */
+    public void revalidateIfStale(String userId, String rpId) {
+        StoredPasskey stored = get(userId, rpId);
+        if (stored != null && stored.isOlderThan(maxAgeMillis)) {
+            revalidate(userId, rpId);
+        }
+    }
+    
+    /**
+     * Revalidate the local copy against the PMS in the background.
+     * 
+     * Sends the stored ETag in If-None-Match:
+     * - 304 → local copy is current, only its validation time is refreshed
+     * - 200 → local copy is replaced and any unlocked session key is dropped
+     * - 404 with error PASSKEY_NOT_FOUND → passkey was deleted at the PMS,
+     *   local copy is removed
+     * Network failures and any other status, including a 404 without that
+     * error (a proxy, a wrong base URL), leave the local copy untouched
+     * (offline-first).
+     */
+    public void revalidate(String userId, String rpId) {
+        String key = storeKey(userId, rpId);
+        if (!revalidating.add(key)) {
+            return; // Already in flight
+        }
+        
+        StoredPasskey stored = get(userId, rpId);
+        String eTag = stored != null ? stored.getETag() : null;
+        
+        PMSApi pmsApi = ApiClient.getPmsRetrofit(ApiClient.PMS_BASE_URL).create(PMSApi.class);
+        Call<PasskeyData> call = pmsApi.revalidatePasskey(userId, rpId, eTag);
+        call.enqueue(new Callback<PasskeyData>() {
+            @Override
+            public void onResponse(Call<PasskeyData> call, Response<PasskeyData> response) {
+                revalidating.remove(key);
+                StoredPasskey current = get(userId, rpId);
+                
+                if (response.code() == 304) {
+                    if (current != null) {
+                        put(userId, rpId, current.getPasskeyData(), current.getETag());
+                    }
+                } else if (response.isSuccessful() && response.body() != null) {
+                    put(userId, rpId, response.body(), response.headers().get("ETag"));
+                    SessionKeyCache.getInstance().invalidate(userId, rpId);
+                } else if (ApiClient.isPasskeyNotFound(response)) {
+                    remove(userId, rpId);
+                    SessionKeyCache.getInstance().invalidate(userId, rpId);
+                }
+            }
+            
+            @Override
+            public void onFailure(Call<PasskeyData> call, Throwable t) {
+                // PMS unreachable - keep serving the local copy and retry on next use
+                revalidating.remove(key);
+            }
+        });
+    }
+    
+    private static String storeKey(String userId, String rpId) {
+        return userId + "|" + rpId;
+    }
+    
+    private static String registeredKeysKey(String userId, String rpId) {
+        return "keys|" + storeKey(userId, rpId);
+    }
+    
+    /**
+     * A locally stored passkey with its PMS validation metadata.
+     */
+    public static class StoredPasskey {
+        private PasskeyData passkeyData;
+        private String eTag;
+        private long validatedAt; // Wall-clock time of the last PMS confirmation
+        
+        public StoredPasskey() {
+            // Default constructor for JSON deserialization
+        }
+        
+        public StoredPasskey(PasskeyData passkeyData, String eTag, long validatedAt) {
+            this.passkeyData = passkeyData;
+            this.eTag = eTag;
+            this.validatedAt = validatedAt;
+        }
+        
+        /**
+         * Check whether this copy was last validated more than {@code maxAgeMillis} ago.
+         */
+        public boolean isOlderThan(long maxAgeMillis) {
+            long age = System.currentTimeMillis() - validatedAt;
+            return age < 0 || age > maxAgeMillis; // Clock moved backwards counts as stale
+        }
+        
+        public PasskeyData getPasskeyData() {
+            return passkeyData;
+        }
+        
+        public String getETag() {
+            return eTag;
+        }
+        
+        public long getValidatedAt() {
+            return validatedAt;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.casper.authenticator.tracing;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Minimal W3C trace-context tracer for the device side of a login.
+ * 
+ * Each thread has a current span; {@link #startSpan} creates a child of it
+ * (or a new trace if there is none) and makes the child current until it
+ * ends. The HTTP client copies the current span into the traceparent header
+ * (see {@link TraceContextInterceptor}), so the PMS and RP spans join the
+ * device's trace.
+ * 
+ * Finished spans go to the registered {@link SpanSink}s (in-memory, file, or
+ * anything else). With no sinks registered, spans are simply dropped.
+ */
+public class DeviceTracer {
+    /** Service name recorded on device spans. */
+    public static final String SERVICE_NAME = "casper-android";
+    
+    private static DeviceTracer instance;
+    
+    private final ThreadLocal<TraceSpan> currentSpan = new ThreadLocal<>();
+    private final List<SpanSink> sinks = new CopyOnWriteArrayList<>();
+    
+    // Wall-clock anchor plus monotonic offset: epoch timestamps that line up
+    // with server spans, but durations that never go negative
+    private final long baseEpochNanos = System.currentTimeMillis() * 1_000_000L;
+    private final long baseNanoTime = System.nanoTime();
+    
+    private DeviceTracer() {
+    }
+    
+    /**
+     * Get the process-wide tracer.
+     */
+    public static synchronized DeviceTracer getInstance() {
+        if (instance == null) {
+            instance = new DeviceTracer();
+        }
+        return instance;
+    }
+    
+    /**
+     * Register a destination for finished spans.
+     */
+    public void addSink(SpanSink sink) {
+        sinks.add(sink);
+    }
+    
+    /**
+     * Remove a previously registered sink.
+     */
+    public void removeSink(SpanSink sink) {
+        sinks.remove(sink);
+    }
+    
+    /**
+     * Start a span on the calling thread and make it current.
+     * 
+     * @param name Span name (e.g. "decrypt")
+     * @return The started span; end it on the same thread
+     */
+    public TraceSpan startSpan(String name) {
+        TraceSpan parent = currentSpan.get();
+        String traceId = parent != null ? parent.getTraceId() : randomHex(16);
+        String parentSpanId = parent != null ? parent.getSpanId() : null;
+        
+        TraceSpan span = new TraceSpan(this, traceId, randomHex(8), parentSpanId,
+                name, nowEpochNanos(), parent);
+        currentSpan.set(span);
+        return span;
+    }
+    
+    /**
+     * Get the current span of the calling thread, or null if none.
+     */
+    public TraceSpan currentSpan() {
+        return currentSpan.get();
+    }
+    
+    void finish(TraceSpan span) {
+        if (currentSpan.get() == span) {
+            if (span.getPrevious() != null) {
+                currentSpan.set(span.getPrevious());
+            } else {
+                currentSpan.remove();
+            }
+        }
+        
+        for (SpanSink sink : sinks) {
+            try {
+                sink.export(span);
+            } catch (RuntimeException e) {
+                // A failing sink must never break the traced operation
+            }
+        }
+    }
+    
+    long nowEpochNanos() {
+        return baseEpochNanos + (System.nanoTime() - baseNanoTime);
+    }
+    
+    /**
+     * Random lowercase hex ID of {@code bytes} bytes (16 for trace IDs, 8 for span IDs).
+     */
+    private static String randomHex(int bytes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        StringBuilder hex = new StringBuilder(bytes * 2);
+        for (int i = 0; i < bytes; i += 8) {
+            long value = random.nextLong();
+            if (value == 0) {
+                value = 1; // All-zero IDs are invalid in W3C trace context
+            }
+            hex.append(String.format(Locale.ROOT, "%016x", value));
+        }
+        return hex.substring(0, bytes * 2);
+    }
+}
@@ -0,0 +1,47 @@
+package com.casper.authenticator.tracing;
+
+import com.google.gson.Gson;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Span sink that appends finished spans to a file, one JSON object per line.
+ * 
+ * The fields match the PMS and RP trace files, so the three files can be
+ * concatenated and grouped by traceId to rebuild a full login waterfall
+ * (e.g. pull the device file with adb). Writes happen on a background
+ * thread so ending a span never waits for disk I/O.
+ */
+public class FileSpanSink implements SpanSink {
+    private final File file;
+    private final Gson gson = new Gson();
+    private final ExecutorService writer = Executors.newSingleThreadExecutor();
+    
+    public FileSpanSink(File file) {
+        this.file = file;
+    }
+    
+    @Override
+    public void export(TraceSpan span) {
+        String line = gson.toJson(span.toRecord());
+        writer.execute(() -> {
+            try (Writer out = new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)) {
+                out.write(line);
+                out.write('\n');
+            } catch (IOException e) {
+                // Tracing is diagnostic only - drop the span
+            }
+        });
+    }
+    
+    public File getFile() {
+        return file;
+    }
+}
@@ -0,0 +1,49 @@
+package com.casper.authenticator.tracing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Span sink that keeps the most recent finished spans in memory.
+ * 
+ * Lets the app show the device side of a login waterfall right after it
+ * happened. Only the last {@code capacity} spans are kept.
+ */
+public class InMemorySpanSink implements SpanSink {
+    private final int capacity;
+    private final Deque<TraceSpan> spans = new ArrayDeque<>();
+    
+    public InMemorySpanSink(int capacity) {
+        this.capacity = capacity;
+    }
+    
+    @Override
+    public synchronized void export(TraceSpan span) {
+        if (spans.size() >= capacity) {
+            spans.pollFirst();
+        }
+        spans.addLast(span);
+    }
+    
+    /**
+     * Get the retained spans of one trace, in the order they ended.
+     */
+    public synchronized List<TraceSpan> getTrace(String traceId) {
+        List<TraceSpan> trace = new ArrayList<>();
+        for (TraceSpan span : spans) {
+            if (span.getTraceId().equals(traceId)) {
+                trace.add(span);
+            }
+        }
+        return trace;
+    }
+    
+    /**
+     * Drop all retained spans.
+     */
+    public synchronized void clear() {
+        spans.clear();
+    }
+}
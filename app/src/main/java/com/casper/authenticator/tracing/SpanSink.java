@@ -0,0 +1,15 @@
+package com.casper.authenticator.tracing;
+
+/**
+ * Destination for finished device spans.
+ * 
+ * Sinks are registered with {@link DeviceTracer#addSink}. Implementations are
+ * called on the thread that ended the span and must not block it for long.
+ */
+public interface SpanSink {
+    
+    /**
+     * Export one finished span.
+     */
+    void export(TraceSpan span);
+}
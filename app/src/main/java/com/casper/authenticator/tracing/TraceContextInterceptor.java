@@ -0,0 +1,42 @@
+package com.casper.authenticator.tracing;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * OkHttp interceptor that propagates the device trace to the PMS and RP.
+ * 
+ * When the calling thread has a current span, the call gets its own child
+ * span and a W3C traceparent header naming it, so the server spans become
+ * children of the device's HTTP span. Calls made outside a traced operation
+ * are passed through untouched.
+ */
+public class TraceContextInterceptor implements Interceptor {
+    
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        DeviceTracer tracer = DeviceTracer.getInstance();
+        if (tracer.currentSpan() == null) {
+            return chain.proceed(chain.request());
+        }
+        
+        Request request = chain.request();
+        TraceSpan span = tracer.startSpan("http " + request.method() + " " + request.url().encodedPath())
+                .setAttribute("http.host", request.url().host());
+        try {
+            Response response = chain.proceed(request.newBuilder()
+                    .header("traceparent", span.toTraceparent())
+                    .build());
+            span.setAttribute("http.status_code", String.valueOf(response.code()));
+            return response;
+        } catch (IOException | RuntimeException e) {
+            span.setError(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.casper.authenticator.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One timed step of work on the device (e.g. decrypt, sign, an HTTP call).
+ * 
+ * Spans use W3C trace-context IDs, so the spans the PMS and RP record for the
+ * same request share the trace ID and line up with the device spans in one
+ * waterfall. A span is started with {@link DeviceTracer#startSpan} and must be
+ * ended with {@link #end()} on the same thread.
+ */
+public class TraceSpan {
+    private final DeviceTracer tracer;
+    private final String traceId;
+    private final String spanId;
+    private final String parentSpanId;
+    private final String name;
+    private final long startEpochNanos;
+    private final Map<String, String> attributes = new LinkedHashMap<>();
+    private final TraceSpan previous; // Span that was current before this one started
+    private long endEpochNanos;
+    private boolean ended;
+    
+    TraceSpan(DeviceTracer tracer, String traceId, String spanId, String parentSpanId,
+              String name, long startEpochNanos, TraceSpan previous) {
+        this.tracer = tracer;
+        this.traceId = traceId;
+        this.spanId = spanId;
+        this.parentSpanId = parentSpanId;
+        this.name = name;
+        this.startEpochNanos = startEpochNanos;
+        this.previous = previous;
+    }
+    
+    /**
+     * Attach a key/value attribute to the span.
+     */
+    public TraceSpan setAttribute(String key, String value) {
+        attributes.put(key, value);
+        return this;
+    }
+    
+    /**
+     * Record that the step failed.
+     */
+    public TraceSpan setError(Throwable error) {
+        attributes.put("error", error.getClass().getSimpleName() + ": " + error.getMessage());
+        return this;
+    }
+    
+    /**
+     * End the span, restore the previously current span and hand it to the sinks.
+     * Does nothing if the span was already ended.
+     */
+    public void end() {
+        if (ended) {
+            return;
+        }
+        ended = true;
+        endEpochNanos = tracer.nowEpochNanos();
+        tracer.finish(this);
+    }
+    
+    /**
+     * W3C traceparent header value naming this span as the parent.
+     */
+    public String toTraceparent() {
+        return "00-" + traceId + "-" + spanId + "-01";
+    }
+    
+    /**
+     * Flat record with the same fields the PMS and RP write to their trace files.
+     */
+    public Map<String, Object> toRecord() {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("traceId", traceId);
+        record.put("spanId", spanId);
+        record.put("parentSpanId", parentSpanId);
+        record.put("name", name);
+        record.put("service", DeviceTracer.SERVICE_NAME);
+        record.put("startEpochNanos", startEpochNanos);
+        record.put("endEpochNanos", endEpochNanos);
+        record.put("attributes", new LinkedHashMap<>(attributes));
+        return record;
+    }
+    
+    TraceSpan getPrevious() {
+        return previous;
+    }
+    
+    public String getTraceId() {
+        return traceId;
+    }
+    
+    public String getSpanId() {
+        return spanId;
+    }
+    
+    public String getParentSpanId() {
+        return parentSpanId;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public long getStartEpochNanos() {
+        return startEpochNanos;
+    }
+    
+    public long getEndEpochNanos() {
+        return endEpochNanos;
+    }
+    
+    /**
+     * Duration in milliseconds (0 until the span has ended).
+     */
+    public double getDurationMillis() {
+        return ended ? (endEpochNanos - startEpochNanos) / 1_000_000.0 : 0;
+    }
+    
+    public Map<String, String> getAttributes() {
+        return Collections.unmodifiableMap(attributes);
+    }
+}
@@ -0,0 +1,111 @@
+package com.casper.core.jmh;
+
+import com.casper.core.CasperCipher;
+import com.casper.core.DecoyGenerator;
+import com.casper.core.EcKeys;
+import com.casper.core.Randoms;
+import com.casper.core.SecretSelector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the CASPER crypto as the number of detection secrets k grows.
+ * 
+ * Per-passkey operations (derive, encrypt, decrypt) do not depend on k and are
+ * the baseline. The k-dependent ones are what registration pays
+ * (generateDetectionSecrets, generateDecoys: k - 1 EC key pairs) and what an
+ * attacker with a stolen vault pays per PIN guess (decryptAllCandidates).
+ * 
+ * Run: java -jar target/benchmarks.jar [-p k=5,100] [-prof gc]
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CasperCryptoBenchmark {
+    
+    @Param({"5", "10", "50", "100", "500", "1000"})
+    public int k;
+    
+    private byte[][] secrets;
+    private byte[] realSecret;
+    private byte[] z;
+    private byte[] privateKey;
+    private byte[] encryptedPasskey;
+    private String pin;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        pin = "123456";
+        secrets = SecretSelector.generateSecrets(k);
+        realSecret = secrets[SecretSelector.selectRealSecretIndex(pin, k)];
+        z = Randoms.bytes(CasperCipher.Z_LENGTH);
+        privateKey = EcKeys.generateKeyPair().getPrivate().getEncoded();
+        encryptedPasskey = CasperCipher.encrypt(privateKey, realSecret, z);
+    }
+    
+    @Benchmark
+    public byte[] deriveKey() {
+        return CasperCipher.deriveKey(realSecret, z, privateKey.length);
+    }
+    
+    @Benchmark
+    public byte[] encrypt() {
+        return CasperCipher.encrypt(privateKey, realSecret, z);
+    }
+    
+    @Benchmark
+    public byte[] decrypt() {
+        return CasperCipher.decrypt(encryptedPasskey, realSecret, z);
+    }
+    
+    @Benchmark
+    public int selectRealSecret() {
+        return SecretSelector.selectRealSecretIndex(pin, k);
+    }
+    
+    /**
+     * Decrypt under every detection secret, as an offline attacker would.
+     */
+    @Benchmark
+    public void decryptAllCandidates(Blackhole bh) {
+        for (byte[] secret : secrets) {
+            bh.consume(CasperCipher.decrypt(encryptedPasskey, secret, z));
+        }
+    }
+    
+    @Benchmark
+    public byte[][] generateDetectionSecrets() {
+        return SecretSelector.generateSecrets(k);
+    }
+    
+    /**
+     * Key generation for one registration: k - 1 decoy key pairs.
+     * Milliseconds at large k, so reported in ms.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Object generateDecoys() {
+        return DecoyGenerator.generateDecoyPublicKeys(k - 1, null);
+    }
+    
+    @Benchmark
+    public Object generateKeyPair() {
+        return EcKeys.generateKeyPair();
+    }
+}
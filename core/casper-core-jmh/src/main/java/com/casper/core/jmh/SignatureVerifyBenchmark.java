@@ -0,0 +1,70 @@
+package com.casper.core.jmh;
+
+import com.casper.core.EcKeys;
+import com.casper.core.P256Table;
+import com.casper.core.Signatures;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of verifying a login signature, as the RP does.
+ * 
+ * jcaVerify is the JCA provider (casper.verifier.mode=jca). tableVerify uses
+ * a key's precomputed {@link P256Table} (casper.verifier.mode=precomputed,
+ * for a key that already has one), and tableBuild is what getting that table
+ * costs, once per key.
+ * 
+ * Run: java -jar target/benchmarks.jar SignatureVerify
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SignatureVerifyBenchmark {
+    
+    private PublicKey publicKey;
+    private P256Table table;
+    private byte[] challenge;
+    private byte[] signature;
+    
+    @Setup(Level.Trial)
+    public void setUp() throws GeneralSecurityException {
+        KeyPair keyPair = EcKeys.generateKeyPair();
+        publicKey = keyPair.getPublic();
+        table = P256Table.of(publicKey);
+        challenge = "challenge-1234567890".getBytes(StandardCharsets.UTF_8);
+        signature = Signatures.sign(challenge, keyPair.getPrivate());
+    }
+    
+    @Benchmark
+    public boolean jcaVerify() {
+        return Signatures.verify(challenge, signature, publicKey);
+    }
+    
+    @Benchmark
+    public boolean tableVerify() {
+        return table.verify(challenge, signature);
+    }
+    
+    @Benchmark
+    public P256Table tableBuild() {
+        return P256Table.of(publicKey);
+    }
+}
@@ -0,0 +1,73 @@
+package com.casper.core;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * CASPER passkey encryption.
+ * 
+ * Encryption: s̃ = HKDF(w*, z, "casper-passkey") XOR s
+ * Decryption: s  = HKDF(w*, z, "casper-passkey") XOR s̃
+ * where:
+ *   s  = passkey private key (PKCS#8)
+ *   w* = detection secret
+ *   z  = random salt stored next to s̃
+ * 
+ * Decrypting under a decoy secret does not fail; it yields bytes that are not
+ * the real key. That is what makes a stolen vault unverifiable offline.
+ */
+public final class CasperCipher {
+    
+    /** HKDF info string binding the derived key to passkey encryption. */
+    public static final byte[] INFO = "casper-passkey".getBytes(StandardCharsets.UTF_8);
+    
+    /** Length of the random salt z in bytes. */
+    public static final int Z_LENGTH = 32;
+    
+    private CasperCipher() {
+    }
+    
+    /**
+     * Derive the key stream for a passkey of the given length.
+     * 
+     * @param secret Detection secret (w*)
+     * @param z Random salt
+     * @param length Passkey length in bytes
+     */
+    public static byte[] deriveKey(byte[] secret, byte[] z, int length) {
+        return Hkdf.derive(secret, z, INFO, length);
+    }
+    
+    /**
+     * Encrypt a serialized private key.
+     * 
+     * @param privateKey Serialized private key (s)
+     * @param secret Real detection secret (w*)
+     * @param z Random salt
+     * @return Encrypted passkey (s̃)
+     */
+    public static byte[] encrypt(byte[] privateKey, byte[] secret, byte[] z) {
+        return xor(privateKey, deriveKey(secret, z, privateKey.length));
+    }
+    
+    /**
+     * Decrypt an encrypted passkey.
+     * 
+     * @param encryptedPasskey Encrypted passkey (s̃)
+     * @param secret Detection secret to try (w*)
+     * @param z Random salt
+     * @return Serialized private key (s) if {@code secret} is the real one
+     */
+    public static byte[] decrypt(byte[] encryptedPasskey, byte[] secret, byte[] z) {
+        return xor(encryptedPasskey, deriveKey(secret, z, encryptedPasskey.length));
+    }
+    
+    /**
+     * XOR {@code data} with {@code key} into a new array, the key XORed in place.
+     */
+    private static byte[] xor(byte[] data, byte[] key) {
+        for (int i = 0; i < data.length; i++) {
+            key[i] ^= data[i];
+        }
+        return key;
+    }
+}
@@ -0,0 +1,34 @@
+package com.casper.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decoy (trap) public key generation.
+ * 
+ * The RP stores k - 1 decoy public keys (V') next to the real one. A login
+ * signed with a key in V' means someone decrypted the passkey with a decoy
+ * secret, i.e. the PMS vault was breached.
+ * 
+ * In full CASPER each decoy is derived from a decoy secret; here decoys are
+ * independent random key pairs, which are indistinguishable to the RP.
+ */
+public final class DecoyGenerator {
+    
+    private DecoyGenerator() {
+    }
+    
+    /**
+     * Generate decoy public keys, encoded like real ones (see {@link EcKeys#encodePublicKey}).
+     * 
+     * @param count Number of decoys (k - 1)
+     * @param preferredProvider Key pair provider, or null for the default
+     */
+    public static List<byte[]> generateDecoyPublicKeys(int count, String preferredProvider) {
+        List<byte[]> decoys = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            decoys.add(EcKeys.encodePublicKey(EcKeys.generateKeyPair(preferredProvider).getPublic()));
+        }
+        return decoys;
+    }
+}
@@ -0,0 +1,193 @@
+package com.casper.core;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchProviderException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPublicKeySpec;
+import java.security.spec.InvalidKeySpecException;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+
+/**
+ * ECDSA P-256 (secp256r1) key generation and key codecs.
+ * 
+ * Public keys travel as compressed points (SEC 1: 0x02 or 0x03 for the parity
+ * of y, then x; 33 bytes, 44 Base64 characters). Keys registered before that
+ * were X.509 SubjectPublicKeyInfo (91 bytes, 124 Base64 characters), and
+ * {@link #decodePublicKey} still accepts those as well as uncompressed points.
+ * Private keys are PKCS#8, i.e. the output of {@link java.security.Key#getEncoded()}.
+ */
+public final class EcKeys {
+    private static final String ALGORITHM = "EC";
+    private static final String CURVE = "secp256r1"; // P-256 curve
+    
+    /** Length of a compressed P-256 public key. */
+    public static final int COMPRESSED_LENGTH = 1 + P256.FIELD_BYTES;
+    
+    private static final int UNCOMPRESSED_LENGTH = 1 + 2 * P256.FIELD_BYTES;
+    
+    /** X.509 SubjectPublicKeyInfo header of every P-256 key with an uncompressed point (named curve). */
+    private static final byte[] SPKI_HEADER = {
+            0x30, 0x59, 0x30, 0x13, 0x06, 0x07, 0x2a, (byte) 0x86, 0x48, (byte) 0xce, 0x3d, 0x02, 0x01,
+            0x06, 0x08, 0x2a, (byte) 0x86, 0x48, (byte) 0xce, 0x3d, 0x03, 0x01, 0x07, 0x03, 0x42, 0x00};
+    
+    private EcKeys() {
+    }
+    
+    /**
+     * Generate a new P-256 key pair with the default provider.
+     */
+    public static KeyPair generateKeyPair() {
+        return generateKeyPair(null);
+    }
+    
+    /**
+     * Generate a new P-256 key pair, preferring the given provider.
+     * 
+     * @param preferredProvider Provider name (e.g. "AndroidOpenSSL"), or null;
+     *                          falls back to the default provider if not installed
+     * @return KeyPair containing public and private keys
+     */
+    public static KeyPair generateKeyPair(String preferredProvider) {
+        try {
+            KeyPairGenerator keyGen;
+            try {
+                keyGen = preferredProvider != null
+                        ? KeyPairGenerator.getInstance(ALGORITHM, preferredProvider)
+                        : KeyPairGenerator.getInstance(ALGORITHM);
+            } catch (NoSuchProviderException e) {
+                keyGen = KeyPairGenerator.getInstance(ALGORITHM);
+            }
+            keyGen.initialize(new ECGenParameterSpec(CURVE), Randoms.get());
+            return keyGen.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to generate key pair", e);
+        }
+    }
+    
+    /**
+     * Encode a P-256 public key as a compressed point.
+     * 
+     * @return {@link #COMPRESSED_LENGTH} bytes
+     * @throws IllegalArgumentException if the key is not a P-256 EC key
+     */
+    public static byte[] encodePublicKey(PublicKey publicKey) {
+        if (!(publicKey instanceof ECPublicKey) || !P256.matches(((ECPublicKey) publicKey).getParams())) {
+            throw new IllegalArgumentException("Not a P-256 public key");
+        }
+        ECPoint w = ((ECPublicKey) publicKey).getW();
+        byte[] encoded = new byte[COMPRESSED_LENGTH];
+        encoded[0] = (byte) (w.getAffineY().testBit(0) ? 0x03 : 0x02);
+        writeFieldElement(w.getAffineX(), encoded, 1);
+        return encoded;
+    }
+    
+    /**
+     * Decode an EC public key.
+     * 
+     * P-256 keys are decoded directly from the point, as a compressed point,
+     * an uncompressed point (0x04, x, y) or X.509 with the standard P-256
+     * header, without going through the provider's X.509 parser. Any other
+     * X.509-encoded EC key is handed to the provider as before.
+     * 
+     * @throws GeneralSecurityException if the bytes are not a valid EC public key
+     */
+    public static PublicKey decodePublicKey(byte[] encoded) throws GeneralSecurityException {
+        ECPoint point = decodePoint(encoded);
+        if (point == null) {
+            return KeyFactory.getInstance(ALGORITHM).generatePublic(new X509EncodedKeySpec(encoded));
+        }
+        return KeyFactory.getInstance(ALGORITHM).generatePublic(new ECPublicKeySpec(point, P256.SPEC));
+    }
+    
+    /**
+     * Convert any encoding {@link #decodePublicKey} accepts to a compressed point.
+     * 
+     * Compressed input is returned as a copy, and uncompressed points (raw or
+     * in the standard X.509 form) are compressed by taking the parity of y,
+     * so neither costs any curve arithmetic. This checks the format only:
+     * whether the point is on the curve is checked when the key is decoded.
+     * 
+     * @throws GeneralSecurityException if the bytes are not a P-256 public key
+     */
+    public static byte[] compress(byte[] encoded) throws GeneralSecurityException {
+        if (isCompressed(encoded)) {
+            return encoded.clone();
+        }
+        int offset = uncompressedPointOffset(encoded);
+        if (offset < 0) {
+            return encodePublicKey(decodePublicKey(encoded));
+        }
+        byte[] compressed = Arrays.copyOfRange(encoded, offset, offset + COMPRESSED_LENGTH);
+        compressed[0] = (byte) ((encoded[offset + UNCOMPRESSED_LENGTH - 1] & 1) == 0 ? 0x02 : 0x03);
+        return compressed;
+    }
+    
+    /**
+     * The point of a P-256 key in one of the fast-path encodings, or null for anything else.
+     */
+    private static ECPoint decodePoint(byte[] encoded) throws InvalidKeySpecException {
+        if (isCompressed(encoded)) {
+            BigInteger x = readFieldElement(encoded, 1);
+            return new ECPoint(x, P256.decompress(x, encoded[0] == 0x03));
+        }
+        int offset = uncompressedPointOffset(encoded);
+        if (offset < 0) {
+            return null;
+        }
+        BigInteger x = readFieldElement(encoded, offset + 1);
+        BigInteger y = readFieldElement(encoded, offset + 1 + P256.FIELD_BYTES);
+        if (!P256.isOnCurve(x, y)) {
+            throw new InvalidKeySpecException("Not a P-256 point");
+        }
+        return new ECPoint(x, y);
+    }
+    
+    private static boolean isCompressed(byte[] encoded) {
+        return encoded.length == COMPRESSED_LENGTH && (encoded[0] == 0x02 || encoded[0] == 0x03);
+    }
+    
+    /**
+     * Where the 0x04 of an uncompressed point starts (raw or after the X.509 header), or -1.
+     */
+    private static int uncompressedPointOffset(byte[] encoded) {
+        int offset;
+        if (encoded.length == UNCOMPRESSED_LENGTH) {
+            offset = 0;
+        } else if (encoded.length == SPKI_HEADER.length + UNCOMPRESSED_LENGTH
+                && Arrays.equals(Arrays.copyOf(encoded, SPKI_HEADER.length), SPKI_HEADER)) {
+            offset = SPKI_HEADER.length;
+        } else {
+            return -1;
+        }
+        return encoded[offset] == 0x04 ? offset : -1;
+    }
+    
+    private static BigInteger readFieldElement(byte[] source, int offset) {
+        return new BigInteger(1, Arrays.copyOfRange(source, offset, offset + P256.FIELD_BYTES));
+    }
+    
+    private static void writeFieldElement(BigInteger value, byte[] target, int offset) {
+        byte[] bytes = value.toByteArray(); // big-endian, possibly with a leading sign byte
+        int length = Math.min(bytes.length, P256.FIELD_BYTES);
+        System.arraycopy(bytes, bytes.length - length, target, offset + P256.FIELD_BYTES - length, length);
+    }
+    
+    /**
+     * Decode a PKCS#8-encoded EC private key.
+     * 
+     * @throws GeneralSecurityException if the bytes are not a valid EC private key
+     */
+    public static PrivateKey decodePrivateKey(byte[] encoded) throws GeneralSecurityException {
+        return KeyFactory.getInstance(ALGORITHM).generatePrivate(new PKCS8EncodedKeySpec(encoded));
+    }
+}
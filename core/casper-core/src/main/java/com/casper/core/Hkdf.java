@@ -0,0 +1,94 @@
+package com.casper.core;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * HKDF (HMAC-based Key Derivation Function), HKDF-SHA256 as specified in RFC 5869.
+ * 
+ * Used in CASPER to derive the passkey encryption key from a detection secret.
+ * 
+ * HKDF(ikm, salt, info) = Expand(Extract(salt, ikm), info, length)
+ * 
+ * Mac instances are cached per thread: Mac.getInstance() is a provider lookup,
+ * which costs more than the two HMACs of a 32-byte derivation.
+ */
+public final class Hkdf {
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    
+    /** SHA-256 output length in bytes. */
+    public static final int HASH_LENGTH = 32;
+    
+    private static final ThreadLocal<Mac> MAC = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                return Mac.getInstance(HMAC_SHA256);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(HMAC_SHA256 + " not available", e);
+            }
+        }
+    };
+    
+    private Hkdf() {
+    }
+    
+    /**
+     * Derive a key using HKDF-SHA256.
+     * 
+     * @param ikm Input Key Material (the secret)
+     * @param salt Salt value (null or empty means a zero-filled salt)
+     * @param info Context/application specific information (may be null)
+     * @param length Desired output length in bytes, at most 255 * 32
+     * @return Derived key bytes
+     */
+    public static byte[] derive(byte[] ikm, byte[] salt, byte[] info, int length) {
+        if (length < 0 || length > 255 * HASH_LENGTH) {
+            throw new IllegalArgumentException("Length exceeds maximum allowed");
+        }
+        try {
+            Mac mac = MAC.get();
+            byte[] prk = extract(mac, ikm, salt);
+            return expand(mac, prk, info, length);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HKDF derivation failed", e);
+        }
+    }
+    
+    /**
+     * Extract phase: pseudo-random key (PRK) = HMAC(salt, ikm).
+     */
+    private static byte[] extract(Mac mac, byte[] ikm, byte[] salt) throws GeneralSecurityException {
+        if (salt == null || salt.length == 0) {
+            salt = new byte[HASH_LENGTH];
+        }
+        mac.init(new SecretKeySpec(salt, HMAC_SHA256));
+        return mac.doFinal(ikm);
+    }
+    
+    /**
+     * Expand phase: T(i) = HMAC(PRK, T(i-1) | info | i), output = T(1) | T(2) | ...
+     */
+    private static byte[] expand(Mac mac, byte[] prk, byte[] info, int length) throws GeneralSecurityException {
+        mac.init(new SecretKeySpec(prk, HMAC_SHA256));
+        
+        byte[] output = new byte[length];
+        byte[] t = new byte[0];
+        int offset = 0;
+        for (int i = 1; offset < length; i++) {
+            mac.update(t);
+            if (info != null) {
+                mac.update(info);
+            }
+            mac.update((byte) i);
+            t = mac.doFinal();
+            
+            int copyLength = Math.min(HASH_LENGTH, length - offset);
+            System.arraycopy(t, 0, output, offset, copyLength);
+            offset += copyLength;
+        }
+        return output;
+    }
+}
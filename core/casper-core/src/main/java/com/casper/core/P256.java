@@ -0,0 +1,83 @@
+package com.casper.core;
+
+import java.math.BigInteger;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.EllipticCurve;
+import java.security.spec.InvalidKeySpecException;
+
+/**
+ * The P-256 (secp256r1) curve: y^2 = x^3 - 3x + b over GF(p), from SEC 2.
+ * 
+ * Only what decoding public keys needs: the domain parameters, the curve
+ * equation and point decompression. Curve arithmetic is left to the JCA.
+ */
+final class P256 {
+    static final BigInteger P = hex("ffffffff00000001000000000000000000000000ffffffffffffffffffffffff");
+    static final BigInteger A = P.subtract(BigInteger.valueOf(3));
+    static final BigInteger B = hex("5ac635d8aa3a93e7b3ebbd55769886bc651d06b0cc53b0f63bce3c3e27d2604b");
+    static final BigInteger GX = hex("6b17d1f2e12c4247f8bce6e563a440f277037d812deb33a0f4a13945d898c296");
+    static final BigInteger GY = hex("4fe342e2fe1a7f9b8ee7eb4a7c0f9e162bce33576b315ececbb6406837bf51f5");
+    static final BigInteger N = hex("ffffffff00000000ffffffffffffffffbce6faada7179e84f3b9cac2fc632551");
+    
+    /** Size of a field element (a coordinate) in bytes. */
+    static final int FIELD_BYTES = 32;
+    
+    static final ECParameterSpec SPEC = new ECParameterSpec(
+            new EllipticCurve(new ECFieldFp(P), A, B), new ECPoint(GX, GY), N, 1);
+    
+    // p = 3 (mod 4), so a square root of v is v^((p + 1) / 4)
+    private static final BigInteger SQRT_EXPONENT = P.add(BigInteger.ONE).shiftRight(2);
+    
+    private P256() {
+    }
+    
+    /**
+     * @return true if (x, y) is a point on the curve (not the point at infinity)
+     */
+    static boolean isOnCurve(BigInteger x, BigInteger y) {
+        return isFieldElement(x) && isFieldElement(y) && y.multiply(y).mod(P).equals(rightHandSide(x));
+    }
+    
+    /**
+     * Recover y from x and the parity of y.
+     * 
+     * @throws InvalidKeySpecException if no point on the curve has this x
+     */
+    static BigInteger decompress(BigInteger x, boolean yOdd) throws InvalidKeySpecException {
+        if (!isFieldElement(x)) {
+            throw new InvalidKeySpecException("x is not a P-256 field element");
+        }
+        BigInteger rhs = rightHandSide(x);
+        BigInteger y = rhs.modPow(SQRT_EXPONENT, P);
+        if (!y.multiply(y).mod(P).equals(rhs)) {
+            throw new InvalidKeySpecException("Not a P-256 point");
+        }
+        return y.testBit(0) == yOdd ? y : P.subtract(y).mod(P);
+    }
+    
+    /**
+     * @return true if spec describes this curve (with any provider's representation)
+     */
+    static boolean matches(ECParameterSpec spec) {
+        EllipticCurve curve = spec.getCurve();
+        return curve.getField() instanceof ECFieldFp
+                && ((ECFieldFp) curve.getField()).getP().equals(P)
+                && curve.getA().equals(A)
+                && curve.getB().equals(B)
+                && spec.getOrder().equals(N);
+    }
+    
+    private static BigInteger rightHandSide(BigInteger x) {
+        return x.multiply(x).add(A).multiply(x).add(B).mod(P);
+    }
+    
+    private static boolean isFieldElement(BigInteger v) {
+        return v.signum() >= 0 && v.compareTo(P) < 0;
+    }
+    
+    private static BigInteger hex(String value) {
+        return new BigInteger(value, 16);
+    }
+}
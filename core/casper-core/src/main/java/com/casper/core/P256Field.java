@@ -0,0 +1,222 @@
+package com.casper.core;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic in GF(p) for P-256, on eight 32-bit little-endian words.
+ * 
+ * Elements are kept in Montgomery form (a·2^256 mod p) so multiplication
+ * needs no division: the reduction uses the shape of p, whose low 96 bits
+ * are all ones (so -p^-1 = 1 mod 2^32) and whose other words are 0, 1 or
+ * all ones. Every function writes its result to the first argument, which
+ * may be the same array as an input. Nothing here is constant time; it is
+ * meant for verification, where all inputs are public.
+ */
+final class P256Field {
+    static final int WORDS = 8;
+    
+    private static final long M = 0xffffffffL;
+    private static final int[] P = toWords(P256.P);
+    private static final int[] R2 = toWords(BigInteger.ONE.shiftLeft(512).mod(P256.P));
+    private static final BigInteger P_MINUS_2 = P256.P.subtract(BigInteger.valueOf(2));
+    
+    /** 1 in Montgomery form. */
+    static final int[] ONE = toWords(BigInteger.ONE.shiftLeft(256).mod(P256.P));
+    
+    private P256Field() {
+    }
+    
+    /**
+     * r = a·b·2^-256 mod p (Montgomery multiplication, CIOS).
+     */
+    static void mul(int[] r, int[] a, int[] b) {
+        long b0 = b[0] & M, b1 = b[1] & M, b2 = b[2] & M, b3 = b[3] & M;
+        long b4 = b[4] & M, b5 = b[5] & M, b6 = b[6] & M, b7 = b[7] & M;
+        long t0 = 0, t1 = 0, t2 = 0, t3 = 0, t4 = 0, t5 = 0, t6 = 0, t7 = 0, t8 = 0;
+        for (int i = 0; i < WORDS; i++) {
+            // t += a[i]·b; each step fits in 64 unsigned bits
+            long ai = a[i] & M;
+            long s = t0 + ai * b0;
+            t0 = s & M;
+            s = t1 + ai * b1 + (s >>> 32);
+            t1 = s & M;
+            s = t2 + ai * b2 + (s >>> 32);
+            t2 = s & M;
+            s = t3 + ai * b3 + (s >>> 32);
+            t3 = s & M;
+            s = t4 + ai * b4 + (s >>> 32);
+            t4 = s & M;
+            s = t5 + ai * b5 + (s >>> 32);
+            t5 = s & M;
+            s = t6 + ai * b6 + (s >>> 32);
+            t6 = s & M;
+            s = t7 + ai * b7 + (s >>> 32);
+            t7 = s & M;
+            s = t8 + (s >>> 32);
+            t8 = s & M;
+            long t9 = s >>> 32;
+            
+            // t = (t + m·p) / 2^32 with m = t0. p's words are, from the bottom,
+            // ffffffff ffffffff ffffffff 0 0 0 1 ffffffff: m·ffffffff + m = m·2^32,
+            // so the first three words just shift down with a carry of m.
+            long m = t0;
+            t0 = t1;
+            t1 = t2;
+            s = t3 + m;
+            t2 = s & M;
+            s = t4 + (s >>> 32);
+            t3 = s & M;
+            s = t5 + (s >>> 32);
+            t4 = s & M;
+            s = t6 + m + (s >>> 32);
+            t5 = s & M;
+            s = t7 + m * M + (s >>> 32);
+            t6 = s & M;
+            s = t8 + (s >>> 32);
+            t7 = s & M;
+            t8 = t9 + (s >>> 32);
+        }
+        r[0] = (int) t0;
+        r[1] = (int) t1;
+        r[2] = (int) t2;
+        r[3] = (int) t3;
+        r[4] = (int) t4;
+        r[5] = (int) t5;
+        r[6] = (int) t6;
+        r[7] = (int) t7;
+        // The result is below 2p
+        if (t8 != 0 || !lessThanP(r)) {
+            subtractP(r);
+        }
+    }
+    
+    static void sqr(int[] r, int[] a) {
+        mul(r, a, a);
+    }
+    
+    /**
+     * r = a + b mod p
+     */
+    static void add(int[] r, int[] a, int[] b) {
+        long carry = 0;
+        for (int i = 0; i < WORDS; i++) {
+            carry += (a[i] & M) + (b[i] & M);
+            r[i] = (int) carry;
+            carry >>>= 32;
+        }
+        if (carry != 0 || !lessThanP(r)) {
+            subtractP(r);
+        }
+    }
+    
+    /**
+     * r = a - b mod p
+     */
+    static void sub(int[] r, int[] a, int[] b) {
+        long borrow = 0;
+        for (int i = 0; i < WORDS; i++) {
+            borrow += (a[i] & M) - (b[i] & M);
+            r[i] = (int) borrow;
+            borrow >>= 32;
+        }
+        if (borrow != 0) {
+            long carry = 0;
+            for (int i = 0; i < WORDS; i++) {
+                carry += (r[i] & M) + (P[i] & M);
+                r[i] = (int) carry;
+                carry >>>= 32;
+            }
+        }
+    }
+    
+    /**
+     * r = a^-1 mod p (Fermat: a^(p-2)); a must not be 0.
+     */
+    static void invert(int[] r, int[] a) {
+        int[] result = ONE.clone();
+        int[] base = a.clone();
+        for (int bit = P_MINUS_2.bitLength() - 1; bit >= 0; bit--) {
+            sqr(result, result);
+            if (P_MINUS_2.testBit(bit)) {
+                mul(result, result, base);
+            }
+        }
+        System.arraycopy(result, 0, r, 0, WORDS);
+    }
+    
+    static boolean isZero(int[] a) {
+        int bits = 0;
+        for (int i = 0; i < WORDS; i++) {
+            bits |= a[i];
+        }
+        return bits == 0;
+    }
+    
+    static boolean equal(int[] a, int[] b) {
+        for (int i = 0; i < WORDS; i++) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * Montgomery form of v, which must be in [0, p).
+     */
+    static int[] fromBigInteger(BigInteger v) {
+        int[] r = toWords(v);
+        mul(r, r, R2);
+        return r;
+    }
+    
+    /**
+     * Value of a Montgomery-form element.
+     */
+    static BigInteger toBigInteger(int[] a) {
+        int[] one = new int[WORDS];
+        one[0] = 1;
+        int[] r = new int[WORDS];
+        mul(r, a, one);
+        return fromWords(r);
+    }
+    
+    /**
+     * Eight little-endian words of v, which must be in [0, 2^256).
+     */
+    static int[] toWords(BigInteger v) {
+        int[] words = new int[WORDS];
+        for (int i = 0; i < WORDS; i++) {
+            words[i] = v.shiftRight(32 * i).intValue();
+        }
+        return words;
+    }
+    
+    static BigInteger fromWords(int[] words) {
+        BigInteger v = BigInteger.ZERO;
+        for (int i = WORDS - 1; i >= 0; i--) {
+            v = v.shiftLeft(32).or(BigInteger.valueOf(words[i] & M));
+        }
+        return v;
+    }
+    
+    private static boolean lessThanP(int[] a) {
+        for (int i = WORDS - 1; i >= 0; i--) {
+            long ai = a[i] & M;
+            long pi = P[i] & M;
+            if (ai != pi) {
+                return ai < pi;
+            }
+        }
+        return false;
+    }
+    
+    private static void subtractP(int[] r) {
+        long borrow = 0;
+        for (int i = 0; i < WORDS; i++) {
+            borrow += (r[i] & M) - (P[i] & M);
+            r[i] = (int) borrow;
+            borrow >>= 32;
+        }
+    }
+}
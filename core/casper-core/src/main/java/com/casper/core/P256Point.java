@@ -0,0 +1,144 @@
+package com.casper.core;
+
+import java.util.Arrays;
+
+/**
+ * A mutable P-256 point in Jacobian coordinates (x = X/Z^2, y = Y/Z^3), with
+ * field elements in {@link P256Field}'s Montgomery form. Z = 0 is the point
+ * at infinity.
+ * 
+ * Formulas are from the Explicit-Formulas Database: dbl-2001-b for doubling
+ * (a = -3) and madd-2007-bl for adding an affine point. Each instance keeps
+ * its own temporaries, so it must not be shared between threads.
+ */
+final class P256Point {
+    final int[] x = new int[P256Field.WORDS];
+    final int[] y = new int[P256Field.WORDS];
+    final int[] z = new int[P256Field.WORDS];
+    
+    private final int[] t0 = new int[P256Field.WORDS];
+    private final int[] t1 = new int[P256Field.WORDS];
+    private final int[] t2 = new int[P256Field.WORDS];
+    private final int[] t3 = new int[P256Field.WORDS];
+    private final int[] t4 = new int[P256Field.WORDS];
+    private final int[] t5 = new int[P256Field.WORDS];
+    
+    /**
+     * The point at infinity.
+     */
+    P256Point() {
+    }
+    
+    boolean isInfinity() {
+        return P256Field.isZero(z);
+    }
+    
+    void setInfinity() {
+        Arrays.fill(x, 0);
+        Arrays.fill(y, 0);
+        Arrays.fill(z, 0);
+    }
+    
+    /**
+     * Set to the affine point stored at points[offset..offset + 16) (x then y).
+     */
+    void setAffine(int[] points, int offset) {
+        System.arraycopy(points, offset, x, 0, P256Field.WORDS);
+        System.arraycopy(points, offset + P256Field.WORDS, y, 0, P256Field.WORDS);
+        System.arraycopy(P256Field.ONE, 0, z, 0, P256Field.WORDS);
+    }
+    
+    /**
+     * this = 2·this. Infinity stays infinity (Z3 works out to 0), and no
+     * P-256 point has y = 0, so there are no other special cases.
+     */
+    void twice() {
+        int[] delta = t0, gamma = t1, beta = t2, alpha = t3;
+        P256Field.sqr(delta, z);
+        P256Field.sqr(gamma, y);
+        P256Field.mul(beta, x, gamma);
+        // alpha = 3·(X - delta)·(X + delta)
+        P256Field.sub(t4, x, delta);
+        P256Field.add(t5, x, delta);
+        P256Field.mul(alpha, t4, t5);
+        P256Field.add(t4, alpha, alpha);
+        P256Field.add(alpha, t4, alpha);
+        // Z3 = (Y + Z)^2 - gamma - delta
+        P256Field.add(t4, y, z);
+        P256Field.sqr(z, t4);
+        P256Field.sub(z, z, gamma);
+        P256Field.sub(z, z, delta);
+        // X3 = alpha^2 - 8·beta
+        P256Field.add(beta, beta, beta);
+        P256Field.add(beta, beta, beta); // 4·beta
+        P256Field.add(t4, beta, beta);
+        P256Field.sqr(x, alpha);
+        P256Field.sub(x, x, t4);
+        // Y3 = alpha·(4·beta - X3) - 8·gamma^2
+        P256Field.sub(beta, beta, x);
+        P256Field.mul(y, alpha, beta);
+        P256Field.sqr(gamma, gamma);
+        P256Field.add(gamma, gamma, gamma);
+        P256Field.add(gamma, gamma, gamma);
+        P256Field.add(gamma, gamma, gamma);
+        P256Field.sub(y, y, gamma);
+    }
+    
+    /**
+     * this = this + the affine point stored at points[offset..offset + 16).
+     */
+    void addAffine(int[] points, int offset) {
+        if (isInfinity()) {
+            setAffine(points, offset);
+            return;
+        }
+        int[] z1z1 = t0, u2 = t1, s2 = t2, h = t3, r = t4;
+        P256Field.sqr(z1z1, z);
+        mulAt(u2, points, offset, z1z1);
+        mulAt(s2, points, offset + P256Field.WORDS, z);
+        P256Field.mul(s2, s2, z1z1);
+        P256Field.sub(h, u2, x);
+        P256Field.sub(r, s2, y);
+        if (P256Field.isZero(h)) {
+            if (P256Field.isZero(r)) {
+                twice(); // the same point
+            } else {
+                setInfinity(); // its negation
+            }
+            return;
+        }
+        P256Field.add(r, r, r);
+        // Z3 = (Z1 + H)^2 - Z1Z1 - HH
+        int[] hh = u2;
+        P256Field.sqr(hh, h);
+        P256Field.add(z, z, h);
+        P256Field.sqr(z, z);
+        P256Field.sub(z, z, z1z1);
+        P256Field.sub(z, z, hh);
+        // I = 4·HH, J = H·I, V = X1·I
+        int[] i = z1z1, j = s2, v = t5;
+        P256Field.add(i, hh, hh);
+        P256Field.add(i, i, i);
+        P256Field.mul(j, h, i);
+        P256Field.mul(v, x, i);
+        // X3 = r^2 - J - 2·V
+        P256Field.sqr(x, r);
+        P256Field.sub(x, x, j);
+        P256Field.sub(x, x, v);
+        P256Field.sub(x, x, v);
+        // Y3 = r·(V - X3) - 2·Y1·J
+        P256Field.mul(j, j, y);
+        P256Field.add(j, j, j);
+        P256Field.sub(v, v, x);
+        P256Field.mul(y, r, v);
+        P256Field.sub(y, y, j);
+    }
+    
+    /**
+     * r = points[offset..offset + 8)·b
+     */
+    private void mulAt(int[] r, int[] points, int offset, int[] b) {
+        System.arraycopy(points, offset, t5, 0, P256Field.WORDS);
+        P256Field.mul(r, t5, b);
+    }
+}
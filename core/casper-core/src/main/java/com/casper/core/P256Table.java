@@ -0,0 +1,269 @@
+package com.casper.core;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECPoint;
+
+/**
+ * A P-256 public key with precomputed multiples, for verifying many
+ * SHA256withECDSA signatures made with the same key.
+ * 
+ * Verification computes u1·G + u2·Q. With the JCA that is two 256-bit
+ * scalar multiplications, each about 256 doublings and 128 additions. Here
+ * both use the comb method with 8 teeth: the 255 combinations of
+ * 2^(32i)·Q (i = 0..7) are computed once per key, after which a scalar
+ * multiplication is 32 doublings and up to 32 additions, and the two share
+ * the doublings. The table for G is built once per JVM.
+ * 
+ * A table takes about 16 KB and costs about as much to build as a JCA
+ * verification, so it only pays for keys that are seen again; callers
+ * decide which keys to keep one for.
+ * 
+ * {@link #verify} accepts the same signatures as {@link Signatures#verify},
+ * and it is safe to call from several threads.
+ */
+public final class P256Table {
+    private static final int TEETH = 8;
+    private static final int SPACING = 256 / TEETH;
+    private static final int ENTRIES = (1 << TEETH) - 1;
+    private static final int POINT_WORDS = 2 * P256Field.WORDS;
+    
+    private static final BigInteger N_MINUS_2 = P256.N.subtract(BigInteger.valueOf(2));
+    private static final int[] G_TABLE = build(P256.GX, P256.GY);
+    
+    private final int[] entries;
+    
+    private P256Table(int[] entries) {
+        this.entries = entries;
+    }
+    
+    /**
+     * Precompute the table for a public key.
+     * 
+     * @throws IllegalArgumentException if publicKey is not a P-256 key
+     */
+    public static P256Table of(PublicKey publicKey) {
+        if (!(publicKey instanceof ECPublicKey) || !P256.matches(((ECPublicKey) publicKey).getParams())) {
+            throw new IllegalArgumentException("Not a P-256 public key");
+        }
+        ECPoint w = ((ECPublicKey) publicKey).getW();
+        if (!P256.isOnCurve(w.getAffineX(), w.getAffineY())) {
+            throw new IllegalArgumentException("Public key is not on P-256");
+        }
+        return new P256Table(build(w.getAffineX(), w.getAffineY()));
+    }
+    
+    /**
+     * Memory held by the table, for sizing caches.
+     */
+    public int sizeInBytes() {
+        return entries.length * Integer.BYTES;
+    }
+    
+    /**
+     * Verify a challenge signature made with this table's key.
+     * 
+     * @return true if the signature is valid; false if it is invalid or malformed
+     */
+    public boolean verify(byte[] challenge, byte[] signatureBytes) {
+        BigInteger[] rs = decodeSignature(signatureBytes);
+        if (rs == null) {
+            return false;
+        }
+        BigInteger r = rs[0];
+        BigInteger s = rs[1];
+        if (!isScalar(r) || !isScalar(s)) {
+            return false;
+        }
+        BigInteger e;
+        try {
+            e = new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(challenge));
+        } catch (GeneralSecurityException ex) {
+            return false;
+        }
+        // n is prime, so s^-1 = s^(n-2); modInverse would do as well
+        BigInteger w = s.modPow(N_MINUS_2, P256.N);
+        int[] u1 = P256Field.toWords(e.multiply(w).mod(P256.N));
+        int[] u2 = P256Field.toWords(r.multiply(w).mod(P256.N));
+        
+        P256Point point = new P256Point();
+        for (int column = SPACING - 1; column >= 0; column--) {
+            point.twice();
+            int g = comb(u1, column);
+            if (g != 0) {
+                point.addAffine(G_TABLE, (g - 1) * POINT_WORDS);
+            }
+            int q = comb(u2, column);
+            if (q != 0) {
+                point.addAffine(entries, (q - 1) * POINT_WORDS);
+            }
+        }
+        if (point.isInfinity()) {
+            return false;
+        }
+        // x(point) mod n == r, without leaving Jacobian coordinates:
+        // x = X / Z^2 is below p, so it is r or r + n, i.e. X == r·Z^2 or (r + n)·Z^2
+        int[] zz = new int[P256Field.WORDS];
+        P256Field.sqr(zz, point.z);
+        int[] candidate = P256Field.fromBigInteger(r);
+        P256Field.mul(candidate, candidate, zz);
+        if (P256Field.equal(candidate, point.x)) {
+            return true;
+        }
+        BigInteger rPlusN = r.add(P256.N);
+        if (rPlusN.compareTo(P256.P) >= 0) {
+            return false;
+        }
+        candidate = P256Field.fromBigInteger(rPlusN);
+        P256Field.mul(candidate, candidate, zz);
+        return P256Field.equal(candidate, point.x);
+    }
+    
+    /**
+     * The comb index for one column: bit (32i + column) of k becomes bit i.
+     */
+    private static int comb(int[] k, int column) {
+        int index = 0;
+        for (int tooth = TEETH - 1; tooth >= 0; tooth--) {
+            index = (index << 1) | ((k[tooth] >>> column) & 1);
+        }
+        return index;
+    }
+    
+    /**
+     * Entry j - 1 of the table is the sum of 2^(32i)·(x, y) over the bits i
+     * set in j, in affine coordinates.
+     */
+    private static int[] build(BigInteger x, BigInteger y) {
+        // The teeth: 2^(32i)·(x, y)
+        int[] teeth = new int[TEETH * 3 * P256Field.WORDS];
+        P256Point point = new P256Point();
+        int[] affine = new int[POINT_WORDS];
+        System.arraycopy(P256Field.fromBigInteger(x), 0, affine, 0, P256Field.WORDS);
+        System.arraycopy(P256Field.fromBigInteger(y), 0, affine, P256Field.WORDS, P256Field.WORDS);
+        point.setAffine(affine, 0);
+        for (int tooth = 0; tooth < TEETH; tooth++) {
+            if (tooth > 0) {
+                for (int i = 0; i < SPACING; i++) {
+                    point.twice();
+                }
+            }
+            store(point, teeth, tooth);
+        }
+        int[] affineTeeth = normalize(teeth, TEETH);
+        
+        // Each entry is an earlier entry plus its highest tooth
+        int[] jacobian = new int[ENTRIES * 3 * P256Field.WORDS];
+        for (int j = 1; j <= ENTRIES; j++) {
+            int top = 31 - Integer.numberOfLeadingZeros(j);
+            int rest = j ^ (1 << top);
+            if (rest == 0) {
+                point.setAffine(affineTeeth, top * POINT_WORDS);
+            } else {
+                load(point, jacobian, rest - 1);
+                point.addAffine(affineTeeth, top * POINT_WORDS);
+            }
+            store(point, jacobian, j - 1);
+        }
+        return normalize(jacobian, ENTRIES);
+    }
+    
+    private static void store(P256Point point, int[] points, int index) {
+        int offset = index * 3 * P256Field.WORDS;
+        System.arraycopy(point.x, 0, points, offset, P256Field.WORDS);
+        System.arraycopy(point.y, 0, points, offset + P256Field.WORDS, P256Field.WORDS);
+        System.arraycopy(point.z, 0, points, offset + 2 * P256Field.WORDS, P256Field.WORDS);
+    }
+    
+    private static void load(P256Point point, int[] points, int index) {
+        int offset = index * 3 * P256Field.WORDS;
+        System.arraycopy(points, offset, point.x, 0, P256Field.WORDS);
+        System.arraycopy(points, offset + P256Field.WORDS, point.y, 0, P256Field.WORDS);
+        System.arraycopy(points, offset + 2 * P256Field.WORDS, point.z, 0, P256Field.WORDS);
+    }
+    
+    /**
+     * Convert count Jacobian points (X, Y, Z) to affine (x, y) with one
+     * inversion (Montgomery's trick).
+     */
+    private static int[] normalize(int[] jacobian, int count) {
+        int[][] prefix = new int[count][];
+        int[] product = P256Field.ONE.clone();
+        int[] z = new int[P256Field.WORDS];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(jacobian, (3 * i + 2) * P256Field.WORDS, z, 0, P256Field.WORDS);
+            if (P256Field.isZero(z)) {
+                // Only happens for a point of small order, which P-256 does not have
+                throw new IllegalArgumentException("Point at infinity in table");
+            }
+            prefix[i] = product.clone();
+            P256Field.mul(product, product, z);
+        }
+        int[] inverse = new int[P256Field.WORDS];
+        P256Field.invert(inverse, product);
+        
+        int[] affine = new int[count * POINT_WORDS];
+        int[] zInverse = new int[P256Field.WORDS];
+        int[] zInverse2 = new int[P256Field.WORDS];
+        int[] coordinate = new int[P256Field.WORDS];
+        for (int i = count - 1; i >= 0; i--) {
+            // inverse = 1 / (Z_0 ... Z_i), so 1 / Z_i = inverse · Z_0 ... Z_(i-1)
+            System.arraycopy(jacobian, (3 * i + 2) * P256Field.WORDS, z, 0, P256Field.WORDS);
+            P256Field.mul(zInverse, inverse, prefix[i]);
+            P256Field.mul(inverse, inverse, z);
+            
+            P256Field.sqr(zInverse2, zInverse);
+            System.arraycopy(jacobian, 3 * i * P256Field.WORDS, coordinate, 0, P256Field.WORDS);
+            P256Field.mul(coordinate, coordinate, zInverse2);
+            System.arraycopy(coordinate, 0, affine, i * POINT_WORDS, P256Field.WORDS);
+            
+            P256Field.mul(zInverse2, zInverse2, zInverse);
+            System.arraycopy(jacobian, (3 * i + 1) * P256Field.WORDS, coordinate, 0, P256Field.WORDS);
+            P256Field.mul(coordinate, coordinate, zInverse2);
+            System.arraycopy(coordinate, 0, affine, i * POINT_WORDS + P256Field.WORDS, P256Field.WORDS);
+        }
+        return affine;
+    }
+    
+    private static boolean isScalar(BigInteger v) {
+        return v.signum() > 0 && v.compareTo(P256.N) < 0;
+    }
+    
+    /**
+     * Parse a DER ECDSA-Sig-Value (SEQUENCE { INTEGER r, INTEGER s }).
+     * 
+     * Like the JCA, integers that are missing their leading zero (and so
+     * read as negative) are taken as unsigned rather than rejected.
+     * 
+     * @return {r, s}, or null if the encoding is not DER
+     */
+    private static BigInteger[] decodeSignature(byte[] der) {
+        // At most 2 + 2 · (2 + 33) bytes, so every length fits the short form
+        if (der == null || der.length < 8 || der[0] != 0x30 || (der[1] & 0xff) != der.length - 2) {
+            return null;
+        }
+        BigInteger[] rs = new BigInteger[2];
+        int offset = 2;
+        for (int i = 0; i < 2; i++) {
+            if (offset + 2 > der.length || der[offset] != 0x02) {
+                return null;
+            }
+            int length = der[offset + 1];
+            offset += 2;
+            if (length < 1 || length > P256.FIELD_BYTES + 1 || offset + length > der.length) {
+                return null;
+            }
+            if (length > 1 && (der[offset] == 0 && der[offset + 1] >= 0 || der[offset] == -1 && der[offset + 1] < 0)) {
+                return null; // redundant leading byte
+            }
+            byte[] magnitude = new byte[length];
+            System.arraycopy(der, offset, magnitude, 0, length);
+            rs[i] = new BigInteger(1, magnitude);
+            offset += length;
+        }
+        return offset == der.length ? rs : null;
+    }
+}
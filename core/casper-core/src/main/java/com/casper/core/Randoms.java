@@ -0,0 +1,35 @@
+package com.casper.core;
+
+import java.security.SecureRandom;
+
+/**
+ * Shared SecureRandom for secrets, salts and key generation.
+ * 
+ * SecureRandom is thread-safe; sharing one instance avoids re-seeding on
+ * every call.
+ */
+public final class Randoms {
+    private static final SecureRandom RANDOM = new SecureRandom();
+    
+    private Randoms() {
+    }
+    
+    /**
+     * Get the shared SecureRandom.
+     */
+    public static SecureRandom get() {
+        return RANDOM;
+    }
+    
+    /**
+     * Generate random bytes.
+     * 
+     * @param length Number of bytes to generate
+     * @return Random byte array
+     */
+    public static byte[] bytes(int length) {
+        byte[] bytes = new byte[length];
+        RANDOM.nextBytes(bytes);
+        return bytes;
+    }
+}
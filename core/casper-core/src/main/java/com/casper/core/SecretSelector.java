@@ -0,0 +1,65 @@
+package com.casper.core;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Detection secret generation and PIN-based selection of the real secret.
+ * 
+ * CASPER generates k detection secrets W; the real one is w* = W[H(PIN) mod k].
+ * The remaining k - 1 secrets are decoys: an attacker who guesses the wrong PIN
+ * decrypts the passkey under a decoy and ends up with a key in the trap set V'.
+ */
+public final class SecretSelector {
+    
+    /** Default number of detection secrets (k). */
+    public static final int DEFAULT_SECRET_COUNT = 5;
+    
+    /** Length of each detection secret in bytes (256 bits). */
+    public static final int SECRET_LENGTH = 32;
+    
+    private SecretSelector() {
+    }
+    
+    /**
+     * Generate k random detection secrets.
+     * 
+     * @param k Number of secrets
+     * @return k secrets of {@link #SECRET_LENGTH} bytes each
+     */
+    public static byte[][] generateSecrets(int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        byte[][] secrets = new byte[k][];
+        for (int i = 0; i < k; i++) {
+            secrets[i] = Randoms.bytes(SECRET_LENGTH);
+        }
+        return secrets;
+    }
+    
+    /**
+     * Select the real secret index from the PIN: H(PIN) mod k.
+     * 
+     * H is SHA-256; its first 4 bytes are read as a big-endian int.
+     * 
+     * @param pin User's PIN
+     * @param k Number of detection secrets
+     * @return Index of the real secret, in [0, k)
+     */
+    public static int selectRealSecretIndex(String pin, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k must be at least 1");
+        }
+        byte[] pinHash;
+        try {
+            pinHash = MessageDigest.getInstance("SHA-256").digest(pin.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        int hashValue = ((pinHash[0] & 0xff) << 24) | ((pinHash[1] & 0xff) << 16)
+                | ((pinHash[2] & 0xff) << 8) | (pinHash[3] & 0xff);
+        return Math.abs(hashValue % k);
+    }
+}
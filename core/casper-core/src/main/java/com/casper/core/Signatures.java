@@ -0,0 +1,46 @@
+package com.casper.core;
+
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+
+/**
+ * SHA256withECDSA challenge signing and verification.
+ */
+public final class Signatures {
+    private static final String ALGORITHM = "SHA256withECDSA";
+    
+    private Signatures() {
+    }
+    
+    /**
+     * Sign a challenge.
+     * 
+     * @param challenge Challenge bytes to sign
+     * @param privateKey Private key to sign with
+     * @return DER-encoded signature
+     */
+    public static byte[] sign(byte[] challenge, PrivateKey privateKey) throws GeneralSecurityException {
+        Signature signature = Signature.getInstance(ALGORITHM);
+        signature.initSign(privateKey, Randoms.get());
+        signature.update(challenge);
+        return signature.sign();
+    }
+    
+    /**
+     * Verify a challenge signature.
+     * 
+     * @return true if the signature is valid; false if it is invalid or malformed
+     */
+    public static boolean verify(byte[] challenge, byte[] signatureBytes, PublicKey publicKey) {
+        try {
+            Signature signature = Signature.getInstance(ALGORITHM);
+            signature.initVerify(publicKey);
+            signature.update(challenge);
+            return signature.verify(signatureBytes);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.casper.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Public key encodings: every accepted form decodes to the same key and
+ * compresses to the same bytes, and points that are not on P-256 are
+ * rejected in every form.
+ */
+class EcKeysTest {
+    
+    @Test
+    void everyEncodingRoundTrips() throws GeneralSecurityException {
+        for (int i = 0; i < 200; i++) {
+            PublicKey publicKey = EcKeys.generateKeyPair().getPublic();
+            byte[] x509 = publicKey.getEncoded();
+            byte[] raw = Arrays.copyOfRange(x509, x509.length - 65, x509.length);
+            byte[] compressed = EcKeys.encodePublicKey(publicKey);
+            
+            assertEquals(EcKeys.COMPRESSED_LENGTH, compressed.length);
+            assertArrayEquals(compressed, EcKeys.compress(x509));
+            assertArrayEquals(compressed, EcKeys.compress(raw));
+            assertArrayEquals(compressed, EcKeys.compress(compressed));
+            
+            for (byte[] encoded : new byte[][] {x509, raw, compressed}) {
+                PublicKey decoded = EcKeys.decodePublicKey(encoded);
+                assertEquals(((ECPublicKey) publicKey).getW(), ((ECPublicKey) decoded).getW());
+                assertArrayEquals(x509, decoded.getEncoded());
+            }
+        }
+    }
+    
+    @Test
+    void decodedKeyVerifiesSignatures() throws GeneralSecurityException {
+        KeyPair keyPair = EcKeys.generateKeyPair();
+        byte[] challenge = Randoms.bytes(32);
+        byte[] signature = Signatures.sign(challenge, keyPair.getPrivate());
+        PublicKey decoded = EcKeys.decodePublicKey(EcKeys.encodePublicKey(keyPair.getPublic()));
+        assertTrue(Signatures.verify(challenge, signature, decoded));
+    }
+    
+    @Test
+    void compressedPointWithoutCurvePointIsRejected() {
+        byte[] compressed = new byte[EcKeys.COMPRESSED_LENGTH];
+        compressed[0] = 0x02;
+        writeFieldElement(xWithoutPoint(), compressed, 1);
+        assertThrows(GeneralSecurityException.class, () -> EcKeys.decodePublicKey(compressed));
+    }
+    
+    @Test
+    void compressedXOutsideFieldIsRejected() {
+        byte[] compressed = new byte[EcKeys.COMPRESSED_LENGTH];
+        compressed[0] = 0x03;
+        writeFieldElement(P256.P, compressed, 1);
+        assertThrows(GeneralSecurityException.class, () -> EcKeys.decodePublicKey(compressed));
+    }
+    
+    @Test
+    void uncompressedPointOffCurveIsRejected() {
+        byte[] x509 = EcKeys.generateKeyPair().getPublic().getEncoded();
+        x509[x509.length - 1] ^= 1; // y + 1 or y - 1
+        byte[] raw = Arrays.copyOfRange(x509, x509.length - 65, x509.length);
+        assertThrows(GeneralSecurityException.class, () -> EcKeys.decodePublicKey(x509));
+        assertThrows(GeneralSecurityException.class, () -> EcKeys.decodePublicKey(raw));
+    }
+    
+    @Test
+    void compressChecksFormatOnly() {
+        // An uncompressed point whose x has no point on the curve: compress
+        // keeps x and the parity of y, and the key is rejected when decoded
+        byte[] raw = new byte[65];
+        raw[0] = 0x04;
+        writeFieldElement(xWithoutPoint(), raw, 1);
+        raw[64] = 1;
+        byte[] compressed = assertDoesNotThrow(() -> EcKeys.compress(raw));
+        assertEquals(0x03, compressed[0]);
+        assertThrows(GeneralSecurityException.class, () -> EcKeys.decodePublicKey(compressed));
+    }
+    
+    @Test
+    void malformedEncodingsAreRejected() {
+        byte[] compressed = EcKeys.encodePublicKey(EcKeys.generateKeyPair().getPublic());
+        byte[] badPrefix = compressed.clone();
+        badPrefix[0] = 0x05;
+        assertThrows(GeneralSecurityException.class, () -> EcKeys.decodePublicKey(badPrefix));
+        assertThrows(GeneralSecurityException.class, () -> EcKeys.decodePublicKey(Arrays.copyOf(compressed, 32)));
+        assertThrows(GeneralSecurityException.class, () -> EcKeys.decodePublicKey(new byte[0]));
+        assertThrows(GeneralSecurityException.class, () -> EcKeys.compress("junk".getBytes()));
+    }
+    
+    @Test
+    void otherCurvesGoThroughTheProvider() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp384r1"));
+        byte[] x509 = generator.generateKeyPair().getPublic().getEncoded();
+        PublicKey expected = KeyFactory.getInstance("EC").generatePublic(new X509EncodedKeySpec(x509));
+        assertEquals(expected, EcKeys.decodePublicKey(x509));
+        assertThrows(IllegalArgumentException.class, () -> EcKeys.compress(x509));
+    }
+    
+    /**
+     * About half of all x have no point on the curve; the smallest such x.
+     */
+    private static BigInteger xWithoutPoint() {
+        BigInteger x = BigInteger.ZERO;
+        while (hasPoint(x)) {
+            x = x.add(BigInteger.ONE);
+        }
+        return x;
+    }
+    
+    private static boolean hasPoint(BigInteger x) {
+        try {
+            P256.decompress(x, false);
+            return true;
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+    
+    private static void writeFieldElement(BigInteger value, byte[] target, int offset) {
+        byte[] bytes = value.toByteArray();
+        int length = Math.min(bytes.length, P256.FIELD_BYTES);
+        System.arraycopy(bytes, bytes.length - length, target, offset + P256.FIELD_BYTES - length, length);
+    }
+}
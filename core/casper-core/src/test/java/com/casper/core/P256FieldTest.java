@@ -0,0 +1,151 @@
+package com.casper.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link P256Field} against BigInteger arithmetic mod p, on random elements
+ * and on the values next to 0, p and the word boundaries of p, where the
+ * carries and the final reduction happen.
+ */
+class P256FieldTest {
+    
+    private static final BigInteger P = P256.P;
+    private static final BigInteger R = BigInteger.ONE.shiftLeft(256);
+    
+    @Test
+    void constantsAreMontgomeryForm() {
+        assertEquals(R.mod(P), P256Field.fromWords(P256Field.ONE));
+        assertEquals(BigInteger.ONE, P256Field.toBigInteger(P256Field.ONE));
+    }
+    
+    @Test
+    void wordsRoundTrip() {
+        for (BigInteger v : values()) {
+            assertEquals(v, P256Field.fromWords(P256Field.toWords(v)));
+            assertEquals(v, P256Field.toBigInteger(P256Field.fromBigInteger(v)));
+        }
+    }
+    
+    @Test
+    void mulMatchesBigInteger() {
+        List<BigInteger> values = values();
+        for (BigInteger a : values) {
+            for (BigInteger b : values) {
+                int[] r = new int[P256Field.WORDS];
+                P256Field.mul(r, P256Field.fromBigInteger(a), P256Field.fromBigInteger(b));
+                assertReduced(r);
+                assertEquals(a.multiply(b).mod(P), P256Field.toBigInteger(r), () -> a.toString(16) + " * " + b.toString(16));
+            }
+        }
+    }
+    
+    @Test
+    void montgomeryMulOfRawWords() {
+        // mul itself is a·b·2^-256 mod p, whatever form the inputs are in
+        for (BigInteger a : values()) {
+            int[] r = new int[P256Field.WORDS];
+            P256Field.mul(r, P256Field.toWords(a), P256Field.toWords(P.subtract(BigInteger.ONE)));
+            assertEquals(a.multiply(P.subtract(BigInteger.ONE)).multiply(R.modInverse(P)).mod(P), P256Field.fromWords(r));
+        }
+    }
+    
+    @Test
+    void sqrMatchesBigInteger() {
+        for (BigInteger a : values()) {
+            int[] r = P256Field.fromBigInteger(a);
+            // In place, as the point formulas use it
+            P256Field.sqr(r, r);
+            assertReduced(r);
+            assertEquals(a.multiply(a).mod(P), P256Field.toBigInteger(r), () -> a.toString(16));
+        }
+    }
+    
+    @Test
+    void invertMatchesBigInteger() {
+        for (BigInteger a : values()) {
+            if (a.signum() == 0) {
+                continue;
+            }
+            int[] r = new int[P256Field.WORDS];
+            P256Field.invert(r, P256Field.fromBigInteger(a));
+            assertEquals(a.modInverse(P), P256Field.toBigInteger(r), () -> a.toString(16));
+            P256Field.mul(r, r, P256Field.fromBigInteger(a));
+            assertArrayEquals(P256Field.ONE, r);
+        }
+    }
+    
+    @Test
+    void addAndSubMatchBigInteger() {
+        List<BigInteger> values = values();
+        for (BigInteger a : values) {
+            for (BigInteger b : values) {
+                int[] sum = new int[P256Field.WORDS];
+                P256Field.add(sum, P256Field.fromBigInteger(a), P256Field.fromBigInteger(b));
+                assertReduced(sum);
+                assertEquals(a.add(b).mod(P), P256Field.toBigInteger(sum));
+                
+                int[] difference = new int[P256Field.WORDS];
+                P256Field.sub(difference, P256Field.fromBigInteger(a), P256Field.fromBigInteger(b));
+                assertReduced(difference);
+                assertEquals(a.subtract(b).mod(P), P256Field.toBigInteger(difference));
+            }
+        }
+    }
+    
+    @Test
+    void reductionAroundP() {
+        BigInteger minusOne = P.subtract(BigInteger.ONE);
+        int[] r = new int[P256Field.WORDS];
+        
+        // (p - 1)^2 = 1
+        P256Field.sqr(r, P256Field.fromBigInteger(minusOne));
+        assertArrayEquals(P256Field.ONE, r);
+        
+        // (p - 1) + 1 = 0, and 0 - 1 = p - 1
+        P256Field.add(r, P256Field.fromBigInteger(minusOne), P256Field.ONE);
+        assertTrue(P256Field.isZero(r));
+        P256Field.sub(r, r, P256Field.ONE);
+        assertEquals(minusOne, P256Field.toBigInteger(r));
+        
+        // The raw words of p - 1 times R^2 come out as p - 1 again, fully reduced
+        assertArrayEquals(P256Field.toWords(minusOne), P256Field.toWords(P256Field.toBigInteger(P256Field.fromBigInteger(minusOne))));
+    }
+    
+    /**
+     * Elements next to the edges of the field and of p's words, plus random ones.
+     */
+    private static List<BigInteger> values() {
+        List<BigInteger> values = new ArrayList<>();
+        for (long small = 0; small <= 3; small++) {
+            values.add(BigInteger.valueOf(small));
+            values.add(P.subtract(BigInteger.valueOf(small + 1)));
+        }
+        for (int bits = 32; bits < 256; bits += 32) {
+            BigInteger power = BigInteger.ONE.shiftLeft(bits);
+            values.add(power.subtract(BigInteger.ONE));
+            values.add(power);
+            values.add(power.add(BigInteger.ONE));
+        }
+        values.add(BigInteger.ONE.shiftLeft(255));
+        values.add(R.subtract(P)); // 2^256 mod p
+        values.add(P.shiftRight(1));
+        Random random = new Random(256);
+        for (int i = 0; i < 40; i++) {
+            values.add(new BigInteger(256, random).mod(P));
+        }
+        return values;
+    }
+    
+    private static void assertReduced(int[] a) {
+        assertTrue(P256Field.fromWords(a).compareTo(P) < 0, "not reduced below p");
+    }
+}
@@ -0,0 +1,208 @@
+package com.casper.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link P256Table#verify} must accept exactly the signatures
+ * {@link Signatures#verify} (the JCA) accepts, so every case here is checked
+ * against both.
+ */
+class P256TableTest {
+    
+    private static final BigInteger N = P256.N;
+    
+    /**
+     * Random keys, each with a valid signature, one with a flipped bit, or
+     * one over a different message, in equal parts.
+     */
+    @Test
+    void agreesWithJcaOnRandomKeys() throws GeneralSecurityException {
+        Random random = new Random(47);
+        int valid = 0;
+        for (int i = 0; i < 6000; i++) {
+            KeyPair keyPair = EcKeys.generateKeyPair();
+            P256Table table = P256Table.of(keyPair.getPublic());
+            byte[] challenge = Randoms.bytes(1 + random.nextInt(64));
+            byte[] signature = Signatures.sign(challenge, keyPair.getPrivate());
+            switch (i % 3) {
+                case 1:
+                    int bit = random.nextInt(signature.length * 8);
+                    signature[bit / 8] ^= (byte) (1 << (bit % 8));
+                    break;
+                case 2:
+                    challenge = challenge.clone();
+                    challenge[random.nextInt(challenge.length)] ^= 1;
+                    break;
+                default:
+                    break;
+            }
+            boolean expected = Signatures.verify(challenge, signature, keyPair.getPublic());
+            assertEquals(expected, table.verify(challenge, signature), () -> "signature " + hex(signature));
+            if (expected) {
+                valid++;
+            }
+        }
+        // Every unmodified signature, and none of the others
+        assertEquals(2000, valid);
+    }
+    
+    @Test
+    void tableIsReusedAcrossSignatures() throws GeneralSecurityException {
+        KeyPair keyPair = EcKeys.generateKeyPair();
+        P256Table table = P256Table.of(keyPair.getPublic());
+        for (int i = 0; i < 200; i++) {
+            byte[] challenge = Randoms.bytes(32);
+            assertTrue(table.verify(challenge, Signatures.sign(challenge, keyPair.getPrivate())));
+        }
+        KeyPair other = EcKeys.generateKeyPair();
+        byte[] challenge = Randoms.bytes(32);
+        assertFalse(table.verify(challenge, Signatures.sign(challenge, other.getPrivate())));
+    }
+    
+    @Test
+    void highSIsAccepted() throws GeneralSecurityException {
+        // ECDSA accepts both s and n - s; neither verifier normalizes to low s
+        KeyPair keyPair = EcKeys.generateKeyPair();
+        byte[] challenge = Randoms.bytes(32);
+        BigInteger[] rs = decode(Signatures.sign(challenge, keyPair.getPrivate()));
+        byte[] flipped = der(rs[0], N.subtract(rs[1]));
+        assertAgree(true, keyPair.getPublic(), challenge, flipped);
+    }
+    
+    @Test
+    void scalarsOutsideOneToNAreRejected() throws GeneralSecurityException {
+        KeyPair keyPair = EcKeys.generateKeyPair();
+        byte[] challenge = Randoms.bytes(32);
+        BigInteger[] rs = decode(Signatures.sign(challenge, keyPair.getPrivate()));
+        BigInteger r = rs[0];
+        BigInteger s = rs[1];
+        PublicKey publicKey = keyPair.getPublic();
+        
+        assertAgree(false, publicKey, challenge, der(BigInteger.ZERO, s));
+        assertAgree(false, publicKey, challenge, der(r, BigInteger.ZERO));
+        assertAgree(false, publicKey, challenge, der(N, s));
+        assertAgree(false, publicKey, challenge, der(r, N));
+        // r + n and s + n are the same scalars mod n, but out of range
+        assertAgree(false, publicKey, challenge, der(r.add(N), s));
+        assertAgree(false, publicKey, challenge, der(r, s.add(N)));
+        assertAgree(false, publicKey, challenge, der(BigInteger.ONE.shiftLeft(256).subtract(BigInteger.ONE), s));
+    }
+    
+    @Test
+    void malformedDerIsRejected() throws GeneralSecurityException {
+        KeyPair keyPair = EcKeys.generateKeyPair();
+        byte[] challenge = Randoms.bytes(32);
+        byte[] signature = Signatures.sign(challenge, keyPair.getPrivate());
+        BigInteger[] rs = decode(signature);
+        PublicKey publicKey = keyPair.getPublic();
+        P256Table table = P256Table.of(publicKey);
+        
+        // Wrong sequence length, both ways
+        byte[] longer = signature.clone();
+        longer[1]++;
+        assertAgree(false, publicKey, challenge, longer);
+        byte[] shorter = signature.clone();
+        shorter[1]--;
+        assertAgree(false, publicKey, challenge, shorter);
+        
+        // Wrong length of r
+        byte[] badR = signature.clone();
+        badR[3]++;
+        assertAgree(false, publicKey, challenge, badR);
+        
+        // Trailing garbage, and truncated
+        assertAgree(false, publicKey, challenge, Arrays.copyOf(signature, signature.length + 1));
+        assertAgree(false, publicKey, challenge, Arrays.copyOf(signature, signature.length - 1));
+        
+        // Not a SEQUENCE, and INTEGER tags replaced
+        byte[] notSequence = signature.clone();
+        notSequence[0] = 0x31;
+        assertAgree(false, publicKey, challenge, notSequence);
+        byte[] notInteger = signature.clone();
+        notInteger[2] = 0x04;
+        assertAgree(false, publicKey, challenge, notInteger);
+        
+        // Non-minimal: a redundant leading zero on r
+        assertFalse(table.verify(challenge, der(padded(rs[0]), integer(rs[1]))));
+        assertFalse(Signatures.verify(challenge, der(padded(rs[0]), integer(rs[1])), publicKey));
+        
+        // Edge inputs
+        assertFalse(table.verify(challenge, new byte[0]));
+        assertFalse(table.verify(challenge, null));
+        assertFalse(table.verify(challenge, new byte[] {0x30, 0x06, 0x02, 0x01, 0x01, 0x02, 0x01, 0x01}));
+    }
+    
+    @Test
+    void onlyP256KeysGetATable() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp384r1"));
+        PublicKey p384 = generator.generateKeyPair().getPublic();
+        assertThrows(IllegalArgumentException.class, () -> P256Table.of(p384));
+    }
+    
+    private static void assertAgree(boolean expected, PublicKey publicKey, byte[] challenge, byte[] signature) {
+        assertEquals(expected, Signatures.verify(challenge, signature, publicKey), () -> "JCA, signature " + hex(signature));
+        assertEquals(expected, P256Table.of(publicKey).verify(challenge, signature), () -> "table, signature " + hex(signature));
+    }
+    
+    /**
+     * r and s of a well-formed signature, as produced by {@link Signatures#sign}.
+     */
+    private static BigInteger[] decode(byte[] der) {
+        int rLength = der[3];
+        BigInteger r = new BigInteger(1, Arrays.copyOfRange(der, 4, 4 + rLength));
+        int sLength = der[5 + rLength];
+        BigInteger s = new BigInteger(1, Arrays.copyOfRange(der, 6 + rLength, 6 + rLength + sLength));
+        return new BigInteger[] {r, s};
+    }
+    
+    private static byte[] der(BigInteger r, BigInteger s) {
+        return der(integer(r), integer(s));
+    }
+    
+    private static byte[] der(byte[] r, byte[] s) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x30);
+        out.write(4 + r.length + s.length);
+        out.write(0x02);
+        out.write(r.length);
+        out.write(r, 0, r.length);
+        out.write(0x02);
+        out.write(s.length);
+        out.write(s, 0, s.length);
+        return out.toByteArray();
+    }
+    
+    /**
+     * Minimal two's complement encoding, as DER requires.
+     */
+    private static byte[] integer(BigInteger v) {
+        return v.toByteArray();
+    }
+    
+    private static byte[] padded(BigInteger v) {
+        byte[] minimal = v.toByteArray();
+        byte[] padded = new byte[minimal.length + 1];
+        System.arraycopy(minimal, 0, padded, 1, minimal.length);
+        return padded;
+    }
+    
+    private static String hex(byte[] bytes) {
+        return bytes == null ? "null" : new BigInteger(1, bytes).toString(16);
+    }
+}
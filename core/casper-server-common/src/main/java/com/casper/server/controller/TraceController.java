@@ -0,0 +1,70 @@
+package com.casper.server.controller;
+
+import com.casper.server.tracing.FileSpanExporter;
+import com.casper.server.tracing.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * REST controller for looking up recent traces.
+ * 
+ * Serves the spans this service recorded for a trace as a latency waterfall.
+ * The trace ID is the one the app sent in its W3C traceparent header, so the
+ * device, PMS and RP parts of one login can be lined up side by side.
+ */
+@RestController
+@RequestMapping("/api/traces")
+@CrossOrigin(origins = "*")
+public class TraceController {
+    
+    @Autowired
+    private ObjectProvider<InMemorySpanExporter> spanExporter;
+    
+    /**
+     * Get the spans of one trace, ordered by start time.
+     * 
+     * Each span carries its offset from the first span and its duration in
+     * milliseconds. Spans are exported in batches, so a trace may take a few
+     * seconds to appear.
+     */
+    @GetMapping("/{traceId}")
+    public ResponseEntity<Map<String, Object>> getTrace(@PathVariable String traceId) {
+        Map<String, Object> response = new HashMap<>();
+        InMemorySpanExporter exporter = spanExporter.getIfAvailable();
+        if (exporter == null) {
+            response.put("success", false);
+            response.put("message", "In-memory trace exporter is disabled");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        
+        List<SpanData> spans = exporter.findTrace(traceId);
+        if (spans.isEmpty()) {
+            response.put("success", false);
+            response.put("message", "Trace not found: " + traceId);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        }
+        
+        long traceStart = spans.get(0).getStartEpochNanos();
+        List<Map<String, Object>> waterfall = new ArrayList<>(spans.size());
+        for (SpanData span : spans) {
+            Map<String, Object> record = FileSpanExporter.toRecord(span);
+            record.put("offsetMs", (span.getStartEpochNanos() - traceStart) / 1_000_000.0);
+            record.put("durationMs", (span.getEndEpochNanos() - span.getStartEpochNanos()) / 1_000_000.0);
+            waterfall.add(record);
+        }
+        
+        response.put("success", true);
+        response.put("traceId", traceId);
+        response.put("spans", waterfall);
+        return ResponseEntity.ok(response);
+    }
+}
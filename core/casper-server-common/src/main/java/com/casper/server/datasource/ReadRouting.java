@@ -0,0 +1,61 @@
+package com.casper.server.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Lets callers read from the primary when a replica's answer is not good enough.
+ * 
+ * With replicas configured (casper.replicas.urls), read-only transactions
+ * run on a replica that may lag the primary by up to
+ * casper.replicas.max-staleness-ms. A row written moments ago can therefore
+ * be missing; callers that would act on "not found" repeat the read inside
+ * {@link #onPrimary} first.
+ */
+@Component
+public class ReadRouting {
+    
+    private static final ThreadLocal<Boolean> PRIMARY = new ThreadLocal<>();
+    
+    private final boolean replicas;
+    
+    public ReadRouting(@Value("${casper.replicas.urls:}") String replicaUrls) {
+        this.replicas = !replicaUrls.isBlank();
+    }
+    
+    /**
+     * @return true if read-only transactions may run on a replica
+     */
+    public boolean hasReplicas() {
+        return replicas;
+    }
+    
+    /**
+     * Run work with every transaction it starts on the primary, read-only or not.
+     * A transaction that is already running keeps the connection it has.
+     */
+    public <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY.get();
+        PRIMARY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                PRIMARY.remove();
+            }
+        }
+    }
+    
+    /**
+     * @return true while running inside {@link #onPrimary}
+     */
+    public boolean isPrimaryRequested() {
+        return isPrimaryForced();
+    }
+    
+    static boolean isPrimaryForced() {
+        return PRIMARY.get() != null;
+    }
+}
@@ -0,0 +1,41 @@
+package com.casper.server.datasource;
+
+import javax.sql.DataSource;
+
+/**
+ * A read replica and what the last health check found out about it.
+ */
+class Replica {
+    
+    private final String name;
+    private final DataSource dataSource;
+    private volatile boolean healthy;
+    /** Age of the newest heartbeat the replica had, in ms; -1 before the first successful check. */
+    private volatile long stalenessMillis = -1;
+    
+    Replica(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+    
+    String getName() {
+        return name;
+    }
+    
+    DataSource getDataSource() {
+        return dataSource;
+    }
+    
+    boolean isHealthy() {
+        return healthy;
+    }
+    
+    long getStalenessMillis() {
+        return stalenessMillis;
+    }
+    
+    void checked(boolean healthy, long stalenessMillis) {
+        this.stalenessMillis = stalenessMillis;
+        this.healthy = healthy;
+    }
+}
@@ -0,0 +1,114 @@
+package com.casper.server.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read replicas (casper.replicas.urls, comma-separated JDBC URLs).
+ * 
+ * Writes and read-write transactions go to spring.datasource as before;
+ * read-only transactions (PMS passkey fetches; RP login key lookups, breach
+ * and attempt queries) go to a replica that is healthy and no more than
+ * casper.replicas.max-staleness-ms behind, see {@link ReplicaMonitor}.
+ * Without casper.replicas.urls none of this is set up and everything runs
+ * on spring.datasource.
+ */
+@Configuration
+@ConditionalOnProperty(name = "casper.replicas.urls")
+@EnableScheduling // for ReplicaMonitor
+public class ReplicaDataSourceConfig {
+    
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+    
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            HikariDataSource primaryDataSource,
+            DataSourceProperties properties,
+            ObjectProvider<MeterRegistry> meterRegistry,
+            @Value("${casper.replicas.urls}") String urls,
+            @Value("${casper.replicas.username:}") String username,
+            @Value("${casper.replicas.password:}") String password,
+            @Value("${casper.replicas.max-pool-size:10}") int maxPoolSize,
+            @Value("${casper.replicas.connection-timeout-ms:1000}") long connectionTimeoutMillis,
+            @Value("${casper.replicas.max-staleness-ms:5000}") long maxStalenessMillis) {
+        List<Replica> replicas = new ArrayList<>();
+        for (String url : urls.split(",")) {
+            if (url.isBlank()) {
+                continue;
+            }
+            HikariDataSource dataSource = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(username.isEmpty() ? properties.determineUsername() : username)
+                    .password(username.isEmpty() ? properties.determinePassword() : password)
+                    .build();
+            String name = "replica-" + (replicas.size() + 1);
+            dataSource.setPoolName(name);
+            dataSource.setReadOnly(true);
+            dataSource.setMaximumPoolSize(maxPoolSize);
+            // Fail fast to the primary rather than queue requests on a replica that went away
+            dataSource.setConnectionTimeout(connectionTimeoutMillis);
+            // Start even if a replica is down; the monitor keeps it out of use until it is up
+            dataSource.setInitializationFailTimeout(-1);
+            MeterRegistry registry = meterRegistry.getIfAvailable();
+            if (registry != null) {
+                dataSource.setMetricRegistry(registry);
+            }
+            replicas.add(new Replica(name, dataSource));
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, maxStalenessMillis);
+    }
+    
+    /**
+     * The DataSource JPA and everything else uses. The lazy proxy holds off
+     * taking a connection until the first statement, by which time the
+     * transaction's read-only flag is known.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+    
+    @Bean
+    public ReplicaMonitor replicaMonitor(HikariDataSource primaryDataSource,
+                                         ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new ReplicaMonitor(primaryDataSource, replicaRoutingDataSource,
+                replicaRoutingDataSource.getReplicas());
+    }
+    
+    /**
+     * Open-session-in-view keeps the Hibernate session for the whole request,
+     * and by default the session keeps its connection too, so a request
+     * whose first transaction was read-only would run its writes on the
+     * replica. Releasing after each transaction lets every transaction pick
+     * its own target.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer releaseConnectionsAfterTransaction() {
+        return hibernateProperties -> hibernateProperties.put("hibernate.connection.handling_mode",
+                "DELAYED_ACQUISITION_AND_RELEASE_AFTER_TRANSACTION");
+    }
+}
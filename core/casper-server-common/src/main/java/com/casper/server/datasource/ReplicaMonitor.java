@@ -0,0 +1,115 @@
+package com.casper.server.datasource;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Health and staleness checks for the read replicas.
+ * 
+ * Replication lag is measured with a heartbeat, which works the same for
+ * any replication mechanism: every check, the primary's replica_heartbeat
+ * row is set to the current time, and each replica is asked for its copy
+ * of the row. The replica's staleness is the age of the heartbeat it has.
+ * A replica that cannot be queried (down, no heartbeat table yet) is
+ * unhealthy. Either way {@link ReplicaRoutingDataSource} stops using it
+ * until a later check finds it healthy and fresh again.
+ * 
+ * Staleness is only as precise as the check interval, so keep
+ * casper.replicas.max-staleness-ms well above casper.replicas.check-ms.
+ * With several instances sharing a primary, each writes the heartbeat;
+ * their clocks should agree to well within the staleness limit.
+ * 
+ * Meters:
+ * - casper.replica.staleness{replica}  seconds behind the primary (NaN until first checked)
+ * - casper.replica.usable{replica}     1 while reads are sent to the replica
+ * - casper.replica.reads{target}       read-only transactions run on a replica, or on the primary (primary_fallback) for lack of one
+ */
+public class ReplicaMonitor implements MeterBinder {
+    
+    private static final Logger log = LoggerFactory.getLogger(ReplicaMonitor.class);
+    
+    private final JdbcTemplate primary;
+    private final ReplicaRoutingDataSource routing;
+    private final List<Replica> replicas;
+    private volatile boolean tableReady;
+    
+    ReplicaMonitor(DataSource primary, ReplicaRoutingDataSource routing, List<Replica> replicas) {
+        this.primary = new JdbcTemplate(primary);
+        this.routing = routing;
+        this.replicas = replicas;
+    }
+    
+    @Scheduled(fixedDelayString = "${casper.replicas.check-ms:1000}")
+    public void check() {
+        try {
+            beat();
+        } catch (RuntimeException e) {
+            log.warn("Failed to write replica heartbeat: {}", e.toString());
+        }
+        for (Replica replica : replicas) {
+            check(replica);
+        }
+    }
+    
+    private void beat() {
+        if (!tableReady) {
+            primary.execute("CREATE TABLE IF NOT EXISTS replica_heartbeat (id INT PRIMARY KEY, beat_at BIGINT NOT NULL)");
+            tableReady = true;
+        }
+        long now = System.currentTimeMillis();
+        if (primary.update("UPDATE replica_heartbeat SET beat_at = ? WHERE id = 1", now) == 0) {
+            primary.update("INSERT INTO replica_heartbeat (id, beat_at) VALUES (1, ?)", now);
+        }
+    }
+    
+    private void check(Replica replica) {
+        boolean wasUsable = routing.isUsable(replica);
+        try {
+            JdbcTemplate jdbcTemplate = new JdbcTemplate(replica.getDataSource());
+            jdbcTemplate.setQueryTimeout(1);
+            Long beatAt = jdbcTemplate.queryForObject("SELECT beat_at FROM replica_heartbeat WHERE id = 1", Long.class);
+            replica.checked(true, Math.max(0, System.currentTimeMillis() - beatAt));
+        } catch (RuntimeException e) {
+            replica.checked(false, replica.getStalenessMillis());
+            if (wasUsable) {
+                log.warn("Replica {} failed its health check, reading from the primary instead: {}",
+                        replica.getName(), e.toString());
+            }
+            return;
+        }
+        boolean usable = routing.isUsable(replica);
+        if (usable && !wasUsable) {
+            log.info("Replica {} in use ({} ms behind)", replica.getName(), replica.getStalenessMillis());
+        } else if (!usable && wasUsable) {
+            log.warn("Replica {} is {} ms behind, reading from the primary instead",
+                    replica.getName(), replica.getStalenessMillis());
+        }
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (Replica replica : replicas) {
+            Gauge.builder("casper.replica.staleness", replica,
+                            r -> r.getStalenessMillis() < 0 ? Double.NaN : r.getStalenessMillis() / 1000.0)
+                    .tag("replica", replica.getName())
+                    .baseUnit("seconds")
+                    .register(registry);
+            Gauge.builder("casper.replica.usable", replica, r -> routing.isUsable(r) ? 1 : 0)
+                    .tag("replica", replica.getName())
+                    .register(registry);
+        }
+        FunctionCounter.builder("casper.replica.reads", routing, ReplicaRoutingDataSource::getReplicaReads)
+                .tag("target", "replica").register(registry);
+        FunctionCounter.builder("casper.replica.reads", routing, ReplicaRoutingDataSource::getPrimaryFallbacks)
+                .tag("target", "primary_fallback").register(registry);
+    }
+}
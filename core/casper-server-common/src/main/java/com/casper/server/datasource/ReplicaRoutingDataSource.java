@@ -0,0 +1,90 @@
+package com.casper.server.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sends read-only transactions to a replica and everything else to the primary.
+ * 
+ * A replica is used only while its last health check succeeded and it was
+ * at most maxStalenessMillis behind; otherwise, or with no replica usable,
+ * reads fall back to the primary. Usable replicas take turns.
+ * 
+ * The choice is made when a connection is first used, so this must sit
+ * behind a LazyConnectionDataSourceProxy (connections are otherwise taken
+ * before the transaction's read-only flag is set), and Hibernate must
+ * release connections after each transaction rather than hold them for
+ * the request. {@link ReplicaDataSourceConfig} sets up both.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    
+    private static final String PRIMARY = "primary";
+    
+    private final List<Replica> replicas;
+    private final long maxStalenessMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong primaryFallbacks = new AtomicLong();
+    
+    ReplicaRoutingDataSource(DataSource primary, List<Replica> replicas, long maxStalenessMillis) {
+        this.replicas = replicas;
+        this.maxStalenessMillis = maxStalenessMillis;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Replica replica : replicas) {
+            targets.put(replica.getName(), replica.getDataSource());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly() || ReadRouting.isPrimaryForced()) {
+            return PRIMARY;
+        }
+        List<Replica> usable = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (isUsable(replica)) {
+                usable.add(replica);
+            }
+        }
+        if (usable.isEmpty()) {
+            primaryFallbacks.incrementAndGet();
+            return PRIMARY;
+        }
+        replicaReads.incrementAndGet();
+        return usable.get(Math.floorMod(next.getAndIncrement(), usable.size())).getName();
+    }
+    
+    List<Replica> getReplicas() {
+        return replicas;
+    }
+    
+    boolean isUsable(Replica replica) {
+        return replica.isHealthy() && replica.getStalenessMillis() <= maxStalenessMillis;
+    }
+    
+    /**
+     * Read-only transactions that ran on a replica.
+     */
+    long getReplicaReads() {
+        return replicaReads.get();
+    }
+    
+    /**
+     * Read-only transactions that ran on the primary because no replica was usable.
+     */
+    long getPrimaryFallbacks() {
+        return primaryFallbacks.get();
+    }
+}
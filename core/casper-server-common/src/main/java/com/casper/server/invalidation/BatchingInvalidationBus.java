@@ -0,0 +1,198 @@
+package com.casper.server.invalidation;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Batching and coalescing shared by the bus transports.
+ * 
+ * Published events wait up to casper.invalidation.batch-ms, or until
+ * casper.invalidation.max-batch distinct events are pending, and are then
+ * handed to local listeners and to the transport as one batch. A (userId,
+ * rpId) published several times within a window is sent once, so a burst of
+ * re-registrations costs one message per changed pair, not one per write.
+ * 
+ * A single thread flushes batches and delivers received ones, which keeps
+ * listeners from running concurrently and keeps transport I/O off request
+ * threads.
+ * 
+ * Meters:
+ * - casper.invalidation.events{type} published, coalesced (dropped as duplicates) and received
+ * - casper.invalidation.batches       batches sent
+ */
+public abstract class BatchingInvalidationBus implements InvalidationBus, MeterBinder, AutoCloseable {
+    
+    private static final Logger log = LoggerFactory.getLogger(BatchingInvalidationBus.class);
+    
+    private final String nodeId = UUID.randomUUID().toString();
+    private final long batchMillis;
+    private final int maxBatch;
+    private final ScheduledExecutorService executor;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    
+    /** Guarded by this. */
+    private Set<InvalidationEvent> pending = new LinkedHashSet<>();
+    private boolean flushScheduled;
+    
+    protected BatchingInvalidationBus(String threadName, long batchMillis, int maxBatch) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("casper.invalidation.max-batch must be at least 1");
+        }
+        this.batchMillis = batchMillis;
+        this.maxBatch = maxBatch;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    @Override
+    public void publish(String userId, String rpId) {
+        InvalidationEvent event = new InvalidationEvent(userId, rpId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(event);
+                }
+            });
+        } else {
+            enqueue(event);
+        }
+    }
+    
+    @Override
+    public void subscribe(Listener listener) {
+        listeners.add(listener);
+    }
+    
+    /**
+     * Identifies this instance on the wire, so transports can drop their own messages.
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+    
+    /**
+     * Send a batch to the other instances. Called on the bus thread only.
+     */
+    protected abstract void send(List<InvalidationEvent> batch);
+    
+    /**
+     * Hand a batch from another instance to the listeners, on the bus thread.
+     */
+    protected void receive(List<InvalidationEvent> batch) {
+        received.addAndGet(batch.size());
+        execute(() -> deliver(batch, true));
+    }
+    
+    private void enqueue(InvalidationEvent event) {
+        published.incrementAndGet();
+        boolean schedule;
+        boolean full;
+        synchronized (this) {
+            if (!pending.add(event)) {
+                coalesced.incrementAndGet();
+                return;
+            }
+            schedule = !flushScheduled;
+            flushScheduled = true;
+            full = pending.size() >= maxBatch;
+        }
+        try {
+            if (full) {
+                executor.execute(this::flush);
+            } else if (schedule) {
+                executor.schedule(this::flush, batchMillis, TimeUnit.MILLISECONDS);
+            }
+        } catch (RejectedExecutionException e) {
+            // Shutting down; other instances fall back on their cache expiry
+        }
+    }
+    
+    private void flush() {
+        List<InvalidationEvent> batch;
+        synchronized (this) {
+            flushScheduled = false;
+            if (pending.isEmpty()) {
+                return;
+            }
+            batch = new ArrayList<>(pending);
+            pending = new LinkedHashSet<>();
+        }
+        deliver(batch, false);
+        try {
+            send(batch);
+            batches.incrementAndGet();
+        } catch (RuntimeException e) {
+            log.warn("Failed to send {} invalidations: {}", batch.size(), e.toString());
+        }
+    }
+    
+    private void deliver(List<InvalidationEvent> batch, boolean remote) {
+        for (Listener listener : listeners) {
+            try {
+                listener.onInvalidate(batch, remote);
+            } catch (RuntimeException e) {
+                log.warn("Invalidation listener failed", e);
+            }
+        }
+    }
+    
+    private void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+        }
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("casper.invalidation.events", published, AtomicLong::get)
+                .tag("type", "published").register(registry);
+        FunctionCounter.builder("casper.invalidation.events", coalesced, AtomicLong::get)
+                .tag("type", "coalesced").register(registry);
+        FunctionCounter.builder("casper.invalidation.events", received, AtomicLong::get)
+                .tag("type", "received").register(registry);
+        FunctionCounter.builder("casper.invalidation.batches", batches, AtomicLong::get)
+                .register(registry);
+    }
+    
+    /**
+     * Send what is pending, then stop the bus thread.
+     */
+    @Override
+    public void close() {
+        execute(this::flush);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.casper.server.invalidation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Invalidation bus within one JVM.
+ * 
+ * Every bus on the same channel receives the others' events, so several
+ * application contexts started in one JVM (tests, or a local multi-instance
+ * setup) behave like separate instances. A single instance needs nothing
+ * else: its own listeners are always called. This is the default transport.
+ */
+public class InJvmInvalidationBus extends BatchingInvalidationBus {
+    
+    private static final Map<String, Set<InJvmInvalidationBus>> CHANNELS = new ConcurrentHashMap<>();
+    
+    private final String channel;
+    
+    public InJvmInvalidationBus(String channel, long batchMillis, int maxBatch) {
+        super("invalidation-jvm", batchMillis, maxBatch);
+        this.channel = channel;
+        CHANNELS.computeIfAbsent(channel, name -> ConcurrentHashMap.newKeySet()).add(this);
+    }
+    
+    @Override
+    protected void send(List<InvalidationEvent> batch) {
+        for (InJvmInvalidationBus member : CHANNELS.getOrDefault(channel, Set.of())) {
+            if (member != this) {
+                member.receive(batch);
+            }
+        }
+    }
+    
+    @Override
+    public void close() {
+        super.close();
+        CHANNELS.computeIfPresent(channel, (name, members) -> {
+            members.remove(this);
+            return members.isEmpty() ? null : members;
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package com.casper.server.invalidation;
+
+import java.util.List;
+
+/**
+ * Tells every instance of the service when a user's passkeys for an RP change.
+ * 
+ * In-process caches of passkey data subscribe and drop or re-read what they
+ * hold for the changed (userId, rpId). Events carry no passkey data, only
+ * which pair changed. Delivery is asynchronous and at most once: an instance
+ * that is down or unreachable misses the event, so caches still need their
+ * own expiry or periodic refresh to bound staleness.
+ * 
+ * Implementations are chosen by casper.invalidation.transport, see
+ * {@link InvalidationConfig}.
+ */
+public interface InvalidationBus {
+    
+    /**
+     * Announce that the passkeys of a user at an RP changed.
+     * 
+     * Inside a transaction, the event is sent once the transaction commits
+     * (and never if it rolls back), so no instance re-reads before the
+     * change is visible.
+     * 
+     * @param userId User identifier
+     * @param rpId Relying Party identifier
+     */
+    void publish(String userId, String rpId);
+    
+    /**
+     * Register a listener for changes made by this and every other instance.
+     */
+    void subscribe(Listener listener);
+    
+    /**
+     * Receives batches of changes.
+     */
+    interface Listener {
+        
+        /**
+         * Called on a bus thread, never concurrently with itself for the same bus.
+         * 
+         * @param events Changed (userId, rpId) pairs, without duplicates
+         * @param remote true if the changes were made by another instance
+         */
+        void onInvalidate(List<InvalidationEvent> events, boolean remote);
+    }
+}
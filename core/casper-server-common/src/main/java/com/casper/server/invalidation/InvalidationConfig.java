@@ -0,0 +1,45 @@
+package com.casper.server.invalidation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Selects the invalidation bus transport (casper.invalidation.transport).
+ * 
+ * - jvm (default): buses in this JVM on the same casper.invalidation.channel
+ *   (spring.application.name unless set, so PMS and RP events stay apart)
+ * - socket: TCP to the instances in casper.invalidation.socket.peers
+ */
+@Configuration
+public class InvalidationConfig {
+    
+    @Bean
+    @ConditionalOnProperty(name = "casper.invalidation.transport", havingValue = "jvm", matchIfMissing = true)
+    public InJvmInvalidationBus inJvmInvalidationBus(
+            @Value("${casper.invalidation.channel:${spring.application.name}}") String channel,
+            @Value("${casper.invalidation.batch-ms:20}") long batchMillis,
+            @Value("${casper.invalidation.max-batch:500}") int maxBatch) {
+        return new InJvmInvalidationBus(channel, batchMillis, maxBatch);
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "casper.invalidation.transport", havingValue = "socket")
+    public SocketInvalidationBus socketInvalidationBus(
+            @Value("${casper.invalidation.socket.bind-address:127.0.0.1}") String bindAddress,
+            @Value("${casper.invalidation.socket.port}") int port,
+            @Value("${casper.invalidation.socket.peers:}") String peers,
+            @Value("${casper.invalidation.batch-ms:20}") long batchMillis,
+            @Value("${casper.invalidation.max-batch:500}") int maxBatch) throws IOException {
+        List<String> peerAddresses = Arrays.stream(peers.split(","))
+                .map(String::trim)
+                .filter(peer -> !peer.isEmpty())
+                .toList();
+        return new SocketInvalidationBus(bindAddress, port, peerAddresses, batchMillis, maxBatch);
+    }
+}
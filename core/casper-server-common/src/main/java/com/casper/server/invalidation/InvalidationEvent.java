@@ -0,0 +1,49 @@
+package com.casper.server.invalidation;
+
+import java.util.Objects;
+
+/**
+ * A change to the passkeys of one user at one RP.
+ * 
+ * Equal events are interchangeable, which is what lets the bus coalesce them.
+ */
+public final class InvalidationEvent {
+    
+    private final String userId;
+    private final String rpId;
+    
+    public InvalidationEvent(String userId, String rpId) {
+        this.userId = Objects.requireNonNull(userId, "userId");
+        this.rpId = Objects.requireNonNull(rpId, "rpId");
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    public String getRpId() {
+        return rpId;
+    }
+    
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof InvalidationEvent)) {
+            return false;
+        }
+        InvalidationEvent other = (InvalidationEvent) o;
+        return userId.equals(other.userId) && rpId.equals(other.rpId);
+    }
+    
+    @Override
+    public int hashCode() {
+        return 31 * userId.hashCode() + rpId.hashCode();
+    }
+    
+    @Override
+    public String toString() {
+        return userId + "@" + rpId;
+    }
+}
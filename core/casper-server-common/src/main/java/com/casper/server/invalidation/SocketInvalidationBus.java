@@ -0,0 +1,284 @@
+package com.casper.server.invalidation;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Invalidation bus over TCP between instances on the same host (or a trusted network).
+ * 
+ * Each instance listens on casper.invalidation.socket.port and keeps one
+ * connection to every address in casper.invalidation.socket.peers. The same
+ * peer list can be given to every instance: the instance's own address is
+ * skipped. A batch is one frame:
+ * 
+ *   UTF origin node id, int count, count x (UTF userId, UTF rpId)
+ * 
+ * A peer that cannot be reached is retried at most once a second, and
+ * batches sent meanwhile are not queued for it. The listener binds to the
+ * loopback address by default; frames are not authenticated, so only expose
+ * it on a trusted network (a forged frame can only cause extra re-reads).
+ */
+public class SocketInvalidationBus extends BatchingInvalidationBus {
+    
+    private static final Logger log = LoggerFactory.getLogger(SocketInvalidationBus.class);
+    
+    private static final int CONNECT_TIMEOUT_MS = 500;
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+    /** Upper bound on events in a received frame, to reject garbage before allocating. */
+    private static final int MAX_FRAME_EVENTS = 1_000_000;
+    
+    private final ServerSocket serverSocket;
+    private final List<Peer> peers = new ArrayList<>();
+    private final Set<Socket> accepted = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed;
+    
+    /**
+     * A peer instance and this instance's connection to it. Only used on the
+     * bus thread, apart from {@link #closedByPeer}.
+     */
+    private static class Peer {
+        final InetSocketAddress address;
+        Socket socket;
+        DataOutputStream out;
+        long retryAt;
+        boolean down;
+        /** Set when the peer closes the connection (e.g. it stopped), so the next batch reconnects first. */
+        volatile boolean closedByPeer;
+        
+        Peer(InetSocketAddress address) {
+            this.address = address;
+        }
+        
+        void disconnect() {
+            try {
+                if (socket != null) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                // Already broken
+            }
+            socket = null;
+            out = null;
+        }
+    }
+    
+    /**
+     * @param bindAddress Address to accept peer connections on
+     * @param port Port to accept peer connections on
+     * @param peerAddresses host:port of every instance; this instance's own is ignored
+     */
+    public SocketInvalidationBus(String bindAddress, int port, List<String> peerAddresses,
+                                 long batchMillis, int maxBatch) throws IOException {
+        super("invalidation-socket", batchMillis, maxBatch);
+        this.serverSocket = new ServerSocket();
+        serverSocket.setReuseAddress(true);
+        serverSocket.bind(new InetSocketAddress(bindAddress, port));
+        
+        for (String peerAddress : peerAddresses) {
+            int colon = peerAddress.lastIndexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Invalidation peer must be host:port: " + peerAddress);
+            }
+            InetSocketAddress address = new InetSocketAddress(peerAddress.substring(0, colon).trim(),
+                    Integer.parseInt(peerAddress.substring(colon + 1).trim()));
+            if (!isSelf(address)) {
+                peers.add(new Peer(address));
+            }
+        }
+        
+        Thread acceptor = new Thread(this::accept, "invalidation-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        log.info("Invalidation bus listening on {}, peers {}", serverSocket.getLocalSocketAddress(),
+                peers.stream().map(peer -> peer.address.toString()).toList());
+    }
+    
+    private boolean isSelf(InetSocketAddress address) {
+        if (address.getPort() != serverSocket.getLocalPort() || address.isUnresolved()) {
+            return false;
+        }
+        return address.getAddress().isLoopbackAddress()
+                || address.getAddress().equals(serverSocket.getInetAddress());
+    }
+    
+    @Override
+    protected void send(List<InvalidationEvent> batch) {
+        byte[] frame = encode(batch);
+        for (Peer peer : peers) {
+            // A connection the peer closed (e.g. it restarted) only fails on write; retry once on a new one
+            if (!write(peer, frame)) {
+                write(peer, frame);
+            }
+        }
+    }
+    
+    private byte[] encode(List<InvalidationEvent> batch) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + batch.size() * 64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(getNodeId());
+            out.writeInt(batch.size());
+            for (InvalidationEvent event : batch) {
+                out.writeUTF(event.getUserId());
+                out.writeUTF(event.getRpId());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * @return false if an existing connection failed, true otherwise (including when the peer is skipped)
+     */
+    private boolean write(Peer peer, byte[] frame) {
+        if (peer.closedByPeer) {
+            // Writing to it could still succeed locally, silently losing the batch
+            peer.disconnect();
+            peer.closedByPeer = false;
+        }
+        boolean reused = peer.out != null;
+        if (!reused) {
+            if (peer.down && System.nanoTime() - peer.retryAt < 0) {
+                return true;
+            }
+            try {
+                Socket socket = new Socket();
+                socket.setTcpNoDelay(true);
+                socket.connect(peer.address, CONNECT_TIMEOUT_MS);
+                peer.socket = socket;
+                peer.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                peer.closedByPeer = false;
+                watch(peer, socket);
+                if (peer.down) {
+                    log.info("Reconnected to invalidation peer {}", peer.address);
+                }
+                peer.down = false;
+            } catch (IOException e) {
+                markDown(peer, e);
+                return true;
+            }
+        }
+        try {
+            peer.out.write(frame);
+            peer.out.flush();
+            return true;
+        } catch (IOException e) {
+            peer.disconnect();
+            if (!reused) {
+                markDown(peer, e);
+            }
+            return !reused;
+        }
+    }
+    
+    /**
+     * Peers never write back, so a read returning means the connection is gone.
+     */
+    private void watch(Peer peer, Socket socket) {
+        Thread watcher = new Thread(() -> {
+            try {
+                while (socket.getInputStream().read() >= 0) {
+                    // Nothing is expected
+                }
+            } catch (IOException e) {
+                // Closed, either end
+            }
+            if (!closed && peer.socket == socket) {
+                peer.closedByPeer = true;
+            }
+        }, "invalidation-watch-" + peer.address.getPort());
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+    
+    private void markDown(Peer peer, IOException e) {
+        peer.disconnect();
+        peer.retryAt = System.nanoTime() + RETRY_NANOS;
+        if (!peer.down) {
+            log.warn("Invalidation peer {} unreachable, its caches may be stale until it reconnects: {}",
+                    peer.address, e.toString());
+            peer.down = true;
+        }
+    }
+    
+    private void accept() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                accepted.add(socket);
+                Thread reader = new Thread(() -> read(socket), "invalidation-read-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    log.warn("Invalidation bus accept failed: {}", e.toString());
+                }
+            }
+        }
+    }
+    
+    private void read(Socket socket) {
+        try (socket; DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (true) {
+                String origin = in.readUTF();
+                int count = in.readInt();
+                if (count < 0 || count > MAX_FRAME_EVENTS) {
+                    throw new IOException("Malformed invalidation frame (" + count + " events)");
+                }
+                List<InvalidationEvent> batch = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    batch.add(new InvalidationEvent(in.readUTF(), in.readUTF()));
+                }
+                if (!origin.equals(getNodeId())) {
+                    receive(batch);
+                }
+            }
+        } catch (EOFException e) {
+            // Peer disconnected
+        } catch (IOException e) {
+            if (!closed) {
+                log.warn("Dropped invalidation connection from {}: {}", socket.getRemoteSocketAddress(), e.toString());
+            }
+        } finally {
+            accepted.remove(socket);
+        }
+    }
+    
+    @Override
+    public void close() {
+        super.close();
+        closed = true;
+        try {
+            serverSocket.close();
+        } catch (IOException e) {
+            // Closing anyway
+        }
+        for (Socket socket : accepted) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+        for (Peer peer : peers) {
+            peer.disconnect();
+        }
+    }
+}
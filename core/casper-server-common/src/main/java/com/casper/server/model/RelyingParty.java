@@ -0,0 +1,42 @@
+package com.casper.server.model;
+
+import jakarta.persistence.*;
+
+/**
+ * Entity class for relying parties.
+ * 
+ * Each distinct rpId (the RP's URL as sent by the app) is stored once here.
+ * Rows that belong to an RP refer to it by this row's integer id (their
+ * rp_key column): encrypted passkeys in the PMS; passkeys, registrations,
+ * login attempts and rollups in the RP. That keeps those rows and their
+ * indexes small.
+ * See {@link com.casper.server.service.RelyingPartyService}.
+ */
+@Entity
+@Table(name = "rps")
+public class RelyingParty {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+    
+    @Column(name = "rp_id", nullable = false, unique = true)
+    private String rpId;
+    
+    // Getters and Setters
+    public Integer getId() {
+        return id;
+    }
+    
+    public void setId(Integer id) {
+        this.id = id;
+    }
+    
+    public String getRpId() {
+        return rpId;
+    }
+    
+    public void setRpId(String rpId) {
+        this.rpId = rpId;
+    }
+}
@@ -0,0 +1,19 @@
+package com.casper.server.repository;
+
+import com.casper.server.model.RelyingParty;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository interface for RelyingParty entities.
+ */
+@Repository
+public interface RelyingPartyRepository extends JpaRepository<RelyingParty, Integer> {
+    
+    /**
+     * Find an RP by its rpId.
+     */
+    Optional<RelyingParty> findByRpId(String rpId);
+}
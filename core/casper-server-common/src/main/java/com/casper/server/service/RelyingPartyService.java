@@ -0,0 +1,144 @@
+package com.casper.server.service;
+
+import com.casper.server.model.RelyingParty;
+import com.casper.server.repository.RelyingPartyRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns rpIds as integer keys (the id of their rps row).
+ * 
+ * The API still speaks rpId; everything stored uses the key. An RP's key
+ * never changes once assigned, so both directions are cached for the life of
+ * the process and a lookup only reaches the database the first time an RP is
+ * seen. There are few RPs compared to users, so the cache is not bounded.
+ * 
+ * Controllers intern rpIds before calling into transactional services, and
+ * services that store rows take the key. Inserting a new RP from inside a
+ * caller's transaction would need a second pool connection while the first
+ * is held, which deadlocks the pool once every connection is in that state.
+ */
+@Service
+public class RelyingPartyService {
+    
+    @Autowired
+    private RelyingPartyRepository relyingPartyRepository;
+    
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, Integer> keys = new ConcurrentHashMap<>();
+    private final Map<Integer, String> rpIds = new ConcurrentHashMap<>();
+    
+    public RelyingPartyService(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    /**
+     * Load every known RP, so lookups after startup are served from memory.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void preload() {
+        relyingPartyRepository.findAll().forEach(this::remember);
+    }
+    
+    /**
+     * Get the key for an rpId, assigning one if the RP is new.
+     * 
+     * A new RP is inserted and committed before the key is returned, so the
+     * key stays valid whatever happens to the caller's later writes. If
+     * another thread or instance inserts the same rpId first, its key is used.
+     * 
+     * @param rpId Relying Party identifier
+     * @return Key to store in rp_key columns
+     * @throws IllegalStateException if the RP is new and a transaction is active
+     */
+    public int intern(String rpId) {
+        Integer key = lookup(rpId);
+        if (key != null) {
+            return key;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("New RPs must be interned outside a transaction");
+        }
+        // One insert per new RP in this process; only other instances can race it
+        synchronized (this) {
+            key = keys.get(rpId);
+            if (key != null) {
+                return key;
+            }
+            RelyingParty rp;
+            try {
+                rp = transactionTemplate.execute(status -> {
+                    RelyingParty created = new RelyingParty();
+                    created.setRpId(rpId);
+                    return relyingPartyRepository.saveAndFlush(created);
+                });
+            } catch (DataIntegrityViolationException e) {
+                rp = relyingPartyRepository.findByRpId(rpId).orElseThrow(() -> e);
+            }
+            remember(rp);
+            return rp.getId();
+        }
+    }
+    
+    /**
+     * Get the key for an rpId without assigning one.
+     * 
+     * @param rpId Relying Party identifier
+     * @return Key, or null if nothing has been stored for this RP yet
+     */
+    public Integer lookup(String rpId) {
+        if (rpId == null) {
+            throw new IllegalArgumentException("rpId is required");
+        }
+        Integer key = keys.get(rpId);
+        if (key == null) {
+            RelyingParty rp = relyingPartyRepository.findByRpId(rpId).orElse(null);
+            if (rp == null) {
+                return null;
+            }
+            remember(rp);
+            key = rp.getId();
+        }
+        return key;
+    }
+    
+    /**
+     * Get the key for an rpId if it is cached, without touching the database.
+     * 
+     * @return Key, or null if the RP has not been seen by this process yet
+     */
+    public Integer cached(String rpId) {
+        return rpId == null ? null : keys.get(rpId);
+    }
+    
+    /**
+     * Get the rpId for a key read from the database.
+     * 
+     * @param key Value of an rp_key column
+     * @return Relying Party identifier
+     */
+    public String rpId(int key) {
+        String rpId = rpIds.get(key);
+        if (rpId == null) {
+            RelyingParty rp = relyingPartyRepository.findById(key)
+                    .orElseThrow(() -> new IllegalStateException("Unknown rp key: " + key));
+            remember(rp);
+            rpId = rp.getRpId();
+        }
+        return rpId;
+    }
+    
+    private void remember(RelyingParty rp) {
+        keys.put(rp.getRpId(), rp.getId());
+        rpIds.put(rp.getId(), rp.getRpId());
+    }
+}
@@ -0,0 +1,126 @@
+package com.casper.server.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.orm.jpa.EntityManagerFactoryDependsOnPostProcessor;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Converts tables that still store an RP's URL in an rp_id column to the
+ * interned rp_key column (see {@link RelyingPartyService}) at startup.
+ * 
+ * For each table that has rp_id, in one transaction per table:
+ * 1. Creates rps if missing and inserts the table's distinct rp_id values
+ * 2. Adds rp_key as nullable, fills it in from rps, then sets it NOT NULL
+ *    and adds its foreign key to rps
+ * 3. Runs the table's rebuild statements (dropping views that read rp_id,
+ *    recreating the composite indexes and unique constraints on rp_key)
+ * 4. Drops rp_id
+ * 
+ * Runs before Hibernate's schema update, which could not add a NOT NULL
+ * rp_key to a table that has rows. Every statement can be repeated, and once
+ * no table has rp_id left, a run is a single metadata query per table. A new
+ * database has none of the tables yet, so nothing happens there.
+ */
+public class RpKeyMigration {
+    
+    private static final Logger log = LoggerFactory.getLogger(RpKeyMigration.class);
+    
+    /**
+     * A table to migrate.
+     * 
+     * @param name Table name
+     * @param rebuild Statements run once rp_key is filled in and before rp_id
+     *                is dropped; each must be safe to repeat
+     */
+    public record Table(String name, List<String> rebuild) {
+        
+        public Table(String name, String... rebuild) {
+            this(name, List.of(rebuild));
+        }
+    }
+    
+    public RpKeyMigration(DataSource dataSource, Table... tables) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            for (Table table : tables) {
+                if (!hasColumn(connection, table.name(), "rp_id")) {
+                    continue;
+                }
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    migrate(connection, table);
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+            }
+        }
+    }
+    
+    private static void migrate(Connection connection, Table table) throws SQLException {
+        String name = table.name();
+        List<String> sql = new ArrayList<>();
+        sql.add("CREATE TABLE IF NOT EXISTS rps ("
+                + "id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, "
+                + "rp_id VARCHAR(255) NOT NULL UNIQUE)");
+        sql.add("INSERT INTO rps (rp_id) SELECT DISTINCT t.rp_id FROM " + name + " t "
+                + "WHERE NOT EXISTS (SELECT 1 FROM rps r WHERE r.rp_id = t.rp_id)");
+        sql.add("ALTER TABLE " + name + " ADD COLUMN IF NOT EXISTS rp_key INTEGER");
+        sql.add("UPDATE " + name + " t SET rp_key = (SELECT r.id FROM rps r WHERE r.rp_id = t.rp_id) "
+                + "WHERE rp_key IS NULL");
+        sql.add("ALTER TABLE " + name + " ALTER COLUMN rp_key SET NOT NULL");
+        sql.add("ALTER TABLE " + name + " DROP CONSTRAINT IF EXISTS " + name + "_rp_key_fkey");
+        sql.add("ALTER TABLE " + name + " ADD CONSTRAINT " + name + "_rp_key_fkey "
+                + "FOREIGN KEY (rp_key) REFERENCES rps(id)");
+        sql.addAll(table.rebuild());
+        sql.add("ALTER TABLE " + name + " DROP COLUMN IF EXISTS rp_id");
+        
+        long rows;
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM " + name)) {
+                result.next();
+                rows = result.getLong(1);
+            }
+            for (String s : sql) {
+                statement.execute(s);
+            }
+        }
+        log.info("Moved {} rows of {} from rp_id to rp_key", rows, name);
+    }
+    
+    private static boolean hasColumn(Connection connection, String table, String column) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM information_schema.columns "
+                + "WHERE LOWER(table_name) = ? AND LOWER(column_name) = ? AND table_schema = CURRENT_SCHEMA")) {
+            statement.setString(1, table);
+            statement.setString(2, column);
+            try (ResultSet result = statement.executeQuery()) {
+                return result.next() && result.getLong(1) > 0;
+            }
+        }
+    }
+    
+    /**
+     * Makes the entityManagerFactory (and so Hibernate's schema update) wait
+     * for the migration.
+     */
+    @Configuration(proxyBeanMethods = false)
+    static class JpaDependency extends EntityManagerFactoryDependsOnPostProcessor {
+        
+        JpaDependency() {
+            super(RpKeyMigration.class);
+        }
+    }
+}
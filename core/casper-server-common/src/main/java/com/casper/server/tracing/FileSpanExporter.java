@@ -0,0 +1,81 @@
+package com.casper.server.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Span exporter that appends finished spans to a file, one JSON object per line.
+ * 
+ * Lines use the same fields as the device's trace file, so the files from the
+ * app, PMS and RP can be concatenated and grouped by traceId to rebuild a
+ * full login waterfall.
+ */
+public class FileSpanExporter implements SpanExporter {
+    
+    private static final AttributeKey<String> SERVICE_NAME = AttributeKey.stringKey("service.name");
+    
+    private final Path path;
+    private final ObjectMapper objectMapper;
+    
+    public FileSpanExporter(Path path, ObjectMapper objectMapper) {
+        this.path = path;
+        this.objectMapper = objectMapper;
+    }
+    
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> batch) {
+        try (BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (SpanData span : batch) {
+                writer.write(objectMapper.writeValueAsString(toRecord(span)));
+                writer.newLine();
+            }
+            return CompletableResultCode.ofSuccess();
+        } catch (IOException e) {
+            return CompletableResultCode.ofFailure();
+        }
+    }
+    
+    /**
+     * Convert a span to the flat record written to trace files and returned by the trace endpoint.
+     */
+    public static Map<String, Object> toRecord(SpanData span) {
+        Map<String, Object> record = new LinkedHashMap<>();
+        record.put("traceId", span.getTraceId());
+        record.put("spanId", span.getSpanId());
+        record.put("parentSpanId", span.getParentSpanContext().isValid()
+                ? span.getParentSpanId() : null);
+        record.put("name", span.getName());
+        record.put("service", span.getResource().getAttribute(SERVICE_NAME));
+        record.put("startEpochNanos", span.getStartEpochNanos());
+        record.put("endEpochNanos", span.getEndEpochNanos());
+        
+        Map<String, String> attributes = new LinkedHashMap<>();
+        span.getAttributes().forEach((key, value) -> attributes.put(key.getKey(), String.valueOf(value)));
+        record.put("attributes", attributes);
+        return record;
+    }
+    
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+    
+    @Override
+    public CompletableResultCode shutdown() {
+        return CompletableResultCode.ofSuccess();
+    }
+}
@@ -0,0 +1,68 @@
+package com.casper.server.tracing;
+
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Span exporter that keeps the most recent finished spans in memory.
+ * 
+ * Backs GET /api/traces/{traceId}, so a single login can be looked up right
+ * after it happened without running a tracing backend. Only the last
+ * {@code capacity} spans are kept; older ones are dropped.
+ */
+public class InMemorySpanExporter implements SpanExporter {
+    
+    private final int capacity;
+    private final Deque<SpanData> spans = new ArrayDeque<>();
+    
+    public InMemorySpanExporter(int capacity) {
+        this.capacity = capacity;
+    }
+    
+    @Override
+    public synchronized CompletableResultCode export(Collection<SpanData> batch) {
+        for (SpanData span : batch) {
+            if (spans.size() >= capacity) {
+                spans.pollFirst();
+            }
+            spans.addLast(span);
+        }
+        return CompletableResultCode.ofSuccess();
+    }
+    
+    /**
+     * Get the retained spans of one trace, ordered by start time.
+     * 
+     * @param traceId 32-hex-digit W3C trace ID
+     * @return Spans of the trace (empty if none are retained)
+     */
+    public synchronized List<SpanData> findTrace(String traceId) {
+        List<SpanData> trace = new ArrayList<>();
+        for (SpanData span : spans) {
+            if (span.getTraceId().equals(traceId)) {
+                trace.add(span);
+            }
+        }
+        trace.sort(Comparator.comparingLong(SpanData::getStartEpochNanos));
+        return trace;
+    }
+    
+    @Override
+    public CompletableResultCode flush() {
+        return CompletableResultCode.ofSuccess();
+    }
+    
+    @Override
+    public synchronized CompletableResultCode shutdown() {
+        spans.clear();
+        return CompletableResultCode.ofSuccess();
+    }
+}
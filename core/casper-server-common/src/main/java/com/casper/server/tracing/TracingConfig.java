@@ -0,0 +1,36 @@
+package com.casper.server.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Paths;
+
+/**
+ * Local span exporters.
+ * 
+ * Spring Boot hands every SpanExporter bean to the OpenTelemetry SDK, so
+ * exporters are plugged in by declaring beans: the in-memory exporter is on
+ * by default (casper.tracing.memory.enabled), and the file exporter is added
+ * when casper.tracing.file.path is set. An OTLP or Zipkin exporter can be
+ * added the same way without touching the instrumentation.
+ */
+@Configuration
+public class TracingConfig {
+    
+    @Bean
+    @ConditionalOnProperty(name = "casper.tracing.memory.enabled", havingValue = "true", matchIfMissing = true)
+    public InMemorySpanExporter inMemorySpanExporter(
+            @Value("${casper.tracing.memory.capacity:10000}") int capacity) {
+        return new InMemorySpanExporter(capacity);
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "casper.tracing.file.path")
+    public FileSpanExporter fileSpanExporter(@Value("${casper.tracing.file.path}") String path,
+                                             ObjectMapper objectMapper) {
+        return new FileSpanExporter(Paths.get(path), objectMapper);
+    }
+}
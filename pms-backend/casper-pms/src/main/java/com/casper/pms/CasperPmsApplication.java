@@ -1,7 +1,9 @@
 package com.casper.pms;
 
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
 
 /**
  * CASPER Passkey Management Service (PMS) Application
@@ -14,8 +16,14 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * - Detection secrets (W)
  * - Random value (z)
  * - Public key (for reference)
+ * 
+ * Components shared with the RP (com.casper.server, in core/casper-server-common)
+ * are picked up by the same component scan, and their entities and
+ * repositories by JPA's.
  */
-@SpringBootApplication
+@AutoConfigurationPackage(basePackages = {"com.casper.pms", "com.casper.server"})
+@SpringBootApplication(scanBasePackages = {"com.casper.pms", "com.casper.server"})
+@ImportRuntimeHints(CasperRuntimeHints.class)
 public class CasperPmsApplication {
     public static void main(String[] args) {
         SpringApplication.run(CasperPmsApplication.class, args);
@@ -0,0 +1,24 @@
+package com.casper.pms;
+
+import com.casper.pms.model.EncryptedPasskey;
+import com.casper.server.model.RelyingParty;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection hints for AOT processing and native images.
+ * 
+ * Spring AOT discovers most of what the PMS needs from the bean definitions;
+ * Hibernate still reads and writes entity fields and calls lifecycle
+ * callbacks reflectively at request time.
+ */
+public class CasperRuntimeHints implements RuntimeHintsRegistrar {
+    
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> entity : new Class<?>[] {EncryptedPasskey.class, RelyingParty.class}) {
+            hints.reflection().registerType(entity, MemberCategory.values());
+        }
+    }
+}
@@ -22,7 +22,10 @@ public class HealthController {
         response.put("message", "Service is running");
         response.put("endpoints", Map.of(
             "uploadPasskey", "POST /api/passkeys",
-            "fetchPasskey", "GET /api/passkeys/{userId}/{rpId}",
+            "uploadPasskeys", "POST /api/passkeys/batch",
+            "fetchPasskey", "GET /api/passkeys/{userId}?rpId={rpId}",
+            "deletePasskey", "DELETE /api/passkeys/{userId}?rpId={rpId}",
+            "trace", "GET /api/traces/{traceId}",
             "h2Console", "GET /h2-console"
         ));
         return ResponseEntity.ok(response);
@@ -1,16 +1,27 @@
 package com.casper.pms.controller;
 
 import com.casper.pms.model.EncryptedPasskey;
+import com.casper.pms.service.PasskeyNotFoundException;
 import com.casper.pms.service.PasskeyService;
+import com.casper.server.datasource.ReadRouting;
+import com.casper.server.service.RelyingPartyService;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.tracing.Span;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import io.micrometer.tracing.Tracer;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * REST controller for Passkey Management Service.
@@ -26,9 +37,31 @@ public class PasskeyController {
     @Autowired
     private PasskeyService passkeyService;
     
+    @Autowired
+    private RelyingPartyService relyingPartyService;
+    
+    @Autowired
+    private ReadRouting readRouting;
+    
     @Autowired
     private ObjectMapper objectMapper;
     
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    @Autowired
+    private Tracer tracer;
+    
+    /** Upper bound on passkeys per batch upload, to keep each transaction short. */
+    private static final int MAX_BATCH_SIZE = 100;
+    
+    /**
+     * Error code of a 404 that means the passkey does not exist. Devices only
+     * drop their offline copy on a 404 carrying it, not on one from a proxy
+     * or a mistyped path.
+     */
+    private static final String PASSKEY_NOT_FOUND = "PASSKEY_NOT_FOUND";
+    
     /**
      * Upload encrypted passkey data to PMS.
      * 
@@ -44,34 +77,39 @@ public class PasskeyController {
      *   },
      *   "z": "base64-encoded-z-value"
      * }
+     * 
+     * An optional If-Match header restricts the upload to replacing that
+     * revision; devices use it to put back the previous passkey when rolling
+     * back a re-registration. If the passkey has changed or been deleted
+     * since, nothing is stored and 412 is returned.
      */
     @PostMapping
-    public ResponseEntity<Map<String, Object>> uploadPasskey(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<Map<String, Object>> uploadPasskey(
+            @RequestBody Map<String, Object> request,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
         try {
-            String userId = (String) request.get("userId");
-            String rpId = (String) request.get("rpId");
-            String encryptedPrivateKey = (String) request.get("encryptedPrivateKey");
-            String publicKey = (String) request.get("publicKey");
-            String z = (String) request.get("z");
-            
-            // Extract detection secrets
-            Map<String, Object> detectionSecretsMap = (Map<String, Object>) request.get("detectionSecrets");
-            JsonNode secretsNode = objectMapper.valueToTree(detectionSecretsMap.get("secrets"));
-            String[] detectionSecrets = objectMapper.convertValue(secretsNode, String[].class);
-            Integer realSecretIndex = (Integer) detectionSecretsMap.get("realSecretIndex");
+            PasskeyService.PasskeyUpload upload = parseUpload(request);
             
-            EncryptedPasskey passkey = passkeyService.uploadPasskey(
-                    userId, rpId, encryptedPrivateKey, publicKey,
-                    detectionSecrets, z, realSecretIndex
-            );
+            EncryptedPasskey passkey = traced("pms.passkey.store", () -> passkeyService.uploadPasskey(
+                    upload.getUserId(), upload.getRpKey(),
+                    upload.getEncryptedPrivateKey(), upload.getPublicKey(),
+                    upload.getDetectionSecrets(), upload.getZValue(),
+                    upload.getRealSecretIndex(), ifMatch
+            ));
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("message", "Passkey uploaded successfully");
             response.put("id", passkey.getId());
+            response.put("version", passkey.getVersion());
             
-            return ResponseEntity.ok(response);
-            
+            return ResponseEntity.ok().eTag(passkey.getETag()).body(response);
+        
+        } catch (IllegalStateException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Failed to upload passkey: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(errorResponse);
         } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
@@ -80,6 +118,66 @@ public class PasskeyController {
         }
     }
     
+    /**
+     * Upload encrypted passkey data for several RPs in one request.
+     * 
+     * Request body format:
+     * {
+     *   "passkeys": [ { same fields as a single upload }, ... ]
+     * }
+     * 
+     * The batch is stored in one transaction (all or nothing). The response
+     * lists one result per passkey, in request order, each with the ETag a
+     * single upload would have returned:
+     * {
+     *   "success": true,
+     *   "results": [ { "rpId": "rp-id", "id": 1, "version": 0, "eTag": "\"1-0\"" }, ... ]
+     * }
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<Map<String, Object>> uploadPasskeys(@RequestBody Map<String, Object> request) {
+        try {
+            List<Map<String, Object>> items = (List<Map<String, Object>>) request.get("passkeys");
+            if (items == null || items.isEmpty() || items.size() > MAX_BATCH_SIZE) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "Batch must contain between 1 and " + MAX_BATCH_SIZE + " passkeys");
+                return ResponseEntity.badRequest().body(errorResponse);
+            }
+            
+            List<PasskeyService.PasskeyUpload> uploads = new ArrayList<>(items.size());
+            for (Map<String, Object> item : items) {
+                uploads.add(parseUpload(item));
+            }
+            
+            List<EncryptedPasskey> passkeys = traced("pms.passkey.store",
+                    () -> passkeyService.uploadPasskeys(uploads));
+            
+            List<Map<String, Object>> results = new ArrayList<>(passkeys.size());
+            for (int i = 0; i < passkeys.size(); i++) {
+                EncryptedPasskey passkey = passkeys.get(i);
+                Map<String, Object> result = new HashMap<>();
+                result.put("rpId", uploads.get(i).getRpId());
+                result.put("id", passkey.getId());
+                result.put("version", passkey.getVersion());
+                result.put("eTag", passkey.getETag());
+                results.add(result);
+            }
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", passkeys.size() + " passkeys uploaded successfully");
+            response.put("results", results);
+            return ResponseEntity.ok(response);
+        
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Failed to upload passkeys: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+    
     /**
      * Fetch encrypted passkey data from PMS.
      * 
@@ -93,15 +191,29 @@ public class PasskeyController {
      *     "secrets": ["base64-secret1", "base64-secret2", ...],
      *     "realSecretIndex": 0
      *   },
-     *   "z": "base64-encoded-z-value"
+     *   "z": "base64-encoded-z-value",
+     *   "version": 3
      * }
+     * 
+     * The response carries an ETag. Devices holding a local copy send it back
+     * in If-None-Match and get 304 Not Modified when nothing has changed.
+     * 
+     * A passkey that does not exist is 404 with "error": "PASSKEY_NOT_FOUND";
+     * any other failure is 500, and devices keep their local copy.
      */
     @GetMapping("/{userId}")
     public ResponseEntity<Map<String, Object>> fetchPasskey(
             @PathVariable String userId,
-            @RequestParam String rpId) {
+            @RequestParam String rpId,
+            @RequestHeader(value = "If-None-Match", required = false) String ifNoneMatch) {
         try {
-            EncryptedPasskey passkey = passkeyService.fetchPasskey(userId, rpId);
+            EncryptedPasskey passkey = traced("pms.passkey.lookup", () -> fetchCurrent(userId, rpId, ifNoneMatch));
+            
+            // Device copy is still current - skip the body
+            String eTag = passkey.getETag();
+            if (eTag.equals(ifNoneMatch)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+            }
             
             // Parse detection secrets JSON array
             String[] detectionSecrets = objectMapper.readValue(
@@ -109,7 +221,7 @@ public class PasskeyController {
             
             Map<String, Object> response = new HashMap<>();
             response.put("userId", passkey.getUserId());
-            response.put("rpId", passkey.getRpId());
+            response.put("rpId", rpId);
             response.put("encryptedPrivateKey", passkey.getEncryptedPrivateKey());
             response.put("publicKey", passkey.getPublicKey());
             
@@ -119,15 +231,126 @@ public class PasskeyController {
             response.put("detectionSecrets", detectionSecretsMap);
             
             response.put("z", passkey.getZValue());
+            response.put("version", passkey.getVersion());
             
-            return ResponseEntity.ok(response);
-            
-        } catch (Exception e) {
+            // Encrypted key material must not land in shared or on-disk HTTP caches;
+            // devices keep their own encrypted copy and revalidate it with the ETag
+            return ResponseEntity.ok()
+                    .eTag(eTag)
+                    .cacheControl(CacheControl.noStore())
+                    .body(response);
+        
+        } catch (PasskeyNotFoundException e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
+            errorResponse.put("error", PASSKEY_NOT_FOUND);
             errorResponse.put("message", "Failed to fetch passkey: " + e.getMessage());
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Failed to fetch passkey: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
+    
+    /**
+     * Fetch a passkey, from a replica if possible.
+     * 
+     * A replica may be behind the primary. When it has no passkey, or a
+     * different revision than the device already holds (which may be one the
+     * replica has not seen yet), the primary is asked instead. Other replica
+     * errors are not retried there; they fail the fetch.
+     */
+    private EncryptedPasskey fetchCurrent(String userId, String rpId, String ifNoneMatch) {
+        if (!readRouting.hasReplicas()) {
+            return passkeyService.fetchPasskey(userId, rpId);
+        }
+        try {
+            EncryptedPasskey passkey = passkeyService.fetchPasskey(userId, rpId);
+            if (ifNoneMatch == null || passkey.getETag().equals(ifNoneMatch)) {
+                return passkey;
+            }
+            // Open-in-view would otherwise answer the second query with this same instance
+            entityManager.detach(passkey);
+        } catch (PasskeyNotFoundException e) {
+            // Not on the replica (yet)
+        }
+        return readRouting.onPrimary(() -> passkeyService.fetchPasskey(userId, rpId));
+    }
+    
+    /**
+     * Delete encrypted passkey data from PMS.
+     * 
+     * Devices call this to compensate an upload whose RP registration failed.
+     * An optional If-Match header restricts the delete to the uploaded revision;
+     * if the passkey has changed since, nothing is deleted and 412 is returned.
+     */
+    @DeleteMapping("/{userId}")
+    public ResponseEntity<Map<String, Object>> deletePasskey(
+            @PathVariable String userId,
+            @RequestParam String rpId,
+            @RequestHeader(value = "If-Match", required = false) String ifMatch) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            boolean deleted = passkeyService.deletePasskey(userId, rpId, ifMatch);
+            if (!deleted) {
+                response.put("success", false);
+                response.put("error", PASSKEY_NOT_FOUND);
+                response.put("message", "Passkey not found");
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            }
+            
+            response.put("success", true);
+            response.put("message", "Passkey deleted successfully");
+            return ResponseEntity.ok(response);
+        
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", "Failed to delete passkey: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(response);
+        } catch (Exception e) {
+            response.put("success", false);
+            response.put("message", "Failed to delete passkey: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+    }
+    
+    /**
+     * Run a step as a child span of the current request, so it shows up in the trace waterfall.
+     */
+    private <T> T traced(String name, Supplier<T> step) {
+        Span span = tracer.nextSpan().name(name).start();
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            return step.get();
+        } catch (RuntimeException e) {
+            span.error(e);
+            throw e;
+        } finally {
+            span.end();
+        }
+    }
+    
+    /**
+     * Extract one passkey upload from a request body.
+     * 
+     * The rpId is interned here, before the upload transaction starts (see
+     * {@link RelyingPartyService}).
+     */
+    private PasskeyService.PasskeyUpload parseUpload(Map<String, Object> request) {
+        String userId = (String) request.get("userId");
+        String rpId = (String) request.get("rpId");
+        String encryptedPrivateKey = (String) request.get("encryptedPrivateKey");
+        String publicKey = (String) request.get("publicKey");
+        String z = (String) request.get("z");
+        
+        // Extract detection secrets
+        Map<String, Object> detectionSecretsMap = (Map<String, Object>) request.get("detectionSecrets");
+        JsonNode secretsNode = objectMapper.valueToTree(detectionSecretsMap.get("secrets"));
+        String[] detectionSecrets = objectMapper.convertValue(secretsNode, String[].class);
+        Integer realSecretIndex = (Integer) detectionSecretsMap.get("realSecretIndex");
+        
+        return new PasskeyService.PasskeyUpload(userId, rpId, relyingPartyService.intern(rpId),
+                encryptedPrivateKey, publicKey, detectionSecrets, z, realSecretIndex);
+    }
 }
-
@@ -11,7 +11,7 @@ import java.time.LocalDateTime;
  */
 @Entity
 @Table(name = "encrypted_passkeys", 
-       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "rp_id"}))
+       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "rp_key"}))
 public class EncryptedPasskey {
     
     @Id
@@ -21,14 +21,14 @@ public class EncryptedPasskey {
     @Column(name = "user_id", nullable = false)
     private String userId;
     
-    @Column(name = "rp_id", nullable = false)
-    private String rpId;
+    @Column(name = "rp_key", nullable = false)
+    private Integer rpKey; // Interned rpId, see RelyingParty
     
     @Column(name = "encrypted_private_key", columnDefinition = "TEXT", nullable = false)
     private String encryptedPrivateKey; // Base64-encoded encrypted private key (s̃)
     
     @Column(name = "public_key", columnDefinition = "TEXT", nullable = false)
-    private String publicKey; // Base64-encoded public key
+    private String publicKey; // Base64 public key as the app sent it (compressed, or X.509 from older versions)
     
     @Column(name = "detection_secrets", columnDefinition = "TEXT", nullable = false)
     private String detectionSecrets; // JSON array of Base64-encoded detection secrets (W)
@@ -39,6 +39,10 @@ public class EncryptedPasskey {
     @Column(name = "real_secret_index", nullable = false)
     private Integer realSecretIndex; // Index of the real secret in detection secrets array
     
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version; // Incremented on every upload, used for conditional fetches (ETag)
+    
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
     
@@ -73,12 +77,12 @@ public class EncryptedPasskey {
         this.userId = userId;
     }
     
-    public String getRpId() {
-        return rpId;
+    public Integer getRpKey() {
+        return rpKey;
     }
     
-    public void setRpId(String rpId) {
-        this.rpId = rpId;
+    public void setRpKey(Integer rpKey) {
+        this.rpKey = rpKey;
     }
     
     public String getEncryptedPrivateKey() {
@@ -121,6 +125,22 @@ public class EncryptedPasskey {
         this.realSecretIndex = realSecretIndex;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    /**
+     * Entity tag identifying this exact revision of the passkey.
+     * Includes the row ID so a deleted and re-created passkey never reuses a tag.
+     */
+    public String getETag() {
+        return "\"" + id + "-" + version + "\"";
+    }
+    
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
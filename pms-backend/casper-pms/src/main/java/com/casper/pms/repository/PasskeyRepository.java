@@ -9,27 +9,29 @@ import java.util.Optional;
 /**
  * Repository interface for EncryptedPasskey entities.
  * 
- * Provides database operations for encrypted passkey data.
+ * Provides database operations for encrypted passkey data. RPs are
+ * identified by their interned key (see
+ * {@link com.casper.server.service.RelyingPartyService}).
  */
 @Repository
 public interface PasskeyRepository extends JpaRepository<EncryptedPasskey, Long> {
     
     /**
-     * Find encrypted passkey by user ID and RP ID.
+     * Find encrypted passkey by user ID and RP.
      * 
      * @param userId User identifier
-     * @param rpId Relying Party identifier
+     * @param rpKey Interned Relying Party identifier
      * @return Optional EncryptedPasskey
      */
-    Optional<EncryptedPasskey> findByUserIdAndRpId(String userId, String rpId);
+    Optional<EncryptedPasskey> findByUserIdAndRpKey(String userId, Integer rpKey);
     
     /**
      * Check if passkey exists for user and RP.
      * 
      * @param userId User identifier
-     * @param rpId Relying Party identifier
+     * @param rpKey Interned Relying Party identifier
      * @return true if exists
      */
-    boolean existsByUserIdAndRpId(String userId, String rpId);
+    boolean existsByUserIdAndRpKey(String userId, Integer rpKey);
 }
 
@@ -0,0 +1,15 @@
+package com.casper.pms.service;
+
+/**
+ * No passkey is stored for the user and RP.
+ * 
+ * This is the only failure the PMS reports as 404 on a fetch. Devices
+ * delete their offline copy on it, so nothing else (a database or
+ * replica error, a bad request) may be reported the same way.
+ */
+public class PasskeyNotFoundException extends RuntimeException {
+    
+    public PasskeyNotFoundException(String userId, String rpId) {
+        super("Passkey not found for user: " + userId + ", rp: " + rpId);
+    }
+}
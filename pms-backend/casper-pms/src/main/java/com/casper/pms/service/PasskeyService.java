@@ -2,34 +2,83 @@ package com.casper.pms.service;
 
 import com.casper.pms.model.EncryptedPasskey;
 import com.casper.pms.repository.PasskeyRepository;
+import com.casper.server.datasource.ReadRouting;
+import com.casper.server.invalidation.InvalidationBus;
+import com.casper.server.invalidation.InvalidationEvent;
+import com.casper.server.service.RelyingPartyService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service class for passkey management operations.
  * 
  * Handles storing and retrieving encrypted passkey data.
  * This service NEVER decrypts the data - it only stores and retrieves it.
+ * 
+ * Every change is announced on the {@link InvalidationBus}, so other PMS
+ * instances can drop anything they cache for that user and RP.
+ * 
+ * Concurrent fetches of the same passkey (a user retrying a login, or
+ * several of their devices logging in at once) share one database lookup,
+ * see {@link #fetchPasskey}.
+ * 
+ * Meters:
+ * - casper.passkey.fetches{path} fetches that ran their own lookup (lookup) or joined a running one (coalesced)
+ * - casper.passkey.fetches.in.flight lookups running now
  */
 @Service
 @Transactional
-public class PasskeyService {
+public class PasskeyService implements MeterBinder {
     
     @Autowired
     private PasskeyRepository passkeyRepository;
     
+    @Autowired
+    private RelyingPartyService relyingPartyService;
+    
     @Autowired
     private ObjectMapper objectMapper;
     
+    @Autowired
+    private ReadRouting readRouting;
+    
+    private final InvalidationBus invalidationBus;
+    private final TransactionTemplate readOnlyTransaction;
+    private final SingleFlight<InvalidationEvent, EncryptedPasskey> fetches = new SingleFlight<>();
+    
+    public PasskeyService(InvalidationBus invalidationBus, PlatformTransactionManager transactionManager) {
+        this.invalidationBus = invalidationBus;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        // Changes made by other instances; this instance's own are handled in changed()
+        invalidationBus.subscribe((events, remote) -> {
+            if (remote) {
+                events.forEach(fetches::forget);
+            }
+        });
+    }
+    
     /**
      * Upload encrypted passkey data to PMS.
      * 
      * @param userId User identifier
-     * @param rpId Relying Party identifier
+     * @param rpKey Interned Relying Party identifier, from {@link RelyingPartyService#intern}
      * @param encryptedPrivateKey Base64-encoded encrypted private key (s̃)
      * @param publicKey Base64-encoded public key
      * @param detectionSecrets Array of Base64-encoded detection secrets (W)
@@ -37,15 +86,39 @@ public class PasskeyService {
      * @param realSecretIndex Index of the real secret in detection secrets array
      * @return Saved EncryptedPasskey entity
      */
-    public EncryptedPasskey uploadPasskey(String userId, String rpId,
+    public EncryptedPasskey uploadPasskey(String userId, int rpKey,
                                          String encryptedPrivateKey, String publicKey,
                                          String[] detectionSecrets, String zValue,
                                          Integer realSecretIndex) {
-        EncryptedPasskey passkey = passkeyRepository.findByUserIdAndRpId(userId, rpId)
+        return uploadPasskey(userId, rpKey, encryptedPrivateKey, publicKey,
+                detectionSecrets, zValue, realSecretIndex, null);
+    }
+    
+    /**
+     * Upload encrypted passkey data to PMS, replacing only the given revision.
+     * 
+     * Used by devices to roll back a re-registration whose RP registration
+     * failed: the previous passkey is uploaded again over the revision the
+     * device uploaded, but not over a newer upload made by another device.
+     * 
+     * @param expectedETag ETag of the revision to replace, or null to upload unconditionally
+     * @throws IllegalStateException if no passkey is stored, or the stored
+     *         revision does not match the expected ETag
+     */
+    public EncryptedPasskey uploadPasskey(String userId, int rpKey,
+                                         String encryptedPrivateKey, String publicKey,
+                                         String[] detectionSecrets, String zValue,
+                                         Integer realSecretIndex, String expectedETag) {
+        EncryptedPasskey passkey = passkeyRepository.findByUserIdAndRpKey(userId, rpKey)
                 .orElse(new EncryptedPasskey());
         
+        if (expectedETag != null && !expectedETag.equals(passkey.getETag())) {
+            throw new IllegalStateException(passkey.getId() == null ? "Passkey was deleted"
+                    : "Passkey was modified (current revision " + passkey.getETag() + ")");
+        }
+        
         passkey.setUserId(userId);
-        passkey.setRpId(rpId);
+        passkey.setRpKey(rpKey);
         passkey.setEncryptedPrivateKey(encryptedPrivateKey);
         passkey.setPublicKey(publicKey);
         
@@ -60,21 +133,66 @@ public class PasskeyService {
         passkey.setZValue(zValue);
         passkey.setRealSecretIndex(realSecretIndex);
         
-        return passkeyRepository.save(passkey);
+        EncryptedPasskey saved = passkeyRepository.save(passkey);
+        changed(userId, relyingPartyService.rpId(rpKey));
+        return saved;
+    }
+    
+    /**
+     * Upload encrypted passkey data for several RPs in one transaction.
+     * 
+     * Used by devices registering many RPs at once. Either every passkey in
+     * the batch is stored or none is, so a device never has to work out which
+     * part of a failed batch made it to the PMS.
+     * 
+     * @param uploads Passkeys to store
+     * @return Saved EncryptedPasskey entities, in request order
+     */
+    public List<EncryptedPasskey> uploadPasskeys(List<PasskeyUpload> uploads) {
+        List<EncryptedPasskey> saved = new ArrayList<>(uploads.size());
+        for (PasskeyUpload upload : uploads) {
+            saved.add(uploadPasskey(
+                    upload.getUserId(), upload.getRpKey(),
+                    upload.getEncryptedPrivateKey(), upload.getPublicKey(),
+                    upload.getDetectionSecrets(), upload.getZValue(),
+                    upload.getRealSecretIndex()
+            ));
+        }
+        return saved;
     }
     
     /**
      * Fetch encrypted passkey data from PMS.
      * 
+     * Fetches of the same user and RP that overlap share one lookup, which
+     * runs in its own read-only transaction; the others wait for it without
+     * taking a connection. They all get the same entity (or exception), so
+     * callers must not modify it. Fetches inside a caller's transaction, or
+     * forced to the primary with {@link ReadRouting#onPrimary} (which must
+     * see the latest write), always run their own lookup.
+     * 
      * @param userId User identifier
      * @param rpId Relying Party identifier
      * @return EncryptedPasskey entity
-     * @throws RuntimeException if passkey not found
+     * @throws PasskeyNotFoundException if no passkey is stored for the user and RP
      */
-    @Transactional(readOnly = true)
+    @Transactional(propagation = Propagation.SUPPORTS)
     public EncryptedPasskey fetchPasskey(String userId, String rpId) {
-        return passkeyRepository.findByUserIdAndRpId(userId, rpId)
-                .orElseThrow(() -> new RuntimeException("Passkey not found for user: " + userId + ", rp: " + rpId));
+        if (TransactionSynchronizationManager.isActualTransactionActive() || readRouting.isPrimaryRequested()) {
+            return readOnlyTransaction.execute(status -> lookup(userId, rpId));
+        }
+        return fetches.get(new InvalidationEvent(userId, rpId),
+                () -> readOnlyTransaction.execute(status -> lookup(userId, rpId)));
+    }
+    
+    private EncryptedPasskey lookup(String userId, String rpId) {
+        Integer rpKey = relyingPartyService.lookup(rpId);
+        EncryptedPasskey passkey = rpKey == null ? null
+                : passkeyRepository.findByUserIdAndRpKey(userId, rpKey).orElse(null);
+        if (passkey == null) {
+            throw new PasskeyNotFoundException(userId, rpId);
+        }
+        return passkey;
     }
     
     /**
@@ -86,7 +204,132 @@ public class PasskeyService {
      */
     @Transactional(readOnly = true)
     public boolean passkeyExists(String userId, String rpId) {
-        return passkeyRepository.existsByUserIdAndRpId(userId, rpId);
+        Integer rpKey = relyingPartyService.lookup(rpId);
+        return rpKey != null && passkeyRepository.existsByUserIdAndRpKey(userId, rpKey);
+    }
+    
+    /**
+     * Delete encrypted passkey data from PMS.
+     * 
+     * Used by devices to roll back an upload when the matching RP registration failed.
+     * When an ETag is given, only that exact revision is deleted, so a rollback never
+     * removes a newer upload made by another device.
+     * 
+     * @param userId User identifier
+     * @param rpId Relying Party identifier
+     * @param expectedETag ETag of the revision to delete, or null to delete any revision
+     * @return true if a passkey was deleted, false if none exists
+     * @throws IllegalStateException if the stored revision does not match the expected ETag
+     */
+    public boolean deletePasskey(String userId, String rpId, String expectedETag) {
+        Integer rpKey = relyingPartyService.lookup(rpId);
+        EncryptedPasskey passkey = rpKey == null ? null
+                : passkeyRepository.findByUserIdAndRpKey(userId, rpKey).orElse(null);
+        if (passkey == null) {
+            return false;
+        }
+        
+        if (expectedETag != null && !expectedETag.equals(passkey.getETag())) {
+            throw new IllegalStateException("Passkey was modified (current revision " + passkey.getETag() + ")");
+        }
+        
+        passkeyRepository.delete(passkey);
+        changed(userId, rpId);
+        return true;
+    }
+    
+    /**
+     * Announce a change and, once it commits, stop fetches joining lookups
+     * that started before it: a fetch made after an upload returns must see
+     * the upload.
+     */
+    private void changed(String userId, String rpId) {
+        invalidationBus.publish(userId, rpId);
+        InvalidationEvent key = new InvalidationEvent(userId, rpId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    fetches.forget(key);
+                }
+            });
+        } else {
+            fetches.forget(key);
+        }
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("casper.passkey.fetches", fetches.lookups(), AtomicLong::get)
+                .tag("path", "lookup")
+                .description("Passkey fetches, by whether they ran a database lookup or joined a concurrent one")
+                .register(registry);
+        FunctionCounter.builder("casper.passkey.fetches", fetches.coalesced(), AtomicLong::get)
+                .tag("path", "coalesced")
+                .description("Passkey fetches, by whether they ran a database lookup or joined a concurrent one")
+                .register(registry);
+        Gauge.builder("casper.passkey.fetches.in.flight", fetches, SingleFlight::inFlight)
+                .description("Passkey lookups running")
+                .register(registry);
+    }
+    
+    /**
+     * One passkey in a batch upload.
+     */
+    public static class PasskeyUpload {
+        private final String userId;
+        private final String rpId;
+        private final int rpKey;
+        private final String encryptedPrivateKey;
+        private final String publicKey;
+        private final String[] detectionSecrets;
+        private final String zValue;
+        private final Integer realSecretIndex;
+        
+        public PasskeyUpload(String userId, String rpId, int rpKey,
+                             String encryptedPrivateKey, String publicKey,
+                             String[] detectionSecrets, String zValue,
+                             Integer realSecretIndex) {
+            this.userId = userId;
+            this.rpId = rpId;
+            this.rpKey = rpKey;
+            this.encryptedPrivateKey = encryptedPrivateKey;
+            this.publicKey = publicKey;
+            this.detectionSecrets = detectionSecrets;
+            this.zValue = zValue;
+            this.realSecretIndex = realSecretIndex;
+        }
+        
+        public String getUserId() {
+            return userId;
+        }
+        
+        public String getRpId() {
+            return rpId;
+        }
+        
+        public int getRpKey() {
+            return rpKey;
+        }
+        
+        public String getEncryptedPrivateKey() {
+            return encryptedPrivateKey;
+        }
+        
+        public String getPublicKey() {
+            return publicKey;
+        }
+        
+        public String[] getDetectionSecrets() {
+            return detectionSecrets;
+        }
+        
+        public String getZValue() {
+            return zValue;
+        }
+        
+        public Integer getRealSecretIndex() {
+            return realSecretIndex;
+        }
     }
 }
-
@@ -0,0 +1,29 @@
+package com.casper.pms.service;
+
+import com.casper.server.service.RpKeyMigration;
+import com.casper.server.service.RpKeyMigration.Table;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Moves PMS databases created before rpIds were interned from rp_id to
+ * rp_key, keeping every encrypted passkey.
+ */
+@Configuration
+public class RpKeyMigrationConfig {
+    
+    @Bean
+    public RpKeyMigration rpKeyMigration(DataSource dataSource) throws SQLException {
+        return new RpKeyMigration(dataSource,
+                new Table("encrypted_passkeys",
+                        "ALTER TABLE encrypted_passkeys DROP CONSTRAINT IF EXISTS encrypted_passkeys_user_id_rp_id_key",
+                        "ALTER TABLE encrypted_passkeys DROP CONSTRAINT IF EXISTS encrypted_passkeys_user_id_rp_key_key",
+                        "ALTER TABLE encrypted_passkeys ADD CONSTRAINT encrypted_passkeys_user_id_rp_key_key "
+                                + "UNIQUE (user_id, rp_key)",
+                        "DROP INDEX IF EXISTS idx_encrypted_passkeys_user_rp",
+                        "CREATE INDEX idx_encrypted_passkeys_user_rp ON encrypted_passkeys(user_id, rp_key)"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.casper.pms.service;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs at most one lookup per key at a time; callers that ask for a key
+ * while its lookup is running wait for it and get the same result (or
+ * exception) instead of starting their own.
+ * 
+ * Nothing is cached: a lookup is forgotten as soon as it finishes, so a
+ * caller that arrives after that starts a new one. {@link #forget} makes
+ * callers stop joining a running lookup, for when its key has just changed.
+ */
+final class SingleFlight<K, V> {
+    
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    
+    V get(K key, Supplier<V> lookup) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            coalesced.incrementAndGet();
+            return join(running);
+        }
+        lookups.incrementAndGet();
+        try {
+            V value = lookup.get();
+            // Removed before completing, so late callers start a fresh lookup rather than take this result
+            inFlight.remove(key, flight);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+    
+    /**
+     * Callers from now on start a new lookup for key; ones already waiting keep waiting.
+     */
+    void forget(K key) {
+        inFlight.remove(key);
+    }
+    
+    /**
+     * Lookups run, one per caller that did not join another.
+     */
+    AtomicLong lookups() {
+        return lookups;
+    }
+    
+    /**
+     * Callers that joined a running lookup.
+     */
+    AtomicLong coalesced() {
+        return coalesced;
+    }
+    
+    int inFlight() {
+        return inFlight.size();
+    }
+    
+    private static <V> V join(CompletableFuture<V> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            // The lookup's own exception, so joined callers fail the same way as the one that ran it
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
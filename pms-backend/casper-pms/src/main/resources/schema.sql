@@ -3,25 +3,45 @@
 
 -- Drop tables if they exist (for clean setup)
 DROP TABLE IF EXISTS encrypted_passkeys CASCADE;
+DROP TABLE IF EXISTS rps CASCADE;
+DROP TABLE IF EXISTS replica_heartbeat;
+
+-- Relying Parties Table
+-- One row per distinct rpId (the RP's URL). encrypted_passkeys stores its
+-- integer id (rp_key) instead of repeating the URL in every row and index.
+-- Databases created with rp_id columns are migrated at startup (RpKeyMigration).
+CREATE TABLE rps (
+    id SERIAL PRIMARY KEY,
+    rp_id VARCHAR(255) NOT NULL UNIQUE
+);
 
 -- Encrypted Passkeys Table
 -- Stores encrypted passkey data from Android app
 CREATE TABLE encrypted_passkeys (
     id BIGSERIAL PRIMARY KEY,
     user_id VARCHAR(255) NOT NULL,
-    rp_id VARCHAR(255) NOT NULL,
+    rp_key INTEGER NOT NULL REFERENCES rps(id),
     encrypted_private_key TEXT NOT NULL,  -- Base64-encoded encrypted private key (s̃)
-    public_key TEXT NOT NULL,              -- Base64-encoded public key
+    public_key TEXT NOT NULL,              -- Base64 public key as the app sent it (compressed P-256 point)
     detection_secrets TEXT NOT NULL,       -- JSON array of Base64-encoded detection secrets (W)
     z_value TEXT NOT NULL,                 -- Base64-encoded random value z
     real_secret_index INTEGER NOT NULL,    -- Index of real secret in detection secrets array
+    version BIGINT NOT NULL DEFAULT 0,     -- Incremented on every upload (served as ETag)
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
     updated_at TIMESTAMP,
-    UNIQUE(user_id, rp_id)
+    UNIQUE(user_id, rp_key)
+);
+
+-- Replica Heartbeat
+-- Written to the primary every casper.replicas.check-ms; its age on a replica is the replica's lag.
+-- Created by the PMS if missing when read replicas are configured.
+CREATE TABLE replica_heartbeat (
+    id INTEGER PRIMARY KEY,           -- Always 1
+    beat_at BIGINT NOT NULL           -- Epoch millis of the last heartbeat
 );
 
 -- Index for faster lookups
-CREATE INDEX idx_encrypted_passkeys_user_rp ON encrypted_passkeys(user_id, rp_id);
+CREATE INDEX idx_encrypted_passkeys_user_rp ON encrypted_passkeys(user_id, rp_key);
 CREATE INDEX idx_encrypted_passkeys_user ON encrypted_passkeys(user_id);
 
 -- Comments (PostgreSQL syntax - not supported by H2, kept for documentation)
@@ -1,7 +1,11 @@
 package com.casper.rp;
 
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackage;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcAutoConfiguration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * CASPER Relying Party (RP) Application
@@ -14,8 +18,22 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * - Detect breaches using CASPER's CD algorithm
  *   - If login key ∈ V' → breach detected
  *   - If login key ∈ V → normal login
+ * 
+ * Runs on the servlet stack (Spring MVC, JPA) by default. With
+ * spring.main.web-application-type=reactive, /api/auth is served by WebFlux
+ * and R2DBC instead, see {@link com.casper.rp.reactive.ReactiveStackConfig}.
+ * R2DBC auto-configuration stays off either way: the ConnectionFactory it
+ * creates would make Spring Boot drop the JDBC DataSource.
+ * 
+ * Components shared with the PMS (com.casper.server, in core/casper-server-common)
+ * are picked up by the same component scan, and their entities and
+ * repositories by JPA's.
  */
-@SpringBootApplication
+@AutoConfigurationPackage(basePackages = {"com.casper.rp", "com.casper.server"})
+@SpringBootApplication(scanBasePackages = {"com.casper.rp", "com.casper.server"},
+                       exclude = R2dbcAutoConfiguration.class)
+@ImportRuntimeHints(CasperRuntimeHints.class)
+@EnableScheduling
 public class CasperRpApplication {
     public static void main(String[] args) {
         SpringApplication.run(CasperRpApplication.class, args);
@@ -0,0 +1,35 @@
+package com.casper.rp;
+
+import com.casper.rp.events.BreachEvent;
+import com.casper.rp.model.LoginAttempt;
+import com.casper.rp.model.LoginAttemptDaily;
+import com.casper.rp.model.Passkey;
+import com.casper.rp.model.Registration;
+import com.casper.server.model.RelyingParty;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Reflection and resource hints for AOT processing and native images.
+ * 
+ * Spring AOT discovers most of what the RP needs from the bean definitions.
+ * This covers what only happens at request time: Hibernate touching entity
+ * fields and lifecycle callbacks, Thymeleaf loading templates, and Jackson
+ * serializing breach events onto the SSE stream.
+ */
+public class CasperRuntimeHints implements RuntimeHintsRegistrar {
+    
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.resources().registerPattern("templates/*.html");
+        
+        for (Class<?> entity : new Class<?>[] {Passkey.class, LoginAttempt.class, LoginAttemptDaily.class,
+                Registration.class, RelyingParty.class}) {
+            hints.reflection().registerType(entity, MemberCategory.values());
+        }
+        
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), BreachEvent.class);
+    }
+}
@@ -0,0 +1,79 @@
+package com.casper.rp.analytics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter: set membership with no false negatives, in fixed memory.
+ * 
+ * Sized for an expected number of insertions and a false positive rate; past
+ * that many insertions the false positive rate rises, so owners rebuild a
+ * larger filter. Bit indexes come from one 64-bit hash and a remix of it
+ * (Kirsch-Mitzenmacher). Thread-safe: bits are set with compare-and-set and
+ * never cleared.
+ */
+public class BloomFilter {
+    
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+    private final long capacity;
+    
+    /**
+     * @param capacity Insertions the filter is sized for
+     * @param falsePositiveRate Target false positive rate at that many insertions
+     */
+    public BloomFilter(long capacity, double falsePositiveRate) {
+        double ln2 = Math.log(2);
+        long bits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2));
+        this.words = new AtomicLongArray((int) Math.max(1, (bits + 63) / 64));
+        this.bitCount = words.length() * 64L;
+        this.hashCount = (int) Math.max(1, Math.round((double) bitCount / capacity * ln2));
+        this.capacity = capacity;
+    }
+    
+    /**
+     * Hash a value for {@link #add} and {@link #mightContain}.
+     */
+    public static long hash(String value) {
+        return Hashing.hash64(value);
+    }
+    
+    public void add(long hash) {
+        long h2 = Hashing.mix(hash + 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * h2, bitCount);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = words.get(word)) & mask) == 0
+                    && !words.compareAndSet(word, current, current | mask)) {
+                // Another bit in the word changed; retry
+            }
+        }
+    }
+    
+    /**
+     * @return false if the value was definitely never added
+     */
+    public boolean mightContain(long hash) {
+        long h2 = Hashing.mix(hash + 0x9e3779b97f4a7c15L) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            long bit = Math.floorMod(hash + i * h2, bitCount);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    public long getCapacity() {
+        return capacity;
+    }
+    
+    /**
+     * Memory used by the bit array.
+     */
+    public long sizeInBytes() {
+        return bitCount / 8;
+    }
+}
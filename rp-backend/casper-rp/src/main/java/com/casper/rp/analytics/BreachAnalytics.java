@@ -0,0 +1,231 @@
+package com.casper.rp.analytics;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Live login and breach statistics, kept in memory and fed by the login path.
+ * 
+ * For all RPs together and for each RP:
+ * - Logins, breaches and breach rate over the last 1m, 5m, 15m and 1h
+ *   (10-second buckets, see {@link SlidingWindowCounter})
+ * - Distinct users that logged in and distinct users whose decoy keys were
+ *   used, since the RP started ({@link HyperLogLog})
+ * 
+ * Plus the decoy keys used most often, counted with a {@link CountMinSketch}
+ * and tracked in a fixed-size top-K list.
+ * 
+ * Memory is fixed: about 8 KiB per RP, at most casper.analytics.max-rps RPs
+ * (further RPs are folded into "other"), plus about 170 KiB for the totals
+ * and the decoy key sketch.
+ * Reading a snapshot touches no database and is O(1) per RP.
+ */
+@Component
+public class BreachAnalytics {
+    
+    /** rpId used once casper.analytics.max-rps distinct RPs have been seen. */
+    public static final String OTHER_RP = "other";
+    
+    /** Window names, matching {@link #WINDOW_BUCKETS}. */
+    private static final String[] WINDOWS = {"1m", "5m", "15m", "1h"};
+    private static final int[] WINDOW_BUCKETS = {6, 30, 90, 360};
+    private static final long BUCKET_MILLIS = 10_000;
+    
+    private static final int RP_PRECISION = 10;
+    private static final int TOTAL_PRECISION = 14;
+    private static final int SKETCH_DEPTH = 4;
+    private static final int SKETCH_WIDTH = 4096;
+    
+    private final int maxRps;
+    private final int topKeys;
+    private final Instant since = Instant.now();
+    private final Stats total = new Stats(TOTAL_PRECISION);
+    private final Map<String, Stats> rps = new ConcurrentHashMap<>();
+    
+    // Hot decoy keys; guarded by decoyKeys
+    private final CountMinSketch decoyKeys = new CountMinSketch(SKETCH_DEPTH, SKETCH_WIDTH);
+    private final Map<String, HotKey> hotKeys = new HashMap<>();
+    
+    public BreachAnalytics(@Value("${casper.analytics.max-rps:1000}") int maxRps,
+                           @Value("${casper.analytics.top-keys:10}") int topKeys) {
+        this.maxRps = maxRps;
+        this.topKeys = topKeys;
+    }
+    
+    /**
+     * Record a completed login.
+     * 
+     * @param userId User identifier
+     * @param rpId Relying Party identifier
+     * @param publicKey Base64 public key used
+     * @param breach Whether the key was a decoy
+     */
+    public void record(String userId, String rpId, String publicKey, boolean breach) {
+        long now = System.currentTimeMillis();
+        long userHash = Hashing.hash64(userId);
+        total.record(now, userHash, breach);
+        rpStats(rpId).record(now, userHash, breach);
+        
+        if (breach) {
+            long estimate;
+            synchronized (decoyKeys) {
+                estimate = decoyKeys.add(Hashing.hash64(publicKey));
+                offerHotKey(publicKey, userId, rpId, estimate);
+            }
+        }
+    }
+    
+    /**
+     * Current statistics, for the dashboard.
+     * 
+     * @param topRps Maximum number of RPs to include, busiest (by breaches in the last hour) first
+     */
+    public Map<String, Object> snapshot(int topRps) {
+        long now = System.currentTimeMillis();
+        
+        List<Map<String, Object>> rpViews = new ArrayList<>();
+        for (Map.Entry<String, Stats> entry : rps.entrySet()) {
+            Map<String, Object> view = new LinkedHashMap<>();
+            view.put("rpId", entry.getKey());
+            view.putAll(entry.getValue().view(now));
+            rpViews.add(view);
+        }
+        rpViews.sort(Comparator.comparingLong(BreachAnalytics::hourBreaches).reversed());
+        
+        List<Map<String, Object>> keys = new ArrayList<>();
+        synchronized (decoyKeys) {
+            List<HotKey> sorted = new ArrayList<>(hotKeys.values());
+            sorted.sort(Comparator.comparingLong((HotKey key) -> key.count).reversed());
+            for (HotKey key : sorted) {
+                Map<String, Object> view = new LinkedHashMap<>();
+                view.put("publicKey", key.publicKey);
+                view.put("userId", key.userId);
+                view.put("rpId", key.rpId);
+                view.put("estimatedCount", key.count);
+                keys.add(view);
+            }
+        }
+        
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("success", true);
+        snapshot.put("since", since.toString());
+        snapshot.put("generatedAt", Instant.ofEpochMilli(now).toString());
+        snapshot.put("windows", WINDOWS);
+        snapshot.put("total", total.view(now));
+        snapshot.put("rpCount", rpViews.size());
+        snapshot.put("rps", rpViews.subList(0, Math.min(topRps, rpViews.size())));
+        snapshot.put("hotDecoyKeys", keys);
+        return snapshot;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static long hourBreaches(Map<String, Object> view) {
+        return ((Map<String, Long>) view.get("breaches")).get("1h");
+    }
+    
+    private Stats rpStats(String rpId) {
+        String key = rpId != null ? rpId : OTHER_RP;
+        Stats stats = rps.get(key);
+        if (stats != null) {
+            return stats;
+        }
+        if (rps.size() >= maxRps) {
+            key = OTHER_RP;
+        }
+        return rps.computeIfAbsent(key, rp -> new Stats(RP_PRECISION));
+    }
+    
+    /**
+     * Keep the key in the top-K list if its count beats the smallest entry.
+     */
+    private void offerHotKey(String publicKey, String userId, String rpId, long estimate) {
+        HotKey existing = hotKeys.get(publicKey);
+        if (existing != null) {
+            existing.count = estimate;
+            return;
+        }
+        if (hotKeys.size() >= topKeys) {
+            HotKey smallest = null;
+            for (HotKey key : hotKeys.values()) {
+                if (smallest == null || key.count < smallest.count) {
+                    smallest = key;
+                }
+            }
+            if (smallest.count >= estimate) {
+                return;
+            }
+            hotKeys.remove(smallest.publicKey);
+        }
+        hotKeys.put(publicKey, new HotKey(publicKey, userId, rpId, estimate));
+    }
+    
+    /**
+     * Windowed counts and distinct-user sketches for one RP (or all of them).
+     */
+    private static class Stats {
+        private final SlidingWindowCounter windows;
+        private final HyperLogLog users;
+        private final HyperLogLog breachedUsers;
+        
+        Stats(int precision) {
+            this.windows = new SlidingWindowCounter(BUCKET_MILLIS, WINDOW_BUCKETS, System.currentTimeMillis());
+            this.users = new HyperLogLog(precision);
+            this.breachedUsers = new HyperLogLog(precision);
+        }
+        
+        synchronized void record(long now, long userHash, boolean breach) {
+            windows.record(now, breach);
+            users.add(userHash);
+            if (breach) {
+                breachedUsers.add(userHash);
+            }
+        }
+        
+        synchronized Map<String, Object> view(long now) {
+            Map<String, Long> logins = new LinkedHashMap<>();
+            Map<String, Long> breaches = new LinkedHashMap<>();
+            Map<String, Double> breachRate = new LinkedHashMap<>();
+            for (int w = 0; w < WINDOWS.length; w++) {
+                long windowLogins = windows.logins(now, w);
+                long windowBreaches = windows.breaches(now, w);
+                logins.put(WINDOWS[w], windowLogins);
+                breaches.put(WINDOWS[w], windowBreaches);
+                breachRate.put(WINDOWS[w], windowLogins > 0 ? (double) windowBreaches / windowLogins : 0.0);
+            }
+            
+            Map<String, Object> view = new LinkedHashMap<>();
+            view.put("logins", logins);
+            view.put("breaches", breaches);
+            view.put("breachRate", breachRate);
+            view.put("distinctUsers", users.estimate());
+            view.put("distinctBreachedUsers", breachedUsers.estimate());
+            return view;
+        }
+    }
+    
+    /**
+     * A top-K entry: a decoy key and its estimated use count.
+     */
+    private static class HotKey {
+        final String publicKey;
+        final String userId;
+        final String rpId;
+        long count;
+        
+        HotKey(String publicKey, String userId, String rpId, long count) {
+            this.publicKey = publicKey;
+            this.userId = userId;
+            this.rpId = rpId;
+            this.count = count;
+        }
+    }
+}
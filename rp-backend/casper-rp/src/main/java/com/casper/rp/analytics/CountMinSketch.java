@@ -0,0 +1,54 @@
+package com.casper.rp.analytics;
+
+/**
+ * Count-Min sketch: approximate per-key counts in fixed memory.
+ * 
+ * Estimates never undercount; with conservative update they overcount by at
+ * most about (total count) * e / width, with probability 1 - e^-depth.
+ * Row indexes come from one 64-bit hash split in two (Kirsch-Mitzenmacher).
+ * Not thread-safe; callers synchronize.
+ */
+class CountMinSketch {
+    
+    private final int width;
+    private final long[][] counts;
+    
+    CountMinSketch(int depth, int width) {
+        this.width = width;
+        this.counts = new long[depth][width];
+    }
+    
+    /**
+     * Count one occurrence of a key.
+     * 
+     * @return The key's estimated count, including this occurrence
+     */
+    long add(long hash) {
+        long estimate = estimate(hash) + 1;
+        // Conservative update: only raise cells that are below the new estimate
+        for (int row = 0; row < counts.length; row++) {
+            int column = column(hash, row);
+            if (counts[row][column] < estimate) {
+                counts[row][column] = estimate;
+            }
+        }
+        return estimate;
+    }
+    
+    /**
+     * Estimated count of a key.
+     */
+    long estimate(long hash) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < counts.length; row++) {
+            min = Math.min(min, counts[row][column(hash, row)]);
+        }
+        return min;
+    }
+    
+    private int column(long hash, int row) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        return Math.floorMod(h1 + row * h2, width);
+    }
+}
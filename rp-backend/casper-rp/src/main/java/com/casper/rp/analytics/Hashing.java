@@ -0,0 +1,41 @@
+package com.casper.rp.analytics;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 64-bit hashing for the sketches.
+ * 
+ * String.hashCode() is only 32 bits and poorly mixed, which skews both
+ * HyperLogLog (needs uniform high bits) and Count-Min (needs independent
+ * rows). This is 64-bit FNV-1a over the UTF-8 bytes followed by the
+ * MurmurHash3 finalizer.
+ */
+final class Hashing {
+    
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    
+    private Hashing() {
+    }
+    
+    static long hash64(String value) {
+        long h = FNV_OFFSET;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= FNV_PRIME;
+        }
+        return mix(h);
+    }
+    
+    /**
+     * MurmurHash3 fmix64: spreads every input bit over the whole output.
+     */
+    static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,68 @@
+package com.casper.rp.analytics;
+
+/**
+ * HyperLogLog distinct-count estimator in 2^precision bytes.
+ * 
+ * Standard error is about 1.04 / sqrt(2^precision): 3.2% at precision 10
+ * (1 KiB), 0.8% at precision 14 (16 KiB). Small cardinalities use linear
+ * counting, which is near exact. The estimate is cached until a register
+ * changes, so repeated reads are O(1). Not thread-safe; callers synchronize.
+ */
+class HyperLogLog {
+    
+    private final int precision;
+    private final byte[] registers;
+    private long cachedEstimate;
+    private boolean dirty;
+    
+    HyperLogLog(int precision) {
+        if (precision < 4 || precision > 18) {
+            throw new IllegalArgumentException("precision must be between 4 and 18");
+        }
+        this.precision = precision;
+        this.registers = new byte[1 << precision];
+    }
+    
+    /**
+     * Add an element by its 64-bit hash.
+     */
+    void add(long hash) {
+        int index = (int) (hash >>> (64 - precision));
+        // Rank of the first 1 bit in the remaining bits (a sentinel bit caps it)
+        long rest = (hash << precision) | (1L << (precision - 1));
+        byte rank = (byte) (Long.numberOfLeadingZeros(rest) + 1);
+        if (rank > registers[index]) {
+            registers[index] = rank;
+            dirty = true;
+        }
+    }
+    
+    /**
+     * Estimated number of distinct elements added.
+     */
+    long estimate() {
+        if (dirty) {
+            cachedEstimate = compute();
+            dirty = false;
+        }
+        return cachedEstimate;
+    }
+    
+    private long compute() {
+        int m = registers.length;
+        double sum = 0;
+        int zeros = 0;
+        for (byte register : registers) {
+            sum += 1.0 / (1L << register);
+            if (register == 0) {
+                zeros++;
+            }
+        }
+        double alpha = 0.7213 / (1 + 1.079 / m);
+        double estimate = alpha * m * m / sum;
+        if (estimate <= 2.5 * m && zeros > 0) {
+            estimate = m * Math.log((double) m / zeros);
+        }
+        return Math.round(estimate);
+    }
+}
@@ -0,0 +1,99 @@
+package com.casper.rp.analytics;
+
+import java.util.Arrays;
+
+/**
+ * Login and breach counts over several trailing time windows.
+ * 
+ * Time is cut into fixed buckets kept in a ring as long as the largest
+ * window. Each window keeps a running sum: when time moves on by a bucket,
+ * the bucket leaving each window is subtracted from that window's sum. Both
+ * recording and reading are O(1) per window, whatever the traffic.
+ * Not thread-safe; callers synchronize.
+ */
+class SlidingWindowCounter {
+    
+    private final long bucketMillis;
+    private final int[] windowBuckets;
+    private final long[] loginBuckets;
+    private final long[] breachBuckets;
+    private final long[] loginSums;
+    private final long[] breachSums;
+    private long currentBucket;
+    
+    /**
+     * @param bucketMillis Bucket length
+     * @param windowBuckets Length of each window in buckets, in increasing order
+     * @param nowMillis Current time
+     */
+    SlidingWindowCounter(long bucketMillis, int[] windowBuckets, long nowMillis) {
+        int ringSize = windowBuckets[windowBuckets.length - 1];
+        this.bucketMillis = bucketMillis;
+        this.windowBuckets = windowBuckets;
+        this.loginBuckets = new long[ringSize];
+        this.breachBuckets = new long[ringSize];
+        this.loginSums = new long[windowBuckets.length];
+        this.breachSums = new long[windowBuckets.length];
+        this.currentBucket = nowMillis / bucketMillis;
+    }
+    
+    void record(long nowMillis, boolean breach) {
+        advance(nowMillis);
+        int slot = slot(currentBucket);
+        loginBuckets[slot]++;
+        for (int w = 0; w < windowBuckets.length; w++) {
+            loginSums[w]++;
+        }
+        if (breach) {
+            breachBuckets[slot]++;
+            for (int w = 0; w < windowBuckets.length; w++) {
+                breachSums[w]++;
+            }
+        }
+    }
+    
+    long logins(long nowMillis, int window) {
+        advance(nowMillis);
+        return loginSums[window];
+    }
+    
+    long breaches(long nowMillis, int window) {
+        advance(nowMillis);
+        return breachSums[window];
+    }
+    
+    /**
+     * Move the current bucket up to now, expiring what falls out of each window.
+     */
+    private void advance(long nowMillis) {
+        long target = nowMillis / bucketMillis;
+        if (target <= currentBucket) {
+            return;
+        }
+        // After a full ring of idle time everything has expired
+        if (target - currentBucket >= loginBuckets.length) {
+            Arrays.fill(loginBuckets, 0);
+            Arrays.fill(breachBuckets, 0);
+            Arrays.fill(loginSums, 0);
+            Arrays.fill(breachSums, 0);
+            currentBucket = target;
+            return;
+        }
+        while (currentBucket < target) {
+            currentBucket++;
+            for (int w = 0; w < windowBuckets.length; w++) {
+                int leaving = slot(currentBucket - windowBuckets[w]);
+                loginSums[w] -= loginBuckets[leaving];
+                breachSums[w] -= breachBuckets[leaving];
+            }
+            // The largest window just let go of this slot, so it can be reused
+            int slot = slot(currentBucket);
+            loginBuckets[slot] = 0;
+            breachBuckets[slot] = 0;
+        }
+    }
+    
+    private int slot(long bucket) {
+        return (int) Math.floorMod(bucket, (long) loginBuckets.length);
+    }
+}
@@ -1,16 +1,28 @@
 package com.casper.rp.controller;
 
+import com.casper.rp.analytics.BreachAnalytics;
+import com.casper.rp.events.BreachEventStream;
+import com.casper.rp.metrics.CasperMetrics;
+import com.casper.rp.metrics.CasperMetrics.Outcome;
+import com.casper.rp.metrics.CasperMetrics.Stage;
 import com.casper.rp.model.LoginAttempt;
 import com.casper.rp.repository.LoginAttemptRepository;
 import com.casper.rp.service.CasperDetectionService;
+import com.casper.rp.service.CasperDetectionService.LoginKey;
+import com.casper.rp.service.CasperDetectionService.RegistrationResult;
+import com.casper.rp.service.PublicKeyDecoder;
+import com.casper.rp.service.RegisteredKeyFilter;
+import com.casper.rp.verify.SignatureVerifier;
+import com.casper.server.datasource.ReadRouting;
+import com.casper.server.service.RelyingPartyService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.security.KeyFactory;
 import java.security.PublicKey;
-import java.security.Signature;
-import java.security.spec.X509EncodedKeySpec;
 import java.util.Base64;
 import java.util.HashMap;
 import java.util.Map;
@@ -19,10 +31,14 @@ import java.util.Map;
  * REST controller for authentication operations.
  * 
  * Handles passkey registration and login with CASPER breach detection.
+ * 
+ * Servlet stack only; with spring.main.web-application-type=reactive the
+ * same API is served by {@link com.casper.rp.reactive.ReactiveAuthController}.
  */
 @RestController
 @RequestMapping("/api/auth")
 @CrossOrigin(origins = "*") // Allow Android app to connect
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class AuthController {
     
     @Autowired
@@ -31,6 +47,30 @@ public class AuthController {
     @Autowired
     private LoginAttemptRepository loginAttemptRepository;
     
+    @Autowired
+    private RelyingPartyService relyingPartyService;
+    
+    @Autowired
+    private RegisteredKeyFilter registeredKeyFilter;
+    
+    @Autowired
+    private PublicKeyDecoder publicKeyDecoder;
+    
+    @Autowired
+    private SignatureVerifier signatureVerifier;
+    
+    @Autowired
+    private ReadRouting readRouting;
+    
+    @Autowired
+    private CasperMetrics metrics;
+    
+    @Autowired
+    private BreachEventStream breachEventStream;
+    
+    @Autowired
+    private BreachAnalytics breachAnalytics;
+    
     /**
      * Register passkeys with RP.
      * 
@@ -41,7 +81,18 @@ public class AuthController {
      *   "publicKeys": ["base64-public-key1", "base64-public-key2", ...]
      * }
      * 
-     * First public key is real, others are decoy (trap) keys.
+     * First public key is real, others are decoy (trap) keys. Keys are
+     * Base64 compressed P-256 points; X.509 keys from older app versions are
+     * accepted and stored compressed as well (see {@link PublicKeyDecoder}).
+     * 
+     * Re-registering only writes the keys that changed; the response says
+     * how many were added, moved and removed, and gives the key set's version
+     * (unchanged when the same keys are sent again). A registration racing
+     * another one for the same user and RP gets 409 and can be retried.
+     * 
+     * With an optional "expectedVersion", the keys are only registered if the
+     * key set is still at that version, and 409 is returned otherwise. Devices
+     * use this to put back the key set a failed re-registration replaced.
      */
     @PostMapping("/register")
     public ResponseEntity<Map<String, Object>> register(@RequestBody Map<String, Object> request) {
@@ -51,19 +102,36 @@ public class AuthController {
             
             @SuppressWarnings("unchecked")
             java.util.List<String> publicKeysList = (java.util.List<String>) request.get("publicKeys");
-            String[] publicKeys = publicKeysList.toArray(new String[0]);
+            String[] publicKeys = new String[publicKeysList.size()];
+            for (int i = 0; i < publicKeys.length; i++) {
+                publicKeys[i] = publicKeyDecoder.storedForm(Base64.getDecoder().decode(publicKeysList.get(i)));
+            }
             
             // Register passkeys (real + decoys)
-            detectionService.registerPasskeys(userId, rpId, publicKeys);
+            RegistrationResult result = detectionService.registerPasskeys(
+                    userId, relyingPartyService.intern(rpId), publicKeys, expectedVersion(request));
+            metrics.registered();
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
-            response.put("message", "Passkeys registered successfully");
+            response.put("message", result.isChanged()
+                    ? "Passkeys registered successfully" : "Passkeys already registered");
             response.put("realKeyCount", 1);
             response.put("decoyKeyCount", publicKeys.length - 1);
+            response.put("version", result.getVersion());
+            response.put("addedKeyCount", result.getAdded());
+            response.put("updatedKeyCount", result.getUpdated());
+            response.put("removedKeyCount", result.getRemoved());
             
             return ResponseEntity.ok(response);
-            
+        
+        } catch (ConcurrencyFailureException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", request.get("expectedVersion") != null
+                    ? "Registration failed: " + e.getMessage()
+                    : "Registration conflicted with a concurrent registration, retry");
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
         } catch (Exception e) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
@@ -72,6 +140,54 @@ public class AuthController {
         }
     }
     
+    /**
+     * Unregister passkeys from RP.
+     * 
+     * Request body:
+     * {
+     *   "userId": "user-id",
+     *   "rpId": "rp-id",
+     *   "expectedVersion": 0
+     * }
+     * 
+     * Removes the real and all decoy keys. Devices call this to roll back a
+     * first registration when the matching PMS upload failed, passing the
+     * version that registration returned. If the key set has changed since
+     * (another registration, or already rolled back), nothing is removed and
+     * 409 is returned.
+     */
+    @PostMapping("/unregister")
+    public ResponseEntity<Map<String, Object>> unregister(@RequestBody Map<String, Object> request) {
+        try {
+            String userId = (String) request.get("userId");
+            String rpId = (String) request.get("rpId");
+            Long expectedVersion = expectedVersion(request);
+            if (expectedVersion == null) {
+                throw new IllegalArgumentException("expectedVersion is required");
+            }
+            
+            int removed = detectionService.unregisterPasskeys(userId, rpId, expectedVersion);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("message", "Passkeys unregistered successfully");
+            response.put("removedKeyCount", removed);
+            
+            return ResponseEntity.ok(response);
+        
+        } catch (ConcurrencyFailureException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Unregistration failed: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+        } catch (Exception e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", "Unregistration failed: " + e.getMessage());
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+    }
+    
     /**
      * Login with passkey signature.
      * 
@@ -85,11 +201,24 @@ public class AuthController {
      * }
      * 
      * Performs:
-     * 1. Signature verification
+     * 1. Signature verification (see {@link SignatureVerifier})
      * 2. CASPER breach detection (CD algorithm)
+     * 
+     * The public key is a compressed point or, from older app versions,
+     * X.509; either matches the key however it was registered.
+     * 
+     * Keys that were never registered for the user and RP are rejected.
+     * Most are caught by {@link RegisteredKeyFilter} before the signature is
+     * verified, without a database query. With read replicas, a key the
+     * replica does not know is looked up again on the primary before it is
+     * rejected, since the registration may not have replicated yet.
+     * 
+     * Each stage (decode, verify, detect, audit) is timed and traced by {@link CasperMetrics}.
      */
     @PostMapping("/login")
     public ResponseEntity<Map<String, Object>> login(@RequestBody Map<String, Object> request) {
+        long start = System.nanoTime();
+        CasperMetrics.StageTimer stage = metrics.startStage(Stage.DECODE);
         try {
             String userId = (String) request.get("userId");
             String rpId = (String) request.get("rpId");
@@ -97,22 +226,26 @@ public class AuthController {
             String challenge = (String) request.get("challenge");
             String signatureBase64 = (String) request.get("signature");
             
-            // Decode public key
             byte[] publicKeyBytes = Base64.getDecoder().decode(publicKeyBase64);
-            KeyFactory keyFactory = KeyFactory.getInstance("EC");
-            X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKeyBytes);
-            PublicKey publicKey = keyFactory.generatePublic(keySpec);
+            String storedKey = publicKeyDecoder.storedForm(publicKeyBytes);
+            if (registeredKeyFilter.isUnregistered(userId, rpId, storedKey, start)) {
+                stage.end();
+                return unknownKey(start);
+            }
+            
+            // Decode public key
+            PublicKey publicKey = publicKeyDecoder.decode(storedKey, publicKeyBytes);
             
             // Decode signature
             byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
+            stage = stage.next(Stage.VERIFY);
             
             // Verify signature
-            Signature signature = Signature.getInstance("SHA256withECDSA");
-            signature.initVerify(publicKey);
-            signature.update(challenge.getBytes());
-            boolean signatureValid = signature.verify(signatureBytes);
+            boolean signatureValid = signatureVerifier.verify(challenge.getBytes(), signatureBytes, publicKey, storedKey);
+            stage.end();
             
             if (!signatureValid) {
+                metrics.recordLogin(Outcome.INVALID_SIGNATURE, start);
                 Map<String, Object> errorResponse = new HashMap<>();
                 errorResponse.put("success", false);
                 errorResponse.put("message", "Invalid signature");
@@ -121,15 +254,35 @@ public class AuthController {
             }
             
             // Perform CASPER breach detection
-            boolean breachDetected = detectionService.detectBreach(userId, rpId, publicKeyBase64);
+            stage = metrics.startStage(Stage.DETECT);
+            LoginKey loginKey = detectionService.detectBreach(userId, rpId, storedKey);
+            if (loginKey == LoginKey.UNREGISTERED && readRouting.hasReplicas()) {
+                // The replica may not have the registration yet; only the primary can say it is unknown
+                loginKey = readRouting.onPrimary(() -> detectionService.detectBreach(userId, rpId, storedKey));
+            }
+            if (loginKey == LoginKey.UNREGISTERED) {
+                registeredKeyFilter.markUnregistered(userId, rpId, storedKey);
+                stage.end();
+                return unknownKey(start);
+            }
+            boolean breachDetected = loginKey == LoginKey.DECOY;
+            stage = stage.next(Stage.AUDIT);
             
             // Record login attempt
             LoginAttempt attempt = new LoginAttempt();
             attempt.setUserId(userId);
-            attempt.setRpId(rpId);
-            attempt.setPublicKey(publicKeyBase64);
+            attempt.setRpKey(relyingPartyService.intern(rpId));
+            attempt.setPublicKey(storedKey);
             attempt.setBreachDetected(breachDetected);
             loginAttemptRepository.save(attempt);
+            stage.end();
+            
+            if (breachDetected) {
+                metrics.breachDetected(rpId);
+                breachEventStream.publish(attempt, rpId);
+            }
+            breachAnalytics.record(userId, rpId, storedKey, breachDetected);
+            metrics.recordLogin(breachDetected ? Outcome.BREACH : Outcome.SUCCESS, start);
             
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
@@ -139,8 +292,10 @@ public class AuthController {
             response.put("breachDetected", breachDetected);
             
             return ResponseEntity.ok(response);
-            
+        
         } catch (Exception e) {
+            stage.fail(e);
+            metrics.recordLogin(Outcome.ERROR, start);
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
             errorResponse.put("message", "Login failed: " + e.getMessage());
@@ -148,5 +303,26 @@ public class AuthController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
     }
+    
+    /**
+     * Reject a login made with a key that is not registered for the user and RP.
+     * Nothing is recorded: such logins are usually junk traffic.
+     */
+    private ResponseEntity<Map<String, Object>> unknownKey(long start) {
+        metrics.recordLogin(Outcome.UNKNOWN_KEY, start);
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", "Unknown passkey");
+        errorResponse.put("breachDetected", false);
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+    
+    /**
+     * The optional "expectedVersion" of a register or unregister request.
+     */
+    public static Long expectedVersion(Map<String, Object> request) {
+        Number expectedVersion = (Number) request.get("expectedVersion");
+        return expectedVersion != null ? expectedVersion.longValue() : null;
+    }
 }
 
@@ -0,0 +1,45 @@
+package com.casper.rp.controller;
+
+import com.casper.rp.analytics.BreachAnalytics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * REST controller for live breach statistics.
+ * 
+ * Served from memory by {@link BreachAnalytics}; polled by the /breach page.
+ */
+@RestController
+@RequestMapping("/api/analytics")
+@CrossOrigin(origins = "*")
+public class BreachAnalyticsController {
+    
+    @Autowired
+    private BreachAnalytics breachAnalytics;
+    
+    /**
+     * Current breach statistics.
+     * 
+     * Response:
+     * {
+     *   "success": true,
+     *   "since": "...", "generatedAt": "...",
+     *   "windows": ["1m", "5m", "15m", "1h"],
+     *   "total": {"logins": {...}, "breaches": {...}, "breachRate": {...},
+     *             "distinctUsers": n, "distinctBreachedUsers": n},
+     *   "rpCount": n,
+     *   "rps": [{"rpId": "...", ...same fields as total}],
+     *   "hotDecoyKeys": [{"publicKey", "userId", "rpId", "estimatedCount"}]
+     * }
+     * 
+     * @param top Maximum RPs to return, most breaches in the last hour first
+     */
+    @GetMapping("/breaches")
+    public ResponseEntity<Map<String, Object>> breaches(
+            @RequestParam(value = "top", defaultValue = "20") int top) {
+        return ResponseEntity.ok(breachAnalytics.snapshot(Math.max(0, top)));
+    }
+}
@@ -0,0 +1,53 @@
+package com.casper.rp.controller;
+
+import com.casper.rp.events.BreachEventStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * REST controller for the live breach event stream.
+ * 
+ * Replaces polling login_attempts for breaches: consumers keep one
+ * Server-Sent Events connection open and get each breach as it is detected.
+ * On the reactive stack, {@link com.casper.rp.reactive.ReactiveBreachStreamController}
+ * serves the same stream.
+ */
+@RestController
+@RequestMapping("/api/breaches")
+@CrossOrigin(origins = "*")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class BreachStreamController {
+    
+    @Autowired
+    private BreachEventStream breachEventStream;
+    
+    /**
+     * Stream breach detections as Server-Sent Events.
+     * 
+     * Events:
+     * - breach: {"sequence", "loginAttemptId", "userId", "rpId", "publicKey", "detectedAt"}
+     * - gap:    {"oldestAvailable", "missedFrom"} - events were lost from memory;
+     *           backfill those from GET /api/breaches?from=...&order=asc
+     * - reset:  {"oldestAvailable"} - the RP restarted since the consumer's last event
+     * 
+     * To resume after a disconnect, send the last event ID back in the
+     * Last-Event-ID header (browsers' EventSource does this automatically) or
+     * the lastEventId query parameter. Without either, only new breaches are sent.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        try {
+            return breachEventStream.subscribe(lastEventId);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+}
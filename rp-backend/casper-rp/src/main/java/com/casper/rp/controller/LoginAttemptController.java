@@ -0,0 +1,185 @@
+package com.casper.rp.controller;
+
+import com.casper.rp.model.LoginAttempt;
+import com.casper.rp.service.LoginAttemptQueryService;
+import com.casper.rp.service.PageCursor;
+import com.casper.server.service.RelyingPartyService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * REST controller for paging through login attempts and breaches.
+ * 
+ * Pages use keyset pagination: a response carries a nextCursor token, and
+ * passing it back as ?cursor= returns the rows after the last one seen. Rows
+ * are written to the response as they are read from the database, so a page
+ * is never held in memory.
+ * 
+ * Response: {"success": true, "items": [...], "nextCursor": "..." | null}
+ */
+@RestController
+@RequestMapping("/api")
+@CrossOrigin(origins = "*")
+public class LoginAttemptController {
+    
+    @Autowired
+    private LoginAttemptQueryService queryService;
+    
+    @Autowired
+    private RelyingPartyService relyingPartyService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Value("${casper.query.default-limit:100}")
+    private int defaultLimit;
+    
+    @Value("${casper.query.max-limit:1000}")
+    private int maxLimit;
+    
+    /**
+     * Page through breaches (logins made with a decoy key).
+     * 
+     * Also the backfill for consumers of /api/breaches/stream that received a
+     * gap or reset event.
+     * 
+     * @param from Inclusive start of the time range (ISO date-time), optional
+     * @param to Exclusive end of the time range (ISO date-time), optional
+     * @param order "desc" (newest first, default) or "asc"
+     * @param limit Page size, at most casper.query.max-limit
+     * @param cursor nextCursor from the previous page, optional
+     */
+    @GetMapping("/breaches")
+    public ResponseEntity<StreamingResponseBody> breaches(
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "order", defaultValue = "desc") String order,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        return page(from, to, order, limit, cursor, (query, consumer) -> queryService.streamBreaches(
+                query.from, query.to, query.cursor, query.newestFirst, query.limit, consumer));
+    }
+    
+    /**
+     * Page through the login attempts of one user at one RP.
+     * 
+     * @param userId User identifier
+     * @param rpId Relying Party identifier
+     * Other parameters are as for {@link #breaches}.
+     */
+    @GetMapping("/login-attempts")
+    public ResponseEntity<StreamingResponseBody> loginAttempts(
+            @RequestParam("userId") String userId,
+            @RequestParam("rpId") String rpId,
+            @RequestParam(value = "from", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(value = "to", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "order", defaultValue = "desc") String order,
+            @RequestParam(value = "limit", required = false) Integer limit,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        return page(from, to, order, limit, cursor, (query, consumer) -> queryService.streamLoginAttempts(
+                userId, rpId, query.from, query.to, query.cursor, query.newestFirst, query.limit, consumer));
+    }
+    
+    /**
+     * Validate the paging parameters, then stream the page from {@code source}.
+     * 
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    private ResponseEntity<StreamingResponseBody> page(LocalDateTime from, LocalDateTime to, String order,
+                                                       Integer limit, String cursor, PageSource source) {
+        PageQuery query = new PageQuery();
+        query.from = from != null ? from : LoginAttemptQueryService.EARLIEST;
+        query.to = to != null ? to : LoginAttemptQueryService.LATEST;
+        query.limit = limit != null ? limit : defaultLimit;
+        
+        if (!query.from.isBefore(query.to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        if (query.limit < 1 || query.limit > maxLimit) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxLimit);
+        }
+        if ("desc".equalsIgnoreCase(order)) {
+            query.newestFirst = true;
+        } else if (!"asc".equalsIgnoreCase(order)) {
+            throw new IllegalArgumentException("order must be asc or desc");
+        }
+        if (cursor != null) {
+            query.cursor = PageCursor.decode(cursor);
+        }
+        
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                json.writeBooleanField("success", true);
+                json.writeArrayFieldStart("items");
+                PageCursor next = source.stream(query, attempt -> writeAttempt(json, attempt));
+                json.writeEndArray();
+                json.writeStringField("nextCursor", next != null ? next.encode() : null);
+                json.writeEndObject();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+    
+    private void writeAttempt(JsonGenerator json, LoginAttempt attempt) {
+        try {
+            json.writeStartObject();
+            json.writeNumberField("id", attempt.getId());
+            json.writeStringField("userId", attempt.getUserId());
+            json.writeStringField("rpId", relyingPartyService.rpId(attempt.getRpKey()));
+            json.writeStringField("publicKey", attempt.getPublicKey());
+            json.writeBooleanField("breachDetected", attempt.getBreachDetected());
+            json.writeStringField("timestamp", attempt.getTimestamp().toString());
+            json.writeEndObject();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    /**
+     * Report invalid paging parameters, before anything has been streamed.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> badRequest(IllegalArgumentException e) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", e.getMessage());
+        return ResponseEntity.badRequest().body(response);
+    }
+    
+    /**
+     * Validated paging parameters.
+     */
+    private static class PageQuery {
+        LocalDateTime from;
+        LocalDateTime to;
+        PageCursor cursor;
+        boolean newestFirst;
+        int limit;
+    }
+    
+    /**
+     * Streams the rows of a page to a consumer and returns the next cursor.
+     */
+    private interface PageSource {
+        PageCursor stream(PageQuery query, Consumer<LoginAttempt> consumer);
+    }
+}
@@ -0,0 +1,61 @@
+package com.casper.rp.events;
+
+import java.time.LocalDateTime;
+
+/**
+ * A login made with a decoy (trap) key, as pushed to stream consumers.
+ * 
+ * Immutable; the same instance is shared by every subscriber.
+ */
+public class BreachEvent {
+    
+    private final long sequence;
+    private final Long loginAttemptId;
+    private final String userId;
+    private final String rpId;
+    private final String publicKey;
+    private final LocalDateTime detectedAt;
+    
+    public BreachEvent(long sequence, Long loginAttemptId, String userId, String rpId,
+                       String publicKey, LocalDateTime detectedAt) {
+        this.sequence = sequence;
+        this.loginAttemptId = loginAttemptId;
+        this.userId = userId;
+        this.rpId = rpId;
+        this.publicKey = publicKey;
+        this.detectedAt = detectedAt;
+    }
+    
+    /**
+     * Position in the stream; increases by one per event within a stream epoch.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * ID of the login_attempts row, for looking the breach up later.
+     */
+    public Long getLoginAttemptId() {
+        return loginAttemptId;
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    public String getRpId() {
+        return rpId;
+    }
+    
+    /**
+     * Decoy public key the attacker logged in with.
+     */
+    public String getPublicKey() {
+        return publicKey;
+    }
+    
+    public LocalDateTime getDetectedAt() {
+        return detectedAt;
+    }
+}
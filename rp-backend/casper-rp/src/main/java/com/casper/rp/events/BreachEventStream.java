@@ -0,0 +1,480 @@
+package com.casper.rp.events;
+
+import com.casper.rp.model.LoginAttempt;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Live stream of breach detections, served as Server-Sent Events.
+ * 
+ * Detected breaches go into a bounded ring buffer holding the last
+ * {@code casper.breach-stream.capacity} events. The buffer is also the
+ * delivery queue: every subscriber has a cursor into it and is drained on a
+ * sender pool, so publishing never waits on a client. Servlet subscribers
+ * ({@link #subscribe}) block on the client's connection while sending, so
+ * the pool has a thread for every subscriber it allows, and a slow client
+ * only delays itself. A subscriber whose send takes longer than
+ * {@code casper.breach-stream.send-timeout-ms} is completed and dropped once
+ * the send returns, and can reconnect with Last-Event-ID. WebFlux subscribers
+ * ({@link #subscribeFlux}) never block: they are only sent as many events as
+ * they have requested, and the rest wait in the buffer.
+ * 
+ * Event IDs are "{epoch}-{sequence}", where the epoch identifies this process.
+ * A consumer that reconnects with Last-Event-ID gets everything after that
+ * event replayed from memory. If it fell further behind than the buffer holds,
+ * or the RP restarted in between, it first gets a "gap" or "reset" event and
+ * should backfill from the paged query API (GET /api/breaches).
+ */
+@Component
+public class BreachEventStream {
+    
+    private static final Logger log = LoggerFactory.getLogger(BreachEventStream.class);
+    
+    private final int capacity;
+    private final long timeoutMs;
+    private final long sendTimeoutNanos;
+    private final int maxSubscribers;
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    
+    // Ring buffer; slot = sequence % capacity. Guarded by this.
+    private final BreachEvent[] ring;
+    private long lastSequence;
+    
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor senders;
+    private final ScheduledExecutorService heartbeats;
+    
+    public BreachEventStream(@Value("${casper.breach-stream.capacity:10000}") int capacity,
+                             @Value("${casper.breach-stream.timeout-ms:1800000}") long timeoutMs,
+                             @Value("${casper.breach-stream.heartbeat-ms:15000}") long heartbeatMs,
+                             @Value("${casper.breach-stream.max-subscribers:100}") int maxSubscribers,
+                             @Value("${casper.breach-stream.send-timeout-ms:10000}") long sendTimeoutMs,
+                             MeterRegistry registry) {
+        this.capacity = capacity;
+        this.timeoutMs = timeoutMs;
+        this.sendTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        this.maxSubscribers = maxSubscribers;
+        this.ring = new BreachEvent[capacity];
+        // One drain runs per subscriber, so this many threads never leave a drain waiting
+        this.senders = new ThreadPoolExecutor(maxSubscribers, maxSubscribers, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), daemon("breach-stream-sender"));
+        senders.allowCoreThreadTimeOut(true);
+        this.heartbeats = Executors.newSingleThreadScheduledExecutor(daemon("breach-stream-heartbeat"));
+        heartbeats.scheduleAtFixedRate(this::heartbeat, heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+        long checkMs = Math.max(1, sendTimeoutMs / 2);
+        heartbeats.scheduleAtFixedRate(this::expireSlowSends, checkMs, checkMs, TimeUnit.MILLISECONDS);
+        
+        Gauge.builder("casper.breach.stream.subscribers", subscribers, Set::size)
+                .description("Connected breach stream consumers")
+                .register(registry);
+    }
+    
+    /**
+     * Record a detected breach and push it to every subscriber.
+     * 
+     * @param attempt The saved login attempt (breachDetected = true)
+     * @param rpId The attempt's rpId (the attempt itself only holds its key)
+     */
+    public void publish(LoginAttempt attempt, String rpId) {
+        publish(attempt.getId(), attempt.getUserId(), rpId, attempt.getPublicKey(), attempt.getTimestamp());
+    }
+    
+    /**
+     * Record a detected breach and push it to every subscriber.
+     * 
+     * @param loginAttemptId ID of the saved login_attempts row
+     * @param detectedAt The login attempt's timestamp
+     */
+    public void publish(Long loginAttemptId, String userId, String rpId, String publicKey,
+                        LocalDateTime detectedAt) {
+        synchronized (this) {
+            long sequence = ++lastSequence;
+            ring[(int) (sequence % capacity)] = new BreachEvent(sequence, loginAttemptId,
+                    userId, rpId, publicKey, detectedAt);
+        }
+        for (Subscriber subscriber : subscribers) {
+            schedule(subscriber);
+        }
+    }
+    
+    /**
+     * Open a stream for a new consumer on the servlet stack.
+     * 
+     * @param lastEventId Last-Event-ID the consumer saw, or null to get only new events
+     * @return Emitter to return from the controller
+     * @throws IllegalStateException if {@code casper.breach-stream.max-subscribers} are connected
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        checkCapacity();
+        
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber subscriber = new EmitterSubscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        add(subscriber, lastEventId);
+        return emitter;
+    }
+    
+    /**
+     * Open a stream for a new consumer on the reactive stack. Same events
+     * as {@link #subscribe}; the stream completes after
+     * {@code casper.breach-stream.timeout-ms}.
+     * 
+     * @param lastEventId Last-Event-ID the consumer saw, or null to get only new events
+     * @return Events to return from the controller
+     * @throws IllegalStateException if {@code casper.breach-stream.max-subscribers} are connected
+     */
+    public Flux<ServerSentEvent<Object>> subscribeFlux(String lastEventId) {
+        checkCapacity();
+        
+        Flux<ServerSentEvent<Object>> events = Flux.create(sink -> {
+            Subscriber subscriber = new FluxSubscriber(sink);
+            sink.onDispose(() -> subscribers.remove(subscriber));
+            sink.onRequest(n -> schedule(subscriber));
+            add(subscriber, lastEventId);
+        });
+        return events.take(Duration.ofMillis(timeoutMs));
+    }
+    
+    private void checkCapacity() {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("Too many breach stream subscribers");
+        }
+    }
+    
+    private void add(Subscriber subscriber, String lastEventId) {
+        synchronized (this) {
+            subscriber.cursor = resumeCursor(lastEventId, subscriber);
+        }
+        subscribers.add(subscriber);
+        
+        // Replays anything missed (and any gap/reset notice)
+        schedule(subscriber);
+    }
+    
+    /**
+     * Work out where a consumer resumes. Caller holds the lock.
+     * 
+     * @return Sequence of the last event the subscriber has seen
+     */
+    private long resumeCursor(String lastEventId, Subscriber subscriber) {
+        if (lastEventId == null || lastEventId.isBlank()) {
+            return lastSequence;
+        }
+        long oldest = Math.max(1, lastSequence - capacity + 1);
+        int dash = lastEventId.lastIndexOf('-');
+        long seen;
+        try {
+            seen = Long.parseLong(lastEventId.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            seen = -1;
+        }
+        
+        if (dash < 0 || seen < 0 || !lastEventId.substring(0, dash).equals(epoch) || seen > lastSequence) {
+            // Another process's sequence: replay all we have, flag that earlier events are unknown
+            subscriber.notice = notice("reset", oldest);
+            return oldest - 1;
+        }
+        if (seen < oldest - 1) {
+            // Fell out of the buffer: events seen+1 .. oldest-1 are gone from memory
+            subscriber.notice = notice("gap", oldest);
+            subscriber.notice.put("missedFrom", seen + 1);
+            return oldest - 1;
+        }
+        return seen;
+    }
+    
+    private Map<String, Object> notice(String type, long oldest) {
+        Map<String, Object> notice = new LinkedHashMap<>();
+        notice.put("type", type);
+        notice.put("oldestAvailable", oldest);
+        return notice;
+    }
+    
+    /**
+     * Events after {@code cursor}, oldest first. If the cursor fell behind the
+     * buffer, returns a gap marker first.
+     */
+    private synchronized List<Object> readAfter(Subscriber subscriber) {
+        List<Object> pending = new ArrayList<>();
+        long oldest = Math.max(1, lastSequence - capacity + 1);
+        if (subscriber.cursor < oldest - 1) {
+            Map<String, Object> gap = notice("gap", oldest);
+            gap.put("missedFrom", subscriber.cursor + 1);
+            pending.add(gap);
+            subscriber.cursor = oldest - 1;
+        }
+        for (long sequence = subscriber.cursor + 1; sequence <= lastSequence; sequence++) {
+            pending.add(ring[(int) (sequence % capacity)]);
+        }
+        return pending;
+    }
+    
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+    
+    /**
+     * Send everything the subscriber has not seen yet. At most one drain runs
+     * per subscriber, so its events go out in order.
+     */
+    private void drain(Subscriber subscriber) {
+        try {
+            while (true) {
+                // Only as much as the subscriber can take now; the rest stays pending
+                if (subscriber.notice != null && subscriber.ready()) {
+                    Map<String, Object> notice = subscriber.notice;
+                    subscriber.notice = null;
+                    send(subscriber, () -> subscriber.send(null, (String) notice.get("type"), notice));
+                }
+                
+                List<Object> pending = subscriber.ready() ? readAfter(subscriber) : List.of();
+                for (Object item : pending) {
+                    if (!subscriber.ready()) {
+                        break;
+                    }
+                    if (item instanceof BreachEvent) {
+                        BreachEvent event = (BreachEvent) item;
+                        send(subscriber, () -> subscriber.send(epoch + "-" + event.getSequence(), "breach", event));
+                        subscriber.cursor = event.getSequence();
+                    } else {
+                        send(subscriber, () -> subscriber.send(null, "gap", item));
+                    }
+                }
+                
+                if (!canSend(subscriber)) {
+                    subscriber.draining.set(false);
+                    // A publish or request may have raced with the flag reset; pick it up rather than strand it
+                    if (!canSend(subscriber) || !subscriber.draining.compareAndSet(false, true)) {
+                        return;
+                    }
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Client went away; the servlet container completes the emitter
+            subscribers.remove(subscriber);
+            subscriber.draining.set(false);
+            log.debug("Breach stream subscriber dropped: {}", e.getMessage());
+        } catch (SendTimeoutException e) {
+            subscribers.remove(subscriber);
+            subscriber.draining.set(false);
+            subscriber.complete();
+        }
+    }
+    
+    /**
+     * Run one send, then give up on the subscriber if the send was marked
+     * as too slow while it ran.
+     */
+    private void send(Subscriber subscriber, Send send) throws IOException, SendTimeoutException {
+        subscriber.sendStartedAt = System.nanoTime();
+        try {
+            send.run();
+        } finally {
+            subscriber.sendStartedAt = 0;
+        }
+        if (subscriber.slow) {
+            throw new SendTimeoutException();
+        }
+    }
+    
+    /**
+     * Mark subscribers whose current send has taken longer than the send
+     * timeout. Their drain drops them when the send returns; the emitter
+     * cannot be completed from here while the send holds it.
+     */
+    private void expireSlowSends() {
+        long now = System.nanoTime();
+        for (Subscriber subscriber : subscribers) {
+            long startedAt = subscriber.sendStartedAt;
+            if (startedAt != 0 && now - startedAt > sendTimeoutNanos && !subscriber.slow) {
+                subscriber.slow = true;
+                log.info("Breach stream subscriber dropped: send took longer than {} ms",
+                        TimeUnit.NANOSECONDS.toMillis(sendTimeoutNanos));
+            }
+        }
+    }
+    
+    private boolean canSend(Subscriber subscriber) {
+        return subscriber.ready() && (subscriber.notice != null || hasPending(subscriber));
+    }
+    
+    private synchronized boolean hasPending(Subscriber subscriber) {
+        return subscriber.cursor < lastSequence;
+    }
+    
+    /**
+     * Comment line to every idle subscriber, so proxies keep the connection
+     * open and dead clients are noticed.
+     */
+    private void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.draining.compareAndSet(false, true)) {
+                senders.execute(() -> {
+                    try {
+                        if (subscriber.ready()) {
+                            send(subscriber, () -> subscriber.comment("keepalive"));
+                        }
+                        drain(subscriber);
+                    } catch (IOException | IllegalStateException e) {
+                        subscribers.remove(subscriber);
+                        subscriber.draining.set(false);
+                    } catch (SendTimeoutException e) {
+                        subscribers.remove(subscriber);
+                        subscriber.draining.set(false);
+                        subscriber.complete();
+                    }
+                });
+            }
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        heartbeats.shutdownNow();
+        senders.shutdownNow();
+        for (Subscriber subscriber : subscribers) {
+            subscriber.complete();
+        }
+        subscribers.clear();
+    }
+    
+    private static ThreadFactory daemon(String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+    
+    /**
+     * One connected consumer.
+     */
+    private abstract static class Subscriber {
+        final AtomicBoolean draining = new AtomicBoolean();
+        // Only touched by the single running drain (or under the stream lock)
+        volatile long cursor;
+        volatile Map<String, Object> notice;
+        // System.nanoTime() when the running send started, 0 between sends
+        volatile long sendStartedAt;
+        volatile boolean slow;
+        
+        /**
+         * Whether the consumer can take another event now.
+         */
+        boolean ready() {
+            return true;
+        }
+        
+        /**
+         * @param id Event ID, or null for none
+         */
+        abstract void send(String id, String name, Object data) throws IOException;
+        
+        abstract void comment(String comment) throws IOException;
+        
+        abstract void complete();
+    }
+    
+    /**
+     * Servlet consumer. Sends block until the connection takes the event.
+     */
+    private static class EmitterSubscriber extends Subscriber {
+        final SseEmitter emitter;
+        
+        EmitterSubscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+        
+        @Override
+        void send(String id, String name, Object data) throws IOException {
+            SseEmitter.SseEventBuilder event = SseEmitter.event();
+            if (id != null) {
+                event.id(id);
+            }
+            emitter.send(event.name(name).data(data, MediaType.APPLICATION_JSON));
+        }
+        
+        @Override
+        void comment(String comment) throws IOException {
+            emitter.send(SseEmitter.event().comment(comment));
+        }
+        
+        @Override
+        void complete() {
+            emitter.complete();
+        }
+    }
+    
+    /**
+     * WebFlux consumer. Ready only while it has requested more events, so
+     * nothing queues up in front of a slow connection.
+     */
+    private static class FluxSubscriber extends Subscriber {
+        final FluxSink<ServerSentEvent<Object>> sink;
+        
+        FluxSubscriber(FluxSink<ServerSentEvent<Object>> sink) {
+            this.sink = sink;
+        }
+        
+        @Override
+        boolean ready() {
+            return sink.requestedFromDownstream() > 0 && !sink.isCancelled();
+        }
+        
+        @Override
+        void send(String id, String name, Object data) {
+            sink.next(ServerSentEvent.builder(data).id(id).event(name).build());
+        }
+        
+        @Override
+        void comment(String comment) {
+            sink.next(ServerSentEvent.builder().comment(comment).build());
+        }
+        
+        @Override
+        void complete() {
+            sink.complete();
+        }
+    }
+    
+    private interface Send {
+        void run() throws IOException;
+    }
+    
+    /**
+     * A send to the subscriber took longer than the send timeout.
+     */
+    private static class SendTimeoutException extends Exception {
+    }
+}
@@ -0,0 +1,312 @@
+package com.casper.rp.grpc;
+
+import com.casper.rp.analytics.BreachAnalytics;
+import com.casper.rp.controller.AuthController;
+import com.casper.rp.events.BreachEventStream;
+import com.casper.rp.grpc.proto.CasperAuthGrpc;
+import com.casper.rp.grpc.proto.LoginBatchRequest;
+import com.casper.rp.grpc.proto.LoginBatchResponse;
+import com.casper.rp.grpc.proto.LoginOutcome;
+import com.casper.rp.grpc.proto.LoginRequest;
+import com.casper.rp.grpc.proto.LoginResponse;
+import com.casper.rp.grpc.proto.RegisterRequest;
+import com.casper.rp.grpc.proto.RegisterResponse;
+import com.casper.rp.metrics.CasperMetrics;
+import com.casper.rp.metrics.CasperMetrics.Outcome;
+import com.casper.rp.metrics.CasperMetrics.Stage;
+import com.casper.rp.model.LoginAttempt;
+import com.casper.rp.repository.LoginAttemptRepository;
+import com.casper.rp.service.CasperDetectionService;
+import com.casper.rp.service.CasperDetectionService.LoginKey;
+import com.casper.rp.service.CasperDetectionService.RegistrationResult;
+import com.casper.rp.service.PublicKeyDecoder;
+import com.casper.rp.service.RegisteredKeyFilter;
+import com.casper.rp.verify.SignatureVerifier;
+import com.casper.server.datasource.ReadRouting;
+import com.casper.server.service.RelyingPartyService;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Service;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The gRPC counterpart of {@link AuthController} (src/main/proto/casper_auth.proto).
+ * 
+ * Same checks, storage, metrics and breach events as the REST login, on
+ * {@link CasperDetectionService}; keys and signatures arrive as bytes, so
+ * there is no JSON or Base64 to decode. Calls run on {@link GrpcServer}'s
+ * executor and block on the database like the servlet stack.
+ * 
+ * In a batch, every login is checked first and the login attempts are then
+ * saved together in one transaction, so the audit stage is timed once per
+ * batch rather than once per login.
+ */
+@Service
+@ConditionalOnProperty(name = "casper.grpc.enabled", havingValue = "true", matchIfMissing = true)
+public class CasperAuthGrpcService extends CasperAuthGrpc.CasperAuthImplBase {
+    
+    private final CasperDetectionService detectionService;
+    private final LoginAttemptRepository loginAttemptRepository;
+    private final RelyingPartyService relyingPartyService;
+    private final RegisteredKeyFilter registeredKeyFilter;
+    private final PublicKeyDecoder publicKeyDecoder;
+    private final SignatureVerifier signatureVerifier;
+    private final ReadRouting readRouting;
+    private final CasperMetrics metrics;
+    private final BreachEventStream breachEventStream;
+    private final BreachAnalytics breachAnalytics;
+    
+    public CasperAuthGrpcService(CasperDetectionService detectionService,
+                                 LoginAttemptRepository loginAttemptRepository,
+                                 RelyingPartyService relyingPartyService,
+                                 RegisteredKeyFilter registeredKeyFilter,
+                                 PublicKeyDecoder publicKeyDecoder,
+                                 SignatureVerifier signatureVerifier,
+                                 ReadRouting readRouting,
+                                 CasperMetrics metrics,
+                                 BreachEventStream breachEventStream,
+                                 BreachAnalytics breachAnalytics) {
+        this.detectionService = detectionService;
+        this.loginAttemptRepository = loginAttemptRepository;
+        this.relyingPartyService = relyingPartyService;
+        this.registeredKeyFilter = registeredKeyFilter;
+        this.publicKeyDecoder = publicKeyDecoder;
+        this.signatureVerifier = signatureVerifier;
+        this.readRouting = readRouting;
+        this.metrics = metrics;
+        this.breachEventStream = breachEventStream;
+        this.breachAnalytics = breachAnalytics;
+    }
+    
+    @Override
+    public void register(RegisterRequest request, StreamObserver<RegisterResponse> responseObserver) {
+        try {
+            requireIds(request.getUserId(), request.getRpId());
+            if (request.getPublicKeysCount() == 0) {
+                throw new IllegalArgumentException("publicKeys is required");
+            }
+            String[] publicKeys = new String[request.getPublicKeysCount()];
+            for (int i = 0; i < publicKeys.length; i++) {
+                publicKeys[i] = publicKeyDecoder.storedForm(request.getPublicKeys(i).toByteArray());
+            }
+            
+            RegistrationResult result = detectionService.registerPasskeys(
+                    request.getUserId(), relyingPartyService.intern(request.getRpId()), publicKeys);
+            metrics.registered();
+            
+            responseObserver.onNext(RegisterResponse.newBuilder()
+                    .setChanged(result.isChanged())
+                    .setRealKeyCount(1)
+                    .setDecoyKeyCount(publicKeys.length - 1)
+                    .setVersion(result.getVersion())
+                    .setAddedKeyCount(result.getAdded())
+                    .setUpdatedKeyCount(result.getUpdated())
+                    .setRemovedKeyCount(result.getRemoved())
+                    .build());
+            responseObserver.onCompleted();
+            
+        } catch (ConcurrencyFailureException e) {
+            responseObserver.onError(Status.ABORTED
+                    .withDescription("Registration conflicted with a concurrent registration, retry")
+                    .asRuntimeException());
+        } catch (IllegalArgumentException | GeneralSecurityException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Registration failed: " + e.getMessage())
+                    .asRuntimeException());
+        } catch (Exception e) {
+            responseObserver.onError(Status.INTERNAL
+                    .withDescription("Registration failed: " + e.getMessage())
+                    .asRuntimeException());
+        }
+    }
+    
+    @Override
+    public void login(LoginRequest request, StreamObserver<LoginResponse> responseObserver) {
+        LoginResponse response = login(Collections.singletonList(request)).get(0);
+        if (response.getOutcome() == LoginOutcome.ERROR) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(response.getMessage()).asRuntimeException());
+            return;
+        }
+        if (response.getOutcome() == LoginOutcome.SERVER_ERROR) {
+            responseObserver.onError(Status.INTERNAL.withDescription(response.getMessage()).asRuntimeException());
+            return;
+        }
+        responseObserver.onNext(response);
+        responseObserver.onCompleted();
+    }
+    
+    /**
+     * One batch at a time: the next batch is only read once the response to
+     * the previous one can be sent, so a client that stops reading stops
+     * being served instead of filling the server's buffers.
+     */
+    @Override
+    public StreamObserver<LoginBatchRequest> loginBatches(StreamObserver<LoginBatchResponse> responseObserver) {
+        ServerCallStreamObserver<LoginBatchResponse> call = (ServerCallStreamObserver<LoginBatchResponse>) responseObserver;
+        call.disableAutoRequest();
+        // Whether a batch has been requested since the call last became ready; only touched on the call's executor
+        boolean[] requested = new boolean[1];
+        call.setOnReadyHandler(() -> {
+            if (call.isReady() && !requested[0]) {
+                requested[0] = true;
+                call.request(1);
+            }
+        });
+        return new StreamObserver<>() {
+            @Override
+            public void onNext(LoginBatchRequest batch) {
+                call.onNext(LoginBatchResponse.newBuilder().addAllResults(login(batch.getLoginsList())).build());
+                if (call.isReady()) {
+                    call.request(1);
+                } else {
+                    requested[0] = false;
+                }
+            }
+            
+            @Override
+            public void onError(Throwable error) {
+                // Client cancelled; nothing to clean up
+            }
+            
+            @Override
+            public void onCompleted() {
+                call.onCompleted();
+            }
+        };
+    }
+    
+    /**
+     * Check each login as {@link AuthController#login} does, then save the
+     * login attempts of the ones that passed together.
+     * 
+     * @return One response per request, in order; malformed requests get ERROR,
+     *         and ones the server failed to check or record SERVER_ERROR
+     */
+    private List<LoginResponse> login(List<LoginRequest> requests) {
+        LoginResponse[] responses = new LoginResponse[requests.size()];
+        long[] starts = new long[requests.size()];
+        List<Integer> accepted = new ArrayList<>();
+        List<LoginAttempt> attempts = new ArrayList<>();
+        
+        for (int i = 0; i < requests.size(); i++) {
+            LoginRequest request = requests.get(i);
+            long start = System.nanoTime();
+            starts[i] = start;
+            CasperMetrics.StageTimer stage = metrics.startStage(Stage.DECODE);
+            try {
+                String userId = request.getUserId();
+                String rpId = request.getRpId();
+                requireIds(userId, rpId);
+                
+                byte[] publicKeyBytes = request.getPublicKey().toByteArray();
+                String storedKey = publicKeyDecoder.storedForm(publicKeyBytes);
+                if (registeredKeyFilter.isUnregistered(userId, rpId, storedKey, start)) {
+                    stage.end();
+                    responses[i] = unknownKey(start);
+                    continue;
+                }
+                PublicKey publicKey = publicKeyDecoder.decode(storedKey, publicKeyBytes);
+                stage = stage.next(Stage.VERIFY);
+                
+                boolean signatureValid = signatureVerifier.verify(request.getChallenge().toByteArray(),
+                        request.getSignature().toByteArray(), publicKey, storedKey);
+                stage.end();
+                if (!signatureValid) {
+                    metrics.recordLogin(Outcome.INVALID_SIGNATURE, start);
+                    responses[i] = response(LoginOutcome.INVALID_SIGNATURE, "Invalid signature");
+                    continue;
+                }
+                
+                stage = metrics.startStage(Stage.DETECT);
+                LoginKey loginKey = detectionService.detectBreach(userId, rpId, storedKey);
+                if (loginKey == LoginKey.UNREGISTERED && readRouting.hasReplicas()) {
+                    // The replica may not have the registration yet; only the primary can say it is unknown
+                    loginKey = readRouting.onPrimary(() -> detectionService.detectBreach(userId, rpId, storedKey));
+                }
+                if (loginKey == LoginKey.UNREGISTERED) {
+                    registeredKeyFilter.markUnregistered(userId, rpId, storedKey);
+                    stage.end();
+                    responses[i] = unknownKey(start);
+                    continue;
+                }
+                stage.end();
+                
+                LoginAttempt attempt = new LoginAttempt();
+                attempt.setUserId(userId);
+                attempt.setRpKey(relyingPartyService.intern(rpId));
+                attempt.setPublicKey(storedKey);
+                attempt.setBreachDetected(loginKey == LoginKey.DECOY);
+                accepted.add(i);
+                attempts.add(attempt);
+                
+            } catch (IllegalArgumentException | GeneralSecurityException e) {
+                stage.fail(e);
+                metrics.recordLogin(Outcome.ERROR, start);
+                responses[i] = response(LoginOutcome.ERROR, "Login failed: " + e.getMessage());
+            } catch (Exception e) {
+                stage.fail(e);
+                metrics.recordLogin(Outcome.ERROR, start);
+                responses[i] = response(LoginOutcome.SERVER_ERROR, "Login failed: " + e.getMessage());
+            }
+        }
+        if (attempts.isEmpty()) {
+            return List.of(responses);
+        }
+        
+        CasperMetrics.StageTimer stage = metrics.startStage(Stage.AUDIT);
+        try {
+            loginAttemptRepository.saveAll(attempts);
+            stage.end();
+        } catch (Exception e) {
+            stage.fail(e);
+            for (int i : accepted) {
+                metrics.recordLogin(Outcome.ERROR, starts[i]);
+                responses[i] = response(LoginOutcome.SERVER_ERROR, "Login failed: " + e.getMessage());
+            }
+            return List.of(responses);
+        }
+        
+        for (int j = 0; j < attempts.size(); j++) {
+            LoginAttempt attempt = attempts.get(j);
+            int i = accepted.get(j);
+            String rpId = requests.get(i).getRpId();
+            boolean breachDetected = attempt.getBreachDetected();
+            if (breachDetected) {
+                metrics.breachDetected(rpId);
+                breachEventStream.publish(attempt, rpId);
+            }
+            breachAnalytics.record(attempt.getUserId(), rpId, attempt.getPublicKey(), breachDetected);
+            metrics.recordLogin(breachDetected ? Outcome.BREACH : Outcome.SUCCESS, starts[i]);
+            responses[i] = breachDetected
+                    ? response(LoginOutcome.BREACH, "⚠️ BREACH DETECTED: Decoy passkey used!")
+                    : response(LoginOutcome.SUCCESS, "Login successful");
+        }
+        return List.of(responses);
+    }
+    
+    private LoginResponse unknownKey(long start) {
+        metrics.recordLogin(Outcome.UNKNOWN_KEY, start);
+        return response(LoginOutcome.UNKNOWN_KEY, "Unknown passkey");
+    }
+    
+    private static LoginResponse response(LoginOutcome outcome, String message) {
+        return LoginResponse.newBuilder().setOutcome(outcome).setMessage(message).build();
+    }
+    
+    /**
+     * proto3 strings are never null, so missing ids arrive as "".
+     */
+    private static void requireIds(String userId, String rpId) {
+        if (userId.isEmpty() || rpId.isEmpty()) {
+            throw new IllegalArgumentException("userId and rpId are required");
+        }
+    }
+}
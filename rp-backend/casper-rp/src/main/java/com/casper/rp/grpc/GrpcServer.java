@@ -0,0 +1,97 @@
+package com.casper.rp.grpc;
+
+import io.grpc.BindableService;
+import io.grpc.Server;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * gRPC server next to the web server, on casper.grpc.port.
+ * 
+ * Plaintext HTTP/2 (h2c), like the REST API's plain HTTP, so it can be
+ * called without certificates; put it behind a TLS-terminating proxy, or
+ * bind it to an internal address (casper.grpc.bind-address), outside a
+ * trusted network. Calls run on casper.grpc.threads threads, since the
+ * services block on the database.
+ */
+@Component
+@ConditionalOnProperty(name = "casper.grpc.enabled", havingValue = "true", matchIfMissing = true)
+public class GrpcServer implements SmartLifecycle {
+    
+    private static final Logger log = LoggerFactory.getLogger(GrpcServer.class);
+    
+    private final Server server;
+    private final ExecutorService executor;
+    private volatile boolean running;
+    
+    public GrpcServer(List<BindableService> services,
+                      @Value("${casper.grpc.bind-address:0.0.0.0}") String bindAddress,
+                      @Value("${casper.grpc.port:9081}") int port,
+                      @Value("${casper.grpc.threads:64}") int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "casper-grpc-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        NettyServerBuilder builder = NettyServerBuilder.forAddress(new InetSocketAddress(bindAddress, port))
+                .executor(executor);
+        services.forEach(builder::addService);
+        this.server = builder.build();
+    }
+    
+    @Override
+    public void start() {
+        try {
+            server.start();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not start the gRPC server", e);
+        }
+        running = true;
+        log.info("gRPC (h2c) listening on {}", server.getListenSockets());
+    }
+    
+    /**
+     * Stop taking calls and give running ones a few seconds to finish.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        server.shutdown();
+        try {
+            if (!server.awaitTermination(5, TimeUnit.SECONDS)) {
+                server.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            server.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+    }
+    
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+    
+    /**
+     * The port actually bound, which differs from casper.grpc.port when that is 0.
+     */
+    public int getPort() {
+        return server.getPort();
+    }
+}
@@ -0,0 +1,237 @@
+package com.casper.rp.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer instrumentation for the CASPER login and registration paths.
+ * 
+ * Meters (scraped from /actuator/prometheus):
+ * - casper.login.stage{stage}      timer per login stage: decode, verify, detect, audit
+ * - casper.login{outcome}          timer for the whole login: success, breach, invalid_signature, unknown_key, error
+ * - casper.registrations           counter of successful registrations
+ * - casper.signatures.invalid      counter of logins rejected for a bad signature
+ * - casper.breaches{rpId}          counter of logins made with a decoy key
+ * 
+ * Login stages are traced as well as timed: each stage is a span named
+ * casper.login.{stage} under the request's server span.
+ * 
+ * All meters are registered up front or cached, so the hot path is a map
+ * lookup and a lock-free record. userId is never used as a tag, and rpId tags
+ * are capped: once {@code casper.metrics.max-rp-tags} distinct RPs have been
+ * seen, further RPs are counted under "other".
+ */
+@Component
+public class CasperMetrics {
+    
+    /** rpId tag value used once the per-RP tag budget is exhausted. */
+    public static final String OTHER_RP = "other";
+    
+    /**
+     * Stages of a login request, in execution order.
+     */
+    public enum Stage {
+        DECODE("decode"),
+        VERIFY("verify"),
+        DETECT("detect"),
+        AUDIT("audit");
+        
+        private final String tag;
+        
+        Stage(String tag) {
+            this.tag = tag;
+        }
+        
+        public String getTag() {
+            return tag;
+        }
+    }
+    
+    /**
+     * Overall result of a login request.
+     */
+    public enum Outcome {
+        SUCCESS("success"),
+        BREACH("breach"),
+        INVALID_SIGNATURE("invalid_signature"),
+        UNKNOWN_KEY("unknown_key"),
+        ERROR("error");
+        
+        private final String tag;
+        
+        Outcome(String tag) {
+            this.tag = tag;
+        }
+        
+        public String getTag() {
+            return tag;
+        }
+    }
+    
+    private final MeterRegistry registry;
+    private final Tracer tracer;
+    private final int maxRpTags;
+    private final Map<Stage, Timer> stageTimers = new EnumMap<>(Stage.class);
+    private final Map<Outcome, Timer> loginTimers = new EnumMap<>(Outcome.class);
+    private final Map<String, Counter> breachCounters = new ConcurrentHashMap<>();
+    private final Counter registrations;
+    private final Counter invalidSignatures;
+    
+    public CasperMetrics(MeterRegistry registry, ObjectProvider<Tracer> tracer,
+                         @Value("${casper.metrics.max-rp-tags:100}") int maxRpTags) {
+        this.registry = registry;
+        this.tracer = tracer.getIfAvailable(() -> Tracer.NOOP);
+        this.maxRpTags = maxRpTags;
+        
+        for (Stage stage : Stage.values()) {
+            stageTimers.put(stage, Timer.builder("casper.login.stage")
+                    .description("Time spent in each stage of a login request")
+                    .tag("stage", stage.getTag())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        for (Outcome outcome : Outcome.values()) {
+            loginTimers.put(outcome, Timer.builder("casper.login")
+                    .description("Total login request time by outcome")
+                    .tag("outcome", outcome.getTag())
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        
+        registrations = Counter.builder("casper.registrations")
+                .description("Successful passkey registrations")
+                .register(registry);
+        invalidSignatures = Counter.builder("casper.signatures.invalid")
+                .description("Logins rejected because the signature did not verify")
+                .register(registry);
+    }
+    
+    /**
+     * Start timing a login stage.
+     * 
+     * The stage is also traced as a child span of the current request span
+     * (casper.login.{stage}), so it shows up in the login's trace waterfall.
+     * 
+     * @param stage Stage that is starting
+     * @return Handle that stops the timer and ends the span
+     */
+    public StageTimer startStage(Stage stage) {
+        Span span = tracer.nextSpan().name("casper.login." + stage.getTag()).start();
+        return new StageTimer(stage, span, tracer.withSpan(span), System.nanoTime());
+    }
+    
+    /**
+     * Record the time of a login stage that ran without a {@link StageTimer}.
+     * 
+     * For the reactive stack, whose stages hop threads, so a span cannot be
+     * kept in scope across them: the stage is timed but not traced.
+     * 
+     * @param stage Stage that finished
+     * @param startNanos {@link System#nanoTime()} when the stage started
+     */
+    public void recordStage(Stage stage, long startNanos) {
+        stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * Record a finished login request.
+     * 
+     * @param outcome How the login ended
+     * @param startNanos {@link System#nanoTime()} when the request started
+     */
+    public void recordLogin(Outcome outcome, long startNanos) {
+        loginTimers.get(outcome).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        if (outcome == Outcome.INVALID_SIGNATURE) {
+            invalidSignatures.increment();
+        }
+    }
+    
+    /**
+     * Count a login made with a decoy key.
+     */
+    public void breachDetected(String rpId) {
+        breachCounter(rpId).increment();
+    }
+    
+    /**
+     * Count a successful registration.
+     */
+    public void registered() {
+        registrations.increment();
+    }
+    
+    private Counter breachCounter(String rpId) {
+        String tag = rpId != null ? rpId : OTHER_RP;
+        Counter counter = breachCounters.get(tag);
+        if (counter != null) {
+            return counter;
+        }
+        if (breachCounters.size() >= maxRpTags) {
+            tag = OTHER_RP;
+        }
+        return breachCounters.computeIfAbsent(tag, rp -> Counter.builder("casper.breaches")
+                .description("Logins made with a decoy (trap) key")
+                .tag("rpId", rp)
+                .register(registry));
+    }
+    
+    /**
+     * A running login stage: its timer start and its span.
+     */
+    public class StageTimer {
+        private final Stage stage;
+        private final Span span;
+        private final Tracer.SpanInScope scope;
+        private final long startNanos;
+        private boolean ended;
+        
+        private StageTimer(Stage stage, Span span, Tracer.SpanInScope scope, long startNanos) {
+            this.stage = stage;
+            this.span = span;
+            this.scope = scope;
+            this.startNanos = startNanos;
+        }
+        
+        /**
+         * End this stage and start the next one.
+         */
+        public StageTimer next(Stage nextStage) {
+            end();
+            return startStage(nextStage);
+        }
+        
+        /**
+         * Stop the timer and end the span. Does nothing if already ended.
+         */
+        public void end() {
+            if (ended) {
+                return;
+            }
+            ended = true;
+            stageTimers.get(stage).record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            scope.close();
+            span.end();
+        }
+        
+        /**
+         * Mark the span as failed and end the stage. Does nothing if already ended.
+         */
+        public void fail(Throwable error) {
+            if (!ended) {
+                span.error(error);
+                end();
+            }
+        }
+    }
+}
@@ -7,9 +7,16 @@ import java.time.LocalDateTime;
  * Entity class for login attempts.
  * 
  * Records all login attempts including breach detection results.
+ * 
+ * Both indexes end in (timestamp, id), the keyset that
+ * {@link com.casper.rp.repository.LoginAttemptRepository} pages on, so a
+ * page is one index range scan whatever its depth.
  */
 @Entity
-@Table(name = "login_attempts")
+@Table(name = "login_attempts", indexes = {
+        @Index(name = "idx_login_attempts_breach_ts", columnList = "breach_detected, timestamp, id"),
+        @Index(name = "idx_login_attempts_user_rp_ts", columnList = "user_id, rp_key, timestamp, id")
+})
 public class LoginAttempt {
     
     @Id
@@ -19,11 +26,11 @@ public class LoginAttempt {
     @Column(name = "user_id", nullable = false)
     private String userId;
     
-    @Column(name = "rp_id", nullable = false)
-    private String rpId;
+    @Column(name = "rp_key", nullable = false)
+    private Integer rpKey; // Interned rpId, see RelyingParty
     
     @Column(name = "public_key", columnDefinition = "TEXT", nullable = false)
-    private String publicKey; // Base64-encoded public key used for login
+    private String publicKey; // Public key used for login (compressed; X.509 for older attempts)
     
     @Column(name = "breach_detected", nullable = false)
     private Boolean breachDetected; // CASPER breach detection result
@@ -53,12 +60,12 @@ public class LoginAttempt {
         this.userId = userId;
     }
     
-    public String getRpId() {
-        return rpId;
+    public Integer getRpKey() {
+        return rpKey;
     }
     
-    public void setRpId(String rpId) {
-        this.rpId = rpId;
+    public void setRpKey(Integer rpKey) {
+        this.rpKey = rpKey;
     }
     
     public String getPublicKey() {
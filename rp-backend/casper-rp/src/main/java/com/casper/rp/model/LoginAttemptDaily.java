@@ -0,0 +1,85 @@
+package com.casper.rp.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Daily per-user/per-RP login counts.
+ * 
+ * Written by {@link com.casper.rp.partition.PartitionMaintenance} when a day's
+ * login_attempts partition passes the retention period: the raw rows are
+ * rolled up into one row per (day, user, RP) and the partition is dropped.
+ */
+@Entity
+@Table(name = "login_attempt_daily",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"login_date", "user_id", "rp_key"}))
+public class LoginAttemptDaily {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "login_date", nullable = false)
+    private LocalDate loginDate;
+    
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+    
+    @Column(name = "rp_key", nullable = false)
+    private Integer rpKey; // Interned rpId, see RelyingParty
+    
+    @Column(name = "attempts", nullable = false)
+    private Long attempts;
+    
+    @Column(name = "breaches", nullable = false)
+    private Long breaches; // Logins made with a decoy (trap) key
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public LocalDate getLoginDate() {
+        return loginDate;
+    }
+    
+    public void setLoginDate(LocalDate loginDate) {
+        this.loginDate = loginDate;
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    public Integer getRpKey() {
+        return rpKey;
+    }
+    
+    public void setRpKey(Integer rpKey) {
+        this.rpKey = rpKey;
+    }
+    
+    public Long getAttempts() {
+        return attempts;
+    }
+    
+    public void setAttempts(Long attempts) {
+        this.attempts = attempts;
+    }
+    
+    public Long getBreaches() {
+        return breaches;
+    }
+    
+    public void setBreaches(Long breaches) {
+        this.breaches = breaches;
+    }
+}
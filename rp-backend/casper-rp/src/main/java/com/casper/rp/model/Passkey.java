@@ -8,9 +8,18 @@ import java.time.LocalDateTime;
  * 
  * Stores public keys of all passkeys (real + decoys).
  * The first public key is the real one, others are decoys (trap keys).
+ * 
+ * created_at is indexed for {@link com.casper.rp.service.RegisteredKeyFilter},
+ * which periodically reads the passkeys created since its last sync.
+ * public_key is indexed for login lookups; as a 44-character compressed
+ * point it fits a plain VARCHAR (128 leaves room for X.509 keys that
+ * {@link com.casper.rp.service.PublicKeyMigration} has not converted yet).
  */
 @Entity
-@Table(name = "passkeys")
+@Table(name = "passkeys", indexes = {
+        @Index(name = "idx_passkeys_created_at", columnList = "created_at"),
+        @Index(name = "idx_passkeys_public_key", columnList = "public_key")
+})
 public class Passkey {
     
     @Id
@@ -20,11 +29,11 @@ public class Passkey {
     @Column(name = "user_id", nullable = false)
     private String userId;
     
-    @Column(name = "rp_id", nullable = false)
-    private String rpId;
+    @Column(name = "rp_key", nullable = false)
+    private Integer rpKey; // Interned rpId, see RelyingParty
     
-    @Column(name = "public_key", columnDefinition = "TEXT", nullable = false)
-    private String publicKey; // Base64-encoded public key
+    @Column(name = "public_key", length = 128, nullable = false)
+    private String publicKey; // Base64 compressed P-256 point, see PublicKeyDecoder
     
     @Column(name = "is_real", nullable = false)
     private Boolean isReal; // true if real passkey, false if decoy (trap key)
@@ -57,12 +66,12 @@ public class Passkey {
         this.userId = userId;
     }
     
-    public String getRpId() {
-        return rpId;
+    public Integer getRpKey() {
+        return rpKey;
     }
     
-    public void setRpId(String rpId) {
-        this.rpId = rpId;
+    public void setRpKey(Integer rpKey) {
+        this.rpKey = rpKey;
     }
     
     public String getPublicKey() {
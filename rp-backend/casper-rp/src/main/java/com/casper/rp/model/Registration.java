@@ -0,0 +1,102 @@
+package com.casper.rp.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * The registered key set of one user at one RP, as a whole.
+ * 
+ * The keys themselves are {@link Passkey} rows; this row carries the set's
+ * version, which goes up each time a registration changes the set. A
+ * re-registration with the same keys in the same order changes nothing and
+ * keeps the version. Concurrent registrations for the same user and RP
+ * conflict on the version (or, for the first one, on the unique constraint),
+ * so at most one of them commits.
+ */
+@Entity
+@Table(name = "registrations",
+       uniqueConstraints = @UniqueConstraint(columnNames = {"user_id", "rp_key"}))
+public class Registration {
+    
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(name = "user_id", nullable = false)
+    private String userId;
+    
+    @Column(name = "rp_key", nullable = false)
+    private Integer rpKey; // Interned rpId, see RelyingParty
+    
+    @Column(name = "key_count", nullable = false)
+    private Integer keyCount; // Registered keys (real + decoys), 0 after unregistering
+    
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version; // Incremented each time the key set changes
+    
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+    
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+    
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+        updatedAt = createdAt;
+    }
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    public Integer getRpKey() {
+        return rpKey;
+    }
+    
+    public void setRpKey(Integer rpKey) {
+        this.rpKey = rpKey;
+    }
+    
+    public Integer getKeyCount() {
+        return keyCount;
+    }
+    
+    public void setKeyCount(Integer keyCount) {
+        this.keyCount = keyCount;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
@@ -0,0 +1,121 @@
+package com.casper.rp.partition;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table-per-day partitioning for H2, which has no declarative partitions.
+ * 
+ * login_attempts only holds the current day: once a day is over, its rows are
+ * moved into login_attempts_YYYYMMDD (a copy of the table with the same
+ * indexes), and login_attempts_all is rebuilt as the UNION ALL of
+ * login_attempts and every per-day table. Rolling up and dropping a day then
+ * works exactly as on PostgreSQL.
+ */
+class H2PartitionScheme implements PartitionScheme {
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    H2PartitionScheme(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+    
+    @Override
+    public void initialize() {
+        rebuildView(partitions());
+    }
+    
+    @Override
+    public void prepare(LocalDate day) {
+        // Rows always go to login_attempts first
+    }
+    
+    @Override
+    public void seal(LocalDate today) {
+        Timestamp oldest = jdbcTemplate.queryForObject("SELECT MIN(timestamp) FROM " + TABLE
+                + " WHERE timestamp < ?", Timestamp.class, Timestamp.valueOf(today.atStartOfDay()));
+        if (oldest == null) {
+            return;
+        }
+        for (LocalDate day = oldest.toLocalDateTime().toLocalDate(); day.isBefore(today); day = day.plusDays(1)) {
+            sealDay(day);
+        }
+    }
+    
+    /**
+     * Move one day's rows out of login_attempts into the day's own table.
+     */
+    private void sealDay(LocalDate day) {
+        String table = PartitionScheme.tableName(day);
+        Timestamp start = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        Boolean hasRows = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + TABLE
+                + " WHERE timestamp >= ? AND timestamp < ?)", Boolean.class, start, end);
+        if (!Boolean.TRUE.equals(hasRows)) {
+            return;
+        }
+        
+        // DDL commits in H2, so the table and view are set up first; the
+        // move itself is one transaction and readers never see rows twice
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " AS SELECT " + COLUMNS
+                + " FROM " + TABLE + " WITH NO DATA");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + table + "_breach_ts ON " + table
+                + "(breach_detected, timestamp, id)");
+        jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS " + table + "_user_rp_ts ON " + table
+                + "(user_id, rp_key, timestamp, id)");
+        List<LocalDate> days = partitions();
+        rebuildView(days);
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("INSERT INTO " + table + " (" + COLUMNS + ") SELECT " + COLUMNS + " FROM " + TABLE
+                    + " WHERE timestamp >= ? AND timestamp < ?", start, end);
+            jdbcTemplate.update("DELETE FROM " + TABLE + " WHERE timestamp >= ? AND timestamp < ?", start, end);
+        });
+    }
+    
+    @Override
+    public List<LocalDate> partitions() {
+        List<LocalDate> days = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES "
+                + "WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_TYPE = 'BASE TABLE'", String.class)) {
+            LocalDate day = PartitionScheme.dayOf(name);
+            if (day != null) {
+                days.add(day);
+            }
+        }
+        Collections.sort(days);
+        return days;
+    }
+    
+    @Override
+    public String defaultPartition() {
+        // Rows are never left behind: seal() moves every finished day
+        return null;
+    }
+    
+    @Override
+    public void drop(LocalDate day) {
+        List<LocalDate> remaining = partitions();
+        remaining.remove(day);
+        // The view has to stop referencing the table before it can be dropped
+        rebuildView(remaining);
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + PartitionScheme.tableName(day));
+    }
+    
+    private void rebuildView(List<LocalDate> days) {
+        StringBuilder sql = new StringBuilder("CREATE OR REPLACE VIEW ").append(VIEW)
+                .append(" AS SELECT ").append(COLUMNS).append(" FROM ").append(TABLE);
+        for (LocalDate day : days) {
+            sql.append(" UNION ALL SELECT ").append(COLUMNS).append(" FROM ").append(PartitionScheme.tableName(day));
+        }
+        jdbcTemplate.execute(sql.toString());
+    }
+}
@@ -0,0 +1,173 @@
+package com.casper.rp.partition;
+
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+/**
+ * Keeps login_attempts partitioned by day and enforces its retention policy.
+ * 
+ * Runs once at startup, before the RP accepts requests, and then daily
+ * (casper.partitions.cron):
+ * 1. Makes sure today and the next casper.partitions.premake-days days have partitions
+ * 2. Moves finished days into their own tables (H2 only; see {@link H2PartitionScheme})
+ * 3. For each day older than casper.partitions.retention-days, rolls its rows
+ *    up into login_attempt_daily and drops the day's partition; rows of such
+ *    days in the default partition (PostgreSQL) are rolled up and deleted
+ * 4. Deletes daily rollups older than casper.partitions.rollup-retention-days (0 = keep forever)
+ * 
+ * Every step is idempotent, so a failed run is simply repeated by the next
+ * one. On a multi-instance deployment, enable the job on one instance only.
+ */
+@Component
+public class PartitionMaintenance {
+    
+    private static final Logger log = LoggerFactory.getLogger(PartitionMaintenance.class);
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PartitionScheme scheme;
+    private final boolean enabled;
+    private final int premakeDays;
+    private final int retentionDays;
+    private final int rollupRetentionDays;
+    
+    public PartitionMaintenance(DataSource dataSource, JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${casper.partitions.enabled:true}") boolean enabled,
+                                @Value("${casper.partitions.premake-days:3}") int premakeDays,
+                                @Value("${casper.partitions.retention-days:90}") int retentionDays,
+                                @Value("${casper.partitions.rollup-retention-days:730}") int rollupRetentionDays)
+            throws SQLException {
+        if (retentionDays < 1) {
+            throw new IllegalArgumentException("casper.partitions.retention-days must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.premakeDays = premakeDays;
+        this.retentionDays = retentionDays;
+        this.rollupRetentionDays = rollupRetentionDays;
+        
+        String database;
+        try (Connection connection = dataSource.getConnection()) {
+            database = connection.getMetaData().getDatabaseProductName();
+        }
+        this.scheme = "PostgreSQL".equals(database)
+                ? new PostgresPartitionScheme(jdbcTemplate, transactionTemplate)
+                : new H2PartitionScheme(jdbcTemplate, transactionTemplate);
+    }
+    
+    /**
+     * Create the login_attempts_all view, then catch up on maintenance.
+     * 
+     * The transaction manager needs the entityManagerFactory, so the tables
+     * exist by now, and the web and gRPC servers only start once every
+     * singleton is initialized: the RP takes no traffic until this is done.
+     */
+    @PostConstruct
+    public void onStartup() {
+        scheme.initialize();
+        if (enabled) {
+            run();
+        }
+    }
+    
+    @Scheduled(cron = "${casper.partitions.cron:0 15 0 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            run();
+        }
+    }
+    
+    /**
+     * Run one round of partition maintenance.
+     */
+    public synchronized void run() {
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i <= premakeDays; i++) {
+            try {
+                scheme.prepare(today.plusDays(i));
+            } catch (RuntimeException e) {
+                log.error("Could not create partition for {}", today.plusDays(i), e);
+            }
+        }
+        
+        scheme.seal(today);
+        
+        LocalDate cutoff = today.minusDays(retentionDays);
+        for (LocalDate day : scheme.partitions()) {
+            if (!day.isBefore(cutoff)) {
+                break;
+            }
+            int groups = rollup(day);
+            scheme.drop(day);
+            log.info("Rolled up login attempts of {} into {} daily rows and dropped its partition", day, groups);
+        }
+        String defaultPartition = scheme.defaultPartition();
+        if (defaultPartition != null) {
+            int expired = rollupDefault(defaultPartition, cutoff);
+            if (expired > 0) {
+                log.info("Rolled up and deleted {} login attempts older than {} days from {}",
+                        expired, retentionDays, defaultPartition);
+            }
+        }
+        
+        if (rollupRetentionDays > 0) {
+            int deleted = jdbcTemplate.update("DELETE FROM login_attempt_daily WHERE login_date < ?",
+                    today.minusDays(rollupRetentionDays));
+            if (deleted > 0) {
+                log.info("Deleted {} daily rollups older than {} days", deleted, rollupRetentionDays);
+            }
+        }
+    }
+    
+    /**
+     * Replace the day's rollup rows with fresh counts from its partition.
+     * 
+     * @return Number of (user, RP) rows written
+     */
+    private int rollup(LocalDate day) {
+        Integer groups = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("DELETE FROM login_attempt_daily WHERE login_date = ?", day);
+            return jdbcTemplate.update("INSERT INTO login_attempt_daily "
+                    + "(login_date, user_id, rp_key, attempts, breaches) "
+                    + "SELECT ?, user_id, rp_key, COUNT(*), SUM(CASE WHEN breach_detected THEN 1 ELSE 0 END) "
+                    + "FROM " + PartitionScheme.tableName(day) + " GROUP BY user_id, rp_key", day);
+        });
+        return groups != null ? groups : 0;
+    }
+    
+    /**
+     * Add the default partition's rows from before {@code cutoff} to their
+     * days' rollups and delete them. The rows only get there when their day
+     * had no partition, so the day's rollup may already exist (PostgreSQL).
+     * 
+     * @return Number of rows rolled up
+     */
+    private int rollupDefault(String table, LocalDate cutoff) {
+        Integer rows = transactionTemplate.execute(status -> {
+            jdbcTemplate.update("INSERT INTO login_attempt_daily "
+                    + "(login_date, user_id, rp_key, attempts, breaches) "
+                    + "SELECT CAST(timestamp AS DATE), user_id, rp_key, COUNT(*), "
+                    + "SUM(CASE WHEN breach_detected THEN 1 ELSE 0 END) "
+                    + "FROM " + table + " WHERE timestamp < ? GROUP BY CAST(timestamp AS DATE), user_id, rp_key "
+                    + "ON CONFLICT (login_date, user_id, rp_key) DO UPDATE SET "
+                    + "attempts = login_attempt_daily.attempts + EXCLUDED.attempts, "
+                    + "breaches = login_attempt_daily.breaches + EXCLUDED.breaches", cutoff.atStartOfDay());
+            return jdbcTemplate.update("DELETE FROM " + table + " WHERE timestamp < ?", cutoff.atStartOfDay());
+        });
+        return rows != null ? rows : 0;
+    }
+}
@@ -0,0 +1,79 @@
+package com.casper.rp.partition;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * How login_attempts is split into one table per day on a given database.
+ * 
+ * Whatever the scheme, each day's rows end up in a table named
+ * login_attempts_YYYYMMDD that can be rolled up and dropped on its own, and
+ * the view login_attempts_all shows every row still kept.
+ */
+interface PartitionScheme {
+    
+    /** Base table that the JPA entity writes to. */
+    String TABLE = "login_attempts";
+    
+    /** View over all retained rows, read by the paged query API. */
+    String VIEW = "login_attempts_all";
+    
+    /** Columns of login_attempts, in table order. */
+    String COLUMNS = "id, user_id, rp_key, public_key, breach_detected, timestamp";
+    
+    /**
+     * Name of the table holding one day's rows.
+     */
+    static String tableName(LocalDate day) {
+        return TABLE + "_" + day.format(DateTimeFormatter.BASIC_ISO_DATE);
+    }
+    
+    /**
+     * Day of a per-day table, or null if the name is not one.
+     */
+    static LocalDate dayOf(String tableName) {
+        String name = tableName.toLowerCase();
+        String prefix = TABLE + "_";
+        if (!name.startsWith(prefix) || name.length() != prefix.length() + 8) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(prefix.length()), DateTimeFormatter.BASIC_ISO_DATE);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+    
+    /**
+     * Set up the view (and anything else the scheme needs) at startup.
+     */
+    void initialize();
+    
+    /**
+     * Make sure rows timestamped on {@code day} have somewhere to go.
+     */
+    void prepare(LocalDate day);
+    
+    /**
+     * Move rows of days before {@code today} into their own tables, if the
+     * scheme does not already store them that way.
+     */
+    void seal(LocalDate today);
+    
+    /**
+     * Days that currently have their own table, oldest first.
+     */
+    List<LocalDate> partitions();
+    
+    /**
+     * Table holding rows of days that had no table of their own when they
+     * were inserted, or null if the scheme has none.
+     */
+    String defaultPartition();
+    
+    /**
+     * Drop one day's table and its rows.
+     */
+    void drop(LocalDate day);
+}
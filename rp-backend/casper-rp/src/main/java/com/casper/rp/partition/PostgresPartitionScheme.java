@@ -0,0 +1,118 @@
+package com.casper.rp.partition;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * PostgreSQL declarative partitioning: login_attempts is created by
+ * schema.sql as PARTITION BY RANGE (timestamp), and each day is a partition.
+ * 
+ * Inserts go straight to the right day's partition, so every index stays the
+ * size of one day, and dropping a day is a metadata operation instead of a
+ * mass DELETE. Rows for a day without a partition land in
+ * login_attempts_default rather than failing the login. PostgreSQL will not
+ * create a partition whose range has rows in the default partition, so
+ * {@link #prepare} moves them into the new partition.
+ */
+class PostgresPartitionScheme implements PartitionScheme {
+    
+    private static final Logger log = LoggerFactory.getLogger(PostgresPartitionScheme.class);
+    
+    private static final String DEFAULT_PARTITION = TABLE + "_default";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private boolean partitioned;
+    
+    PostgresPartitionScheme(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+    
+    @Override
+    public void initialize() {
+        String kind = jdbcTemplate.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)", String.class, TABLE);
+        partitioned = "p".equals(kind);
+        if (!partitioned) {
+            log.warn("{} is not a partitioned table (create it with schema.sql); "
+                    + "partition maintenance is disabled", TABLE);
+        }
+        jdbcTemplate.execute("CREATE OR REPLACE VIEW " + VIEW + " AS SELECT " + COLUMNS + " FROM " + TABLE);
+    }
+    
+    @Override
+    public void prepare(LocalDate day) {
+        if (!partitioned) {
+            return;
+        }
+        String table = PartitionScheme.tableName(day);
+        String bounds = " FOR VALUES FROM ('" + day.atStartOfDay() + "') TO ('" + day.plusDays(1).atStartOfDay() + "')";
+        Timestamp start = Timestamp.valueOf(day.atStartOfDay());
+        Timestamp end = Timestamp.valueOf(day.plusDays(1).atStartOfDay());
+        Boolean exists = jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, table);
+        if (Boolean.TRUE.equals(exists)) {
+            return;
+        }
+        Boolean stray = jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM " + DEFAULT_PARTITION
+                + " WHERE timestamp >= ? AND timestamp < ?)", Boolean.class, start, end);
+        if (!Boolean.TRUE.equals(stray)) {
+            jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " PARTITION OF " + TABLE + bounds);
+            return;
+        }
+        
+        // Inserts into login_attempts wait while the default partition is
+        // detached, so no row can land in it (or nowhere) during the move
+        Integer moved = transactionTemplate.execute(status -> {
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " DETACH PARTITION " + DEFAULT_PARTITION);
+            jdbcTemplate.execute("CREATE TABLE " + table + " PARTITION OF " + TABLE + bounds);
+            int rows = jdbcTemplate.update("INSERT INTO " + table + " (" + COLUMNS + ") SELECT " + COLUMNS
+                    + " FROM " + DEFAULT_PARTITION + " WHERE timestamp >= ? AND timestamp < ?", start, end);
+            jdbcTemplate.update("DELETE FROM " + DEFAULT_PARTITION + " WHERE timestamp >= ? AND timestamp < ?",
+                    start, end);
+            jdbcTemplate.execute("ALTER TABLE " + TABLE + " ATTACH PARTITION " + DEFAULT_PARTITION + " DEFAULT");
+            return rows;
+        });
+        log.info("Created partition {} and moved its {} rows out of {}", table, moved, DEFAULT_PARTITION);
+    }
+    
+    @Override
+    public void seal(LocalDate today) {
+        // Each day is already its own partition
+    }
+    
+    @Override
+    public List<LocalDate> partitions() {
+        if (!partitioned) {
+            return Collections.emptyList();
+        }
+        List<LocalDate> days = new ArrayList<>();
+        for (String name : jdbcTemplate.queryForList("SELECT c.relname::text FROM pg_inherits i "
+                + "JOIN pg_class c ON c.oid = i.inhrelid WHERE i.inhparent = to_regclass(?)", String.class, TABLE)) {
+            LocalDate day = PartitionScheme.dayOf(name);
+            if (day != null) {
+                days.add(day);
+            }
+        }
+        Collections.sort(days);
+        return days;
+    }
+    
+    @Override
+    public String defaultPartition() {
+        return partitioned ? DEFAULT_PARTITION : null;
+    }
+    
+    @Override
+    public void drop(LocalDate day) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + PartitionScheme.tableName(day));
+    }
+}
@@ -0,0 +1,84 @@
+package com.casper.rp.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * A login_attempts row, as the reactive stack writes it.
+ * 
+ * Same table as {@link com.casper.rp.model.LoginAttempt}. Rows are only
+ * inserted here; the query API reads them back through JPA.
+ */
+@Table("login_attempts")
+public class LoginAttemptRecord {
+    
+    @Id
+    private Long id;
+    
+    @Column("user_id")
+    private String userId;
+    
+    @Column("rp_key")
+    private Integer rpKey;
+    
+    @Column("public_key")
+    private String publicKey;
+    
+    @Column("breach_detected")
+    private Boolean breachDetected;
+    
+    @Column("timestamp")
+    private LocalDateTime timestamp;
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    public Integer getRpKey() {
+        return rpKey;
+    }
+    
+    public void setRpKey(Integer rpKey) {
+        this.rpKey = rpKey;
+    }
+    
+    public String getPublicKey() {
+        return publicKey;
+    }
+    
+    public void setPublicKey(String publicKey) {
+        this.publicKey = publicKey;
+    }
+    
+    public Boolean getBreachDetected() {
+        return breachDetected;
+    }
+    
+    public void setBreachDetected(Boolean breachDetected) {
+        this.breachDetected = breachDetected;
+    }
+    
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+    
+    public void setTimestamp(LocalDateTime timestamp) {
+        this.timestamp = timestamp;
+    }
+}
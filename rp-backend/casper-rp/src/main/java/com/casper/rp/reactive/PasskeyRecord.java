@@ -0,0 +1,95 @@
+package com.casper.rp.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * A passkeys row, as the reactive stack reads and writes it.
+ * 
+ * Same table as {@link com.casper.rp.model.Passkey}, which JPA uses (and
+ * creates the table from); see there for the columns.
+ */
+@Table("passkeys")
+public class PasskeyRecord {
+    
+    @Id
+    private Long id;
+    
+    @Column("user_id")
+    private String userId;
+    
+    @Column("rp_key")
+    private Integer rpKey;
+    
+    @Column("public_key")
+    private String publicKey;
+    
+    @Column("is_real")
+    private Boolean isReal;
+    
+    @Column("key_index")
+    private Integer keyIndex;
+    
+    @Column("created_at")
+    private LocalDateTime createdAt;
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    public Integer getRpKey() {
+        return rpKey;
+    }
+    
+    public void setRpKey(Integer rpKey) {
+        this.rpKey = rpKey;
+    }
+    
+    public String getPublicKey() {
+        return publicKey;
+    }
+    
+    public void setPublicKey(String publicKey) {
+        this.publicKey = publicKey;
+    }
+    
+    public Boolean getIsReal() {
+        return isReal;
+    }
+    
+    public void setIsReal(Boolean isReal) {
+        this.isReal = isReal;
+    }
+    
+    public Integer getKeyIndex() {
+        return keyIndex;
+    }
+    
+    public void setKeyIndex(Integer keyIndex) {
+        this.keyIndex = keyIndex;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
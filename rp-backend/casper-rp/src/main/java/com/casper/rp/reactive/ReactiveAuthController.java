@@ -0,0 +1,287 @@
+package com.casper.rp.reactive;
+
+import com.casper.rp.analytics.BreachAnalytics;
+import com.casper.rp.controller.AuthController;
+import com.casper.rp.events.BreachEventStream;
+import com.casper.rp.metrics.CasperMetrics;
+import com.casper.rp.metrics.CasperMetrics.Outcome;
+import com.casper.rp.metrics.CasperMetrics.Stage;
+import com.casper.rp.service.CasperDetectionService;
+import com.casper.rp.service.CasperDetectionService.LoginKey;
+import com.casper.rp.service.PublicKeyDecoder;
+import com.casper.rp.service.RegisteredKeyFilter;
+import com.casper.rp.verify.SignatureVerifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.security.PublicKey;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link AuthController} on WebFlux, for the reactive stack (see {@link ReactiveStackConfig}).
+ * 
+ * Same requests and responses. Nothing blocks an event loop thread:
+ * database access is R2DBC (on the bounded elastic scheduler for H2, see
+ * {@link ReactiveDatabase#scheduler}), decoding the key and verifying the
+ * signature run on the verify scheduler, and the few calls that still need
+ * JDBC (a new RP, unregister, the key filter with sync-on-miss) run on the
+ * bounded elastic scheduler.
+ * 
+ * Login stages are timed as on the servlet stack (verify includes decoding
+ * the key) but not traced. Breaches are counted, analysed and published on
+ * the breach event stream as on the servlet stack.
+ */
+@RestController
+@RequestMapping("/api/auth")
+@CrossOrigin(origins = "*") // Allow Android app to connect
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveAuthController {
+    
+    private final ReactiveCasperDetectionService detectionService;
+    private final CasperDetectionService blockingDetectionService;
+    private final ReactiveLoginAttemptRepository loginAttemptRepository;
+    private final ReactiveDatabase database;
+    private final RegisteredKeyFilter registeredKeyFilter;
+    private final PublicKeyDecoder publicKeyDecoder;
+    private final SignatureVerifier signatureVerifier;
+    private final Scheduler verifyScheduler;
+    private final CasperMetrics metrics;
+    private final BreachAnalytics breachAnalytics;
+    private final BreachEventStream breachEventStream;
+    
+    public ReactiveAuthController(ReactiveCasperDetectionService detectionService,
+                                  CasperDetectionService blockingDetectionService,
+                                  ReactiveLoginAttemptRepository loginAttemptRepository,
+                                  ReactiveDatabase database,
+                                  RegisteredKeyFilter registeredKeyFilter,
+                                  PublicKeyDecoder publicKeyDecoder,
+                                  SignatureVerifier signatureVerifier,
+                                  Scheduler verifyScheduler,
+                                  CasperMetrics metrics,
+                                  BreachAnalytics breachAnalytics,
+                                  BreachEventStream breachEventStream) {
+        this.detectionService = detectionService;
+        this.blockingDetectionService = blockingDetectionService;
+        this.loginAttemptRepository = loginAttemptRepository;
+        this.database = database;
+        this.registeredKeyFilter = registeredKeyFilter;
+        this.publicKeyDecoder = publicKeyDecoder;
+        this.signatureVerifier = signatureVerifier;
+        this.verifyScheduler = verifyScheduler;
+        this.metrics = metrics;
+        this.breachAnalytics = breachAnalytics;
+        this.breachEventStream = breachEventStream;
+    }
+    
+    /**
+     * Register passkeys with RP, as {@link AuthController#register}.
+     */
+    @PostMapping("/register")
+    public Mono<ResponseEntity<Map<String, Object>>> register(@RequestBody Map<String, Object> request) {
+        String userId;
+        String rpId;
+        String[] publicKeys;
+        Long expectedVersion;
+        try {
+            userId = (String) request.get("userId");
+            rpId = (String) request.get("rpId");
+            expectedVersion = AuthController.expectedVersion(request);
+            
+            @SuppressWarnings("unchecked")
+            List<String> publicKeysList = (List<String>) request.get("publicKeys");
+            publicKeys = new String[publicKeysList.size()];
+            for (int i = 0; i < publicKeys.length; i++) {
+                publicKeys[i] = publicKeyDecoder.storedForm(Base64.getDecoder().decode(publicKeysList.get(i)));
+            }
+        } catch (Exception e) {
+            return Mono.just(error(HttpStatus.BAD_REQUEST, "Registration failed: " + e.getMessage()));
+        }
+        
+        return detectionService.intern(rpId)
+                .flatMap(rpKey -> detectionService.registerPasskeys(userId, rpKey, publicKeys, expectedVersion))
+                .map(result -> {
+                    metrics.registered();
+                    
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", true);
+                    response.put("message", result.isChanged()
+                            ? "Passkeys registered successfully" : "Passkeys already registered");
+                    response.put("realKeyCount", 1);
+                    response.put("decoyKeyCount", publicKeys.length - 1);
+                    response.put("version", result.getVersion());
+                    response.put("addedKeyCount", result.getAdded());
+                    response.put("updatedKeyCount", result.getUpdated());
+                    response.put("removedKeyCount", result.getRemoved());
+                    return ResponseEntity.ok(response);
+                })
+                .onErrorResume(ConcurrencyFailureException.class, e -> Mono.just(error(HttpStatus.CONFLICT,
+                        expectedVersion != null ? "Registration failed: " + e.getMessage()
+                                : "Registration conflicted with a concurrent registration, retry")))
+                .onErrorResume(e -> Mono.just(error(HttpStatus.BAD_REQUEST, "Registration failed: " + e.getMessage())));
+    }
+    
+    /**
+     * Unregister passkeys from RP, as {@link AuthController#unregister}.
+     * Rare, so it reuses the JPA implementation off the event loop.
+     */
+    @PostMapping("/unregister")
+    public Mono<ResponseEntity<Map<String, Object>>> unregister(@RequestBody Map<String, Object> request) {
+        String userId;
+        String rpId;
+        Long expectedVersion;
+        try {
+            userId = (String) request.get("userId");
+            rpId = (String) request.get("rpId");
+            expectedVersion = AuthController.expectedVersion(request);
+            if (expectedVersion == null) {
+                throw new IllegalArgumentException("expectedVersion is required");
+            }
+        } catch (Exception e) {
+            return Mono.just(error(HttpStatus.BAD_REQUEST, "Unregistration failed: " + e.getMessage()));
+        }
+        return Mono.fromCallable(() -> blockingDetectionService.unregisterPasskeys(userId, rpId, expectedVersion))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(removed -> {
+                    Map<String, Object> response = new HashMap<>();
+                    response.put("success", true);
+                    response.put("message", "Passkeys unregistered successfully");
+                    response.put("removedKeyCount", removed);
+                    return ResponseEntity.ok(response);
+                })
+                .onErrorResume(ConcurrencyFailureException.class, e -> Mono.just(error(HttpStatus.CONFLICT,
+                        "Unregistration failed: " + e.getMessage())))
+                .onErrorResume(e -> Mono.just(error(HttpStatus.BAD_REQUEST, "Unregistration failed: " + e.getMessage())));
+    }
+    
+    /**
+     * Login with passkey signature, as {@link AuthController#login}.
+     */
+    @PostMapping("/login")
+    public Mono<ResponseEntity<Map<String, Object>>> login(@RequestBody Map<String, Object> request) {
+        long start = System.nanoTime();
+        String userId;
+        String rpId;
+        String challenge;
+        byte[] publicKeyBytes;
+        byte[] signatureBytes;
+        String storedKey;
+        try {
+            userId = (String) request.get("userId");
+            rpId = (String) request.get("rpId");
+            challenge = (String) request.get("challenge");
+            publicKeyBytes = Base64.getDecoder().decode((String) request.get("publicKey"));
+            signatureBytes = Base64.getDecoder().decode((String) request.get("signature"));
+            storedKey = publicKeyDecoder.storedForm(publicKeyBytes);
+        } catch (Exception e) {
+            return Mono.just(loginFailed(e, start));
+        }
+        
+        Mono<Boolean> unregistered = registeredKeyFilter.isSyncOnMiss()
+                ? Mono.fromCallable(() -> registeredKeyFilter.isUnregistered(userId, rpId, storedKey, start))
+                        .subscribeOn(Schedulers.boundedElastic())
+                : Mono.fromCallable(() -> registeredKeyFilter.isUnregistered(userId, rpId, storedKey, start));
+        return unregistered
+                .flatMap(unknown -> {
+                    metrics.recordStage(Stage.DECODE, start);
+                    if (unknown) {
+                        return Mono.just(unknownKey(start));
+                    }
+                    return Mono.fromCallable(() -> {
+                        long verifyStart = System.nanoTime();
+                        PublicKey publicKey = publicKeyDecoder.decode(storedKey, publicKeyBytes);
+                        boolean valid = signatureVerifier.verify(challenge.getBytes(), signatureBytes, publicKey, storedKey);
+                        metrics.recordStage(Stage.VERIFY, verifyStart);
+                        return valid;
+                    }).subscribeOn(verifyScheduler).flatMap(valid -> valid
+                            ? detectAndRecord(userId, rpId, storedKey, start)
+                            : Mono.just(invalidSignature(start)));
+                })
+                .onErrorResume(e -> Mono.just(loginFailed(e, start)));
+    }
+    
+    /**
+     * Breach detection and the login attempt record, for a valid signature.
+     */
+    private Mono<ResponseEntity<Map<String, Object>>> detectAndRecord(String userId, String rpId, String storedKey,
+                                                                    long start) {
+        long detectStart = System.nanoTime();
+        return detectionService.detectBreach(userId, rpId, storedKey).flatMap(loginKey -> {
+            metrics.recordStage(Stage.DETECT, detectStart);
+            if (loginKey == LoginKey.UNREGISTERED) {
+                registeredKeyFilter.markUnregistered(userId, rpId, storedKey);
+                return Mono.just(unknownKey(start));
+            }
+            boolean breachDetected = loginKey == LoginKey.DECOY;
+            long auditStart = System.nanoTime();
+            return detectionService.intern(rpId).flatMap(rpKey -> {
+                LoginAttemptRecord attempt = new LoginAttemptRecord();
+                attempt.setUserId(userId);
+                attempt.setRpKey(rpKey);
+                attempt.setPublicKey(storedKey);
+                attempt.setBreachDetected(breachDetected);
+                attempt.setTimestamp(LocalDateTime.now());
+                return loginAttemptRepository.save(attempt).subscribeOn(database.scheduler());
+            }).map(attempt -> {
+                metrics.recordStage(Stage.AUDIT, auditStart);
+                if (breachDetected) {
+                    metrics.breachDetected(rpId);
+                    breachEventStream.publish(attempt.getId(), userId, rpId, storedKey, attempt.getTimestamp());
+                }
+                breachAnalytics.record(userId, rpId, storedKey, breachDetected);
+                metrics.recordLogin(breachDetected ? Outcome.BREACH : Outcome.SUCCESS, start);
+                
+                Map<String, Object> response = new HashMap<>();
+                response.put("success", true);
+                response.put("message", breachDetected ?
+                        "⚠️ BREACH DETECTED: Decoy passkey used!" :
+                        "Login successful");
+                response.put("breachDetected", breachDetected);
+                return ResponseEntity.ok(response);
+            });
+        });
+    }
+    
+    private ResponseEntity<Map<String, Object>> invalidSignature(long start) {
+        metrics.recordLogin(Outcome.INVALID_SIGNATURE, start);
+        return loginError("Invalid signature");
+    }
+    
+    private ResponseEntity<Map<String, Object>> unknownKey(long start) {
+        metrics.recordLogin(Outcome.UNKNOWN_KEY, start);
+        return loginError("Unknown passkey");
+    }
+    
+    private ResponseEntity<Map<String, Object>> loginFailed(Throwable e, long start) {
+        metrics.recordLogin(Outcome.ERROR, start);
+        return loginError("Login failed: " + e.getMessage());
+    }
+    
+    private static ResponseEntity<Map<String, Object>> loginError(String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", message);
+        errorResponse.put("breachDetected", false);
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+    
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", message);
+        return ResponseEntity.status(status).body(errorResponse);
+    }
+}
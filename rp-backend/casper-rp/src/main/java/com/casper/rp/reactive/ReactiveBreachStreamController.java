@@ -0,0 +1,50 @@
+package com.casper.rp.reactive;
+
+import com.casper.rp.controller.BreachStreamController;
+import com.casper.rp.events.BreachEventStream;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+
+/**
+ * {@link BreachStreamController} on WebFlux, for the reactive stack (see {@link ReactiveStackConfig}).
+ * 
+ * Same events from the same buffer, so consumers can resume across the two
+ * stacks with Last-Event-ID.
+ */
+@RestController
+@RequestMapping("/api/breaches")
+@CrossOrigin(origins = "*")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveBreachStreamController {
+    
+    private final BreachEventStream breachEventStream;
+    
+    public ReactiveBreachStreamController(BreachEventStream breachEventStream) {
+        this.breachEventStream = breachEventStream;
+    }
+    
+    /**
+     * Stream breach detections as Server-Sent Events, as {@link BreachStreamController#stream}.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> stream(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(value = "lastEventId", required = false) String lastEventIdParam) {
+        String lastEventId = lastEventIdHeader != null ? lastEventIdHeader : lastEventIdParam;
+        try {
+            return breachEventStream.subscribeFlux(lastEventId);
+        } catch (IllegalStateException e) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.casper.rp.reactive;
+
+import com.casper.rp.service.CasperDetectionService;
+import com.casper.rp.service.CasperDetectionService.LoginKey;
+import com.casper.rp.service.CasperDetectionService.RegistrationResult;
+import com.casper.rp.service.RegisteredKeyFilter;
+import com.casper.server.invalidation.InvalidationBus;
+import com.casper.server.service.RelyingPartyService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link CasperDetectionService}'s registration and breach detection on R2DBC.
+ * 
+ * Same algorithm, same tables and the same side effects (key filter,
+ * invalidation bus), so the two stacks can share a database; only the
+ * database access is non-blocking (see {@link ReactiveDatabase#scheduler}
+ * for H2). RP interning stays with
+ * {@link RelyingPartyService}: known RPs come from its cache, and the rare
+ * database round trip for a new one runs on the bounded elastic scheduler.
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveCasperDetectionService {
+    
+    private final ReactivePasskeyRepository passkeyRepository;
+    private final ReactiveRegistrationRepository registrationRepository;
+    private final RelyingPartyService relyingPartyService;
+    private final RegisteredKeyFilter registeredKeyFilter;
+    private final InvalidationBus invalidationBus;
+    private final TransactionalOperator transactionalOperator;
+    private final ReactiveDatabase database;
+    
+    public ReactiveCasperDetectionService(ReactivePasskeyRepository passkeyRepository,
+                                          ReactiveRegistrationRepository registrationRepository,
+                                          RelyingPartyService relyingPartyService,
+                                          RegisteredKeyFilter registeredKeyFilter,
+                                          InvalidationBus invalidationBus,
+                                          TransactionalOperator reactiveTransactionalOperator,
+                                          ReactiveDatabase database) {
+        this.passkeyRepository = passkeyRepository;
+        this.registrationRepository = registrationRepository;
+        this.relyingPartyService = relyingPartyService;
+        this.registeredKeyFilter = registeredKeyFilter;
+        this.invalidationBus = invalidationBus;
+        this.transactionalOperator = reactiveTransactionalOperator;
+        this.database = database;
+    }
+    
+    /**
+     * Get the key for an rpId, assigning one if the RP is new (see {@link RelyingPartyService#intern}).
+     */
+    public Mono<Integer> intern(String rpId) {
+        Integer key = relyingPartyService.cached(rpId);
+        if (key != null) {
+            return Mono.just(key);
+        }
+        return Mono.fromCallable(() -> relyingPartyService.intern(rpId)).subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    /**
+     * Register passkeys (real + decoys) with RP, as {@link CasperDetectionService#registerPasskeys}.
+     * 
+     * @param expectedVersion Version the key set must be at, or null to register unconditionally
+     * @return The key set's version and what changed; fails with
+     *         ConcurrencyFailureException if the key set is not at the
+     *         expected version, or another registration for the same user
+     *         and RP committed first
+     */
+    public Mono<RegistrationResult> registerPasskeys(String userId, int rpKey, String[] publicKeys,
+                                                     Long expectedVersion) {
+        if (userId == null) {
+            return Mono.error(new IllegalArgumentException("userId is required"));
+        }
+        Mono<RegistrationRecord> existing = registrationRepository.findByUserIdAndRpKey(userId, rpKey);
+        if (expectedVersion != null) {
+            existing = existing
+                    .filter(registration -> expectedVersion.equals(registration.getVersion()))
+                    .switchIfEmpty(Mono.error(() -> new ConcurrencyFailureException(
+                            "Registration for user " + userId + " is not at version " + expectedVersion)));
+        }
+        Mono<RegistrationResult> register = existing
+                .flatMap(registration -> applyKeys(registration, false, userId, rpKey, publicKeys))
+                .switchIfEmpty(Mono.defer(() -> {
+                    // Also created for key sets stored before registrations were tracked
+                    RegistrationRecord registration = new RegistrationRecord();
+                    registration.setUserId(userId);
+                    registration.setRpKey(rpKey);
+                    registration.setKeyCount(publicKeys.length);
+                    registration.setCreatedAt(LocalDateTime.now());
+                    registration.setUpdatedAt(registration.getCreatedAt());
+                    // Inserted first, so a concurrent first registration fails before writing any keys
+                    return registrationRepository.save(registration)
+                            .onErrorMap(DataIntegrityViolationException.class, e -> new ConcurrencyFailureException(
+                                    "Concurrent registration for user " + userId, e))
+                            .flatMap(saved -> applyKeys(saved, true, userId, rpKey, publicKeys));
+                }));
+        return transactionalOperator.transactional(register)
+                .subscribeOn(database.scheduler())
+                .doOnNext(result -> {
+                    // After commit, unlike the filter entries added in applyKeys
+                    if (result.isChanged()) {
+                        invalidationBus.publish(userId, relyingPartyService.rpId(rpKey));
+                    }
+                });
+    }
+    
+    /**
+     * Diff the stored keys against publicKeys and write the difference.
+     */
+    private Mono<RegistrationResult> applyKeys(RegistrationRecord registration, boolean created,
+                                               String userId, int rpKey, String[] publicKeys) {
+        return passkeyRepository.findByUserIdAndRpKey(userId, rpKey).collectList().flatMap(existing -> {
+            // Stored keys by value; a list per value in case a key was registered twice
+            Map<String, Deque<PasskeyRecord>> stored = new HashMap<>();
+            for (PasskeyRecord passkey : existing) {
+                stored.computeIfAbsent(passkey.getPublicKey(), key -> new ArrayDeque<>()).add(passkey);
+            }
+            
+            List<PasskeyRecord> writes = new ArrayList<>();
+            List<String> added = new ArrayList<>();
+            int updated = 0;
+            for (int i = 0; i < publicKeys.length; i++) {
+                // First key (index 0) is real, others are decoys (trap keys)
+                boolean isReal = i == 0;
+                Deque<PasskeyRecord> matches = stored.get(publicKeys[i]);
+                PasskeyRecord passkey = matches != null ? matches.poll() : null;
+                if (passkey == null) {
+                    passkey = new PasskeyRecord();
+                    passkey.setUserId(userId);
+                    passkey.setRpKey(rpKey);
+                    passkey.setPublicKey(publicKeys[i]);
+                    passkey.setKeyIndex(i);
+                    passkey.setIsReal(isReal);
+                    passkey.setCreatedAt(LocalDateTime.now());
+                    writes.add(passkey);
+                    added.add(publicKeys[i]);
+                } else if (passkey.getKeyIndex() != i || passkey.getIsReal() != isReal) {
+                    passkey.setKeyIndex(i);
+                    passkey.setIsReal(isReal);
+                    writes.add(passkey);
+                    updated++;
+                }
+            }
+            
+            List<PasskeyRecord> dropped = new ArrayList<>();
+            stored.values().forEach(dropped::addAll);
+            int updatedCount = updated;
+            
+            Mono<RegistrationRecord> saved = Mono.just(registration);
+            if (!created && added.size() + updated + dropped.size() > 0) {
+                registration.setKeyCount(publicKeys.length);
+                registration.setUpdatedAt(LocalDateTime.now());
+                // Bumps the version, failing if a concurrent registration bumped it first
+                saved = registrationRepository.save(registration);
+            }
+            return passkeyRepository.deleteAll(dropped)
+                    .thenMany(passkeyRepository.saveAll(writes))
+                    .then(saved)
+                    .map(current -> {
+                        RegistrationResult result = new RegistrationResult(current.getVersion(),
+                                added.size(), updatedCount, dropped.size());
+                        if (result.isChanged()) {
+                            // Before commit, so a login can never see the row without the filter entry
+                            registeredKeyFilter.add(userId, relyingPartyService.rpId(rpKey),
+                                    added.toArray(new String[0]));
+                        }
+                        return result;
+                    });
+        });
+    }
+    
+    /**
+     * Perform CASPER breach detection during login, as {@link CasperDetectionService#detectBreach}.
+     * 
+     * @param loginPublicKey Public key used for login, in its stored form
+     * @return DECOY if breach detected, REAL for a normal login, UNREGISTERED for an unknown key
+     */
+    public Mono<LoginKey> detectBreach(String userId, String rpId, String loginPublicKey) {
+        Integer rpKey = relyingPartyService.cached(rpId);
+        Mono<Integer> key = rpKey != null ? Mono.just(rpKey)
+                : Mono.fromCallable(() -> relyingPartyService.lookup(rpId)).subscribeOn(Schedulers.boundedElastic());
+        return key
+                .flatMap(found -> passkeyRepository.findByPublicKeyAndUserIdAndRpKey(loginPublicKey, userId, found)
+                        .subscribeOn(database.scheduler()))
+                .map(passkey -> passkey.getIsReal() ? LoginKey.REAL : LoginKey.DECOY)
+                .defaultIfEmpty(LoginKey.UNREGISTERED);
+    }
+}
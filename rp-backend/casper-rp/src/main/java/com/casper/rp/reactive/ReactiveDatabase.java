@@ -0,0 +1,74 @@
+package com.casper.rp.reactive;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactories;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryOptions;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.actuate.metrics.r2dbc.ConnectionPoolMetrics;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The reactive stack's R2DBC connection pool.
+ * 
+ * Deliberately not a ConnectionFactory bean: Spring Boot's JDBC DataSource
+ * backs off when one exists, and JPA and the rest of the RP still need it.
+ * Pool meters are r2dbc.pool.* with name=casper-rp.
+ * 
+ * The H2 driver runs each statement on the subscribing thread, so with H2
+ * database calls are subscribed on the bounded elastic scheduler
+ * ({@link #scheduler}) to keep them off the event loops. PostgreSQL's
+ * driver is non-blocking and runs them where they are.
+ */
+class ReactiveDatabase implements MeterBinder, DisposableBean {
+    
+    private final ConnectionPool pool;
+    private final Scheduler scheduler;
+    
+    ReactiveDatabase(String url, String username, String password, int maxPoolSize) {
+        ConnectionFactoryOptions parsed = ConnectionFactoryOptions.parse(url);
+        // r2dbc:h2:... or r2dbc:pool:h2:...
+        boolean h2 = "h2".equals(parsed.getValue(ConnectionFactoryOptions.DRIVER))
+                || "h2".equals(parsed.getValue(ConnectionFactoryOptions.PROTOCOL));
+        this.scheduler = h2 ? Schedulers.boundedElastic() : Schedulers.immediate();
+        ConnectionFactoryOptions.Builder options = parsed.mutate();
+        if (username != null && !username.isEmpty()) {
+            options.option(ConnectionFactoryOptions.USER, username);
+        }
+        if (password != null && !password.isEmpty()) {
+            options.option(ConnectionFactoryOptions.PASSWORD, password);
+        }
+        this.pool = new ConnectionPool(ConnectionPoolConfiguration.builder(ConnectionFactories.get(options.build()))
+                .name("casper-rp")
+                .initialSize(Math.min(maxPoolSize, 2))
+                .maxSize(maxPoolSize)
+                .build());
+    }
+    
+    ConnectionFactory getConnectionFactory() {
+        return pool;
+    }
+    
+    /**
+     * Scheduler to subscribe database calls on: bounded elastic if the
+     * driver blocks (H2), otherwise immediate.
+     */
+    Scheduler scheduler() {
+        return scheduler;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new ConnectionPoolMetrics(pool, "casper-rp", Tags.empty()).bindTo(registry);
+    }
+    
+    @Override
+    public void destroy() {
+        pool.dispose();
+    }
+}
@@ -0,0 +1,9 @@
+package com.casper.rp.reactive;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+
+/**
+ * R2DBC repository for login attempts (reactive stack); used for inserts only.
+ */
+public interface ReactiveLoginAttemptRepository extends ReactiveCrudRepository<LoginAttemptRecord, Long> {
+}
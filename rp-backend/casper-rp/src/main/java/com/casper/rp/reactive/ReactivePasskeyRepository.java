@@ -0,0 +1,24 @@
+package com.casper.rp.reactive;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC repository for passkeys (reactive stack).
+ * 
+ * The queries are those of {@link com.casper.rp.repository.PasskeyRepository}
+ * that register and login need.
+ */
+public interface ReactivePasskeyRepository extends ReactiveCrudRepository<PasskeyRecord, Long> {
+    
+    /**
+     * Find all passkeys for a user and RP.
+     */
+    Flux<PasskeyRecord> findByUserIdAndRpKey(String userId, Integer rpKey);
+    
+    /**
+     * Find passkey by public key, user ID, and RP.
+     */
+    Mono<PasskeyRecord> findByPublicKeyAndUserIdAndRpKey(String publicKey, String userId, Integer rpKey);
+}
@@ -0,0 +1,15 @@
+package com.casper.rp.reactive;
+
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Mono;
+
+/**
+ * R2DBC repository for registrations (reactive stack).
+ */
+public interface ReactiveRegistrationRepository extends ReactiveCrudRepository<RegistrationRecord, Long> {
+    
+    /**
+     * Find the registration of a user at an RP.
+     */
+    Mono<RegistrationRecord> findByUserIdAndRpKey(String userId, Integer rpKey);
+}
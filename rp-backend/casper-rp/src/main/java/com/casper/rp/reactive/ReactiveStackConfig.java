@@ -0,0 +1,78 @@
+package com.casper.rp.reactive;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.web.embedded.netty.NettyReactiveWebServerFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.r2dbc.repository.config.EnableR2dbcRepositories;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * The reactive stack (spring.main.web-application-type=reactive).
+ * 
+ * /api/auth is then served by {@link ReactiveAuthController} on WebFlux and
+ * Netty, with R2DBC for the passkeys, registrations and login_attempts it
+ * touches. Everything else (JPA, the key filter, partition maintenance, the
+ * query API) runs as on the servlet stack, on the JDBC DataSource.
+ * 
+ * casper.reactive.r2dbc.url must point at the same database as
+ * spring.datasource.url; credentials default to spring.datasource's. Read
+ * replicas (casper.replicas.*) apply to JDBC only.
+ * 
+ * Neither the R2DBC transaction manager nor the connection pool is a bean,
+ * so JPA keeps its transaction manager and @Transactional keeps meaning JPA.
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@EnableR2dbcRepositories(entityOperationsRef = "reactiveEntityTemplate")
+public class ReactiveStackConfig {
+    
+    /**
+     * Netty rather than Tomcat, which Spring Boot would pick since the servlet stack is on the classpath too.
+     */
+    @Bean
+    public NettyReactiveWebServerFactory nettyReactiveWebServerFactory() {
+        return new NettyReactiveWebServerFactory();
+    }
+    
+    @Bean
+    public ReactiveDatabase reactiveDatabase(
+            DataSourceProperties properties,
+            @Value("${casper.reactive.r2dbc.url:r2dbc:h2:mem:///casperrp}") String url,
+            @Value("${casper.reactive.r2dbc.username:}") String username,
+            @Value("${casper.reactive.r2dbc.password:}") String password,
+            @Value("${casper.reactive.r2dbc.max-pool-size:10}") int maxPoolSize) {
+        return new ReactiveDatabase(url,
+                username.isEmpty() ? properties.determineUsername() : username,
+                username.isEmpty() ? properties.determinePassword() : password,
+                maxPoolSize);
+    }
+    
+    @Bean
+    public R2dbcEntityTemplate reactiveEntityTemplate(ReactiveDatabase reactiveDatabase) {
+        return new R2dbcEntityTemplate(reactiveDatabase.getConnectionFactory());
+    }
+    
+    @Bean
+    public TransactionalOperator reactiveTransactionalOperator(ReactiveDatabase reactiveDatabase) {
+        return TransactionalOperator.create(new R2dbcTransactionManager(reactiveDatabase.getConnectionFactory()));
+    }
+    
+    /**
+     * Signature verification is CPU-bound, so it runs on a fixed set of
+     * threads (casper.reactive.verify-threads, default one per core) rather
+     * than on the Netty event loops, which must not be held up.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler verifyScheduler(
+            @Value("${casper.reactive.verify-threads:0}") int verifyThreads) {
+        int threads = verifyThreads > 0 ? verifyThreads : Runtime.getRuntime().availableProcessors();
+        return Schedulers.newParallel("casper-verify", threads);
+    }
+}
@@ -0,0 +1,98 @@
+package com.casper.rp.reactive;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * A registrations row, as the reactive stack reads and writes it.
+ * 
+ * Same table as {@link com.casper.rp.model.Registration}; version is checked
+ * and incremented on update the same way, so registrations through either
+ * stack conflict with each other as they should.
+ */
+@Table("registrations")
+public class RegistrationRecord {
+    
+    @Id
+    private Long id;
+    
+    @Column("user_id")
+    private String userId;
+    
+    @Column("rp_key")
+    private Integer rpKey;
+    
+    @Column("key_count")
+    private Integer keyCount;
+    
+    @Version
+    @Column("version")
+    private Long version;
+    
+    @Column("created_at")
+    private LocalDateTime createdAt;
+    
+    @Column("updated_at")
+    private LocalDateTime updatedAt;
+    
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+    
+    public void setId(Long id) {
+        this.id = id;
+    }
+    
+    public String getUserId() {
+        return userId;
+    }
+    
+    public void setUserId(String userId) {
+        this.userId = userId;
+    }
+    
+    public Integer getRpKey() {
+        return rpKey;
+    }
+    
+    public void setRpKey(Integer rpKey) {
+        this.rpKey = rpKey;
+    }
+    
+    public Integer getKeyCount() {
+        return keyCount;
+    }
+    
+    public void setKeyCount(Integer keyCount) {
+        this.keyCount = keyCount;
+    }
+    
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+    
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+    
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
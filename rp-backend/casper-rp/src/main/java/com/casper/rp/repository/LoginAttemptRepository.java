@@ -1,25 +1,109 @@
 package com.casper.rp.repository;
 
 import com.casper.rp.model.LoginAttempt;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.util.List;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
 
 /**
  * Repository interface for LoginAttempt entities.
+ * 
+ * Login attempts are only ever read a page at a time, seeking on
+ * (timestamp, id) rather than using OFFSET, so deep pages cost the same as
+ * the first. Pages are streamed from a JDBC cursor: the Stream must be
+ * consumed and closed inside a read-only transaction.
+ * 
+ * Reads go through the login_attempts_all view, which covers every day's
+ * partition (see {@link com.casper.rp.partition.PartitionMaintenance}), so
+ * these are native queries. The redundant {@code timestamp >= :afterTs}
+ * (or {@code <= :beforeTs}) next to the row-value seek lets PostgreSQL prune
+ * partitions outside the page.
  */
 @Repository
 public interface LoginAttemptRepository extends JpaRepository<LoginAttempt, Long> {
     
     /**
-     * Find all login attempts for a user and RP.
+     * Breaches after a position, oldest first.
+     * 
+     * @param afterTs Timestamp of the last row already seen (or the range start)
+     * @param afterId Id of the last row already seen (or Long.MIN_VALUE)
+     * @param to Exclusive end of the time range
+     * @param limit Maximum rows
      */
-    List<LoginAttempt> findByUserIdAndRpId(String userId, String rpId);
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(nativeQuery = true, value = "SELECT * FROM login_attempts_all WHERE breach_detected = TRUE"
+            + " AND timestamp >= :afterTs AND timestamp < :to"
+            + " AND (timestamp, id) > (:afterTs, :afterId)"
+            + " ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    Stream<LoginAttempt> streamBreachesAfter(@Param("afterTs") LocalDateTime afterTs,
+                                             @Param("afterId") long afterId,
+                                             @Param("to") LocalDateTime to,
+                                             @Param("limit") int limit);
     
     /**
-     * Find all breach detection events.
+     * Breaches before a position, newest first.
+     * 
+     * @param from Inclusive start of the time range
+     * @param beforeTs Timestamp of the last row already seen (or the range end)
+     * @param beforeId Id of the last row already seen (or Long.MIN_VALUE)
+     * @param limit Maximum rows
      */
-    List<LoginAttempt> findByBreachDetectedTrue();
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(nativeQuery = true, value = "SELECT * FROM login_attempts_all WHERE breach_detected = TRUE"
+            + " AND timestamp >= :from AND timestamp <= :beforeTs"
+            + " AND (timestamp, id) < (:beforeTs, :beforeId)"
+            + " ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    Stream<LoginAttempt> streamBreachesBefore(@Param("from") LocalDateTime from,
+                                              @Param("beforeTs") LocalDateTime beforeTs,
+                                              @Param("beforeId") long beforeId,
+                                              @Param("limit") int limit);
+    
+    /**
+     * Login attempts for a user and RP after a position, oldest first.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(nativeQuery = true, value = "SELECT * FROM login_attempts_all WHERE user_id = :userId AND rp_key = :rpKey"
+            + " AND timestamp >= :afterTs AND timestamp < :to"
+            + " AND (timestamp, id) > (:afterTs, :afterId)"
+            + " ORDER BY timestamp ASC, id ASC LIMIT :limit")
+    Stream<LoginAttempt> streamByUserAndRpAfter(@Param("userId") String userId,
+                                                @Param("rpKey") int rpKey,
+                                                @Param("afterTs") LocalDateTime afterTs,
+                                                @Param("afterId") long afterId,
+                                                @Param("to") LocalDateTime to,
+                                                @Param("limit") int limit);
+    
+    /**
+     * Login attempts for a user and RP before a position, newest first.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(nativeQuery = true, value = "SELECT * FROM login_attempts_all WHERE user_id = :userId AND rp_key = :rpKey"
+            + " AND timestamp >= :from AND timestamp <= :beforeTs"
+            + " AND (timestamp, id) < (:beforeTs, :beforeId)"
+            + " ORDER BY timestamp DESC, id DESC LIMIT :limit")
+    Stream<LoginAttempt> streamByUserAndRpBefore(@Param("userId") String userId,
+                                                 @Param("rpKey") int rpKey,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("beforeTs") LocalDateTime beforeTs,
+                                                 @Param("beforeId") long beforeId,
+                                                 @Param("limit") int limit);
 }
-
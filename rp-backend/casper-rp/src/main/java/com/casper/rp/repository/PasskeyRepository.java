@@ -9,6 +9,9 @@ import java.util.Optional;
 
 /**
  * Repository interface for Passkey entities.
+ * 
+ * RPs are identified by their interned key (see
+ * {@link com.casper.server.service.RelyingPartyService}).
  */
 @Repository
 public interface PasskeyRepository extends JpaRepository<Passkey, Long> {
@@ -16,21 +19,21 @@ public interface PasskeyRepository extends JpaRepository<Passkey, Long> {
     /**
      * Find all passkeys for a user and RP.
      */
-    List<Passkey> findByUserIdAndRpId(String userId, String rpId);
+    List<Passkey> findByUserIdAndRpKey(String userId, Integer rpKey);
     
     /**
-     * Find passkey by public key, user ID, and RP ID.
+     * Find passkey by public key, user ID, and RP.
      */
-    Optional<Passkey> findByPublicKeyAndUserIdAndRpId(String publicKey, String userId, String rpId);
+    Optional<Passkey> findByPublicKeyAndUserIdAndRpKey(String publicKey, String userId, Integer rpKey);
     
     /**
      * Find real passkey for a user and RP.
      */
-    Optional<Passkey> findByUserIdAndRpIdAndIsRealTrue(String userId, String rpId);
+    Optional<Passkey> findByUserIdAndRpKeyAndIsRealTrue(String userId, Integer rpKey);
     
     /**
      * Find all decoy (trap) passkeys for a user and RP.
      */
-    List<Passkey> findByUserIdAndRpIdAndIsRealFalse(String userId, String rpId);
+    List<Passkey> findByUserIdAndRpKeyAndIsRealFalse(String userId, Integer rpKey);
 }
 
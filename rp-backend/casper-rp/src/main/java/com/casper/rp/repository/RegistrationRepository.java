@@ -0,0 +1,19 @@
+package com.casper.rp.repository;
+
+import com.casper.rp.model.Registration;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * Repository interface for Registration entities.
+ */
+@Repository
+public interface RegistrationRepository extends JpaRepository<Registration, Long> {
+    
+    /**
+     * Find the registration of a user at an RP.
+     */
+    Optional<Registration> findByUserIdAndRpKey(String userId, Integer rpKey);
+}
@@ -1,12 +1,24 @@
 package com.casper.rp.service;
 
 import com.casper.rp.model.Passkey;
+import com.casper.rp.model.Registration;
 import com.casper.rp.repository.PasskeyRepository;
+import com.casper.rp.repository.RegistrationRepository;
+import com.casper.server.invalidation.InvalidationBus;
+import com.casper.server.service.RelyingPartyService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * CASPER Breach Detection Service.
@@ -22,6 +34,9 @@ import java.util.List;
  * 
  * This detects when an attacker steals encrypted passkey data from PMS
  * and tries to use a decoy secret to decrypt, resulting in a fake passkey.
+ * 
+ * Keys in neither set are rejected. {@link RegisteredKeyFilter} answers most
+ * of those without a database query.
  */
 @Service
 @Transactional
@@ -30,33 +45,223 @@ public class CasperDetectionService {
     @Autowired
     private PasskeyRepository passkeyRepository;
     
+    @Autowired
+    private RegistrationRepository registrationRepository;
+    
+    @Autowired
+    private RelyingPartyService relyingPartyService;
+    
+    @Autowired
+    private RegisteredKeyFilter registeredKeyFilter;
+    
+    @Autowired
+    private InvalidationBus invalidationBus;
+    
+    /**
+     * Which registered key a login used.
+     */
+    public enum LoginKey {
+        /** The real passkey (V): normal login */
+        REAL,
+        /** A decoy (trap) key (V'): breach detected */
+        DECOY,
+        /** Not registered for this user and RP: the login is rejected */
+        UNREGISTERED
+    }
+    
+    /**
+     * Outcome of a registration: the version of the key set and what changed.
+     */
+    public static class RegistrationResult {
+        private final long version;
+        private final int added;
+        private final int updated;
+        private final int removed;
+        
+        public RegistrationResult(long version, int added, int updated, int removed) {
+            this.version = version;
+            this.added = added;
+            this.updated = updated;
+            this.removed = removed;
+        }
+        
+        /**
+         * Version of the registered key set after this registration.
+         */
+        public long getVersion() {
+            return version;
+        }
+        
+        /** Keys inserted. */
+        public int getAdded() {
+            return added;
+        }
+        
+        /** Keys kept but moved (new position, or switched between real and decoy). */
+        public int getUpdated() {
+            return updated;
+        }
+        
+        /** Keys no longer registered and deleted. */
+        public int getRemoved() {
+            return removed;
+        }
+        
+        /**
+         * @return false if the registration matched what was already stored
+         */
+        public boolean isChanged() {
+            return added + updated + removed > 0;
+        }
+    }
+    
     /**
      * Register passkeys (real + decoys) with RP.
      * 
      * First public key is the real passkey (V).
      * All other public keys are decoy/trap keys (V').
      * 
+     * A re-registration is applied as a diff against the stored keys: keys
+     * that stay in the same position are not touched, moved keys are
+     * updated, and only new and dropped keys are inserted and deleted.
+     * Submitting the same keys again writes nothing and keeps the version,
+     * so retries are cheap.
+     * 
      * @param userId User identifier
-     * @param rpId Relying Party identifier
-     * @param publicKeys Array of Base64-encoded public keys
+     * @param rpKey Interned Relying Party identifier, from {@link RelyingPartyService#intern}
+     * @param publicKeys Public keys in their stored form (see {@link PublicKeyDecoder})
+     * @return The key set's version and what changed
+     * @throws ConcurrencyFailureException if another registration for the
+     *         same user and RP committed first (thrown on commit for an
+     *         existing registration)
      */
-    public void registerPasskeys(String userId, String rpId, String[] publicKeys) {
-        // Delete existing passkeys for this user+RP combination
-        List<Passkey> existing = passkeyRepository.findByUserIdAndRpId(userId, rpId);
-        passkeyRepository.deleteAll(existing);
+    public RegistrationResult registerPasskeys(String userId, int rpKey, String[] publicKeys) {
+        return registerPasskeys(userId, rpKey, publicKeys, null);
+    }
+    
+    /**
+     * Register passkeys, as {@link #registerPasskeys(String, int, String[])},
+     * only if the registered key set is still at the expected version.
+     * 
+     * Devices use this to put back the key set a failed re-registration
+     * replaced, without overwriting a registration made since.
+     * 
+     * @param expectedVersion Version the key set must be at, or null to register unconditionally
+     * @throws ConcurrencyFailureException if the key set is not at the
+     *         expected version, or another registration committed first
+     */
+    public RegistrationResult registerPasskeys(String userId, int rpKey, String[] publicKeys, Long expectedVersion) {
+        if (userId == null) {
+            throw new IllegalArgumentException("userId is required");
+        }
+        Registration registration = registrationRepository.findByUserIdAndRpKey(userId, rpKey).orElse(null);
+        if (expectedVersion != null) {
+            requireVersion(userId, registration, expectedVersion);
+        }
+        boolean created = registration == null;
+        if (created) {
+            // Also created for key sets stored before registrations were tracked
+            registration = new Registration();
+            registration.setUserId(userId);
+            registration.setRpKey(rpKey);
+            registration.setKeyCount(publicKeys.length);
+            try {
+                // Inserted first, so a concurrent first registration fails before writing any keys
+                registration = registrationRepository.saveAndFlush(registration);
+            } catch (DataIntegrityViolationException e) {
+                throw new ConcurrencyFailureException("Concurrent registration for user " + userId, e);
+            }
+        }
+        
+        // Stored keys by value; a list per value in case a key was registered twice
+        Map<String, Deque<Passkey>> stored = new HashMap<>();
+        for (Passkey passkey : passkeyRepository.findByUserIdAndRpKey(userId, rpKey)) {
+            stored.computeIfAbsent(passkey.getPublicKey(), key -> new ArrayDeque<>()).add(passkey);
+        }
         
-        // Register all passkeys
+        List<String> added = new ArrayList<>();
+        int updated = 0;
         for (int i = 0; i < publicKeys.length; i++) {
-            Passkey passkey = new Passkey();
-            passkey.setUserId(userId);
-            passkey.setRpId(rpId);
-            passkey.setPublicKey(publicKeys[i]);
-            passkey.setKeyIndex(i);
-            
             // First key (index 0) is real, others are decoys (trap keys)
-            passkey.setIsReal(i == 0);
+            boolean isReal = i == 0;
+            Deque<Passkey> matches = stored.get(publicKeys[i]);
+            Passkey passkey = matches != null ? matches.poll() : null;
+            if (passkey == null) {
+                passkey = new Passkey();
+                passkey.setUserId(userId);
+                passkey.setRpKey(rpKey);
+                passkey.setPublicKey(publicKeys[i]);
+                passkey.setKeyIndex(i);
+                passkey.setIsReal(isReal);
+                passkeyRepository.save(passkey);
+                added.add(publicKeys[i]);
+            } else if (passkey.getKeyIndex() != i || passkey.getIsReal() != isReal) {
+                // Managed entity: flushed as an UPDATE of these two columns
+                passkey.setKeyIndex(i);
+                passkey.setIsReal(isReal);
+                updated++;
+            }
+        }
+        
+        List<Passkey> dropped = new ArrayList<>();
+        stored.values().forEach(dropped::addAll);
+        passkeyRepository.deleteAll(dropped);
+        
+        RegistrationResult result = new RegistrationResult(registration.getVersion(), added.size(), updated, dropped.size());
+        if (result.isChanged()) {
+            if (!created) {
+                registration.setKeyCount(publicKeys.length);
+                registration.setUpdatedAt(LocalDateTime.now());
+                // Flush now to bump the version (and detect a concurrent registration) before returning it
+                registration = registrationRepository.saveAndFlush(registration);
+                result = new RegistrationResult(registration.getVersion(), added.size(), updated, dropped.size());
+            }
             
-            passkeyRepository.save(passkey);
+            String rpId = relyingPartyService.rpId(rpKey);
+            registeredKeyFilter.add(userId, rpId, added.toArray(new String[0]));
+            invalidationBus.publish(userId, rpId);
+        }
+        return result;
+    }
+    
+    /**
+     * Remove all passkeys (real + decoys) for a user and RP.
+     * 
+     * Used by devices to roll back a first registration whose PMS upload
+     * failed, so no half-registered passkey is left behind. The key set must
+     * still be at the version that registration returned: anything else is a
+     * later registration, which is left alone.
+     * 
+     * @param userId User identifier
+     * @param rpId Relying Party identifier
+     * @param expectedVersion Version of the key set being rolled back
+     * @return Number of passkeys removed
+     * @throws ConcurrencyFailureException if the key set is not at the
+     *         expected version, or another registration committed first
+     */
+    public int unregisterPasskeys(String userId, String rpId, long expectedVersion) {
+        Integer rpKey = relyingPartyService.lookup(rpId);
+        Registration registration = rpKey == null ? null
+                : registrationRepository.findByUserIdAndRpKey(userId, rpKey).orElse(null);
+        requireVersion(userId, registration, expectedVersion);
+        
+        List<Passkey> existing = passkeyRepository.findByUserIdAndRpKey(userId, rpKey);
+        passkeyRepository.deleteAll(existing);
+        if (!existing.isEmpty()) {
+            registration.setKeyCount(0);
+            registration.setUpdatedAt(LocalDateTime.now());
+            // Flush now to bump the version (and detect a concurrent registration) before returning
+            registrationRepository.saveAndFlush(registration);
+            invalidationBus.publish(userId, rpId);
+        }
+        return existing.size();
+    }
+    
+    private static void requireVersion(String userId, Registration registration, long expectedVersion) {
+        if (registration == null || registration.getVersion() != expectedVersion) {
+            throw new ConcurrencyFailureException("Registration for user " + userId
+                    + " is not at version " + expectedVersion
+                    + (registration == null ? "" : " (now " + registration.getVersion() + ")"));
         }
     }
     
@@ -70,25 +275,27 @@ public class CasperDetectionService {
      * 
      * @param userId User identifier
      * @param rpId Relying Party identifier
-     * @param loginPublicKey Base64-encoded public key used for login
-     * @return true if breach detected, false otherwise
+     * @param loginPublicKey Public key used for login, in its stored form
+     * @return DECOY if breach detected, REAL for a normal login, UNREGISTERED for an unknown key
      */
     @Transactional(readOnly = true)
-    public boolean detectBreach(String userId, String rpId, String loginPublicKey) {
+    public LoginKey detectBreach(String userId, String rpId, String loginPublicKey) {
+        Integer rpKey = relyingPartyService.lookup(rpId);
+        
         // Find the passkey with this public key
-        Passkey loginKey = passkeyRepository
-                .findByPublicKeyAndUserIdAndRpId(loginPublicKey, userId, rpId)
+        Passkey loginKey = rpKey == null ? null : passkeyRepository
+                .findByPublicKeyAndUserIdAndRpKey(loginPublicKey, userId, rpKey)
                 .orElse(null);
         
         if (loginKey == null) {
             // Key not found in registered passkeys - invalid login
-            return false;
+            return LoginKey.UNREGISTERED;
         }
         
         // CASPER Detection Logic:
         // If the login key is a trap key (decoy), breach is detected
         // If the login key is the real key, normal login
-        return !loginKey.getIsReal(); // Breach detected if it's a decoy key
+        return loginKey.getIsReal() ? LoginKey.REAL : LoginKey.DECOY; // Breach detected if it's a decoy key
     }
     
     /**
@@ -101,7 +308,8 @@ public class CasperDetectionService {
      */
     @Transactional(readOnly = true)
     public List<Passkey> getTrapKeys(String userId, String rpId) {
-        return passkeyRepository.findByUserIdAndRpIdAndIsRealFalse(userId, rpId);
+        Integer rpKey = relyingPartyService.lookup(rpId);
+        return rpKey == null ? List.of() : passkeyRepository.findByUserIdAndRpKeyAndIsRealFalse(userId, rpKey);
     }
     
     /**
@@ -113,7 +321,8 @@ public class CasperDetectionService {
      */
     @Transactional(readOnly = true)
     public Passkey getRealPasskey(String userId, String rpId) {
-        return passkeyRepository.findByUserIdAndRpIdAndIsRealTrue(userId, rpId)
+        Integer rpKey = relyingPartyService.lookup(rpId);
+        return rpKey == null ? null : passkeyRepository.findByUserIdAndRpKeyAndIsRealTrue(userId, rpKey)
                 .orElse(null);
     }
 }
@@ -0,0 +1,107 @@
+package com.casper.rp.service;
+
+import com.casper.rp.model.LoginAttempt;
+import com.casper.rp.repository.LoginAttemptRepository;
+import com.casper.server.service.RelyingPartyService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Keyset-paginated reads of login attempts and breaches.
+ * 
+ * Each page is streamed row by row from the database to a consumer (the
+ * HTTP response writer), and every row is detached once consumed, so memory
+ * use is bounded by the JDBC fetch size rather than the page size.
+ */
+@Service
+@Transactional(readOnly = true)
+public class LoginAttemptQueryService {
+    
+    /** Start of the time range when the caller gives none. */
+    public static final LocalDateTime EARLIEST = LocalDateTime.of(1970, 1, 1, 0, 0);
+    
+    /** End of the time range when the caller gives none. */
+    public static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
+    
+    @Autowired
+    private LoginAttemptRepository loginAttemptRepository;
+    
+    @Autowired
+    private RelyingPartyService relyingPartyService;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
+    /**
+     * Stream one page of breaches.
+     * 
+     * @param from Inclusive start of the time range
+     * @param to Exclusive end of the time range
+     * @param cursor Position after which to continue, or null for the first page
+     * @param newestFirst Page from {@code to} backwards instead of from {@code from} forwards
+     * @param limit Maximum rows in the page
+     * @param consumer Receives each row in order
+     * @return Cursor for the next page, or null if this was the last one
+     */
+    public PageCursor streamBreaches(LocalDateTime from, LocalDateTime to, PageCursor cursor,
+                                     boolean newestFirst, int limit, Consumer<LoginAttempt> consumer) {
+        Stream<LoginAttempt> rows = newestFirst
+                ? loginAttemptRepository.streamBreachesBefore(from,
+                        cursor != null ? cursor.getTimestamp() : to, seekId(cursor), limit)
+                : loginAttemptRepository.streamBreachesAfter(
+                        cursor != null ? cursor.getTimestamp() : from, seekId(cursor), to, limit);
+        return drain(rows, limit, consumer);
+    }
+    
+    /**
+     * Stream one page of login attempts for a user and RP.
+     * 
+     * Parameters are as for {@link #streamBreaches}.
+     */
+    public PageCursor streamLoginAttempts(String userId, String rpId, LocalDateTime from, LocalDateTime to,
+                                          PageCursor cursor, boolean newestFirst, int limit,
+                                          Consumer<LoginAttempt> consumer) {
+        Integer rpKey = relyingPartyService.lookup(rpId);
+        if (rpKey == null) {
+            // Nothing was ever stored for this RP
+            return null;
+        }
+        Stream<LoginAttempt> rows = newestFirst
+                ? loginAttemptRepository.streamByUserAndRpBefore(userId, rpKey, from,
+                        cursor != null ? cursor.getTimestamp() : to, seekId(cursor), limit)
+                : loginAttemptRepository.streamByUserAndRpAfter(userId, rpKey,
+                        cursor != null ? cursor.getTimestamp() : from, seekId(cursor), to, limit);
+        return drain(rows, limit, consumer);
+    }
+    
+    /**
+     * Id half of the seek position. Without a cursor the range bound itself is
+     * the position, and Long.MIN_VALUE makes the bound inclusive for
+     * {@code from} and exclusive for {@code to}.
+     */
+    private static long seekId(PageCursor cursor) {
+        return cursor != null ? cursor.getId() : Long.MIN_VALUE;
+    }
+    
+    private PageCursor drain(Stream<LoginAttempt> rows, int limit, Consumer<LoginAttempt> consumer) {
+        int count = 0;
+        LoginAttempt last = null;
+        try (rows) {
+            for (LoginAttempt attempt : (Iterable<LoginAttempt>) rows::iterator) {
+                consumer.accept(attempt);
+                entityManager.detach(attempt);
+                last = attempt;
+                count++;
+            }
+        }
+        // A short page means the range is exhausted
+        return count < limit ? null : new PageCursor(last.getTimestamp(), last.getId());
+    }
+}
@@ -0,0 +1,58 @@
+package com.casper.rp.service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position of the last row of a keyset-paginated page: its (timestamp, id).
+ * 
+ * Handed to clients as an opaque token; they pass it back unchanged to get
+ * the next page.
+ */
+public final class PageCursor {
+    
+    private final LocalDateTime timestamp;
+    private final long id;
+    
+    public PageCursor(LocalDateTime timestamp, long id) {
+        this.timestamp = timestamp;
+        this.id = id;
+    }
+    
+    public LocalDateTime getTimestamp() {
+        return timestamp;
+    }
+    
+    public long getId() {
+        return id;
+    }
+    
+    /**
+     * Encode as an opaque, URL-safe token.
+     */
+    public String encode() {
+        String raw = timestamp + "|" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Decode a token produced by {@link #encode()}.
+     * 
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static PageCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int bar = raw.indexOf('|');
+            if (bar < 0) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, bar)),
+                    Long.parseLong(raw.substring(bar + 1)));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.casper.rp.service;
+
+import com.casper.core.EcKeys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Public keys as the RP stores them, and decoded for signature verification.
+ * 
+ * Keys are stored, indexed and compared as Base64 compressed P-256 points
+ * (44 characters). Devices send that form; older ones send X.509, which is
+ * converted on arrival (see {@link EcKeys#compress}), so a key has one
+ * stored form however it was sent.
+ * 
+ * Decoding a compressed point means computing y, a modular square root
+ * that costs several times the X.509 parse it replaces. Users log in with
+ * the same key again and again, so decoded keys are cached, up to
+ * casper.key-decoder.cache-size of them; the cache is emptied when full.
+ * Only keys that passed the {@link RegisteredKeyFilter} get this far.
+ */
+@Component
+public class PublicKeyDecoder {
+    
+    private final int cacheSize;
+    private final Map<String, PublicKey> decoded = new ConcurrentHashMap<>();
+    
+    public PublicKeyDecoder(@Value("${casper.key-decoder.cache-size:10000}") int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+    
+    /**
+     * Get the stored form of a key sent by a device.
+     * 
+     * @param encoded Key as sent: a compressed point, or legacy X.509
+     * @return Base64 compressed point
+     * @throws GeneralSecurityException if the bytes are not a P-256 public key
+     */
+    public String storedForm(byte[] encoded) throws GeneralSecurityException {
+        return Base64.getEncoder().encodeToString(EcKeys.compress(encoded));
+    }
+    
+    /**
+     * Decode a key for verification, from the cache if it was decoded before.
+     * 
+     * @param storedKey The key's stored form, from {@link #storedForm}
+     * @param encoded The key as sent
+     * @throws GeneralSecurityException if the key is not a valid P-256 public key
+     */
+    public PublicKey decode(String storedKey, byte[] encoded) throws GeneralSecurityException {
+        PublicKey publicKey = decoded.get(storedKey);
+        if (publicKey == null) {
+            publicKey = EcKeys.decodePublicKey(encoded);
+            if (decoded.size() >= cacheSize) {
+                decoded.clear();
+            }
+            decoded.put(storedKey, publicKey);
+        }
+        return publicKey;
+    }
+}
@@ -0,0 +1,67 @@
+package com.casper.rp.service;
+
+import com.casper.core.EcKeys;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Converts passkeys registered with X.509 public keys to the stored form
+ * (see {@link PublicKeyDecoder}) at startup.
+ * 
+ * Runs before the {@link RegisteredKeyFilter} is first built and before
+ * logins are served, in batches, and only touches rows whose key is longer
+ * than a compressed point, so after the first run it is a single query.
+ * login_attempts keeps the form each attempt was recorded with.
+ */
+@Component
+@DependsOn("entityManagerFactory") // passkeys must exist
+public class PublicKeyMigration {
+    
+    private static final Logger log = LoggerFactory.getLogger(PublicKeyMigration.class);
+    
+    private static final int BATCH_SIZE = 1000;
+    private static final int STORED_LENGTH = 44; // Base64 of a compressed point
+    
+    public PublicKeyMigration(JdbcTemplate jdbcTemplate) {
+        long lastId = 0;
+        int converted = 0;
+        int skipped = 0;
+        while (true) {
+            List<Object[]> rows = jdbcTemplate.query(
+                    "SELECT id, public_key FROM passkeys WHERE id > ? AND LENGTH(public_key) > ? ORDER BY id LIMIT ?",
+                    (row, i) -> new Object[] {row.getLong(1), row.getString(2)},
+                    lastId, STORED_LENGTH, BATCH_SIZE);
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (Object[] row : rows) {
+                String publicKey = (String) row[1];
+                try {
+                    String stored = Base64.getEncoder().encodeToString(
+                            EcKeys.compress(Base64.getDecoder().decode(publicKey)));
+                    updates.add(new Object[] {stored, row[0], publicKey});
+                } catch (GeneralSecurityException | IllegalArgumentException e) {
+                    // Not a P-256 key, which logins no longer accept
+                    skipped++;
+                }
+            }
+            converted += Arrays.stream(jdbcTemplate.batchUpdate(
+                    "UPDATE passkeys SET public_key = ? WHERE id = ? AND public_key = ?", updates)).sum();
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+        }
+        if (converted > 0 || skipped > 0) {
+            log.info("Converted {} passkeys to compressed public keys ({} unreadable left as they were)",
+                    converted, skipped);
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.casper.rp.service;
+
+import com.casper.rp.analytics.BloomFilter;
+import com.casper.server.invalidation.InvalidationBus;
+import com.casper.server.invalidation.InvalidationEvent;
+import com.casper.server.service.RelyingPartyService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers "definitely not registered" for login keys without a database query.
+ * 
+ * A Bloom filter holds a fingerprint of every registered (userId, rpId,
+ * publicKey). A login whose fingerprint is not in the filter cannot match a
+ * passkey row and is rejected before its signature is even verified. Keys
+ * that pass the filter but are not found in the database (false positives,
+ * or keys since re-registered away) go into a short-lived negative cache, so
+ * repeating them does not reach the database either.
+ * 
+ * The filter is built from the passkeys table once the RP has started (until
+ * then every key passes), extended by {@link CasperDetectionService#registerPasskeys}
+ * on this instance and, for other instances sharing the database, by a sync
+ * of recently created passkeys. A sync runs as soon as the
+ * {@link InvalidationBus} reports a registration on another instance, and
+ * periodically in case such a message was lost; with
+ * {@code casper.key-filter.sync-on-miss}, also before rejecting a key. Removed
+ * keys stay in the filter until it is rebuilt, which happens when it outgrows
+ * its capacity.
+ */
+@Component
+public class RegisteredKeyFilter {
+    
+    private static final Logger log = LoggerFactory.getLogger(RegisteredKeyFilter.class);
+    
+    /** How far back each sync looks before the previous one started (commit delay, clock skew). */
+    private static final Duration SYNC_OVERLAP = Duration.ofSeconds(30);
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final RelyingPartyService relyingPartyService;
+    private final double falsePositiveRate;
+    private final long minCapacity;
+    private final long negativeTtlNanos;
+    private final int negativeCacheSize;
+    private final boolean syncOnMiss;
+    
+    private final Object syncLock = new Object();
+    private final AtomicLong insertions = new AtomicLong();
+    /** Fingerprint of a key found unregistered -> System.nanoTime() the entry expires. */
+    private final Map<Long, Long> unregistered = new ConcurrentHashMap<>();
+    private volatile BloomFilter filter;
+    /** Filter being rebuilt; receives every add until it replaces {@link #filter}. */
+    private volatile BloomFilter next;
+    private LocalDateTime lastSync;
+    private volatile long lastSyncStartedNanos;
+    
+    public RegisteredKeyFilter(JdbcTemplate jdbcTemplate, RelyingPartyService relyingPartyService,
+                               InvalidationBus invalidationBus,
+                               @Value("${casper.key-filter.false-positive-rate:0.01}") double falsePositiveRate,
+                               @Value("${casper.key-filter.min-capacity:100000}") long minCapacity,
+                               @Value("${casper.key-filter.negative-ttl-ms:30000}") long negativeTtlMs,
+                               @Value("${casper.key-filter.negative-cache-size:100000}") int negativeCacheSize,
+                               @Value("${casper.key-filter.sync-on-miss:false}") boolean syncOnMiss) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.relyingPartyService = relyingPartyService;
+        this.falsePositiveRate = falsePositiveRate;
+        this.minCapacity = minCapacity;
+        this.negativeTtlNanos = negativeTtlMs * 1_000_000L;
+        this.negativeCacheSize = negativeCacheSize;
+        this.syncOnMiss = syncOnMiss;
+        invalidationBus.subscribe(this::onInvalidate);
+    }
+    
+    /**
+     * Check a login key without touching the database (unless sync-on-miss is set).
+     * 
+     * @param arrivedNanos {@link System#nanoTime()} when the login request arrived
+     * @return true if the key is definitely not registered for this user and RP
+     */
+    public boolean isUnregistered(String userId, String rpId, String publicKey, long arrivedNanos) {
+        long fingerprint = fingerprint(userId, rpId, publicKey);
+        Long expires = unregistered.get(fingerprint);
+        if (expires != null) {
+            if (expires - System.nanoTime() > 0) {
+                return true;
+            }
+            unregistered.remove(fingerprint, expires);
+        }
+        
+        BloomFilter current = filter;
+        if (current == null || current.mightContain(fingerprint)) {
+            return false;
+        }
+        if (syncOnMiss) {
+            // The key may have just been registered on another instance
+            catchUp(arrivedNanos);
+            if (filter.mightContain(fingerprint)) {
+                return false;
+            }
+        }
+        remember(fingerprint);
+        return true;
+    }
+    
+    /**
+     * @return true if {@link #isUnregistered} may query the database (casper.key-filter.sync-on-miss)
+     */
+    public boolean isSyncOnMiss() {
+        return syncOnMiss;
+    }
+    
+    /**
+     * Record that a key passed the filter but has no passkey row.
+     */
+    public void markUnregistered(String userId, String rpId, String publicKey) {
+        remember(fingerprint(userId, rpId, publicKey));
+    }
+    
+    /**
+     * Add newly registered keys. Called before the registration commits, so
+     * a login can never see the row without the filter entry.
+     */
+    public void add(String userId, String rpId, String[] publicKeys) {
+        for (String publicKey : publicKeys) {
+            add(fingerprint(userId, rpId, publicKey));
+        }
+    }
+    
+    /**
+     * Add passkeys created since the last sync (by any instance), and build
+     * or rebuild the filter when there is none yet or it is over capacity.
+     */
+    @Scheduled(fixedDelayString = "${casper.key-filter.sync-ms:2000}")
+    public void sync() {
+        BloomFilter current = filter;
+        if (current == null || insertions.get() > current.getCapacity()) {
+            rebuild();
+        } else {
+            synchronized (syncLock) {
+                syncRecent();
+            }
+        }
+        long now = System.nanoTime();
+        unregistered.values().removeIf(expires -> expires - now <= 0);
+    }
+    
+    /**
+     * Pick up passkeys registered on other instances. Registrations on this
+     * instance were already added by {@link CasperDetectionService}.
+     */
+    private void onInvalidate(List<InvalidationEvent> events, boolean remote) {
+        if (remote && filter != null) {
+            catchUp(System.nanoTime());
+        }
+    }
+    
+    /**
+     * Make sure a sync that started after {@code arrivedNanos} has completed.
+     * Concurrent callers share one sync rather than each running their own.
+     */
+    private void catchUp(long arrivedNanos) {
+        synchronized (syncLock) {
+            if (lastSyncStartedNanos - arrivedNanos > 0) {
+                return;
+            }
+            syncRecent();
+        }
+    }
+    
+    /**
+     * Caller holds {@link #syncLock}.
+     */
+    private void syncRecent() {
+        long startedNanos = System.nanoTime();
+        LocalDateTime startedAt = LocalDateTime.now();
+        jdbcTemplate.query("SELECT user_id, rp_key, public_key FROM passkeys WHERE created_at >= ?",
+                row -> {
+                    add(fingerprint(row));
+                }, lastSync.minus(SYNC_OVERLAP));
+        lastSync = startedAt;
+        lastSyncStartedNanos = startedNanos;
+    }
+    
+    /**
+     * Build a new filter from every passkey, sized for twice the current
+     * count, and swap it in. Registrations and syncs during the scan go into
+     * both filters, so nothing added meanwhile is lost.
+     */
+    private void rebuild() {
+        long startedNanos = System.nanoTime();
+        LocalDateTime startedAt = LocalDateTime.now();
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM passkeys", Long.class);
+        BloomFilter fresh = new BloomFilter(Math.max(minCapacity, 2 * (count != null ? count : 0)),
+                falsePositiveRate);
+        synchronized (syncLock) {
+            next = fresh;
+        }
+        
+        AtomicLong scanned = new AtomicLong();
+        jdbcTemplate.query("SELECT user_id, rp_key, public_key FROM passkeys", row -> {
+            fresh.add(fingerprint(row));
+            scanned.incrementAndGet();
+        });
+        
+        synchronized (syncLock) {
+            filter = fresh;
+            next = null;
+            insertions.set(scanned.get());
+            if (lastSync == null) {
+                lastSync = startedAt;
+                lastSyncStartedNanos = startedNanos;
+            }
+        }
+        log.info("Built registered key filter: {} keys, capacity {}, {} KiB",
+                scanned.get(), fresh.getCapacity(), fresh.sizeInBytes() / 1024);
+    }
+    
+    private void add(long fingerprint) {
+        BloomFilter current = filter;
+        BloomFilter building = next;
+        // Syncs see recent keys more than once; only new ones count toward capacity
+        if (current != null && !current.mightContain(fingerprint)) {
+            current.add(fingerprint);
+            insertions.incrementAndGet();
+        }
+        if (building != null) {
+            building.add(fingerprint);
+        }
+        unregistered.remove(fingerprint);
+    }
+    
+    private void remember(long fingerprint) {
+        // When full, new entries are skipped until the next sync purges expired ones
+        if (unregistered.size() < negativeCacheSize) {
+            unregistered.put(fingerprint, System.nanoTime() + negativeTtlNanos);
+        }
+    }
+    
+    private long fingerprint(ResultSet row) throws SQLException {
+        return fingerprint(row.getString(1), relyingPartyService.rpId(row.getInt(2)), row.getString(3));
+    }
+    
+    private static long fingerprint(String userId, String rpId, String publicKey) {
+        return BloomFilter.hash(userId + '\n' + rpId + '\n' + publicKey);
+    }
+}
@@ -0,0 +1,40 @@
+package com.casper.rp.service;
+
+import com.casper.server.service.RpKeyMigration;
+import com.casper.server.service.RpKeyMigration.Table;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+
+/**
+ * Moves RP databases created before rpIds were interned from rp_id to
+ * rp_key, keeping every passkey, login attempt and rollup.
+ * 
+ * login_attempts_all is dropped here and recreated by
+ * {@link com.casper.rp.partition.PartitionMaintenance} at startup. On
+ * PostgreSQL, altering login_attempts alters every partition with it.
+ */
+@Configuration
+public class RpKeyMigrationConfig {
+    
+    @Bean
+    public RpKeyMigration rpKeyMigration(DataSource dataSource) throws SQLException {
+        return new RpKeyMigration(dataSource,
+                new Table("passkeys",
+                        "DROP INDEX IF EXISTS idx_passkeys_user_rp",
+                        "CREATE INDEX idx_passkeys_user_rp ON passkeys(user_id, rp_key)"),
+                new Table("login_attempts",
+                        "DROP VIEW IF EXISTS login_attempts_all",
+                        "DROP INDEX IF EXISTS idx_login_attempts_user_rp_ts",
+                        "CREATE INDEX idx_login_attempts_user_rp_ts ON login_attempts(user_id, rp_key, timestamp, id)"),
+                new Table("login_attempt_daily",
+                        "ALTER TABLE login_attempt_daily DROP CONSTRAINT IF EXISTS "
+                                + "login_attempt_daily_login_date_user_id_rp_id_key",
+                        "ALTER TABLE login_attempt_daily DROP CONSTRAINT IF EXISTS "
+                                + "login_attempt_daily_login_date_user_id_rp_key_key",
+                        "ALTER TABLE login_attempt_daily ADD CONSTRAINT "
+                                + "login_attempt_daily_login_date_user_id_rp_key_key UNIQUE (login_date, user_id, rp_key)"));
+    }
+}
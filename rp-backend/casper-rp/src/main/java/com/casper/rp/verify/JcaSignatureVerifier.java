@@ -0,0 +1,16 @@
+package com.casper.rp.verify;
+
+import com.casper.core.Signatures;
+
+import java.security.PublicKey;
+
+/**
+ * Verifies with the JCA provider ({@link Signatures#verify}). The default.
+ */
+public class JcaSignatureVerifier implements SignatureVerifier {
+    
+    @Override
+    public boolean verify(byte[] challenge, byte[] signature, PublicKey publicKey, String keyId) {
+        return Signatures.verify(challenge, signature, publicKey);
+    }
+}
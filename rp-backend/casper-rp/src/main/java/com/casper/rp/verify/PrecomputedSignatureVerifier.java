@@ -0,0 +1,114 @@
+package com.casper.rp.verify;
+
+import com.casper.core.P256Table;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.security.PublicKey;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies with per-key precomputed tables ({@link P256Table}) for keys that
+ * log in repeatedly, and with the JCA for the rest.
+ * 
+ * A table makes verification roughly ten times cheaper but costs about one
+ * JCA verification to build and 16 KB to keep. So a key only gets one once
+ * it has been verified casper.verifier.min-uses times, and only the
+ * casper.verifier.table-cache-size most recently used tables are kept.
+ * Until then a key is verified with the JCA; the counts of such keys are
+ * kept for up to the same number of keys and emptied when full.
+ * 
+ * Meters:
+ * - casper.verifier.verifications{path}  verifications with a table (table) or without (jca)
+ * - casper.verifier.table.builds         tables built
+ * - casper.verifier.tables               tables held
+ */
+public class PrecomputedSignatureVerifier implements SignatureVerifier, MeterBinder {
+    
+    private final SignatureVerifier fallback = new JcaSignatureVerifier();
+    private final int minUses;
+    private final int cacheSize;
+    private final Map<String, P256Table> tables;
+    private final Map<String, Integer> sightings = new ConcurrentHashMap<>();
+    private final AtomicLong tableVerifications = new AtomicLong();
+    private final AtomicLong fallbackVerifications = new AtomicLong();
+    private final AtomicLong builds = new AtomicLong();
+    
+    PrecomputedSignatureVerifier(int cacheSize, int minUses) {
+        this.cacheSize = cacheSize;
+        this.minUses = minUses;
+        this.tables = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, P256Table> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+    
+    @Override
+    public boolean verify(byte[] challenge, byte[] signature, PublicKey publicKey, String keyId) {
+        P256Table table = table(publicKey, keyId);
+        if (table == null) {
+            fallbackVerifications.incrementAndGet();
+            return fallback.verify(challenge, signature, publicKey, keyId);
+        }
+        tableVerifications.incrementAndGet();
+        return table.verify(challenge, signature);
+    }
+    
+    /**
+     * The key's table, built now if the key has been seen often enough.
+     * 
+     * @return null if the key should be verified with the JCA
+     */
+    private P256Table table(PublicKey publicKey, String keyId) {
+        P256Table table;
+        synchronized (tables) {
+            table = tables.get(keyId);
+        }
+        if (table != null || cacheSize <= 0) {
+            return table;
+        }
+        if (sightings.size() >= cacheSize) {
+            sightings.clear();
+        }
+        if (sightings.merge(keyId, 1, Integer::sum) < minUses) {
+            return null;
+        }
+        try {
+            // Built outside the lock; two logins racing here both build, and one table is kept
+            table = P256Table.of(publicKey);
+        } catch (IllegalArgumentException e) {
+            return null; // not P-256
+        }
+        builds.incrementAndGet();
+        synchronized (tables) {
+            tables.put(keyId, table);
+        }
+        sightings.remove(keyId);
+        return table;
+    }
+    
+    private int tableCount() {
+        synchronized (tables) {
+            return tables.size();
+        }
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("casper.verifier.verifications", tableVerifications, AtomicLong::get)
+                .tag("path", "table").register(registry);
+        FunctionCounter.builder("casper.verifier.verifications", fallbackVerifications, AtomicLong::get)
+                .tag("path", "jca").register(registry);
+        FunctionCounter.builder("casper.verifier.table.builds", builds, AtomicLong::get)
+                .register(registry);
+        Gauge.builder("casper.verifier.tables", this, PrecomputedSignatureVerifier::tableCount)
+                .register(registry);
+    }
+}
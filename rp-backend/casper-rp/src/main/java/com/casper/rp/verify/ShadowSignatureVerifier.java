@@ -0,0 +1,74 @@
+package com.casper.rp.verify;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies with a trusted verifier and cross-checks a candidate against it.
+ * 
+ * The trusted result is always the one returned. For a sample of
+ * verifications (casper.verifier.shadow.sample-rate), the candidate verifies
+ * the same signature too and disagreements are logged with the key, so a
+ * new verifier can run on real traffic before it is relied on.
+ * 
+ * Meters (besides the candidate's own):
+ * - casper.verifier.shadow{result}  sampled verifications where the candidate agreed (match) or not (mismatch)
+ */
+public class ShadowSignatureVerifier implements SignatureVerifier, MeterBinder {
+    
+    private static final Logger log = LoggerFactory.getLogger(ShadowSignatureVerifier.class);
+    
+    private final SignatureVerifier trusted;
+    private final SignatureVerifier candidate;
+    private final double sampleRate;
+    private final AtomicLong matches = new AtomicLong();
+    private final AtomicLong mismatches = new AtomicLong();
+    
+    ShadowSignatureVerifier(SignatureVerifier trusted, SignatureVerifier candidate, double sampleRate) {
+        this.trusted = trusted;
+        this.candidate = candidate;
+        this.sampleRate = sampleRate;
+    }
+    
+    @Override
+    public boolean verify(byte[] challenge, byte[] signature, PublicKey publicKey, String keyId) {
+        boolean valid = trusted.verify(challenge, signature, publicKey, keyId);
+        if (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            boolean candidateValid;
+            try {
+                candidateValid = candidate.verify(challenge, signature, publicKey, keyId);
+            } catch (RuntimeException e) {
+                log.warn("Shadow verifier failed for key {}", keyId, e);
+                mismatches.incrementAndGet();
+                return valid;
+            }
+            if (candidateValid == valid) {
+                matches.incrementAndGet();
+            } else {
+                mismatches.incrementAndGet();
+                log.warn("Shadow verifier disagrees for key {}: expected {}, got {} (signature {})",
+                        keyId, valid, candidateValid, Base64.getEncoder().encodeToString(signature));
+            }
+        }
+        return valid;
+    }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("casper.verifier.shadow", matches, AtomicLong::get)
+                .tag("result", "match").register(registry);
+        FunctionCounter.builder("casper.verifier.shadow", mismatches, AtomicLong::get)
+                .tag("result", "mismatch").register(registry);
+        if (candidate instanceof MeterBinder) {
+            ((MeterBinder) candidate).bindTo(registry);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.casper.rp.verify;
+
+import java.security.PublicKey;
+
+/**
+ * Verifies login challenge signatures (SHA256withECDSA, DER).
+ * 
+ * Implementations are chosen by casper.verifier.mode, see {@link VerifierConfig}.
+ */
+public interface SignatureVerifier {
+    
+    /**
+     * Verify a challenge signature.
+     * 
+     * @param challenge Challenge bytes that were signed
+     * @param signature DER-encoded signature
+     * @param publicKey Key to verify with
+     * @param keyId Identifies the key across logins (its stored form, see
+     *              {@link com.casper.rp.service.PublicKeyDecoder#storedForm})
+     * @return true if the signature is valid; false if it is invalid or malformed
+     */
+    boolean verify(byte[] challenge, byte[] signature, PublicKey publicKey, String keyId);
+}
@@ -0,0 +1,41 @@
+package com.casper.rp.verify;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Selects the login signature verifier (casper.verifier.mode).
+ * 
+ * - jca (default): the JCA provider
+ * - precomputed: per-key precomputed tables for repeat keys, JCA for the rest
+ * - shadow: the JCA decides; precomputed runs alongside and disagreements are counted and logged
+ */
+@Configuration
+public class VerifierConfig {
+    
+    @Bean
+    @ConditionalOnProperty(name = "casper.verifier.mode", havingValue = "jca", matchIfMissing = true)
+    public JcaSignatureVerifier jcaSignatureVerifier() {
+        return new JcaSignatureVerifier();
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "casper.verifier.mode", havingValue = "precomputed")
+    public PrecomputedSignatureVerifier precomputedSignatureVerifier(
+            @Value("${casper.verifier.table-cache-size:10000}") int tableCacheSize,
+            @Value("${casper.verifier.min-uses:2}") int minUses) {
+        return new PrecomputedSignatureVerifier(tableCacheSize, minUses);
+    }
+    
+    @Bean
+    @ConditionalOnProperty(name = "casper.verifier.mode", havingValue = "shadow")
+    public ShadowSignatureVerifier shadowSignatureVerifier(
+            @Value("${casper.verifier.table-cache-size:10000}") int tableCacheSize,
+            @Value("${casper.verifier.min-uses:2}") int minUses,
+            @Value("${casper.verifier.shadow.sample-rate:1.0}") double sampleRate) {
+        return new ShadowSignatureVerifier(new JcaSignatureVerifier(),
+                new PrecomputedSignatureVerifier(tableCacheSize, minUses), sampleRate);
+    }
+}
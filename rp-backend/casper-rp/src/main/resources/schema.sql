@@ -2,38 +2,99 @@
 -- PostgreSQL schema for Relying Party Service
 
 -- Drop tables if they exist (for clean setup)
+DROP TABLE IF EXISTS login_attempt_daily CASCADE;
 DROP TABLE IF EXISTS login_attempts CASCADE;
 DROP TABLE IF EXISTS passkeys CASCADE;
+DROP TABLE IF EXISTS registrations CASCADE;
+DROP TABLE IF EXISTS rps CASCADE;
+DROP TABLE IF EXISTS replica_heartbeat;
+
+-- Relying Parties Table
+-- One row per distinct rpId (the RP's URL). Other tables store its integer id
+-- (rp_key) instead of repeating the URL in every row and index.
+-- Databases created with rp_id columns are migrated at startup (RpKeyMigration).
+CREATE TABLE rps (
+    id SERIAL PRIMARY KEY,
+    rp_id VARCHAR(255) NOT NULL UNIQUE
+);
 
 -- Passkeys Table
 -- Stores registered passkey public keys (real + decoys/trap keys)
 CREATE TABLE passkeys (
     id BIGSERIAL PRIMARY KEY,
     user_id VARCHAR(255) NOT NULL,
-    rp_id VARCHAR(255) NOT NULL,
-    public_key TEXT NOT NULL,         -- Base64-encoded public key
+    rp_key INTEGER NOT NULL REFERENCES rps(id),
+    public_key VARCHAR(128) NOT NULL, -- Base64 compressed P-256 point (44 chars; X.509 keys are converted)
     is_real BOOLEAN NOT NULL,         -- true = real passkey (V), false = decoy/trap key (V')
     key_index INTEGER NOT NULL,       -- Index in registration order (0 = real, 1+ = decoys)
     created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
 );
 
+-- Registrations Table
+-- One row per user and RP with the version of its passkey set. A
+-- re-registration only writes the passkeys rows that changed, and bumps
+-- the version if any did.
+CREATE TABLE registrations (
+    id BIGSERIAL PRIMARY KEY,
+    user_id VARCHAR(255) NOT NULL,
+    rp_key INTEGER NOT NULL REFERENCES rps(id),
+    key_count INTEGER NOT NULL,       -- Registered keys (real + decoys), 0 after unregistering
+    version BIGINT NOT NULL DEFAULT 0,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP,
+    UNIQUE (user_id, rp_key)
+);
+
 -- Login Attempts Table
--- Records all login attempts with breach detection results
+-- Records all login attempts with breach detection results.
+-- Partitioned by day: the RP creates login_attempts_YYYYMMDD partitions ahead
+-- of time, and rolls up and drops them after the retention period.
 CREATE TABLE login_attempts (
-    id BIGSERIAL PRIMARY KEY,
+    id BIGSERIAL,
     user_id VARCHAR(255) NOT NULL,
-    rp_id VARCHAR(255) NOT NULL,
-    public_key TEXT NOT NULL,         -- Base64-encoded public key used for login
+    rp_key INTEGER NOT NULL REFERENCES rps(id),
+    public_key TEXT NOT NULL,         -- Public key used for login, as stored in passkeys
     breach_detected BOOLEAN NOT NULL, -- CASPER breach detection result
-    timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+    timestamp TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (id, timestamp)       -- The partition key must be part of the primary key
+) PARTITION BY RANGE (timestamp);
+
+-- Catches rows for days that have no partition yet, so logins never fail on it
+CREATE TABLE login_attempts_default PARTITION OF login_attempts DEFAULT;
+
+-- All retained login attempts (the paged query API reads this view)
+CREATE VIEW login_attempts_all AS
+    SELECT id, user_id, rp_key, public_key, breach_detected, timestamp FROM login_attempts;
+
+-- Daily Rollups
+-- Per-user/per-RP counts for days whose login_attempts partition was dropped
+CREATE TABLE login_attempt_daily (
+    id BIGSERIAL PRIMARY KEY,
+    login_date DATE NOT NULL,
+    user_id VARCHAR(255) NOT NULL,
+    rp_key INTEGER NOT NULL REFERENCES rps(id),
+    attempts BIGINT NOT NULL,
+    breaches BIGINT NOT NULL,         -- Logins made with a decoy (trap) key
+    UNIQUE (login_date, user_id, rp_key)
+);
+
+-- Replica Heartbeat
+-- Written to the primary every casper.replicas.check-ms; its age on a replica is the replica's lag.
+-- Created by the RP if missing when read replicas are configured.
+CREATE TABLE replica_heartbeat (
+    id INTEGER PRIMARY KEY,           -- Always 1
+    beat_at BIGINT NOT NULL           -- Epoch millis of the last heartbeat
 );
 
 -- Indexes for faster lookups
-CREATE INDEX idx_passkeys_user_rp ON passkeys(user_id, rp_id);
+CREATE INDEX idx_passkeys_user_rp ON passkeys(user_id, rp_key);
 CREATE INDEX idx_passkeys_public_key ON passkeys(public_key);
-CREATE INDEX idx_login_attempts_user_rp ON login_attempts(user_id, rp_id);
-CREATE INDEX idx_login_attempts_breach ON login_attempts(breach_detected);
-CREATE INDEX idx_login_attempts_timestamp ON login_attempts(timestamp);
+-- Registered key filter sync: passkeys created since the last sync
+CREATE INDEX idx_passkeys_created_at ON passkeys(created_at);
+-- Keyset pagination: each query filters on the leading columns and seeks on (timestamp, id).
+-- Created on the parent, so every partition gets its own (one day sized) copy.
+CREATE INDEX idx_login_attempts_breach_ts ON login_attempts(breach_detected, timestamp, id);
+CREATE INDEX idx_login_attempts_user_rp_ts ON login_attempts(user_id, rp_key, timestamp, id);
 
 -- Comments (PostgreSQL syntax - not supported by H2, kept for documentation)
 -- COMMENT ON TABLE passkeys IS 'Stores registered passkey public keys. First key (is_real=true) is real (V), others are trap keys (V'')';
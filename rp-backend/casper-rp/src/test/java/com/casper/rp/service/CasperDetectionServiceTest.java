@@ -0,0 +1,310 @@
+package com.casper.rp.service;
+
+import com.casper.rp.model.Passkey;
+import com.casper.rp.model.Registration;
+import com.casper.rp.repository.PasskeyRepository;
+import com.casper.rp.repository.RegistrationRepository;
+import com.casper.rp.service.CasperDetectionService.LoginKey;
+import com.casper.rp.service.CasperDetectionService.RegistrationResult;
+import com.casper.server.service.RelyingPartyService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.security.KeyPairGenerator;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Registration as a diff against the stored keys, its versioning, and the
+ * version checks devices rely on to roll a registration back.
+ * 
+ * Keys are passed in their stored form; any distinct strings do, except in
+ * the HTTP test, which goes through {@link PublicKeyDecoder}.
+ */
+@SpringBootTest(properties = {
+        "casper.grpc.enabled=false",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureMockMvc
+class CasperDetectionServiceTest {
+    
+    private static final String RP_ID = "test.example";
+    
+    @Autowired
+    private CasperDetectionService detectionService;
+    
+    @Autowired
+    private RelyingPartyService relyingPartyService;
+    
+    @Autowired
+    private PasskeyRepository passkeyRepository;
+    
+    @Autowired
+    private RegistrationRepository registrationRepository;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    private int rpKey;
+    private String userId;
+    
+    @BeforeEach
+    void setUp() {
+        rpKey = relyingPartyService.intern(RP_ID);
+        userId = "user-" + System.nanoTime();
+    }
+    
+    @Test
+    void firstRegistrationAddsEveryKey() {
+        RegistrationResult result = register("real", "decoy-1", "decoy-2");
+        
+        assertTrue(result.isChanged());
+        assertEquals(3, result.getAdded());
+        assertEquals(0, result.getUpdated());
+        assertEquals(0, result.getRemoved());
+        assertStored("real", "decoy-1", "decoy-2");
+        assertEquals(LoginKey.REAL, detectionService.detectBreach(userId, RP_ID, "real"));
+        assertEquals(LoginKey.DECOY, detectionService.detectBreach(userId, RP_ID, "decoy-2"));
+    }
+    
+    @Test
+    void identicalResubmissionIsNoOpAndKeepsVersion() {
+        RegistrationResult first = register("real", "decoy-1", "decoy-2");
+        List<Passkey> before = stored();
+        
+        RegistrationResult again = register("real", "decoy-1", "decoy-2");
+        
+        assertFalse(again.isChanged());
+        assertEquals(first.getVersion(), again.getVersion());
+        // Same rows, not deleted and re-inserted
+        assertEquals(ids(before), ids(stored()));
+    }
+    
+    @Test
+    void changedKeySetBumpsVersion() {
+        RegistrationResult first = register("real", "decoy-1", "decoy-2");
+        
+        RegistrationResult second = register("real", "decoy-1", "decoy-3");
+        
+        assertTrue(second.isChanged());
+        assertEquals(1, second.getAdded());
+        assertEquals(0, second.getUpdated());
+        assertEquals(1, second.getRemoved());
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        assertStored("real", "decoy-1", "decoy-3");
+    }
+    
+    @Test
+    void realKeyMovesToDecoySlotAndBack() {
+        register("a", "b", "c");
+        List<Passkey> before = stored();
+        
+        RegistrationResult swapped = register("b", "a", "c");
+        
+        assertEquals(0, swapped.getAdded());
+        assertEquals(2, swapped.getUpdated());
+        assertEquals(0, swapped.getRemoved());
+        assertEquals(ids(before), ids(stored()));
+        assertStored("b", "a", "c");
+        assertEquals(LoginKey.DECOY, detectionService.detectBreach(userId, RP_ID, "a"));
+        assertEquals(LoginKey.REAL, detectionService.detectBreach(userId, RP_ID, "b"));
+        
+        RegistrationResult back = register("a", "b", "c");
+        
+        assertEquals(2, back.getUpdated());
+        assertEquals(swapped.getVersion() + 1, back.getVersion());
+        assertStored("a", "b", "c");
+        assertEquals(LoginKey.REAL, detectionService.detectBreach(userId, RP_ID, "a"));
+    }
+    
+    @Test
+    void keyTwiceInOneRequestIsStoredTwice() {
+        RegistrationResult first = register("real", "dup", "dup");
+        
+        assertEquals(3, first.getAdded());
+        assertStored("real", "dup", "dup");
+        
+        // Both stored copies match, so nothing changes
+        RegistrationResult again = register("real", "dup", "dup");
+        assertFalse(again.isChanged());
+        assertEquals(first.getVersion(), again.getVersion());
+        
+        RegistrationResult once = register("real", "dup");
+        assertEquals(0, once.getAdded());
+        assertEquals(1, once.getRemoved());
+        assertStored("real", "dup");
+    }
+    
+    @Test
+    void keysStoredBeforeRegistrationsWereTrackedAreDiffedAgainst() {
+        // Written as registrations before the registrations table existed: keys only
+        String[] keys = {"real", "decoy-1", "decoy-2"};
+        for (int i = 0; i < keys.length; i++) {
+            Passkey passkey = new Passkey();
+            passkey.setUserId(userId);
+            passkey.setRpKey(rpKey);
+            passkey.setPublicKey(keys[i]);
+            passkey.setKeyIndex(i);
+            passkey.setIsReal(i == 0);
+            passkeyRepository.save(passkey);
+        }
+        List<Passkey> before = stored();
+        
+        RegistrationResult result = register(keys);
+        
+        assertFalse(result.isChanged());
+        assertEquals(ids(before), ids(stored()));
+        Registration registration = registrationRepository.findByUserIdAndRpKey(userId, rpKey).orElseThrow();
+        assertEquals(result.getVersion(), registration.getVersion());
+        assertEquals(3, registration.getKeyCount());
+        
+        RegistrationResult next = register("real", "decoy-1");
+        assertEquals(1, next.getRemoved());
+        assertEquals(result.getVersion() + 1, next.getVersion());
+    }
+    
+    @Test
+    void racingFirstRegistrationGetsConflict() throws Exception {
+        String first = publicKey();
+        String second = publicKey();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<MvcResult> racing = new TransactionTemplate(transactionManager).execute(status -> {
+                // The first registration has inserted its row but not committed when the second one starts
+                detectionService.registerPasskeys(userId, rpKey, new String[] {"first-real", "first-decoy"});
+                Future<MvcResult> future = executor.submit(() -> mockMvc.perform(post("/api/auth/register")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"userId\":\"" + userId + "\",\"rpId\":\"" + RP_ID + "\","
+                                + "\"publicKeys\":[\"" + first + "\",\"" + second + "\"]}"))
+                        .andReturn());
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return future;
+            });
+            
+            MvcResult result = racing.get(30, TimeUnit.SECONDS);
+            assertEquals(409, result.getResponse().getStatus());
+            assertStored("first-real", "first-decoy");
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void unregisterOnlyRemovesTheExpectedVersion() {
+        RegistrationResult first = register("real", "decoy-1", "decoy-2");
+        
+        assertThrows(ConcurrencyFailureException.class,
+                () -> detectionService.unregisterPasskeys(userId, RP_ID, first.getVersion() + 1));
+        assertStored("real", "decoy-1", "decoy-2");
+        
+        assertEquals(3, detectionService.unregisterPasskeys(userId, RP_ID, first.getVersion()));
+        assertStored();
+        assertEquals(LoginKey.UNREGISTERED, detectionService.detectBreach(userId, RP_ID, "real"));
+        
+        // Unregistering bumps the version, so a repeated rollback changes nothing
+        Registration registration = registrationRepository.findByUserIdAndRpKey(userId, rpKey).orElseThrow();
+        assertEquals(first.getVersion() + 1, registration.getVersion());
+        assertEquals(0, registration.getKeyCount());
+        assertThrows(ConcurrencyFailureException.class,
+                () -> detectionService.unregisterPasskeys(userId, RP_ID, first.getVersion()));
+        
+        assertThrows(ConcurrencyFailureException.class,
+                () -> detectionService.unregisterPasskeys("user-never-registered", RP_ID, 0));
+    }
+    
+    @Test
+    void replacedKeySetIsRestoredOverTheExpectedVersion() {
+        register("old-real", "old-decoy-1", "old-decoy-2");
+        RegistrationResult replaced = register("new-real", "new-decoy-1", "new-decoy-2");
+        assertEquals(3, replaced.getRemoved());
+        
+        RegistrationResult restored = detectionService.registerPasskeys(userId, rpKey,
+                new String[] {"old-real", "old-decoy-1", "old-decoy-2"}, replaced.getVersion());
+        
+        assertEquals(replaced.getVersion() + 1, restored.getVersion());
+        assertStored("old-real", "old-decoy-1", "old-decoy-2");
+        assertEquals(LoginKey.REAL, detectionService.detectBreach(userId, RP_ID, "old-real"));
+        
+        // A later registration is not overwritten by a stale rollback
+        register("newer-real", "newer-decoy");
+        assertThrows(ConcurrencyFailureException.class, () -> detectionService.registerPasskeys(userId, rpKey,
+                new String[] {"old-real", "old-decoy-1", "old-decoy-2"}, restored.getVersion()));
+        assertStored("newer-real", "newer-decoy");
+    }
+    
+    @Test
+    void unregisterOverHttpNeedsTheVersion() throws Exception {
+        RegistrationResult first = register("real", "decoy");
+        
+        assertEquals(400, unregister("").getResponse().getStatus());
+        assertEquals(409, unregister(",\"expectedVersion\":" + (first.getVersion() + 1)).getResponse().getStatus());
+        assertStored("real", "decoy");
+        assertEquals(200, unregister(",\"expectedVersion\":" + first.getVersion()).getResponse().getStatus());
+        assertStored();
+    }
+    
+    private MvcResult unregister(String extraFields) throws Exception {
+        return mockMvc.perform(post("/api/auth/unregister")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"userId\":\"" + userId + "\",\"rpId\":\"" + RP_ID + "\"" + extraFields + "}"))
+                .andReturn();
+    }
+    
+    private RegistrationResult register(String... publicKeys) {
+        return detectionService.registerPasskeys(userId, rpKey, publicKeys);
+    }
+    
+    private List<Passkey> stored() {
+        List<Passkey> passkeys = passkeyRepository.findByUserIdAndRpKey(userId, rpKey);
+        passkeys.sort(Comparator.comparing(Passkey::getKeyIndex));
+        return passkeys;
+    }
+    
+    private static List<Long> ids(List<Passkey> passkeys) {
+        return passkeys.stream().map(Passkey::getId).sorted().toList();
+    }
+    
+    private void assertStored(String... publicKeys) {
+        List<Passkey> passkeys = stored();
+        assertEquals(publicKeys.length, passkeys.size());
+        for (int i = 0; i < publicKeys.length; i++) {
+            assertEquals(publicKeys[i], passkeys.get(i).getPublicKey());
+            assertEquals(i, passkeys.get(i).getKeyIndex());
+            assertEquals(i == 0, passkeys.get(i).getIsReal());
+        }
+    }
+    
+    private static String publicKey() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+        generator.initialize(new ECGenParameterSpec("secp256r1"));
+        return Base64.getEncoder().encodeToString(generator.generateKeyPair().getPublic().getEncoded());
+    }
+}
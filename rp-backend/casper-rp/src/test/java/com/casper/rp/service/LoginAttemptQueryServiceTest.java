@@ -0,0 +1,181 @@
+package com.casper.rp.service;
+
+import com.casper.rp.model.LoginAttempt;
+import com.casper.rp.partition.PartitionMaintenance;
+import com.casper.server.service.RelyingPartyService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Keyset pagination of login attempts and breaches over the
+ * login_attempts_all view, and the daily partitions behind it.
+ * 
+ * Rows are inserted with JDBC, since the entity stamps its own timestamp.
+ * Pages are one row each, so every row boundary is a cursor boundary. The
+ * test has its own database, as partition maintenance seals and drops
+ * every old day it finds.
+ */
+@SpringBootTest(properties = {
+        "casper.grpc.enabled=false",
+        "spring.jpa.show-sql=false",
+        "spring.datasource.url=jdbc:h2:mem:casperrp-attempts",
+        "casper.partitions.retention-days=90"
+})
+class LoginAttemptQueryServiceTest {
+    
+    private static final String RP_ID = "attempts.example";
+    
+    @Autowired
+    private LoginAttemptQueryService queryService;
+    
+    @Autowired
+    private PartitionMaintenance partitionMaintenance;
+    
+    @Autowired
+    private RelyingPartyService relyingPartyService;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private int rpKey;
+    private String userId;
+    
+    @BeforeEach
+    void setUp() {
+        rpKey = relyingPartyService.intern(RP_ID);
+        userId = "user-" + System.nanoTime();
+    }
+    
+    @Test
+    void rowsSharingATimestampArePagedByIdInBothOrders() {
+        LocalDateTime at = LocalDateTime.now().withNano(0).minusHours(1);
+        long first = insert(at, true);
+        long second = insert(at, true);
+        long third = insert(at, true);
+        
+        assertEquals(List.of(first, second, third), attempts(at, at.plusSeconds(1), false));
+        assertEquals(List.of(third, second, first), attempts(at, at.plusSeconds(1), true));
+        
+        // Breaches are paged across all users; nothing else is at this instant
+        assertEquals(List.of(first, second, third), breaches(at, at.plusNanos(1000), false));
+        assertEquals(List.of(third, second, first), breaches(at, at.plusNanos(1000), true));
+    }
+    
+    @Test
+    void fromIsInclusiveAndToIsExclusive() {
+        LocalDateTime from = LocalDateTime.now().withNano(0).minusHours(2);
+        LocalDateTime to = from.plusMinutes(10);
+        insert(from.minusSeconds(1), false);
+        long atFrom = insert(from, false);
+        long inside = insert(from.plusMinutes(5), false);
+        insert(to, false);
+        
+        assertEquals(List.of(atFrom, inside), attempts(from, to, false));
+        assertEquals(List.of(inside, atFrom), attempts(from, to, true));
+    }
+    
+    @Test
+    void cursorCrossesFromASealedDayIntoToday() {
+        LocalDate today = LocalDate.now();
+        LocalDateTime lateYesterday = today.minusDays(1).atTime(23, 59, 58);
+        long yesterday1 = insert(lateYesterday, false);
+        long yesterday2 = insert(lateYesterday.plusSeconds(1), false);
+        long today1 = insert(today.atStartOfDay(), false);
+        
+        partitionMaintenance.run();
+        
+        // Yesterday's rows now live in their own table, today's are still in login_attempts
+        assertTrue(tableExists("login_attempts_" + today.minusDays(1).format(DateTimeFormatter.BASIC_ISO_DATE)));
+        assertEquals(1, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM login_attempts WHERE user_id = ?", Integer.class, userId));
+        
+        LocalDateTime from = lateYesterday.minusHours(1);
+        LocalDateTime to = today.atStartOfDay().plusHours(1);
+        assertEquals(List.of(yesterday1, yesterday2, today1), attempts(from, to, false));
+        assertEquals(List.of(today1, yesterday2, yesterday1), attempts(from, to, true));
+    }
+    
+    @Test
+    void expiredDayIsRolledUpThenDropped() {
+        LocalDate day = LocalDate.now().minusDays(120);
+        insert(day.atTime(9, 0), false);
+        insert(day.atTime(12, 0), true);
+        insert(day.atTime(18, 0), true);
+        
+        partitionMaintenance.run();
+        
+        Map<String, Object> rollup = jdbcTemplate.queryForMap("SELECT attempts, breaches FROM login_attempt_daily "
+                + "WHERE login_date = ? AND user_id = ? AND rp_key = ?", day, userId, rpKey);
+        assertEquals(3L, ((Number) rollup.get("attempts")).longValue());
+        assertEquals(2L, ((Number) rollup.get("breaches")).longValue());
+        assertFalse(tableExists("login_attempts_" + day.format(DateTimeFormatter.BASIC_ISO_DATE)));
+        assertEquals(List.of(), attempts(day.atStartOfDay(), day.plusDays(1).atStartOfDay(), false));
+    }
+    
+    /**
+     * Insert a login attempt for the test's user.
+     * 
+     * @return Its id
+     */
+    private long insert(LocalDateTime timestamp, boolean breach) {
+        jdbcTemplate.update("INSERT INTO login_attempts (user_id, rp_key, public_key, breach_detected, timestamp) "
+                + "VALUES (?, ?, ?, ?, ?)", userId, rpKey, "key-" + System.nanoTime(), breach, timestamp);
+        return jdbcTemplate.queryForObject("SELECT MAX(id) FROM login_attempts WHERE user_id = ?", Long.class, userId);
+    }
+    
+    private List<Long> attempts(LocalDateTime from, LocalDateTime to, boolean newestFirst) {
+        return pageByPage((cursor, consumer) -> queryService.streamLoginAttempts(
+                userId, RP_ID, from, to, cursor, newestFirst, 1, consumer));
+    }
+    
+    private List<Long> breaches(LocalDateTime from, LocalDateTime to, boolean newestFirst) {
+        return pageByPage((cursor, consumer) -> queryService.streamBreaches(
+                from, to, cursor, newestFirst, 1, consumer));
+    }
+    
+    /**
+     * Follow the cursors one-row page by one-row page, passing each through
+     * its token form as a client would, and collect the row ids.
+     */
+    private List<Long> pageByPage(Pager pager) {
+        List<Long> ids = new ArrayList<>();
+        PageCursor cursor = null;
+        for (int pages = 0; pages < 10; pages++) {
+            List<Long> page = new ArrayList<>();
+            cursor = pager.page(cursor, attempt -> page.add(attempt.getId()));
+            assertTrue(page.size() <= 1);
+            ids.addAll(page);
+            if (cursor == null) {
+                return ids;
+            }
+            cursor = PageCursor.decode(cursor.encode());
+        }
+        assertNull(cursor, "Paging did not end");
+        return ids;
+    }
+    
+    private boolean tableExists(String name) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES "
+                + "WHERE TABLE_SCHEMA = SCHEMA() AND LOWER(TABLE_NAME) = ?", Integer.class, name) > 0;
+    }
+    
+    private interface Pager {
+        PageCursor page(PageCursor cursor, Consumer<LoginAttempt> consumer);
+    }
+}
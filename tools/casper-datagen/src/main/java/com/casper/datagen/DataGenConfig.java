@@ -0,0 +1,202 @@
+package com.casper.datagen;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line settings for a generation run.
+ * 
+ * Options are given as --name=value or --name value.
+ */
+class DataGenConfig {
+    
+    static final String USAGE = String.join("\n",
+            "Usage: java -jar casper-datagen.jar [options]",
+            "",
+            "Targets (at least one):",
+            "  --pms-jdbc=URL             PMS database (encrypted_passkeys)",
+            "  --pms-user=NAME            (default sa)",
+            "  --pms-password=PASSWORD    (default empty)",
+            "  --rp-jdbc=URL              RP database (passkeys, login_attempts)",
+            "  --rp-user=NAME             (default sa)",
+            "  --rp-password=PASSWORD     (default empty)",
+            "  --pms-schema=FILE          SQL script run on the PMS database first, e.g. schema.sql",
+            "  --rp-schema=FILE           SQL script run on the RP database first",
+            "",
+            "Data shape:",
+            "  --users=N                  Users to generate (default 10000)",
+            "  --first-user=N             Index of the first user, to extend an earlier run (default 0)",
+            "  --rps=N                    Distinct RPs (default 100)",
+            "  --rps-per-user=N           RPs each user registered with (default 3)",
+            "  --secrets=K                Detection secrets per passkey, k (default 5)",
+            "  --logins-per-passkey=F     Mean login attempts per passkey (default 4)",
+            "  --breach-fraction=F        Share of login attempts made with a decoy key (default 0.001)",
+            "  --start=TIME               Earliest created_at, ISO local time (default 2024-01-01T00:00)",
+            "  --days=N                   Days over which registrations and logins are spread (default 90)",
+            "  --seed=N                   Seed; the same seed gives the same data (default 42)",
+            "  --keys=sequential|independent",
+            "                             sequential: one key generation per user, further keys by",
+            "                             point addition (fast, related keys); independent: a full",
+            "                             key generation per key (default sequential)",
+            "",
+            "Loading:",
+            "  --mode=auto|copy|batch     COPY (PostgreSQL only) or batched INSERTs; auto picks COPY",
+            "                             for PostgreSQL URLs (default auto)",
+            "  --threads=N                Generator/loader threads (default: CPU count)",
+            "  --chunk=N                  Users per transaction (default 500)",
+            "  --help                     Show this message");
+    
+    /** Upper bound for k and for RPs per user (key streams are numbered per user and key). */
+    static final int MAX_PER_USER = 1024;
+    
+    final Target pms;
+    final Target rp;
+    final String pmsSchema;
+    final String rpSchema;
+    final long users;
+    final long firstUser;
+    final int rps;
+    final int rpsPerUser;
+    final int secretCount;
+    final double loginsPerPasskey;
+    final double breachFraction;
+    final LocalDateTime start;
+    final int days;
+    final long seed;
+    final boolean sequentialKeys;
+    final String mode;
+    final int threads;
+    final int chunk;
+    
+    /**
+     * One database to load.
+     */
+    static class Target {
+        final String url;
+        final String user;
+        final String password;
+        
+        Target(String url, String user, String password) {
+            this.url = url;
+            this.user = user;
+            this.password = password;
+        }
+        
+        boolean isPostgres() {
+            return url.startsWith("jdbc:postgresql:");
+        }
+    }
+    
+    private DataGenConfig(Map<String, String> options) {
+        pms = target(options, "pms");
+        rp = target(options, "rp");
+        pmsSchema = options.get("pms-schema");
+        rpSchema = options.get("rp-schema");
+        users = longOption(options, "users", 10_000, 1);
+        firstUser = longOption(options, "first-user", 0, 0);
+        rps = (int) longOption(options, "rps", 100, 1);
+        rpsPerUser = (int) longOption(options, "rps-per-user", 3, 1);
+        secretCount = (int) longOption(options, "secrets", 5, 2);
+        loginsPerPasskey = Double.parseDouble(options.getOrDefault("logins-per-passkey", "4"));
+        breachFraction = Double.parseDouble(options.getOrDefault("breach-fraction", "0.001"));
+        start = LocalDateTime.parse(options.getOrDefault("start", "2024-01-01T00:00"));
+        days = (int) longOption(options, "days", 90, 1);
+        seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        String keys = options.getOrDefault("keys", "sequential");
+        sequentialKeys = keys.equals("sequential");
+        mode = options.getOrDefault("mode", "auto");
+        threads = (int) longOption(options, "threads", Runtime.getRuntime().availableProcessors(), 1);
+        chunk = (int) longOption(options, "chunk", 500, 1);
+        
+        if (pms == null && rp == null) {
+            throw new IllegalArgumentException("Give --pms-jdbc, --rp-jdbc or both");
+        }
+        if (secretCount > MAX_PER_USER || rpsPerUser > MAX_PER_USER) {
+            throw new IllegalArgumentException("--secrets and --rps-per-user are limited to " + MAX_PER_USER);
+        }
+        if (rpsPerUser > rps) {
+            throw new IllegalArgumentException("--rps-per-user cannot exceed --rps");
+        }
+        if (loginsPerPasskey < 0) {
+            throw new IllegalArgumentException("--logins-per-passkey must not be negative");
+        }
+        if (breachFraction < 0 || breachFraction > 1) {
+            throw new IllegalArgumentException("--breach-fraction must be between 0 and 1");
+        }
+        if (!sequentialKeys && !keys.equals("independent")) {
+            throw new IllegalArgumentException("--keys must be sequential or independent");
+        }
+        if (!mode.equals("auto") && !mode.equals("copy") && !mode.equals("batch")) {
+            throw new IllegalArgumentException("--mode must be auto, copy or batch");
+        }
+        if (mode.equals("copy") && ((pms != null && !pms.isPostgres()) || (rp != null && !rp.isPostgres()))) {
+            throw new IllegalArgumentException("--mode=copy needs PostgreSQL targets");
+        }
+    }
+    
+    /**
+     * Parse command line arguments.
+     * 
+     * @return Settings, or null if --help was given
+     * @throws IllegalArgumentException on an unknown option or bad value
+     */
+    static DataGenConfig parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--help") || arg.equals("-h")) {
+                return null;
+            }
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else if (i + 1 < args.length) {
+                options.put(arg.substring(2), args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+        }
+        for (String name : options.keySet()) {
+            if (!USAGE.contains("--" + name + "=")) {
+                throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        return new DataGenConfig(options);
+    }
+    
+    /**
+     * Whether to load a target with COPY.
+     */
+    boolean useCopy(Target target) {
+        return mode.equals("copy") || (mode.equals("auto") && target.isPostgres());
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("users=%d (from %d) rps=%d rpsPerUser=%d k=%d loginsPerPasskey=%.2f "
+                        + "breachFraction=%.4f start=%s days=%d seed=%d keys=%s mode=%s threads=%d chunk=%d",
+                users, firstUser, rps, rpsPerUser, secretCount, loginsPerPasskey, breachFraction,
+                start, days, seed, sequentialKeys ? "sequential" : "independent", mode, threads, chunk);
+    }
+    
+    private static Target target(Map<String, String> options, String prefix) {
+        String url = options.get(prefix + "-jdbc");
+        if (url == null) {
+            return null;
+        }
+        return new Target(url, options.getOrDefault(prefix + "-user", "sa"),
+                options.getOrDefault(prefix + "-password", ""));
+    }
+    
+    private static long longOption(Map<String, String> options, String name, long defaultValue, long min) {
+        long value = Long.parseLong(options.getOrDefault(name, String.valueOf(defaultValue)));
+        if (value < min) {
+            throw new IllegalArgumentException("--" + name + " must be at least " + min);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,279 @@
+package com.casper.datagen;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Synthetic dataset generator and bulk loader for the PMS and RP databases.
+ * 
+ * Generates users with realistic CASPER data (see {@link UserGenerator}) and
+ * loads it into encrypted_passkeys (PMS) and passkeys / login_attempts (RP).
+ * 
+ * Loading is parallel: each thread owns one connection per target, takes the
+ * next chunk of users, generates their rows and writes each table with one
+ * COPY (PostgreSQL) or one JDBC batch, then commits. Key generation dominates,
+ * so throughput scales with --threads up to the core count.
+ * 
+ * The same seed and options always produce the same rows (ids aside), so
+ * runs at different scales or on different databases can be compared.
+ */
+public class DataGenerator {
+    
+    public static void main(String[] args) throws Exception {
+        DataGenConfig config;
+        try {
+            config = DataGenConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(DataGenConfig.USAGE);
+            System.exit(2);
+            return;
+        }
+        if (config == null) {
+            System.out.println(DataGenConfig.USAGE);
+            return;
+        }
+        
+        System.out.println("casper-datagen: " + config);
+        new DataGenerator(config).run();
+    }
+    
+    private final DataGenConfig config;
+    private final Map<Table, LongAdder> rowCounts = new EnumMap<>(Table.class);
+    private final AtomicLong nextChunk = new AtomicLong();
+    private final LongAdder usersDone = new LongAdder();
+    private int[] pmsRpKeys;
+    private int[] rpRpKeys;
+    
+    DataGenerator(DataGenConfig config) {
+        this.config = config;
+        for (Table table : Table.values()) {
+            rowCounts.put(table, new LongAdder());
+        }
+    }
+    
+    void run() throws Exception {
+        if (config.pms != null && config.pmsSchema != null) {
+            runScript(config.pms, config.pmsSchema);
+        }
+        if (config.rp != null && config.rpSchema != null) {
+            runScript(config.rp, config.rpSchema);
+        }
+        if (config.rp != null && config.rp.isPostgres()) {
+            createPartitions(config.rp);
+        }
+        pmsRpKeys = internRps(config.pms);
+        rpRpKeys = internRps(config.rp);
+        
+        long chunks = (config.users + config.chunk - 1) / config.chunk;
+        ExecutorService executor = Executors.newFixedThreadPool(config.threads);
+        long start = System.nanoTime();
+        List<Future<?>> workers = new ArrayList<>();
+        for (int i = 0; i < config.threads; i++) {
+            workers.add(executor.submit(() -> {
+                work(chunks);
+                return null;
+            }));
+        }
+        executor.shutdown();
+        
+        long lastRows = 0;
+        long lastTime = start;
+        while (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+            long now = System.nanoTime();
+            long rows = totalRows();
+            System.out.printf("%,d/%,d users, %,d rows, %,.0f rows/s%n", usersDone.sum(), config.users,
+                    rows, (rows - lastRows) / ((now - lastTime) / 1e9));
+            lastRows = rows;
+            lastTime = now;
+        }
+        for (Future<?> worker : workers) {
+            // Surface the first failure
+            worker.get();
+        }
+        
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%nLoaded %,d users in %.1fs%n", usersDone.sum(), seconds);
+        for (Table table : Table.values()) {
+            long rows = rowCounts.get(table).sum();
+            if (rows > 0) {
+                System.out.printf("  %-20s %,14d rows%n", table.getName(), rows);
+            }
+        }
+        System.out.printf("  %-20s %,14d rows (%,.0f rows/min)%n", "total", totalRows(),
+                totalRows() / seconds * 60);
+    }
+    
+    /**
+     * Worker loop: claim chunks of users until none are left.
+     */
+    private void work(long chunks) throws SQLException {
+        UserGenerator generator = new UserGenerator(config, pmsRpKeys, rpRpKeys);
+        try (Connection pms = open(config.pms); Connection rp = open(config.rp)) {
+            TableWriter pmsPasskeys = pms != null
+                    ? TableWriter.create(pms, Table.ENCRYPTED_PASSKEYS, config.useCopy(config.pms)) : null;
+            TableWriter rpPasskeys = rp != null
+                    ? TableWriter.create(rp, Table.PASSKEYS, config.useCopy(config.rp)) : null;
+            TableWriter loginAttempts = rp != null
+                    ? TableWriter.create(rp, Table.LOGIN_ATTEMPTS, config.useCopy(config.rp)) : null;
+            
+            long chunk;
+            while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+                long first = config.firstUser + chunk * config.chunk;
+                long last = Math.min(first + config.chunk, config.firstUser + config.users);
+                for (long user = first; user < last; user++) {
+                    generator.generate(user, pmsPasskeys, rpPasskeys, loginAttempts);
+                }
+                
+                flush(pmsPasskeys);
+                flush(rpPasskeys);
+                flush(loginAttempts);
+                if (pms != null) {
+                    pms.commit();
+                }
+                if (rp != null) {
+                    rp.commit();
+                }
+                usersDone.add(last - first);
+            }
+        }
+    }
+    
+    private void flush(TableWriter writer) throws SQLException {
+        if (writer != null) {
+            rowCounts.get(writer.table).add(writer.flush());
+        }
+    }
+    
+    private long totalRows() {
+        long total = 0;
+        for (LongAdder count : rowCounts.values()) {
+            total += count.sum();
+        }
+        return total;
+    }
+    
+    private static Connection open(DataGenConfig.Target target) throws SQLException {
+        if (target == null) {
+            return null;
+        }
+        Connection connection = DriverManager.getConnection(target.url, target.user, target.password);
+        connection.setAutoCommit(false);
+        return connection;
+    }
+    
+    /**
+     * Create a login_attempts partition for each generated day, if the RP's
+     * login_attempts is partitioned (as created by its schema.sql). Otherwise
+     * every row would land in the default partition, where the RP's retention
+     * job never drops it.
+     */
+    private void createPartitions(DataGenConfig.Target target) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(target.url, target.user, target.password);
+             Statement statement = connection.createStatement()) {
+            try (ResultSet kind = statement.executeQuery(
+                    "SELECT relkind::text FROM pg_class WHERE oid = to_regclass('login_attempts')")) {
+                if (!kind.next() || !"p".equals(kind.getString(1))) {
+                    return;
+                }
+            }
+            LocalDate last = config.start.plusDays(config.days).toLocalDate();
+            int created = 0;
+            for (LocalDate day = config.start.toLocalDate(); !day.isAfter(last); day = day.plusDays(1)) {
+                statement.execute("CREATE TABLE IF NOT EXISTS login_attempts_"
+                        + day.format(DateTimeFormatter.BASIC_ISO_DATE) + " PARTITION OF login_attempts"
+                        + " FOR VALUES FROM ('" + day.atStartOfDay() + "')"
+                        + " TO ('" + day.plusDays(1).atStartOfDay() + "')");
+                created++;
+            }
+            System.out.println("Ensured " + created + " daily login_attempts partitions on " + target.url);
+        }
+    }
+    
+    /**
+     * Make sure every generated RP has a row in the target's rps table, the
+     * same as the service would create on first use, and return their ids.
+     * Rows that already exist (from the service or an earlier run) are reused.
+     * 
+     * @return rp_key of each RP number, or null if there is no target
+     */
+    private int[] internRps(DataGenConfig.Target target) throws SQLException {
+        if (target == null) {
+            return null;
+        }
+        try (Connection connection = open(target)) {
+            Map<String, Integer> existing = loadRps(connection);
+            try (PreparedStatement insert = connection.prepareStatement("INSERT INTO rps (rp_id) VALUES (?)")) {
+                for (int rp = 0; rp < config.rps; rp++) {
+                    if (!existing.containsKey(UserGenerator.rpId(rp))) {
+                        insert.setString(1, UserGenerator.rpId(rp));
+                        insert.addBatch();
+                    }
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+            
+            existing = loadRps(connection);
+            int[] keys = new int[config.rps];
+            for (int rp = 0; rp < config.rps; rp++) {
+                keys[rp] = existing.get(UserGenerator.rpId(rp));
+            }
+            return keys;
+        }
+    }
+    
+    private static Map<String, Integer> loadRps(Connection connection) throws SQLException {
+        Map<String, Integer> rps = new HashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT id, rp_id FROM rps")) {
+            while (rows.next()) {
+                rps.put(rows.getString(2), rows.getInt(1));
+            }
+        }
+        return rps;
+    }
+    
+    /**
+     * Run an SQL script (e.g. a service's schema.sql) statement by statement.
+     * Line comments are dropped; statements end with ';'.
+     */
+    private static void runScript(DataGenConfig.Target target, String path) throws IOException, SQLException {
+        StringBuilder sql = new StringBuilder();
+        for (String line : Files.readAllLines(Path.of(path))) {
+            String trimmed = line.trim();
+            if (!trimmed.startsWith("--")) {
+                sql.append(line).append('\n');
+            }
+        }
+        try (Connection connection = DriverManager.getConnection(target.url, target.user, target.password);
+             Statement statement = connection.createStatement()) {
+            for (String part : sql.toString().split(";")) {
+                if (!part.isBlank()) {
+                    statement.execute(part);
+                }
+            }
+        }
+        System.out.println("Ran " + path + " on " + target.url);
+    }
+}
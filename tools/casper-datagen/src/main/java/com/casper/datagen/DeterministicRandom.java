@@ -0,0 +1,80 @@
+package com.casper.datagen;
+
+import java.security.SecureRandom;
+import java.util.SplittableRandom;
+
+/**
+ * A SecureRandom that is fully determined by its seed.
+ * 
+ * Key pair generators only take randomness through a SecureRandom, so this is
+ * how the generated P-256 keys are made reproducible. It is NOT secure: the
+ * keys it produces are test data and must never protect anything real.
+ * 
+ * Given the same seed, key generation yields the same keys on the same JDK;
+ * a JDK whose EC key generator draws randomness differently may differ.
+ */
+class DeterministicRandom extends SecureRandom {
+    private static final long serialVersionUID = 1L;
+    
+    private final SplittableRandom random;
+    
+    /**
+     * @param seed Run seed
+     * @param stream Stream number (e.g. user index); each stream is independent
+     */
+    DeterministicRandom(long seed, long stream) {
+        super(null, null);
+        this.random = new SplittableRandom(mix(seed) ^ mix(stream + 0x9E3779B97F4A7C15L));
+    }
+    
+    @Override
+    public void nextBytes(byte[] bytes) {
+        random.nextBytes(bytes);
+    }
+    
+    @Override
+    public byte[] generateSeed(int numBytes) {
+        byte[] seed = new byte[numBytes];
+        random.nextBytes(seed);
+        return seed;
+    }
+    
+    @Override
+    public int nextInt(int bound) {
+        return random.nextInt(bound);
+    }
+    
+    @Override
+    public double nextDouble() {
+        return random.nextDouble();
+    }
+    
+    @Override
+    public long nextLong() {
+        return random.nextLong();
+    }
+    
+    @Override
+    public void setSeed(long seed) {
+        // Fixed at construction; also called from the Random constructor
+    }
+    
+    @Override
+    public void setSeed(byte[] seed) {
+        // Fixed at construction
+    }
+    
+    @Override
+    public String getAlgorithm() {
+        return "Deterministic";
+    }
+    
+    /**
+     * MurmurHash3 finalizer, so nearby seeds give unrelated streams.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return z ^ (z >>> 33);
+    }
+}
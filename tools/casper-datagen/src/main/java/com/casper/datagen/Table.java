@@ -0,0 +1,35 @@
+package com.casper.datagen;
+
+/**
+ * Tables the generator fills, with the columns it writes.
+ * 
+ * Column names match the PMS and RP JPA entities (and schema.sql). The id
+ * column is left to the database. rp_key is the id of the RP's row in the
+ * target's rps table (see {@link DataGenerator#internRps}).
+ */
+enum Table {
+    ENCRYPTED_PASSKEYS("encrypted_passkeys", "user_id", "rp_key", "encrypted_private_key", "public_key",
+            "detection_secrets", "z_value", "real_secret_index", "version", "created_at", "updated_at"),
+    PASSKEYS("passkeys", "user_id", "rp_key", "public_key", "is_real", "key_index", "created_at"),
+    LOGIN_ATTEMPTS("login_attempts", "user_id", "rp_key", "public_key", "breach_detected", "timestamp");
+    
+    private final String name;
+    private final String[] columns;
+    
+    Table(String name, String... columns) {
+        this.name = name;
+        this.columns = columns;
+    }
+    
+    String getName() {
+        return name;
+    }
+    
+    String[] getColumns() {
+        return columns;
+    }
+    
+    String columnList() {
+        return String.join(", ", columns);
+    }
+}
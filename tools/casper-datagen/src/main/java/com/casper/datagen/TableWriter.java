@@ -0,0 +1,50 @@
+package com.casper.datagen;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+
+/**
+ * Bulk writer for one table on one connection.
+ * 
+ * Rows are buffered and sent in one go on {@link #flush()}; the caller owns
+ * the transaction. Values are String, Integer, Long, Boolean, LocalDateTime
+ * or null.
+ */
+abstract class TableWriter {
+    protected final Table table;
+    protected int pendingRows;
+    
+    protected TableWriter(Table table) {
+        this.table = table;
+    }
+    
+    /**
+     * Create the fastest writer for the connection's database and mode.
+     * 
+     * @param copy Use PostgreSQL COPY instead of batched INSERTs
+     */
+    static TableWriter create(Connection connection, Table table, boolean copy) throws SQLException {
+        return copy ? new CopyTableWriter(connection, table) : new BatchTableWriter(connection, table);
+    }
+    
+    /**
+     * Buffer one row; values in {@link Table#getColumns()} order.
+     */
+    abstract void add(Object... values) throws SQLException;
+    
+    /**
+     * Send buffered rows to the database.
+     * 
+     * @return Number of rows written
+     */
+    abstract int flush() throws SQLException;
+    
+    int getPendingRows() {
+        return pendingRows;
+    }
+    
+    static java.sql.Timestamp toTimestamp(LocalDateTime value) {
+        return value == null ? null : java.sql.Timestamp.valueOf(value);
+    }
+}
@@ -0,0 +1,168 @@
+package com.casper.datagen;
+
+import com.casper.core.CasperCipher;
+import com.casper.core.SecretSelector;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Generates the rows for one user, exactly as the real services would store them.
+ * 
+ * For each RP the user registered with:
+ * - PMS: one encrypted_passkeys row. The private key is really encrypted under
+ *   the PIN-selected secret, s̃ = HKDF(w*, z) XOR s, with k detection secrets
+ * - RP: k passkeys rows, the real P-256 public key (the same one the PMS row
+ *   holds) and k - 1 decoys
+ * - RP: login_attempts, mostly with the real key, a configurable share with
+ *   a decoy (breach_detected = true)
+ * 
+ * Everything is derived from (seed, user index) alone, so users can be made in
+ * any order, on any thread, and the PMS and RP sides can be loaded in
+ * separate runs and still match. Keys come from {@link UserKeys}, which does
+ * not share the user's random stream, so skipping one side's keys does not
+ * shift the other's.
+ * 
+ * Not thread-safe; use one instance per thread.
+ */
+class UserGenerator {
+    private static final Base64.Encoder B64 = Base64.getEncoder();
+    
+    private final DataGenConfig config;
+    private final int[] pmsRpKeys;
+    private final int[] rpRpKeys;
+    private final UserKeys keys;
+    private final long spanSeconds;
+    
+    /**
+     * @param pmsRpKeys rp_key of each RP number in the PMS database, or null to skip the PMS side
+     * @param rpRpKeys rp_key of each RP number in the RP database, or null to skip the RP side
+     */
+    UserGenerator(DataGenConfig config, int[] pmsRpKeys, int[] rpRpKeys) {
+        this.config = config;
+        this.pmsRpKeys = pmsRpKeys;
+        this.rpRpKeys = rpRpKeys;
+        this.keys = new UserKeys(config.seed, config.sequentialKeys);
+        this.spanSeconds = config.days * 86_400L;
+    }
+    
+    /**
+     * Generate one user's rows into the given writers.
+     * 
+     * @param user User index
+     * @param pmsPasskeys encrypted_passkeys writer, or null to skip the PMS side
+     * @param rpPasskeys passkeys writer, or null to skip the RP side
+     * @param loginAttempts login_attempts writer, or null to skip the RP side
+     */
+    void generate(long user, TableWriter pmsPasskeys, TableWriter rpPasskeys,
+                  TableWriter loginAttempts) throws SQLException {
+        DeterministicRandom random = new DeterministicRandom(config.seed, user);
+        int k = config.secretCount;
+        String userId = String.format("user-%09d", user);
+        String pin = String.format("%06d", random.nextInt(1_000_000));
+        int realIndex = SecretSelector.selectRealSecretIndex(pin, k);
+        int[] rps = pickRps(random);
+        keys.reset(user);
+        
+        for (int slot = 0; slot < rps.length; slot++) {
+            int rp = rps[slot];
+            LocalDateTime registeredAt = config.start.plusSeconds(nextLong(random, spanSeconds));
+            
+            byte[][] secrets = new byte[k][SecretSelector.SECRET_LENGTH];
+            for (byte[] secret : secrets) {
+                random.nextBytes(secret);
+            }
+            byte[] z = new byte[CasperCipher.Z_LENGTH];
+            random.nextBytes(z);
+            
+            int firstKey = slot * k;
+            String realPublicKey = B64.encodeToString(keys.publicKey(firstKey));
+            
+            if (pmsPasskeys != null) {
+                byte[] encrypted = CasperCipher.encrypt(keys.privateKey(firstKey), secrets[realIndex], z);
+                pmsPasskeys.add(userId, pmsRpKeys[rp], B64.encodeToString(encrypted), realPublicKey,
+                        jsonArray(secrets), B64.encodeToString(z), realIndex, 0L, registeredAt, null);
+            }
+            
+            // Draw the login plan even when the RP side is skipped, to keep the stream aligned
+            int logins = geometric(random, config.loginsPerPasskey);
+            long remaining = Math.max(1, spanSeconds - Duration.between(config.start, registeredAt).getSeconds());
+            if (rpPasskeys == null) {
+                for (int i = 0; i < logins; i++) {
+                    random.nextDouble();
+                    random.nextInt(k - 1);
+                    nextLong(random, remaining);
+                }
+                continue;
+            }
+            
+            String[] publicKeys = new String[k];
+            publicKeys[0] = realPublicKey;
+            rpPasskeys.add(userId, rpRpKeys[rp], realPublicKey, true, 0, registeredAt);
+            for (int i = 1; i < k; i++) {
+                publicKeys[i] = B64.encodeToString(keys.publicKey(firstKey + i));
+                rpPasskeys.add(userId, rpRpKeys[rp], publicKeys[i], false, i, registeredAt);
+            }
+            
+            for (int i = 0; i < logins; i++) {
+                boolean breach = random.nextDouble() < config.breachFraction;
+                int decoy = 1 + random.nextInt(k - 1);
+                LocalDateTime at = registeredAt.plusSeconds(nextLong(random, remaining));
+                loginAttempts.add(userId, rpRpKeys[rp], breach ? publicKeys[decoy] : realPublicKey, breach, at);
+            }
+        }
+    }
+    
+    /**
+     * rpId of an RP number, as the app would send it.
+     */
+    static String rpId(int rp) {
+        return String.format("rp-%05d.example.com", rp);
+    }
+    
+    /**
+     * Pick distinct RPs for a user (partial Fisher-Yates over a sparse range).
+     */
+    private int[] pickRps(DeterministicRandom random) {
+        int[] picked = new int[config.rpsPerUser];
+        Map<Integer, Integer> swapped = new HashMap<>();
+        for (int i = 0; i < picked.length; i++) {
+            int j = i + random.nextInt(config.rps - i);
+            int atJ = swapped.getOrDefault(j, j);
+            swapped.put(j, swapped.getOrDefault(i, i));
+            picked[i] = atJ;
+        }
+        return picked;
+    }
+    
+    private static String jsonArray(byte[][] values) {
+        StringBuilder json = new StringBuilder(values.length * 48).append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(B64.encodeToString(values[i])).append('"');
+        }
+        return json.append(']').toString();
+    }
+    
+    /**
+     * Geometric count with the given mean (many passkeys are rarely used, a few often).
+     */
+    private static int geometric(DeterministicRandom random, double mean) {
+        double u = random.nextDouble();
+        if (mean <= 0) {
+            return 0;
+        }
+        double p = 1 / (mean + 1);
+        return (int) Math.floor(Math.log(1 - u) / Math.log(1 - p));
+    }
+    
+    private static long nextLong(DeterministicRandom random, long bound) {
+        return Math.floorMod(random.nextLong(), bound);
+    }
+}
@@ -0,0 +1,151 @@
+package com.casper.datagen;
+
+import com.casper.core.EcKeys;
+
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.ECPublicKey;
+import java.security.spec.ECFieldFp;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.ECParameterSpec;
+import java.security.spec.ECPoint;
+import java.security.spec.ECPrivateKeySpec;
+
+/**
+ * The P-256 key pairs of one generated user, numbered 0, 1, 2, ...
+ * 
+ * Two modes:
+ * - Sequential (default): one real key generation gives (d, Q); key j is
+ *   (d + j, Q + j·G). Each further key costs one affine point addition instead
+ *   of a scalar multiplication, about 50x cheaper. The keys are valid, distinct
+ *   P-256 keys, but trivially related to each other - fine for load data,
+ *   useless for anything else.
+ * - Independent: every key is its own key generation from its own stream.
+ * 
+ * Both are deterministic from (seed, user, j). Keys must be requested in
+ * increasing j in sequential mode (gaps are fine).
+ */
+class UserKeys {
+    private static final long KEY_STREAMS = 0x6b657973L; // "keys"
+    
+    private final KeyPairGenerator keyPairGenerator;
+    private final ECGenParameterSpec curve = new ECGenParameterSpec("secp256r1");
+    private final boolean sequential;
+    private final long seed;
+    
+    // Per-user state
+    private long user;
+    private ECParameterSpec params;
+    private BigInteger p;
+    private BigInteger baseScalar;
+    private int index;
+    private BigInteger x;
+    private BigInteger y;
+    
+    UserKeys(long seed, boolean sequential) {
+        this.seed = seed;
+        this.sequential = sequential;
+        try {
+            this.keyPairGenerator = KeyPairGenerator.getInstance("EC");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("EC key generation not available", e);
+        }
+    }
+    
+    /**
+     * Start on a new user's keys.
+     */
+    void reset(long user) {
+        this.user = user;
+        this.index = -1;
+    }
+    
+    /**
+     * Public key j as a compressed point, the form the RP and PMS store.
+     */
+    byte[] publicKey(int j) {
+        if (!sequential) {
+            return EcKeys.encodePublicKey(generate(j).getPublic());
+        }
+        advanceTo(j);
+        byte[] encoded = new byte[EcKeys.COMPRESSED_LENGTH];
+        encoded[0] = (byte) (y.testBit(0) ? 0x03 : 0x02);
+        writeCoordinate(x, encoded, 1);
+        return encoded;
+    }
+    
+    /**
+     * PKCS#8-encoded private key j. Call after {@link #publicKey(int)} for the same j.
+     */
+    byte[] privateKey(int j) {
+        if (!sequential) {
+            return generate(j).getPrivate().getEncoded();
+        }
+        advanceTo(j);
+        try {
+            BigInteger scalar = baseScalar.add(BigInteger.valueOf(j)).mod(params.getOrder());
+            return KeyFactory.getInstance("EC").generatePrivate(new ECPrivateKeySpec(scalar, params)).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to encode private key", e);
+        }
+    }
+    
+    private KeyPair generate(long j) {
+        long stream = user * DataGenConfig.MAX_PER_USER * DataGenConfig.MAX_PER_USER + j;
+        try {
+            keyPairGenerator.initialize(curve, new DeterministicRandom(seed ^ KEY_STREAMS, stream));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("secp256r1 not available", e);
+        }
+        return keyPairGenerator.generateKeyPair();
+    }
+    
+    /**
+     * Move the running point to key j, starting with a real key generation for j = 0.
+     */
+    private void advanceTo(int j) {
+        if (j < index) {
+            throw new IllegalStateException("Keys must be requested in increasing order");
+        }
+        if (index < 0) {
+            KeyPair base = generate(0);
+            ECPublicKey publicKey = (ECPublicKey) base.getPublic();
+            params = publicKey.getParams();
+            p = ((ECFieldFp) params.getCurve().getField()).getP();
+            baseScalar = ((ECPrivateKey) base.getPrivate()).getS();
+            x = publicKey.getW().getAffineX();
+            y = publicKey.getW().getAffineY();
+            index = 0;
+        }
+        ECPoint g = params.getGenerator();
+        while (index < j) {
+            addPoint(g.getAffineX(), g.getAffineY());
+            index++;
+        }
+    }
+    
+    /**
+     * (x, y) += (gx, gy), affine addition of distinct points.
+     */
+    private void addPoint(BigInteger gx, BigInteger gy) {
+        BigInteger dx = gx.subtract(x).mod(p);
+        if (dx.signum() == 0) {
+            // Q = ±G: impossible for a random d in practice
+            throw new IllegalStateException("Degenerate key sequence");
+        }
+        BigInteger lambda = gy.subtract(y).multiply(dx.modInverse(p)).mod(p);
+        BigInteger x3 = lambda.multiply(lambda).subtract(x).subtract(gx).mod(p);
+        y = lambda.multiply(x.subtract(x3)).subtract(y).mod(p);
+        x = x3;
+    }
+    
+    private static void writeCoordinate(BigInteger value, byte[] out, int offset) {
+        byte[] bytes = value.toByteArray();
+        int length = Math.min(bytes.length, 32);
+        System.arraycopy(bytes, bytes.length - length, out, offset + 32 - length, length);
+    }
+}
@@ -0,0 +1,126 @@
+package com.casper.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * HTTP client for the PMS and RP endpoints a device uses.
+ * 
+ * Speaks the same JSON as the Android app's PMSApi and RPApi. One instance
+ * (and one connection pool) is shared by all simulated devices; every call is
+ * timed into {@link LatencyStats} under its {@link Endpoint}.
+ */
+public class CasperClient {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    
+    private final String pmsUrl;
+    private final String rpUrl;
+    private final LatencyStats stats;
+    private final HttpClient http;
+    private final ObjectMapper mapper = new ObjectMapper();
+    
+    public CasperClient(String pmsUrl, String rpUrl, LatencyStats stats) {
+        this.pmsUrl = pmsUrl;
+        this.rpUrl = rpUrl;
+        this.stats = stats;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+    
+    /**
+     * Upload an encrypted passkey to the PMS.
+     */
+    public void uploadPasskey(Map<String, Object> passkey) throws IOException {
+        call(Endpoint.PMS_UPLOAD, post(pmsUrl + "/api/passkeys", passkey));
+    }
+    
+    /**
+     * Fetch an encrypted passkey from the PMS.
+     */
+    public JsonNode fetchPasskey(String userId, String rpId) throws IOException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(pmsUrl + "/api/passkeys/"
+                        + encode(userId) + "?rpId=" + encode(rpId)))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+        return call(Endpoint.PMS_FETCH, request);
+    }
+    
+    /**
+     * Register the real public key and the decoys with the RP.
+     * 
+     * @param publicKeys Base64 public keys, real key first
+     */
+    public void registerWithRp(String userId, String rpId, List<String> publicKeys) throws IOException {
+        call(Endpoint.RP_REGISTER, post(rpUrl + "/api/auth/register",
+                Map.of("userId", userId, "rpId", rpId, "publicKeys", publicKeys)));
+    }
+    
+    /**
+     * Log in to the RP with a signed challenge.
+     * 
+     * @return Whether the RP flagged the login as a breach
+     */
+    public boolean login(String userId, String rpId, String publicKey, String challenge,
+                         String signature) throws IOException {
+        JsonNode body = call(Endpoint.RP_LOGIN, post(rpUrl + "/api/auth/login", Map.of(
+                "userId", userId,
+                "rpId", rpId,
+                "publicKey", publicKey,
+                "challenge", challenge,
+                "signature", signature)));
+        return body.path("breachDetected").asBoolean(false);
+    }
+    
+    private HttpRequest post(String url, Object body) throws IOException {
+        return HttpRequest.newBuilder(URI.create(url))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)))
+                .build();
+    }
+    
+    /**
+     * Send a request, time it, and parse the JSON body.
+     * 
+     * @throws IOException on transport failure, a non-2xx status or "success": false
+     */
+    private JsonNode call(Endpoint endpoint, HttpRequest request) throws IOException {
+        long start = System.nanoTime();
+        try {
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            JsonNode body = response.body().length > 0
+                    ? mapper.readTree(response.body())
+                    : mapper.createObjectNode();
+            if (response.statusCode() / 100 != 2 || !body.path("success").asBoolean(true)) {
+                throw new IOException(endpoint.getLabel() + " returned " + response.statusCode()
+                        + ": " + body.path("message").asText(""));
+            }
+            stats.record(endpoint, System.nanoTime() - start);
+            return body;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } catch (IOException e) {
+            stats.error(endpoint);
+            throw e;
+        }
+    }
+    
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,27 @@
+package com.casper.loadgen;
+
+/**
+ * What a latency sample measures: one HTTP endpoint, or a whole device flow.
+ */
+public enum Endpoint {
+    PMS_UPLOAD("POST /api/passkeys"),
+    PMS_FETCH("GET /api/passkeys/{userId}"),
+    RP_REGISTER("POST /api/auth/register"),
+    RP_LOGIN("POST /api/auth/login"),
+    
+    /** Key generation, encryption, PMS upload and RP register, as one device sees it. */
+    REGISTER_FLOW("register (end to end)"),
+    
+    /** PMS fetch, decrypt, sign and RP login, as one device sees it. */
+    LOGIN_FLOW("login (end to end)");
+    
+    private final String label;
+    
+    Endpoint(String label) {
+        this.label = label;
+    }
+    
+    public String getLabel() {
+        return label;
+    }
+}
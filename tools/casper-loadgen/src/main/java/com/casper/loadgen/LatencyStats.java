@@ -0,0 +1,142 @@
+package com.casper.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint latency histograms and error counts.
+ * 
+ * Devices record into lock-free HdrHistogram {@link Recorder}s. The reporter
+ * thread swaps out an interval histogram on each report and folds it into the
+ * run total, so recording never waits on reporting.
+ * 
+ * Latencies are kept in microseconds, from 1us to 1 hour at 3 significant digits.
+ */
+public class LatencyStats {
+    private static final long MAX_MICROS = TimeUnit.HOURS.toMicros(1);
+    
+    private final Map<Endpoint, Recorder> recorders = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Histogram> totals = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, LongAdder> errors = new EnumMap<>(Endpoint.class);
+    private final Map<Endpoint, Long> totalErrors = new EnumMap<>(Endpoint.class);
+    private final LongAdder detectionMismatches = new LongAdder();
+    
+    // Reused between reports by the reporter thread
+    private final Map<Endpoint, Histogram> intervals = new EnumMap<>(Endpoint.class);
+    
+    public LatencyStats() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            recorders.put(endpoint, new Recorder(MAX_MICROS, 3));
+            totals.put(endpoint, new Histogram(MAX_MICROS, 3));
+            errors.put(endpoint, new LongAdder());
+            totalErrors.put(endpoint, 0L);
+        }
+    }
+    
+    /**
+     * Record a successful call.
+     * 
+     * @param endpoint What was measured
+     * @param nanos Elapsed time in nanoseconds
+     */
+    public void record(Endpoint endpoint, long nanos) {
+        long micros = Math.max(1, Math.min(MAX_MICROS, TimeUnit.NANOSECONDS.toMicros(nanos)));
+        recorders.get(endpoint).recordValue(micros);
+    }
+    
+    /**
+     * Count a failed call (transport error, non-2xx or unexpected body).
+     */
+    public void error(Endpoint endpoint) {
+        errors.get(endpoint).increment();
+    }
+    
+    /**
+     * Count a login whose breachDetected flag did not match the key used:
+     * a decoy login that was not flagged, or a real login that was.
+     */
+    public void detectionMismatch() {
+        detectionMismatches.increment();
+    }
+    
+    public long getDetectionMismatches() {
+        return detectionMismatches.sum();
+    }
+    
+    /**
+     * Drop everything recorded so far (end of warmup).
+     * Must be called from the reporter thread.
+     */
+    public synchronized void reset() {
+        for (Endpoint endpoint : Endpoint.values()) {
+            intervals.put(endpoint, recorders.get(endpoint).getIntervalHistogram(intervals.get(endpoint)));
+            totals.get(endpoint).reset();
+            errors.get(endpoint).reset();
+            totalErrors.put(endpoint, 0L);
+        }
+        detectionMismatches.reset();
+    }
+    
+    /**
+     * Print the interval since the last report and fold it into the totals.
+     * 
+     * @param out Where to print
+     * @param elapsedSeconds Seconds since the measured run started
+     * @param intervalSeconds Length of the interval
+     */
+    public synchronized void reportInterval(PrintStream out, double elapsedSeconds, double intervalSeconds) {
+        out.printf("%n[%6.1fs]%n", elapsedSeconds);
+        printHeader(out);
+        for (Endpoint endpoint : Endpoint.values()) {
+            Histogram interval = recorders.get(endpoint).getIntervalHistogram(intervals.get(endpoint));
+            intervals.put(endpoint, interval);
+            totals.get(endpoint).add(interval);
+            
+            long intervalErrors = errors.get(endpoint).sumThenReset();
+            totalErrors.put(endpoint, totalErrors.get(endpoint) + intervalErrors);
+            printRow(out, endpoint, interval, intervalErrors, intervalSeconds);
+        }
+    }
+    
+    /**
+     * Print totals for the whole measured run.
+     * Call after a final {@link #reportInterval} so nothing is left unfolded.
+     */
+    public synchronized void reportSummary(PrintStream out, double measuredSeconds) {
+        out.printf("%n=== Summary over %.1fs ===%n", measuredSeconds);
+        printHeader(out);
+        for (Endpoint endpoint : Endpoint.values()) {
+            printRow(out, endpoint, totals.get(endpoint), totalErrors.get(endpoint), measuredSeconds);
+        }
+        out.printf("%nBreach detection mismatches: %d%n", detectionMismatches.sum());
+    }
+    
+    private static void printHeader(PrintStream out) {
+        out.printf("%-28s %10s %10s %8s %10s %10s %10s %10s%n",
+                "endpoint", "count", "ops/s", "errors", "p50 ms", "p99 ms", "p999 ms", "max ms");
+    }
+    
+    private static void printRow(PrintStream out, Endpoint endpoint, Histogram histogram,
+                                 long errorCount, double seconds) {
+        long count = histogram.getTotalCount();
+        if (count == 0 && errorCount == 0) {
+            return;
+        }
+        out.printf("%-28s %10d %10.1f %8d %10.2f %10.2f %10.2f %10.2f%n",
+                endpoint.getLabel(), count, seconds > 0 ? count / seconds : 0.0, errorCount,
+                millis(histogram.getValueAtPercentile(50)),
+                millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)),
+                millis(histogram.getMaxValue()));
+    }
+    
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,160 @@
+package com.casper.loadgen;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line settings for a load run.
+ * 
+ * Options are given as --name=value or --name value. Durations take a unit
+ * suffix: 500ms, 30s, 5m.
+ */
+public class LoadConfig {
+    
+    static final String USAGE = String.join("\n",
+            "Usage: java -jar casper-loadgen.jar [options]",
+            "",
+            "  --pms=URL                PMS base URL (default http://localhost:8080)",
+            "  --rp=URL                 RP base URL (default http://localhost:8081)",
+            "  --devices=N              Simulated devices, one thread each (default 50)",
+            "  --rps-per-device=N       RPs each device registers with (default 2)",
+            "  --secrets=K              Detection secrets per passkey, k (default 5)",
+            "  --duration=D             Measured run time (default 60s)",
+            "  --warmup=D               Unmeasured time before the run (default 10s)",
+            "  --register-fraction=F    Share of operations that re-register an RP (default 0.1)",
+            "  --breach-fraction=F      Share of logins made with a decoy key (default 0.05)",
+            "  --rate=OPS               Target operations/s over all devices; 0 runs closed-loop",
+            "                           as fast as the services allow (default 0)",
+            "  --report-interval=D      Interval report period (default 5s)",
+            "  --seed=N                 Seed for the operation mix (default 42)",
+            "  --help                   Show this message");
+    
+    final String pmsUrl;
+    final String rpUrl;
+    final int devices;
+    final int rpsPerDevice;
+    final int secretCount;
+    final Duration duration;
+    final Duration warmup;
+    final double registerFraction;
+    final double breachFraction;
+    final double rate;
+    final Duration reportInterval;
+    final long seed;
+    
+    private LoadConfig(Map<String, String> options) {
+        pmsUrl = stripSlash(options.getOrDefault("pms", "http://localhost:8080"));
+        rpUrl = stripSlash(options.getOrDefault("rp", "http://localhost:8081"));
+        devices = intOption(options, "devices", 50, 1);
+        rpsPerDevice = intOption(options, "rps-per-device", 2, 1);
+        secretCount = intOption(options, "secrets", 5, 2);
+        duration = durationOption(options, "duration", "60s");
+        warmup = durationOption(options, "warmup", "10s");
+        registerFraction = fractionOption(options, "register-fraction", 0.1);
+        breachFraction = fractionOption(options, "breach-fraction", 0.05);
+        rate = Double.parseDouble(options.getOrDefault("rate", "0"));
+        reportInterval = durationOption(options, "report-interval", "5s");
+        seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        
+        if (rate < 0) {
+            throw new IllegalArgumentException("--rate must not be negative");
+        }
+        if (reportInterval.isZero() || reportInterval.isNegative()) {
+            throw new IllegalArgumentException("--report-interval must be positive");
+        }
+    }
+    
+    /**
+     * Parse command line arguments.
+     * 
+     * @return Settings, or null if --help was given
+     * @throws IllegalArgumentException on an unknown option or bad value
+     */
+    static LoadConfig parse(String[] args) {
+        Map<String, String> options = parseOptions(args, USAGE);
+        if (options == null) {
+            return null;
+        }
+        return new LoadConfig(options);
+    }
+    
+    /**
+     * Split --name=value / --name value arguments into a map.
+     * 
+     * @param usage Usage text; every option must appear in it as --name=
+     * @return Options by name, or null if --help was given
+     * @throws IllegalArgumentException on an unknown option or a missing value
+     */
+    static Map<String, String> parseOptions(String[] args, String usage) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.equals("--help") || arg.equals("-h")) {
+                return null;
+            }
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else if (i + 1 < args.length) {
+                options.put(arg.substring(2), args[++i]);
+            } else {
+                throw new IllegalArgumentException("Missing value for " + arg);
+            }
+        }
+        
+        for (String name : options.keySet()) {
+            if (!usage.contains("--" + name + "=")) {
+                throw new IllegalArgumentException("Unknown option: --" + name);
+            }
+        }
+        return options;
+    }
+    
+    @Override
+    public String toString() {
+        return String.format("pms=%s rp=%s devices=%d rpsPerDevice=%d k=%d duration=%s warmup=%s "
+                        + "registerFraction=%.2f breachFraction=%.2f rate=%s seed=%d",
+                pmsUrl, rpUrl, devices, rpsPerDevice, secretCount, duration, warmup,
+                registerFraction, breachFraction, rate > 0 ? rate + "/s" : "closed-loop", seed);
+    }
+    
+    private static String stripSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+    
+    static int intOption(Map<String, String> options, String name, int defaultValue, int min) {
+        int value = Integer.parseInt(options.getOrDefault(name, String.valueOf(defaultValue)));
+        if (value < min) {
+            throw new IllegalArgumentException("--" + name + " must be at least " + min);
+        }
+        return value;
+    }
+    
+    private static double fractionOption(Map<String, String> options, String name, double defaultValue) {
+        double value = Double.parseDouble(options.getOrDefault(name, String.valueOf(defaultValue)));
+        if (value < 0 || value > 1) {
+            throw new IllegalArgumentException("--" + name + " must be between 0 and 1");
+        }
+        return value;
+    }
+    
+    static Duration durationOption(Map<String, String> options, String name, String defaultValue) {
+        String value = options.getOrDefault(name, defaultValue).trim().toLowerCase();
+        try {
+            if (value.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+            } else if (value.endsWith("s")) {
+                return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+            } else if (value.endsWith("m")) {
+                return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+            }
+            return Duration.ofSeconds(Long.parseLong(value));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Bad duration for --" + name + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.casper.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator for casper-pms and casper-rp.
+ * 
+ * Simulates N devices, each on its own thread, running the real CASPER
+ * register and login protocol (see {@link SimulatedDevice}). A run has three
+ * phases:
+ * 1. Setup: every device registers with its RPs (reported separately)
+ * 2. Warmup: the mix runs, but nothing is kept
+ * 3. Measurement: the mix runs; throughput and p50/p99/p999 per endpoint are
+ *    printed every report interval and summarized at the end
+ * 
+ * Without --rate, devices run closed-loop: each starts its next operation as
+ * soon as the last one finishes, which finds the saturation throughput. With
+ * --rate, operations are scheduled at fixed intervals and end-to-end flow
+ * latency is measured from the scheduled start, so time spent queued behind a
+ * slow service is counted instead of hidden (no coordinated omission).
+ * 
+ * Exits with status 1 if the RP ever misjudged a breach.
+ */
+public class LoadGenerator {
+    
+    public static void main(String[] args) throws InterruptedException {
+        LoadConfig config;
+        try {
+            config = LoadConfig.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadConfig.USAGE);
+            System.exit(2);
+            return;
+        }
+        if (config == null) {
+            System.out.println(LoadConfig.USAGE);
+            return;
+        }
+        
+        System.out.println("casper-loadgen: " + config);
+        boolean detectionOk = new LoadGenerator(config).run();
+        System.exit(detectionOk ? 0 : 1);
+    }
+    
+    private final LoadConfig config;
+    private final LatencyStats stats = new LatencyStats();
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+    
+    private volatile boolean running = true;
+    
+    LoadGenerator(LoadConfig config) {
+        this.config = config;
+        CasperClient client = new CasperClient(config.pmsUrl, config.rpUrl, stats);
+        
+        // Unique user IDs per run, so repeated runs do not overwrite each other
+        String runId = Long.toString(System.currentTimeMillis(), 36);
+        SplittableRandom seeds = new SplittableRandom(config.seed);
+        for (int i = 0; i < config.devices; i++) {
+            devices.add(new SimulatedDevice("loadgen-" + runId + "-" + i, config.rpsPerDevice,
+                    config.secretCount, client, stats, seeds.split()));
+        }
+    }
+    
+    /**
+     * Run setup, warmup and measurement.
+     * 
+     * @return false if any breach was misjudged during measurement
+     */
+    boolean run() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(config.devices, runnable -> {
+            Thread thread = new Thread(runnable, "device");
+            thread.setDaemon(true);
+            return thread;
+        });
+        
+        setUp(executor);
+        
+        CountDownLatch finished = new CountDownLatch(devices.size());
+        long start = System.nanoTime();
+        long perDeviceIntervalNanos = config.rate > 0
+                ? (long) (TimeUnit.SECONDS.toNanos(1) * config.devices / config.rate)
+                : 0;
+        for (int i = 0; i < devices.size(); i++) {
+            SimulatedDevice device = devices.get(i);
+            // Spread the devices' open-loop slots evenly instead of firing them all at once
+            long offset = perDeviceIntervalNanos * i / devices.size();
+            executor.execute(() -> {
+                try {
+                    runDevice(device, start + offset, perDeviceIntervalNanos);
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+        
+        if (!config.warmup.isZero()) {
+            System.out.printf("%nWarming up for %ds...%n", config.warmup.toSeconds());
+            Thread.sleep(config.warmup.toMillis());
+        }
+        stats.reset();
+        long measureStart = System.nanoTime();
+        long measureEnd = measureStart + config.duration.toNanos();
+        long intervalNanos = config.reportInterval.toNanos();
+        
+        long lastReport = measureStart;
+        while (true) {
+            long now = System.nanoTime();
+            long next = Math.min(lastReport + intervalNanos, measureEnd);
+            if (next > now) {
+                TimeUnit.NANOSECONDS.sleep(next - now);
+            }
+            now = System.nanoTime();
+            stats.reportInterval(System.out, seconds(now - measureStart), seconds(now - lastReport));
+            lastReport = now;
+            if (now >= measureEnd) {
+                break;
+            }
+        }
+        running = false;
+        
+        stats.reportSummary(System.out, seconds(lastReport - measureStart));
+        finished.await(30, TimeUnit.SECONDS);
+        executor.shutdownNow();
+        return stats.getDetectionMismatches() == 0;
+    }
+    
+    /**
+     * Register every device with its RPs, in parallel, and report how it went.
+     */
+    private void setUp(ExecutorService executor) throws InterruptedException {
+        System.out.printf("%nRegistering %d devices with %d RPs each...%n", devices.size(), config.rpsPerDevice);
+        CountDownLatch registered = new CountDownLatch(devices.size());
+        AtomicInteger failedDevices = new AtomicInteger();
+        long start = System.nanoTime();
+        for (SimulatedDevice device : devices) {
+            executor.execute(() -> {
+                if (!device.registerAll()) {
+                    failedDevices.incrementAndGet();
+                }
+                registered.countDown();
+            });
+        }
+        registered.await();
+        double elapsed = seconds(System.nanoTime() - start);
+        stats.reportInterval(System.out, elapsed, elapsed);
+        if (failedDevices.get() > 0) {
+            System.out.printf("%d of %d devices failed to register; they only log in to the RPs that worked%n",
+                    failedDevices.get(), devices.size());
+        }
+    }
+    
+    private void runDevice(SimulatedDevice device, long start, long intervalNanos) {
+        long intended = start;
+        while (running) {
+            if (intervalNanos > 0) {
+                // Open loop: wait for the next slot, but never skip one if running behind
+                intended += intervalNanos;
+                long wait = intended - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (!running) {
+                    return;
+                }
+            } else {
+                intended = System.nanoTime();
+            }
+            device.runOnce(config, intended);
+        }
+    }
+    
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
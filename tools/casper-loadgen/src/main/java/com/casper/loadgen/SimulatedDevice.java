@@ -0,0 +1,185 @@
+package com.casper.loadgen;
+
+import com.casper.core.CasperCipher;
+import com.casper.core.EcKeys;
+import com.casper.core.Randoms;
+import com.casper.core.SecretSelector;
+import com.casper.core.Signatures;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * One simulated authenticator device.
+ * 
+ * Follows the same protocol as the Android app:
+ * - Register: generate k detection secrets and a key pair, encrypt the private
+ *   key (s̃ = HKDF(w*, z) XOR s), upload to the PMS, register the real public
+ *   key plus k - 1 decoys with the RP
+ * - Login: fetch from the PMS, decrypt, sign a challenge, log in to the RP
+ * 
+ * A "breached" login plays the attacker who stole the vault: it decrypts under
+ * a wrong detection secret and logs in with a decoy key, which the RP must flag.
+ * 
+ * A device is driven by a single thread; its state is not shared.
+ */
+public class SimulatedDevice {
+    private static final Base64.Encoder B64 = Base64.getEncoder();
+    private static final Base64.Decoder B64D = Base64.getDecoder();
+    
+    private final String userId;
+    private final String pin;
+    private final List<String> rpIds;
+    private final int secretCount;
+    private final CasperClient client;
+    private final LatencyStats stats;
+    private final SplittableRandom random;
+    
+    // Decoy key pairs per RP, kept so breached logins can sign with them
+    private final Map<String, List<KeyPair>> decoyKeys = new HashMap<>();
+    
+    public SimulatedDevice(String userId, int rpCount, int secretCount, CasperClient client,
+                           LatencyStats stats, SplittableRandom random) {
+        this.userId = userId;
+        this.secretCount = secretCount;
+        this.client = client;
+        this.stats = stats;
+        this.random = random;
+        this.pin = String.format("%06d", random.nextInt(1_000_000));
+        this.rpIds = new ArrayList<>(rpCount);
+        for (int i = 0; i < rpCount; i++) {
+            rpIds.add("loadgen-rp-" + i);
+        }
+    }
+    
+    /**
+     * Register with every RP. Run once before the device starts its mix.
+     * 
+     * @return true if all registrations succeeded
+     */
+    public boolean registerAll() {
+        boolean ok = true;
+        for (String rpId : rpIds) {
+            ok &= register(rpId, System.nanoTime());
+        }
+        return ok;
+    }
+    
+    /**
+     * Run one operation from the configured mix.
+     * 
+     * @param config Mix fractions
+     * @param intendedStart {@link System#nanoTime()} the operation was scheduled for;
+     *                      flow latency is measured from here
+     */
+    public void runOnce(LoadConfig config, long intendedStart) {
+        String rpId = rpIds.get(random.nextInt(rpIds.size()));
+        if (random.nextDouble() < config.registerFraction) {
+            register(rpId, intendedStart);
+        } else {
+            login(rpId, random.nextDouble() < config.breachFraction, intendedStart);
+        }
+    }
+    
+    /**
+     * Register a fresh passkey with an RP, replacing any earlier one.
+     */
+    boolean register(String rpId, long intendedStart) {
+        try {
+            byte[][] secrets = SecretSelector.generateSecrets(secretCount);
+            int realIndex = SecretSelector.selectRealSecretIndex(pin, secretCount);
+            KeyPair keyPair = EcKeys.generateKeyPair();
+            byte[] z = Randoms.bytes(CasperCipher.Z_LENGTH);
+            byte[] encrypted = CasperCipher.encrypt(keyPair.getPrivate().getEncoded(), secrets[realIndex], z);
+            String publicKey = B64.encodeToString(EcKeys.encodePublicKey(keyPair.getPublic()));
+            
+            List<String> encodedSecrets = new ArrayList<>(secretCount);
+            for (byte[] secret : secrets) {
+                encodedSecrets.add(B64.encodeToString(secret));
+            }
+            Map<String, Object> passkey = new LinkedHashMap<>();
+            passkey.put("userId", userId);
+            passkey.put("rpId", rpId);
+            passkey.put("encryptedPrivateKey", B64.encodeToString(encrypted));
+            passkey.put("publicKey", publicKey);
+            passkey.put("detectionSecrets", Map.of("secrets", encodedSecrets, "realSecretIndex", realIndex));
+            passkey.put("z", B64.encodeToString(z));
+            
+            List<String> publicKeys = new ArrayList<>(secretCount);
+            List<KeyPair> decoys = new ArrayList<>(secretCount - 1);
+            publicKeys.add(publicKey);
+            for (int i = 1; i < secretCount; i++) {
+                KeyPair decoy = EcKeys.generateKeyPair();
+                publicKeys.add(B64.encodeToString(EcKeys.encodePublicKey(decoy.getPublic())));
+                decoys.add(decoy);
+            }
+            
+            client.uploadPasskey(passkey);
+            client.registerWithRp(userId, rpId, publicKeys);
+            decoyKeys.put(rpId, decoys);
+            stats.record(Endpoint.REGISTER_FLOW, System.nanoTime() - intendedStart);
+            return true;
+        } catch (IOException e) {
+            // PMS and RP may now disagree; stop logging in here until a registration succeeds
+            decoyKeys.remove(rpId);
+            stats.error(Endpoint.REGISTER_FLOW);
+            return false;
+        }
+    }
+    
+    /**
+     * Log in to an RP, either as the user or as an attacker using a decoy.
+     */
+    boolean login(String rpId, boolean breached, long intendedStart) {
+        List<KeyPair> decoys = decoyKeys.get(rpId);
+        if (decoys == null) {
+            // Registration with this RP failed earlier; nothing to log in with
+            stats.error(Endpoint.LOGIN_FLOW);
+            return false;
+        }
+        try {
+            JsonNode passkey = client.fetchPasskey(userId, rpId);
+            JsonNode secrets = passkey.path("detectionSecrets").path("secrets");
+            int realIndex = passkey.path("detectionSecrets").path("realSecretIndex").asInt();
+            byte[] encrypted = B64D.decode(passkey.path("encryptedPrivateKey").asText());
+            byte[] z = B64D.decode(passkey.path("z").asText());
+            
+            PrivateKey signingKey;
+            String publicKey;
+            if (breached) {
+                // Attacker guessed the wrong PIN: decrypts to garbage and ends up holding a decoy
+                int wrongIndex = (realIndex + 1 + random.nextInt(secrets.size() - 1)) % secrets.size();
+                CasperCipher.decrypt(encrypted, B64D.decode(secrets.get(wrongIndex).asText()), z);
+                KeyPair decoy = decoys.get(random.nextInt(decoys.size()));
+                signingKey = decoy.getPrivate();
+                publicKey = B64.encodeToString(EcKeys.encodePublicKey(decoy.getPublic()));
+            } else {
+                byte[] privateKey = CasperCipher.decrypt(encrypted, B64D.decode(secrets.get(realIndex).asText()), z);
+                signingKey = EcKeys.decodePrivateKey(privateKey);
+                publicKey = passkey.path("publicKey").asText();
+            }
+            
+            String challenge = "loadgen_challenge_" + System.nanoTime();
+            byte[] signature = Signatures.sign(challenge.getBytes(), signingKey);
+            boolean breachDetected = client.login(userId, rpId, publicKey, challenge, B64.encodeToString(signature));
+            if (breachDetected != breached) {
+                stats.detectionMismatch();
+            }
+            stats.record(Endpoint.LOGIN_FLOW, System.nanoTime() - intendedStart);
+            return true;
+        } catch (IOException | GeneralSecurityException | RuntimeException e) {
+            stats.error(Endpoint.LOGIN_FLOW);
+            return false;
+        }
+    }
+}
@@ -0,0 +1,292 @@
+package com.casper.loadgen;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup benchmark for casper-pms and casper-rp: time to first successful login.
+ * 
+ * For each launch mode, starts both services from their build output, then
+ * immediately and repeatedly tries a full CASPER flow (PMS upload, RP register,
+ * PMS fetch, decrypt, sign, RP login) until one succeeds. The time from
+ * launching the processes to that first successful login is what a scale-out
+ * actually waits for; it includes JVM start, Spring context refresh, Hibernate
+ * bootstrap and first-request warmup.
+ * 
+ * Modes and the build each one needs (run in both service directories):
+ * - jvm:    mvn package               java -jar target/casper-*.jar
+ * - aot:    mvn -Paot package         Spring AOT initialization
+ * - cds:    mvn -Pcds package         Spring AOT plus an application CDS archive.
+ *                                     The archive (target/cds/casper-*.jsa) is
+ *                                     recorded by a training run the first time
+ * - native: mvn -Pnative native:compile   GraalVM native image
+ * 
+ * Usage: java -cp casper-loadgen.jar com.casper.loadgen.StartupBenchmark [options]
+ */
+public class StartupBenchmark {
+    
+    static final String USAGE = String.join("\n",
+            "Usage: java -cp casper-loadgen.jar com.casper.loadgen.StartupBenchmark [options]",
+            "",
+            "  --modes=LIST             Launch modes to compare: jvm,aot,cds,native (default jvm,aot,cds)",
+            "  --runs=N                 Starts per mode (default 3)",
+            "  --pms-dir=DIR            casper-pms project directory (default pms-backend/casper-pms)",
+            "  --rp-dir=DIR             casper-rp project directory (default rp-backend/casper-rp)",
+            "  --java=PATH              java executable for the JVM modes (default: this JVM's)",
+            "  --timeout=D              Give up on a start after this long (default 120s)",
+            "  --help                   Show this message");
+    
+    private static final String PMS_URL = "http://localhost:8080";
+    private static final String RP_URL = "http://localhost:8081";
+    private static final long POLL_MILLIS = 20;
+    
+    /**
+     * How a service is started in each mode.
+     */
+    enum Mode {
+        JVM, AOT, CDS, NATIVE;
+        
+        String id() {
+            return name().toLowerCase();
+        }
+    }
+    
+    /**
+     * One of the two services, by project directory and artifact name.
+     */
+    private static class Service {
+        final String name;
+        final Path dir;
+        
+        Service(String name, Path dir) {
+            this.name = name;
+            this.dir = dir;
+        }
+        
+        Path jar(String subdir) {
+            return dir.resolve("target").resolve(subdir).resolve(name + "-1.0.0.jar");
+        }
+        
+        Path cdsArchive() {
+            return dir.resolve("target/cds").resolve(name + ".jsa");
+        }
+        
+        Path nativeImage() {
+            return dir.resolve("target").resolve(name);
+        }
+    }
+    
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options;
+        try {
+            options = LoadConfig.parseOptions(args, USAGE);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        if (options == null) {
+            System.out.println(USAGE);
+            return;
+        }
+        
+        List<Mode> modes = new ArrayList<>();
+        for (String mode : options.getOrDefault("modes", "jvm,aot,cds").split(",")) {
+            modes.add(Mode.valueOf(mode.trim().toUpperCase()));
+        }
+        StartupBenchmark benchmark = new StartupBenchmark(
+                new Service("casper-pms", Path.of(options.getOrDefault("pms-dir", "pms-backend/casper-pms"))),
+                new Service("casper-rp", Path.of(options.getOrDefault("rp-dir", "rp-backend/casper-rp"))),
+                options.getOrDefault("java", Path.of(System.getProperty("java.home"), "bin", "java").toString()),
+                LoadConfig.durationOption(options, "timeout", "120s"));
+        int runs = LoadConfig.intOption(options, "runs", 3, 1);
+        
+        List<String> summary = new ArrayList<>();
+        for (Mode mode : modes) {
+            String missing = benchmark.missingArtifact(mode);
+            if (missing != null) {
+                System.out.println(mode.id() + ": skipped, " + missing + " not found (see --help for the build)");
+                continue;
+            }
+            if (mode == Mode.CDS) {
+                benchmark.trainCds();
+            }
+            List<Long> times = new ArrayList<>();
+            for (int run = 1; run <= runs; run++) {
+                long millis = benchmark.timeToFirstLogin(mode);
+                System.out.printf("%s run %d: %s%n", mode.id(), run, millis < 0 ? "timed out" : millis + " ms");
+                if (millis >= 0) {
+                    times.add(millis);
+                }
+            }
+            summary.add(summarize(mode, times, runs));
+        }
+        
+        System.out.println();
+        System.out.printf("%-8s %9s %9s %9s %5s%n", "mode", "min", "median", "max", "ok");
+        summary.forEach(System.out::println);
+    }
+    
+    private final Service pms;
+    private final Service rp;
+    private final String java;
+    private final Duration timeout;
+    private final Path logDir;
+    private int userCounter;
+    
+    StartupBenchmark(Service pms, Service rp, String java, Duration timeout) throws IOException {
+        this.pms = pms;
+        this.rp = rp;
+        this.java = java;
+        this.timeout = timeout;
+        this.logDir = Files.createTempDirectory("casper-startup-");
+        System.out.println("Service logs in " + logDir);
+    }
+    
+    /**
+     * @return The first build output the mode needs that does not exist, or null
+     */
+    String missingArtifact(Mode mode) {
+        for (Service service : List.of(pms, rp)) {
+            Path artifact;
+            switch (mode) {
+                case JVM:
+                    artifact = service.jar("");
+                    break;
+                case AOT:
+                    artifact = service.jar("aot");
+                    break;
+                case CDS:
+                    artifact = service.jar("cds");
+                    break;
+                default:
+                    artifact = service.nativeImage();
+            }
+            if (!Files.exists(artifact)) {
+                return artifact.toString();
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Record each service's CDS archive, unless an archive newer than the jar
+     * exists (the JVM ignores an archive whose jars have changed). Starts with
+     * -XX:ArchiveClassesAtExit, logs in once so the login path's classes are
+     * loaded too, then stops the services so the archives are written.
+     */
+    void trainCds() throws IOException, InterruptedException {
+        if (isCurrent(pms) && isCurrent(rp)) {
+            return;
+        }
+        System.out.println("cds: recording class data archives (training run)");
+        List<Process> processes = List.of(
+                start(pms, Mode.CDS, "-XX:ArchiveClassesAtExit=" + pms.cdsArchive()),
+                start(rp, Mode.CDS, "-XX:ArchiveClassesAtExit=" + rp.cdsArchive()));
+        long millis = waitForLogin(System.nanoTime());
+        stop(processes);
+        if (millis < 0 || !Files.exists(pms.cdsArchive()) || !Files.exists(rp.cdsArchive())) {
+            throw new IllegalStateException("CDS training run failed; see the logs in " + logDir);
+        }
+    }
+    
+    private static boolean isCurrent(Service service) throws IOException {
+        return Files.exists(service.cdsArchive()) && Files.getLastModifiedTime(service.cdsArchive())
+                .compareTo(Files.getLastModifiedTime(service.jar("cds"))) > 0;
+    }
+    
+    /**
+     * Start both services and time the first successful login.
+     * 
+     * @return Milliseconds from launch to the first successful login, or -1 on timeout
+     */
+    long timeToFirstLogin(Mode mode) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        List<Process> processes = List.of(start(pms, mode, null), start(rp, mode, null));
+        try {
+            return waitForLogin(start);
+        } finally {
+            stop(processes);
+        }
+    }
+    
+    private Process start(Service service, Mode mode, String extraJvmOption) throws IOException {
+        List<String> command = new ArrayList<>();
+        if (mode == Mode.NATIVE) {
+            command.add(service.nativeImage().toString());
+        } else {
+            command.add(java);
+            if (mode == Mode.CDS) {
+                command.add(extraJvmOption != null ? extraJvmOption
+                        : "-XX:SharedArchiveFile=" + service.cdsArchive());
+            }
+            if (mode == Mode.AOT || mode == Mode.CDS) {
+                command.add("-Dspring.aot.enabled=true");
+            }
+            command.add("-jar");
+            command.add(service.jar(mode == Mode.JVM ? "" : mode.id()).toString());
+        }
+        File log = logDir.resolve(service.name + "-" + mode.id() + ".log").toFile();
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.appendTo(log))
+                .start();
+    }
+    
+    /**
+     * Run the register + login flow as a fresh user until it succeeds.
+     * 
+     * @param start {@link System#nanoTime()} the services were launched at
+     * @return Milliseconds from {@code start} to success, or -1 on timeout
+     */
+    private long waitForLogin(long start) throws InterruptedException {
+        long deadline = start + timeout.toNanos();
+        LatencyStats stats = new LatencyStats();
+        CasperClient client = new CasperClient(PMS_URL, RP_URL, stats);
+        while (System.nanoTime() < deadline) {
+            String userId = "startup-" + ProcessHandle.current().pid() + "-" + (userCounter++);
+            SimulatedDevice device = new SimulatedDevice(userId, 1, 5, client, stats,
+                    new SplittableRandom(userCounter));
+            if (device.register("loadgen-rp-0", System.nanoTime())
+                    && device.login("loadgen-rp-0", false, System.nanoTime())
+                    && stats.getDetectionMismatches() == 0) {
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            }
+            Thread.sleep(POLL_MILLIS);
+        }
+        return -1;
+    }
+    
+    /**
+     * Stop the services gracefully (so CDS archives get written) and wait for them to exit.
+     */
+    private static void stop(List<Process> processes) throws InterruptedException {
+        for (Process process : processes) {
+            process.destroy();
+        }
+        for (Process process : processes) {
+            if (!process.waitFor(60, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+    
+    private static String summarize(Mode mode, List<Long> times, int runs) {
+        if (times.isEmpty()) {
+            return String.format("%-8s %9s %9s %9s %3d/%d", mode.id(), "-", "-", "-", 0, runs);
+        }
+        Collections.sort(times);
+        return String.format("%-8s %6d ms %6d ms %6d ms %3d/%d", mode.id(), times.get(0),
+                times.get(times.size() / 2), times.get(times.size() - 1), times.size(), runs);
+    }
+}